@@ -0,0 +1,197 @@
+package com.github.agadar.embassychecker;
+
+import com.github.agadar.embassychecker.cache.RegionCache;
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.history.RegionHistory;
+import com.github.agadar.embassychecker.source.NationStatesRegionSource;
+import com.github.agadar.embassychecker.source.SlidingWindowRateLimiter;
+
+import com.github.agadar.nationstates.DefaultNationStatesImpl;
+import com.github.agadar.nationstates.NationStates;
+import com.github.agadar.nationstates.domain.region.Embassy;
+import com.github.agadar.nationstates.domain.region.Region;
+import com.github.agadar.nationstates.domain.region.RegionalMessage;
+import com.github.agadar.nationstates.enumerator.EmbassyStatus;
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.awt.EventQueue;
+import java.awt.GraphicsEnvironment;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * Creates a NationStates client and warms it up on a background thread, so
+ * that the first retrieval does not pay for loading the wrapper, the XML
+ * binding and the TLS stack. The warm-up makes no requests to NationStates.
+ * <p>
+ * Its main method is the training run for the class-data sharing archive built
+ * by the {@code appcds} profile.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class ClientWarmUp {
+
+    private final static Logger LOGGER = Logger.getLogger(ClientWarmUp.class.getName());
+
+    /**
+     * The host the NationStates API is served from.
+     */
+    private final static String API_HOST = "www.nationstates.net";
+
+    /**
+     * The packages of the XML binding APIs the wrapper may be built against,
+     * tried in order.
+     */
+    private final static String[] XML_BINDING_PACKAGES = {"javax.xml.bind", "jakarta.xml.bind"};
+
+    /**
+     * A minimal region document to unmarshal.
+     */
+    private final static String REGION_XML = "<REGION id=\"warm_up\"><NAME>Warm Up</NAME>"
+            + "<EMBASSIES><EMBASSY>Warm Up</EMBASSY></EMBASSIES></REGION>";
+
+    private ClientWarmUp() {
+    }
+
+    /**
+     * Starts creating and warming up a NationStates client on a background
+     * thread.
+     *
+     * @param userAgent the user agent of the client
+     * @return the client, once it is created
+     */
+    public static CompletableFuture<NationStates> start(String userAgent) {
+        final CompletableFuture<NationStates> client = new CompletableFuture<>();
+        final Thread thread = new Thread(() -> {
+            try {
+                client.complete(new DefaultNationStatesImpl(userAgent));
+            } catch (RuntimeException ex) {
+                client.completeExceptionally(ex);
+                return;
+            }
+            warmUp();
+        }, "NationStates client warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return client;
+    }
+
+    /**
+     * Returns the time in milliseconds since the virtual machine started.
+     *
+     * @return the time since the virtual machine started
+     */
+    public static long millisSinceStart() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    /**
+     * Loads the classes the first retrieval needs. Failures are only logged,
+     * as the first retrieval will load them anyway.
+     */
+    private static void warmUp() {
+        final long start = System.nanoTime();
+
+        // Load and initialize the wrapper's domain classes.
+        for (Class<?> type : Arrays.asList(Region.class, Embassy.class, RegionalMessage.class,
+                EmbassyStatus.class, RegionTag.class, RegionShard.class)) {
+            try {
+                Class.forName(type.getName(), true, type.getClassLoader());
+            } catch (ClassNotFoundException ex) {
+                LOGGER.log(Level.FINE, "Failed to load " + type.getName(), ex);
+            }
+        }
+
+        // Build an XML binding context for regions and unmarshal a region with it.
+        unmarshalRegion();
+
+        // Resolve the API host and initialize the TLS stack.
+        try {
+            InetAddress.getAllByName(API_HOST);
+        } catch (UnknownHostException ex) {
+            LOGGER.log(Level.FINE, "Failed to resolve " + API_HOST, ex);
+        }
+        try {
+            SSLContext.getDefault().createSSLEngine(API_HOST, 443);
+        } catch (NoSuchAlgorithmException ex) {
+            LOGGER.log(Level.FINE, "Failed to initialize TLS", ex);
+        }
+
+        LOGGER.log(Level.FINE, "Warmed up the NationStates client in {0} ms",
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Unmarshals a minimal region with the XML binding the wrapper uses. The
+     * binding is looked up reflectively, because its package depends on the
+     * wrapper's version.
+     */
+    private static void unmarshalRegion() {
+        for (String bindingPackage : XML_BINDING_PACKAGES) {
+            try {
+                final Class<?> contextType = Class.forName(bindingPackage + ".JAXBContext");
+                final Class<?> unmarshallerType = Class.forName(bindingPackage + ".Unmarshaller");
+                final Object context = contextType.getMethod("newInstance", Class[].class)
+                        .invoke(null, (Object) new Class<?>[]{Region.class});
+                final Object unmarshaller = contextType.getMethod("createUnmarshaller").invoke(context);
+                unmarshallerType.getMethod("unmarshal", Reader.class).invoke(unmarshaller, new StringReader(REGION_XML));
+                return;
+            } catch (ClassNotFoundException ex) {
+                // Try the next package.
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                LOGGER.log(Level.FINE, "Failed to warm up the XML binding",
+                        ex instanceof InvocationTargetException ? ex.getCause() : ex);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Training run for the class-data sharing archive: warms up a client,
+     * evaluates a report on made-up regions and, if there is a display,
+     * creates the form. Makes no requests to NationStates, and the form's
+     * controller neither loads the region cache nor opens the rate limit file
+     * shared with the other checker processes, so that nothing is written to
+     * the home directory of whoever builds the archive.
+     *
+     * @param args the command line arguments, which are ignored
+     * @throws Exception if the training run failed
+     */
+    public static void main(String[] args) throws Exception {
+        final NationStates nationStates = new DefaultNationStatesImpl(EmbassyCheckController.USER_AGENT);
+        warmUp();
+
+        final long now = System.currentTimeMillis() / 1000;
+        final RegionData embassy = new RegionData("Warm Up", EnumSet.allOf(RegionShard.class), now,
+                Collections.singletonList("The Training Grounds"), now, now, EnumSet.noneOf(RegionTag.class));
+        new EmbassyCheckRequest("The Training Grounds", true, 30, true, 30, true,
+                new RegionTag[]{RegionTag.INVADER}).toQuery((name, shards) -> embassy)
+                .asOf(now).evaluate(Collections.singletonList(embassy)).toJson();
+
+        if (!GraphicsEnvironment.isHeadless()) {
+            final Path unused = Paths.get(System.getProperty("java.io.tmpdir"), "embassychecker-training");
+            EventQueue.invokeAndWait(() -> new EmbassyCheckForm(form -> new EmbassyCheckController(form,
+                    new NationStatesRegionSource(() -> nationStates, new SlidingWindowRateLimiter()),
+                    new RegionCache(unused.resolve("cache.dat"), RegionCache.DEFAULT_MAX_ENTRIES),
+                    new RegionHistory(unused))).dispose());
+        }
+        System.exit(0);
+    }
+}
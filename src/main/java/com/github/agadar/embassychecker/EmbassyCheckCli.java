@@ -0,0 +1,588 @@
+package com.github.agadar.embassychecker;
+
+import com.github.agadar.embassychecker.cache.RegionCache;
+import com.github.agadar.embassychecker.check.RegionPopulationCheck;
+import com.github.agadar.embassychecker.codec.RegionSnapshotDecoder;
+import com.github.agadar.embassychecker.codec.RegionSnapshotEncoder;
+import com.github.agadar.embassychecker.domain.EmbassyCheckReport;
+import com.github.agadar.embassychecker.domain.RegionLastMsg;
+import com.github.agadar.embassychecker.domain.RegionTrend;
+import com.github.agadar.embassychecker.arena.RegionArena;
+import com.github.agadar.embassychecker.dump.DumpChangeSet;
+import com.github.agadar.embassychecker.dump.DumpDigest;
+import com.github.agadar.embassychecker.dump.DumpPipeline;
+import com.github.agadar.embassychecker.history.HistoryRegionSource;
+import com.github.agadar.embassychecker.history.RegionHistory;
+import com.github.agadar.embassychecker.index.ActivityIndex;
+import com.github.agadar.embassychecker.index.HappeningsClient;
+import com.github.agadar.embassychecker.index.RegionExistence;
+import com.github.agadar.embassychecker.index.TagIndex;
+import com.github.agadar.embassychecker.report.AuditCoordinator;
+import com.github.agadar.embassychecker.report.WorldAudit;
+import com.github.agadar.embassychecker.source.LeanRegionSource;
+import com.github.agadar.embassychecker.source.NationStatesRegionSource;
+import com.github.agadar.embassychecker.source.RateLimiter;
+import com.github.agadar.embassychecker.source.RecordingRegionSource;
+import com.github.agadar.embassychecker.source.RegionSource;
+import com.github.agadar.embassychecker.source.ReplayRegionSource;
+import com.github.agadar.embassychecker.source.SharedRateLimiter;
+
+import com.github.agadar.nationstates.DefaultNationStatesImpl;
+import com.github.agadar.nationstates.NationStates;
+import com.github.agadar.nationstates.enumerator.RegionTag;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line interface for running a single embassy check without the GUI.
+ * Supported arguments are <code>--region</code> (required),
+ * <code>--rmb-activity</code>, <code>--region-age</code> and
+ * <code>--tags</code>, each of which enables the corresponding check,
+ * <code>--min-nations</code>, which reports the embassy regions with fewer
+ * nations, and <code>--json</code> to print the report as JSON. A run can be recorded with
+ * <code>--record &lt;file&gt;</code>, and replayed offline with
+ * <code>--replay &lt;file&gt;</code> and an optional
+ * <code>--replay-speed</code> (1 is recorded speed, 0 as fast as possible).
+ * <code>--preview &lt;n&gt;</code> prints estimates based on a sample of the
+ * embassy regions, using no more than n requests, instead of the full report.
+ * <code>--explain</code> prints how many requests the check would make, how
+ * long it would take and how much memory, retrieving only the embassy list.
+ * <code>--time-budget &lt;seconds&gt;</code> and
+ * <code>--request-budget &lt;n&gt;</code> limit the check, in which case the
+ * report lists the regions that were not checked.
+ * <code>--history &lt;dir&gt;</code> appends every retrieved region to the
+ * region history in the given directory. Instead of running a check,
+ * <code>--trend &lt;days&gt;</code> lists the embassy regions whose RMB activity
+ * declined over the given number of days, and
+ * <code>--newly-inactive &lt;days&gt;</code> lists the embassy regions that
+ * became inactive by the <code>--rmb-activity</code> criterion within the given
+ * number of days, both according to the region history.
+ * <code>--export &lt;file&gt;</code> writes the region history to a compact
+ * snapshot file, which another machine can add to its region history with
+ * <code>--import &lt;file&gt;</code>.
+ * <code>--tag-index &lt;file&gt;</code> answers the tag check from the given
+ * regions dump instead of retrieving every region's tags, reading the dump
+ * with <code>--dump-parsers &lt;n&gt;</code> parser threads (default: the
+ * number of cores less two). <code>--existence &lt;file&gt;</code> reports
+ * the regions that the given regions dump proves dead without retrieving them.
+ * <code>--activity-index &lt;file&gt;</code> skips retrieving the messages of
+ * regions that the world happenings prove active. The index in the given file
+ * is first brought up to date, using at most
+ * <code>--happenings-requests &lt;n&gt;</code> requests (default 5), or from a
+ * recorded list of happenings given by <code>--happenings &lt;file&gt;</code>.
+ * <code>--dump-diff &lt;file&gt;</code> compares the given regions dump with
+ * the one read before, whose digest is kept in the file given by
+ * <code>--dump-digest &lt;file&gt;</code>, and updates the region history and
+ * the GUI's region cache with only the regions that changed.
+ * Requests are counted against the rate limit shared by every checker process
+ * on the host, kept in the file given by
+ * <code>--rate-limit-file &lt;file&gt;</code> (default in the home directory).
+ * <code>--lean-parser</code> requests the regions directly and reads only the
+ * fields the checks need from the responses, rather than through the wrapper.
+ * Instead of checking one region, <code>--audit &lt;file&gt;</code> checks the
+ * embassies of every region in the given regions dump for the
+ * <code>--tags</code>, the only criterion the dump holds, and writes the rows
+ * sorted by region to <code>--output &lt;file&gt;</code> (default: standard
+ * output), holding at most <code>--sort-rows &lt;n&gt;</code> rows in memory
+ * (default 1,000,000) and spilling the rest to the temporary directory.
+ * <code>--workers &lt;n&gt;</code> splits the audit over n worker processes,
+ * each of which reads the dump and audits a partition of the regions.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class EmbassyCheckCli {
+
+    private EmbassyCheckCli() {
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        final Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--json") || args[i].equals("--lean-parser") || args[i].equals("--explain")) {
+                options.put(args[i], "true");
+            } else if (i + 1 < args.length) {
+                options.put(args[i], args[++i]);
+            }
+        }
+
+        try {
+            final String result = run(options);
+
+            if (result != null) {
+                System.out.println(result);
+            }
+        } catch (IllegalArgumentException | IllegalStateException | IOException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the check described by the given options.
+     *
+     * @param options the parsed command line options
+     * @return the report, as text or JSON, or null if it was already written
+     * @throws IOException if the recording could not be read or written
+     */
+    private static String run(Map<String, String> options) throws IOException {
+        if (options.containsKey("--export") || options.containsKey("--import")) {
+            return transferHistory(options);
+        }
+        if (options.containsKey("--dump-diff")) {
+            return applyDumpDiff(options);
+        }
+        if (options.containsKey("--trend") || options.containsKey("--newly-inactive")) {
+            return queryHistory(options);
+        }
+        final String rmbActivity = options.get("--rmb-activity");
+        final String regionAge = options.get("--region-age");
+        final String tagsOption = options.get("--tags");
+        final List<RegionTag> tags = new ArrayList<>();
+
+        if (tagsOption != null) {
+            for (String tag : tagsOption.split(",")) {
+                tags.add(RegionTag.fromString(tag.trim()));
+            }
+        }
+
+        if (options.containsKey("--audit")) {
+            if (rmbActivity != null || regionAge != null || tagsOption == null) {
+                throw new IllegalArgumentException("The regions dump holds no RMB messages or founding dates;"
+                        + " only --tags can be audited!");
+            }
+            audit(tags.toArray(new RegionTag[tags.size()]), options);
+            return null;
+        }
+
+        final EmbassyCheckRequest request = new EmbassyCheckRequest(options.get("--region"),
+                rmbActivity != null, rmbActivity == null ? 0 : Integer.parseInt(rmbActivity),
+                regionAge != null, regionAge == null ? 0 : Integer.parseInt(regionAge),
+                tagsOption != null, tags.toArray(new RegionTag[tags.size()]));
+        final long start = System.nanoTime();
+        final String result;
+
+        if (options.containsKey("--replay")) {
+            final ReplayRegionSource replay = new ReplayRegionSource(Paths.get(options.get("--replay")),
+                    Double.parseDouble(options.getOrDefault("--replay-speed", "1")));
+            result = check(request.toQuery(replay).asOf(replay.getRecordingStartSeconds()), options);
+        } else {
+            final RegionHistory history = new RegionHistory(historyDirectory(options));
+            final NationStates nationStates = new DefaultNationStatesImpl(EmbassyCheckController.USER_AGENT);
+            RegionSource live = options.containsKey("--lean-parser")
+                    ? new LeanRegionSource(EmbassyCheckController.USER_AGENT, rateLimiter(options))
+                    : new NationStatesRegionSource(() -> nationStates, rateLimiter(options));
+
+            if (options.containsKey("--history")) {
+                history.open();
+                live = new HistoryRegionSource(live, history);
+            }
+
+            try {
+                if (options.containsKey("--record")) {
+                    try (RecordingRegionSource recording = new RecordingRegionSource(live,
+                            Paths.get(options.get("--record")))) {
+                        result = check(request.toQuery(recording), options);
+                    }
+                } else {
+                    result = check(request.toQuery(live), options);
+                }
+            } finally {
+                history.close();
+            }
+        }
+
+        System.err.println("Check completed in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+        return result;
+    }
+
+    /**
+     * Answers the trend or newly inactive query described by the given options
+     * from the region history.
+     *
+     * @param options the parsed command line options
+     * @return the regions found, as text
+     * @throws IOException if the region history could not be read
+     */
+    private static String queryHistory(Map<String, String> options) throws IOException {
+        final String regionName = options.get("--region");
+
+        if (regionName == null || regionName.isEmpty()) {
+            throw new IllegalArgumentException("No region name supplied!");
+        }
+
+        final String newLine = System.lineSeparator();
+        final StringBuilder result = new StringBuilder();
+        final long start = System.nanoTime();
+        final long now = System.currentTimeMillis() / 1000;
+
+        try (RegionHistory history = new RegionHistory(historyDirectory(options))) {
+            history.open();
+
+            if (options.containsKey("--trend")) {
+                final int days = Integer.parseInt(options.get("--trend"));
+                final List<RegionTrend> trends = history.findSlidingTowardInactivity(regionName,
+                        now - TimeUnit.DAYS.toSeconds(days), now);
+                result.append("-------Regions with declining RMB activity during the last ").append(days)
+                        .append(" days-------").append(newLine);
+                result.append("Total regions found: ").append(trends.size()).append('.').append(newLine);
+                trends.forEach(trend -> result.append(trend).append(newLine));
+                result.append(newLine);
+            }
+
+            if (options.containsKey("--newly-inactive")) {
+                if (!options.containsKey("--rmb-activity")) {
+                    throw new IllegalArgumentException("--newly-inactive requires --rmb-activity!");
+                }
+                final int days = Integer.parseInt(options.get("--newly-inactive"));
+                final List<RegionLastMsg> inactive = history.findNewlyInactive(regionName,
+                        Integer.parseInt(options.get("--rmb-activity")), now - TimeUnit.DAYS.toSeconds(days), now);
+                result.append("-------Regions that became inactive during the last ").append(days)
+                        .append(" days-------").append(newLine);
+                result.append("Total regions found: ").append(inactive.size()).append('.').append(newLine);
+                inactive.forEach(rlm -> result.append(rlm).append(newLine));
+                result.append(newLine);
+            }
+
+            System.err.println("Queried " + history.size() + " snapshots in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+        }
+        return result.toString();
+    }
+
+    /**
+     * Exports the region history to, or imports it from, the snapshot file
+     * given by the options.
+     *
+     * @param options the parsed command line options
+     * @return a summary of the transfer
+     * @throws IOException if the region history or the snapshot file could not
+     * be read or written
+     */
+    private static String transferHistory(Map<String, String> options) throws IOException {
+        final long start = System.nanoTime();
+        final String summary;
+
+        try (RegionHistory history = new RegionHistory(historyDirectory(options))) {
+            history.open();
+
+            if (options.containsKey("--export")) {
+                final Path file = Paths.get(options.get("--export"));
+                final RegionSnapshotEncoder encoder = new RegionSnapshotEncoder(
+                        new BufferedOutputStream(Files.newOutputStream(file)));
+
+                try {
+                    history.exportTo(encoder);
+                } finally {
+                    encoder.close();
+                }
+                summary = "Exported " + encoder.getCount() + " snapshots (" + Files.size(file) + " bytes).";
+            } else {
+                final long imported = history.importFrom(RegionSnapshotDecoder.open(
+                        Paths.get(options.get("--import"))));
+                history.flush();
+                summary = "Imported " + imported + " new snapshots.";
+            }
+        }
+        System.err.println("Transfer completed in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+        return summary;
+    }
+
+    /**
+     * Compares the regions dump given by the options with the one read before,
+     * and updates the dump digest, the region history and the region cache
+     * with the changes.
+     *
+     * @param options the parsed command line options
+     * @return a summary of the changes
+     * @throws IOException if the dump could not be read, or the digest, the
+     * region history or the region cache could not be read or written
+     */
+    private static String applyDumpDiff(Map<String, String> options) throws IOException {
+        final long start = System.nanoTime();
+        final DumpDigest digest = new DumpDigest(options.containsKey("--dump-digest")
+                ? Paths.get(options.get("--dump-digest")) : DumpDigest.defaultFile());
+        digest.load();
+        final DumpChangeSet changes = digest.update(Paths.get(options.get("--dump-diff")), dumpPipeline(options));
+        final long diffed = System.nanoTime();
+        final int appended;
+
+        try (RegionHistory history = new RegionHistory(historyDirectory(options))) {
+            history.open();
+            appended = history.apply(changes);
+            history.flush();
+        }
+        final RegionCache cache = new RegionCache(RegionCache.defaultFile(), RegionCache.DEFAULT_MAX_ENTRIES);
+        cache.load();
+        final int cached = cache.apply(changes);
+
+        if (cached > 0) {
+            cache.save();
+        }
+        digest.save();
+        System.err.println("Compared the dumps in " + TimeUnit.NANOSECONDS.toMillis(diffed - start)
+                + " ms and applied the changes in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - diffed)
+                + " ms.");
+        return changes + System.lineSeparator() + "Appended " + appended + " snapshots to the region history and "
+                + "updated " + cached + " cached regions.";
+    }
+
+    /**
+     * Checks the embassies of every region in the regions dump given by the
+     * options for the given tags, and writes the sorted rows to the output
+     * given by the options. With more than one worker, the audit is split
+     * over that many worker processes. A worker, given its partition, writes
+     * its rows to its partial report file instead.
+     *
+     * @param tags the tags to check for
+     * @param options the parsed command line options
+     * @throws IOException if the dump could not be read, or the rows could not
+     * be spilled or written
+     */
+    private static void audit(RegionTag[] tags, Map<String, String> options) throws IOException {
+        final int workers = Integer.parseInt(options.getOrDefault("--workers", "1"));
+
+        if (workers > 1 && !options.containsKey("--partition")) {
+            coordinateAudit(workers, options);
+            return;
+        }
+        final long start = System.nanoTime();
+        final RegionArena arena = new RegionArena(1 << 15);
+        dumpPipeline(options).run(Paths.get(options.get("--audit")), arena::add);
+        final long read = System.nanoTime();
+
+        final WorldAudit audit = new WorldAudit(arena, Integer.parseInt(options.getOrDefault("--sort-rows",
+                String.valueOf(WorldAudit.DEFAULT_MAX_ROWS_IN_MEMORY))),
+                Paths.get(System.getProperty("java.io.tmpdir"))).regionTags(tags);
+        final long rows;
+
+        if (options.containsKey("--partition")) {
+            final String[] partition = options.get("--partition").split("/");
+
+            if (partition.length != 2 || !options.containsKey("--partial")) {
+                throw new IllegalArgumentException("A partition must be given as <index>/<count>, with --partial!");
+            }
+            rows = audit.partition(Integer.parseInt(partition[0]), Integer.parseInt(partition[1]))
+                    .writePartial(Paths.get(options.get("--partial")));
+        } else {
+            try (Writer out = auditOutput(options)) {
+                rows = audit.write(out);
+            }
+        }
+        System.err.println("Read " + arena.size() + " regions in " + TimeUnit.NANOSECONDS.toMillis(read - start)
+                + " ms and wrote " + rows + " rows in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - read)
+                + " ms, spilling " + audit.getSpilledRuns() + " sorted runs.");
+    }
+
+    /**
+     * Splits the audit described by the options over the given number of
+     * worker processes, and writes the merged rows to the output given by the
+     * options. The dump parser threads are divided among the workers, unless
+     * their number is given.
+     *
+     * @param workers the number of workers
+     * @param options the parsed command line options
+     * @throws IOException if a worker failed, or the partial reports could not
+     * be merged or written
+     */
+    private static void coordinateAudit(int workers, Map<String, String> options) throws IOException {
+        final long start = System.nanoTime();
+        final List<String> workerArguments = new ArrayList<>();
+        workerArguments.add("--audit");
+        workerArguments.add(options.get("--audit"));
+        workerArguments.add("--tags");
+        workerArguments.add(options.get("--tags"));
+        workerArguments.add("--dump-parsers");
+        workerArguments.add(options.getOrDefault("--dump-parsers",
+                String.valueOf(Math.max(1, DumpPipeline.DEFAULT_PARSERS / workers))));
+
+        if (options.containsKey("--sort-rows")) {
+            workerArguments.add("--sort-rows");
+            workerArguments.add(options.get("--sort-rows"));
+        }
+        final AuditCoordinator coordinator = new AuditCoordinator(workers,
+                Paths.get(System.getProperty("java.io.tmpdir")), workerArguments);
+        final long rows;
+
+        try (Writer out = auditOutput(options)) {
+            rows = coordinator.run(out);
+        }
+        System.err.println("Audited with " + workers + " workers and merged " + rows + " rows in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+    }
+
+    /**
+     * Opens the output of the audit given by the options, or standard output.
+     *
+     * @param options the parsed command line options
+     * @return the output
+     * @throws IOException if the output file could not be opened
+     */
+    private static Writer auditOutput(Map<String, String> options) throws IOException {
+        return options.containsKey("--output")
+                ? Files.newBufferedWriter(Paths.get(options.get("--output")), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds the tag index and the existence filter from the regions dumps
+     * given by the options, and makes the given query use them. A dump given
+     * for both is read once.
+     *
+     * @param query the query
+     * @param options the parsed command line options
+     * @throws IOException if a dump could not be read, or the tag index dump
+     * lists no tags
+     */
+    private static void indexDumps(EmbassyCheckQuery query, Map<String, String> options) throws IOException {
+        final long start = System.nanoTime();
+        final String tagDump = options.get("--tag-index");
+        final String existenceDump = options.get("--existence");
+        final TagIndex.DumpIndexer tagIndexer = new TagIndex.DumpIndexer();
+        final RegionExistence.DumpIndexer existenceIndexer = new RegionExistence.DumpIndexer();
+        final DumpPipeline pipeline = dumpPipeline(options);
+
+        if (tagDump != null && tagDump.equals(existenceDump)) {
+            pipeline.run(Paths.get(tagDump), tagIndexer.andThen(existenceIndexer));
+        } else {
+            if (tagDump != null) {
+                pipeline.run(Paths.get(tagDump), tagIndexer);
+            }
+            if (existenceDump != null) {
+                pipeline.run(Paths.get(existenceDump), existenceIndexer);
+            }
+        }
+        if (tagDump != null) {
+            final TagIndex index = tagIndexer.build();
+            query.tagIndex(index, TagIndex.DEFAULT_MAX_AGE_SECONDS);
+            System.err.println("Indexed the tags of " + index.size() + " regions.");
+        }
+        if (existenceDump != null) {
+            final RegionExistence filter = existenceIndexer.build();
+            query.existence(filter, RegionExistence.DEFAULT_MAX_AGE_SECONDS);
+            System.err.println("Found " + filter.size() + " existing and " + filter.deadCount() + " dead regions.");
+        }
+        System.err.println("Read the regions dumps in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                + " ms.");
+    }
+
+    /**
+     * Returns the pipeline to read regions dumps with, with the number of
+     * parser threads given by the options.
+     *
+     * @param options the parsed command line options
+     * @return the pipeline
+     */
+    private static DumpPipeline dumpPipeline(Map<String, String> options) {
+        return new DumpPipeline(Integer.parseInt(options.getOrDefault("--dump-parsers",
+                String.valueOf(DumpPipeline.DEFAULT_PARSERS))));
+    }
+
+    /**
+     * Returns the rate limiter shared with the other checker processes on the
+     * host, kept in the file given by the options or the default one.
+     *
+     * @param options the parsed command line options
+     * @return the rate limiter
+     */
+    private static RateLimiter rateLimiter(Map<String, String> options) {
+        return SharedRateLimiter.openOrLocal(options.containsKey("--rate-limit-file")
+                ? Paths.get(options.get("--rate-limit-file")) : SharedRateLimiter.defaultFile());
+    }
+
+    /**
+     * Returns the region history directory given by the options, or the
+     * default one.
+     *
+     * @param options the parsed command line options
+     * @return the region history directory
+     */
+    private static Path historyDirectory(Map<String, String> options) {
+        return options.containsKey("--history") ? Paths.get(options.get("--history"))
+                : RegionHistory.defaultDirectory();
+    }
+
+    /**
+     * Explains, previews or executes the given query, as specified by the
+     * options.
+     *
+     * @param query the query
+     * @param options the parsed command line options
+     * @return the explanation, the preview, or the report as text or JSON
+     * @throws IOException if the tag index or the activity index could not be
+     * built
+     */
+    private static String check(EmbassyCheckQuery query, Map<String, String> options) throws IOException {
+        if (options.containsKey("--min-nations")) {
+            query.check(new RegionPopulationCheck(Integer.parseInt(options.get("--min-nations"))));
+        }
+        if (options.containsKey("--tag-index") || options.containsKey("--existence")) {
+            indexDumps(query, options);
+        }
+        if (options.containsKey("--activity-index")) {
+            query.activityIndex(updateActivityIndex(options));
+        }
+        if (options.containsKey("--time-budget")) {
+            query.timeBudget(Long.parseLong(options.get("--time-budget")), TimeUnit.SECONDS);
+        }
+        if (options.containsKey("--request-budget")) {
+            query.requestBudget(Integer.parseInt(options.get("--request-budget")));
+        }
+        if (options.containsKey("--explain")) {
+            return query.explain().toString();
+        }
+        if (options.containsKey("--preview")) {
+            return query.preview(Integer.parseInt(options.get("--preview"))).toString();
+        }
+        final EmbassyCheckReport report = query.executeReport();
+
+        if (query.getRequestsSaved() > 0) {
+            System.err.println("The indexes saved " + query.getRequestsSaved() + " requests.");
+        }
+        return options.containsKey("--json") ? report.toJson() : report.toString();
+    }
+
+    /**
+     * Loads the activity index given by the options, brings it up to date and
+     * saves it.
+     *
+     * @param options the parsed command line options
+     * @return the activity index
+     * @throws IOException if the index could not be loaded, updated or saved
+     */
+    private static ActivityIndex updateActivityIndex(Map<String, String> options) throws IOException {
+        final ActivityIndex index = new ActivityIndex(Paths.get(options.get("--activity-index")));
+        index.load();
+
+        if (options.containsKey("--happenings")) {
+            try (InputStream in = Files.newInputStream(Paths.get(options.get("--happenings")))) {
+                final ActivityIndex.Ingested ingested = index.ingest(in);
+                System.err.println("Ingested " + ingested.messages + " messages from the recorded happenings.");
+            }
+        } else {
+            final int requests = index.update(new HappeningsClient(EmbassyCheckController.USER_AGENT,
+                    rateLimiter(options)), Integer.parseInt(options.getOrDefault("--happenings-requests", "5")));
+            System.err.println("Requested the latest happenings using " + requests + " requests.");
+        }
+        index.save();
+        System.err.println("The activity index holds " + index.size() + " regions.");
+        return index;
+    }
+}
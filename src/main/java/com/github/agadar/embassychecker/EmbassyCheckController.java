@@ -1,11 +1,30 @@
 package com.github.agadar.embassychecker;
 
+import com.github.agadar.embassychecker.cache.CachingRegionSource;
+import com.github.agadar.embassychecker.cache.RegionCache;
+import com.github.agadar.embassychecker.cache.RegionPrefetcher;
+import com.github.agadar.embassychecker.domain.EmbassyCheckExplanation;
+import com.github.agadar.embassychecker.domain.RegionData;
 import com.github.agadar.embassychecker.event.RegionRetrievedEvent;
 import com.github.agadar.embassychecker.event.RegionRetrievingStartedEvent;
 import com.github.agadar.embassychecker.event.RegionEventsListener;
-import com.github.agadar.nationstates.DefaultNationStatesImpl;
-import com.github.agadar.nationstates.NationStates;
+import com.github.agadar.embassychecker.history.HistoryRegionSource;
+import com.github.agadar.embassychecker.history.RegionHistory;
+import com.github.agadar.embassychecker.source.NationStatesRegionSource;
+import com.github.agadar.embassychecker.source.RegionSource;
+import com.github.agadar.embassychecker.source.SharedRateLimiter;
 import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
@@ -19,24 +38,184 @@ import javax.swing.SwingUtilities;
 public final class EmbassyCheckController implements RegionEventsListener {
 
     private final EmbassyCheckForm form;
-    private final NationStates nationStates;
+    private final RegionCache regionCache;
+    private final RegionHistory regionHistory;
+    private final CachingRegionSource regionSource;
+    private final RegionPrefetcher prefetcher;
 
     /**
      * The user agent for this program.
      */
-    private final static String USER_AGENT = "Agadar's Embassy Checker "
+    public final static String USER_AGENT = "Agadar's Embassy Checker "
             + "(https://github.com/Agadar/NationStates-EmbassyChecker)";
 
     /**
-     * Constructor, taking a form to communicate with. Also sets the User Agent.
+     * Age in seconds after which retrieved regions are too stale to be
+     * re-evaluated, and have to be retrieved again.
+     */
+    private final static long STALE_AFTER_SECONDS = TimeUnit.HOURS.toSeconds(1);
+
+    /**
+     * The shards retrieved for each embassy region besides the ones the checks
+     * need, so that other criteria can be re-evaluated afterwards without
+     * retrieving the regions again.
+     */
+    private final static RegionShard[] ALSO_RETRIEVED = {RegionShard.REGIONAL_MESSAGES, RegionShard.FOUNDED,
+        RegionShard.TAGS};
+
+    /**
+     * Minimum time in milliseconds between two updates of a cached report that
+     * is being revalidated.
+     */
+    private final static long REVALIDATION_RENDER_INTERVAL_MILLIS = 500;
+
+    /**
+     * The number of most recent retrievals the shown throughput is based on.
+     */
+    private final static int THROUGHPUT_WINDOW = 20;
+
+    /**
+     * Estimated time in milliseconds beyond which the user is asked to confirm
+     * a check before it starts.
+     */
+    private final static long CONFIRM_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Whether a check started by the user is currently being executed. Only
+     * accessed on the event dispatch thread.
+     */
+    private boolean running = false;
+
+    /**
+     * The query whose progress and report are shown, or null. The events and
+     * the report of any other query, such as a revalidation that was
+     * superseded, are ignored. Only accessed on the event dispatch thread.
+     */
+    private EmbassyCheckQuery currentQuery;
+
+    /**
+     * Normalized name of the main region of the last executed query. Only
+     * accessed on the event dispatch thread.
+     */
+    private String lastRegionName;
+
+    /**
+     * The regions retrieved by the last executed query. Only accessed on the
+     * event dispatch thread.
+     */
+    private List<RegionData> lastRegions;
+
+    /**
+     * Time in seconds at which the last executed query was started. Only
+     * accessed on the event dispatch thread.
+     */
+    private long lastRetrievedAt;
+
+    /**
+     * The request whose cached report is currently being revalidated, or null.
+     * Only accessed on the event dispatch thread.
+     */
+    private EmbassyCheckRequest revalidating;
+
+    /**
+     * The explanation of the check the user started, which is shown above its
+     * report until the check completes, or null. Only accessed on the event
+     * dispatch thread.
+     */
+    private EmbassyCheckExplanation plan;
+
+    /**
+     * Time in milliseconds at which the cached report being revalidated was
+     * last updated. Only accessed on the event dispatch thread.
+     */
+    private long lastRenderedAt;
+
+    /**
+     * The number of regions the current query retrieves. Only accessed on the
+     * event dispatch thread.
+     */
+    private int regionsToRetrieve;
+
+    /**
+     * Times in nanoseconds at which the most recent regions were retrieved,
+     * oldest first. Only accessed on the event dispatch thread.
+     */
+    private final Deque<Long> recentRetrievals = new ArrayDeque<>();
+
+    /**
+     * Moving average of the time in nanoseconds a request to NationStates
+     * took, or 0 if none was made yet. Only accessed on the event dispatch
+     * thread.
+     */
+    private double averageRequestNanos;
+
+    /**
+     * Whether the time to the first retrieval from NationStates was logged.
+     * Only accessed on the event dispatch thread.
+     */
+    private boolean firstRetrievalLogged;
+
+    /**
+     * Constructor, taking a form to communicate with. Also sets the User Agent,
+     * starts warming up the NationStates client in the background, and opens
+     * the rate limit shared with the other checker processes on the host.
      *
      * @param form the form to communicate with
      */
     public EmbassyCheckController(EmbassyCheckForm form) {
-        nationStates = new DefaultNationStatesImpl(USER_AGENT);
+        this(form, new NationStatesRegionSource(ClientWarmUp.start(USER_AGENT)::join,
+                SharedRateLimiter.openOrLocal(SharedRateLimiter.defaultFile())),
+                new RegionCache(RegionCache.defaultFile(), RegionCache.DEFAULT_MAX_ENTRIES),
+                new RegionHistory(RegionHistory.defaultDirectory()));
+    }
+
+    /**
+     * Constructor, taking a form to communicate with, the source to retrieve
+     * regions from, and the cache and history to keep them in. Nothing is read
+     * from or written to disk until {@link #loadCache} is called or a check is
+     * executed.
+     *
+     * @param form the form to communicate with
+     * @param liveSource the source to retrieve regions from
+     * @param regionCache the cache to keep retrieved regions in
+     * @param regionHistory the history to record retrieved regions in
+     */
+    EmbassyCheckController(EmbassyCheckForm form, RegionSource liveSource, RegionCache regionCache,
+            RegionHistory regionHistory) {
+        this.regionCache = regionCache;
+        this.regionHistory = regionHistory;
+        regionSource = new CachingRegionSource(new HistoryRegionSource(liveSource, regionHistory),
+                regionCache, STALE_AFTER_SECONDS);
+        prefetcher = new RegionPrefetcher(regionSource, RegionShard.NAME, RegionShard.REGIONAL_MESSAGES,
+                RegionShard.FOUNDED, RegionShard.TAGS);
         this.form = form;
     }
 
+    /**
+     * Loads the region cache from disk and opens the region history on a
+     * background thread, and then runs the given callback on the event
+     * dispatch thread.
+     *
+     * @param whenLoaded the callback to run once the cache is loaded
+     */
+    public void loadCache(Runnable whenLoaded) {
+        new Thread(() -> {
+            try {
+                regionCache.load();
+            } catch (IOException ex) {
+                Logger.getLogger(EmbassyCheckController.class.getName()).log(Level.WARNING,
+                        "Failed to load the region cache", ex);
+            }
+            try {
+                regionHistory.open();
+            } catch (IOException ex) {
+                Logger.getLogger(EmbassyCheckController.class.getName()).log(Level.WARNING,
+                        "Failed to open the region history", ex);
+            }
+            SwingUtilities.invokeLater(whenLoaded);
+        }).start();
+    }
+
     /**
      * Starts building a report. Called from the GUI.
      *
@@ -52,59 +231,366 @@ public final class EmbassyCheckController implements RegionEventsListener {
             int maxDaysSinceLastRmbMsg, boolean checkRegionFounded,
             int minDaysSinceFounded, boolean checkRegionTags,
             RegionTag[] tagsToCheck) {
-        // Disable the GUI components, clear the textarea, reset the progress bar.
-        setComponentsEnabled(false);
-        form.TxtAreaReport.setText("");
-        EmbassyCheckQuery query;
+        // If the last retrieved regions are still fresh, just re-evaluate them.
+        if (reevaluate(mainRegionName, checkRmbActivity, maxDaysSinceLastRmbMsg,
+                checkRegionFounded, minDaysSinceFounded, checkRegionTags, tagsToCheck)) {
+            return;
+        }
 
-        // Build a new query according to the supplied parameters.
-        try {
-            query = new EmbassyCheckQuery(nationStates, mainRegionName).addListeners(this);
+        // Show the cached report, if any, while it is being revalidated.
+        final EmbassyCheckRequest request;
 
-            if (checkRmbActivity) {
-                query = query.rmbActivity(maxDaysSinceLastRmbMsg);
-            }
-            if (checkRegionFounded) {
-                query = query.minimumAge(minDaysSinceFounded);
-            }
-            if (checkRegionTags) {
-                query = query.regionTags(tagsToCheck);
-            }
+        try {
+            request = new EmbassyCheckRequest(mainRegionName, checkRmbActivity,
+                    maxDaysSinceLastRmbMsg, checkRegionFounded, minDaysSinceFounded,
+                    checkRegionTags, tagsToCheck);
         } catch (IllegalArgumentException ex) {
-            // If an IllegalArgumentException is thrown, show it in a dialog,
-            // re-enable the tools, and return.
+            // If an IllegalArgumentException is thrown, show it in a dialog.
             JOptionPane.showMessageDialog(new JFrame(), ex.getMessage(),
                     "An Error Occured", JOptionPane.ERROR_MESSAGE);
-            setComponentsEnabled(true);
+            return;
+        }
+        execute(request, renderCachedReport(request, true), true);
+    }
+
+    /**
+     * Shows the cached report for the given criteria at once, marked with its
+     * age, and then revalidates it in the background. If there is no cached
+     * report for the main region, its embassy regions are prefetched instead,
+     * so that they are cached by the time the check is started. Called from
+     * the GUI on startup and when a region name is entered.
+     *
+     * @param mainRegionName
+     * @param checkRmbActivity
+     * @param maxDaysSinceLastRmbMsg
+     * @param checkRegionFounded
+     * @param minDaysSinceFounded
+     * @param checkRegionTags
+     * @param tagsToCheck
+     */
+    public void showCachedReport(String mainRegionName, boolean checkRmbActivity,
+            int maxDaysSinceLastRmbMsg, boolean checkRegionFounded,
+            int minDaysSinceFounded, boolean checkRegionTags,
+            RegionTag[] tagsToCheck) {
+        if (running) {
+            return;
+        }
+        ignoreRevalidation();
+
+        final EmbassyCheckRequest request;
+
+        try {
+            request = new EmbassyCheckRequest(mainRegionName, checkRmbActivity,
+                    maxDaysSinceLastRmbMsg, checkRegionFounded, minDaysSinceFounded,
+                    checkRegionTags, tagsToCheck);
+        } catch (IllegalArgumentException ex) {
+            // Incomplete criteria, such as 0 days; there is nothing to show yet.
+            return;
+        }
+
+        if (renderCachedReport(request, true)) {
+            execute(request, true, false);
+        } else {
+            prefetcher.prefetch(mainRegionName);
+        }
+    }
+
+    /**
+     * Stops showing the progress and the report of the revalidation that is
+     * running in the background, if any. It still completes, and the regions it
+     * retrieves are still cached.
+     */
+    private void ignoreRevalidation() {
+        if (revalidating == null) {
+            return;
+        }
+        currentQuery = null;
+        revalidating = null;
+        form.ProgressBar.setValue(0);
+        form.ProgressBar.setString(null);
+    }
+
+    /**
+     * Executes a query for the given request on a new thread, superseding the
+     * revalidation running in the background, if any. Regions that are cached
+     * and not yet stale are not retrieved again.
+     *
+     * @param request the request to execute
+     * @param revalidate whether a cached report for the request is being shown,
+     * which is then updated as regions are retrieved instead of cleared
+     * @param byUser whether the user started the check, which disables the GUI
+     * components while it runs and asks the user to confirm it first if it is
+     * expected to take long; otherwise it runs in the background
+     */
+    private void execute(EmbassyCheckRequest request, boolean revalidate, boolean byUser) {
+        // Disable the GUI components, unless running in the background.
+        if (byUser) {
+            setComponentsEnabled(false);
+        }
+        if (!revalidate) {
+            form.TxtAreaReport.setText("");
+        }
+        EmbassyCheckQuery query;
+
+        // Build a new query according to the supplied parameters. All shards
+        // the checks may need are retrieved, so that other criteria can be
+        // re-evaluated afterwards without retrieving the regions again.
+        try {
+            query = request.toQuery(regionSource).addListeners(this).alsoRetrieve(ALSO_RETRIEVED);
+        } catch (IllegalArgumentException ex) {
+            // If an IllegalArgumentException is thrown, show it in a dialog,
+            // re-enable the tools, and return. A background check fails quietly.
+            if (byUser) {
+                JOptionPane.showMessageDialog(new JFrame(), ex.getMessage(),
+                        "An Error Occured", JOptionPane.ERROR_MESSAGE);
+                setComponentsEnabled(true);
+            }
             return;
         }
 
         // Create a new thread, and execute the query within.
         final EmbassyCheckQuery fquery = query;
+        final long retrievedAt = System.currentTimeMillis() / 1000;
+        final long requestMillis = averageRequestNanos > 0 ? Math.round(averageRequestNanos / 1e6)
+                : EmbassyCheckQuery.DEFAULT_REQUEST_MILLIS;
+        running = byUser;
+        revalidating = revalidate ? request : null;
+        currentQuery = fquery;
         new Thread(() -> {
             try {
+                // Take over from the prefetch, which may have cached part of the regions.
+                final int prefetched = prefetcher.claim(request.mainRegionName);
+
+                if (prefetched > 0) {
+                    Logger.getLogger(EmbassyCheckController.class.getName()).log(Level.INFO,
+                            "Picked up {0} prefetched regions", prefetched);
+                }
+
+                // Show what the check will take, and ask to confirm it if that is long.
+                if (byUser) {
+                    final EmbassyCheckExplanation explanation = fquery.explain(requestMillis);
+                    SwingUtilities.invokeLater(() -> showPlan(fquery, explanation));
+
+                    if (!confirmed(explanation)) {
+                        return;
+                    }
+                }
+
                 // Execure query.
                 String report = fquery.execute();
 
-                // Print the report to the text area.
+                // Print the report to the text area, and keep the retrieved
+                // regions for re-evaluation.
                 SwingUtilities.invokeLater(() -> {
+                    if (currentQuery != fquery) {
+                        return;
+                    }
+                    lastRegionName = EmbassyCheckRequest.normalizeRegionName(request.mainRegionName);
+                    lastRegions = fquery.getRetrievedRegions();
+                    lastRetrievedAt = retrievedAt;
                     form.TxtAreaReport.setText(report);
                 });
             } catch (IllegalArgumentException ex) {
-                // If an IllegalArgumentException is thrown, show it in a dialog.
+                // If an IllegalArgumentException is thrown, show it in a dialog,
+                // unless the check ran in the background or was superseded.
                 SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(new JFrame(), ex.getMessage(),
-                            "An Error Occured", JOptionPane.ERROR_MESSAGE);
+                    if (byUser && currentQuery == fquery) {
+                        JOptionPane.showMessageDialog(new JFrame(), ex.getMessage(),
+                                "An Error Occured", JOptionPane.ERROR_MESSAGE);
+                    }
                 });
             } finally {
+                // Save the cache, so that the report can be shown at once next time.
+                try {
+                    regionCache.save();
+                } catch (IOException ex) {
+                    Logger.getLogger(EmbassyCheckController.class.getName()).log(Level.WARNING,
+                            "Failed to save the region cache", ex);
+                }
+                try {
+                    regionHistory.flush();
+                } catch (IOException ex) {
+                    Logger.getLogger(EmbassyCheckController.class.getName()).log(Level.WARNING,
+                            "Failed to flush the region history", ex);
+                }
+
                 // Re-enable the GUI components.
                 SwingUtilities.invokeLater(() -> {
+                    if (currentQuery != fquery) {
+                        return;
+                    }
+                    currentQuery = null;
+                    running = false;
+                    revalidating = null;
+                    plan = null;
+                    form.ProgressBar.setString(null);
                     setComponentsEnabled(true);
                 });
             }
         }).start();
     }
 
+    /**
+     * Shows the given explanation above the report of the given query, if that
+     * is still the current query.
+     *
+     * @param query the query
+     * @param explanation the explanation of the query
+     */
+    private void showPlan(EmbassyCheckQuery query, EmbassyCheckExplanation explanation) {
+        if (currentQuery != query) {
+            return;
+        }
+        plan = explanation;
+        form.TxtAreaReport.setText(explanation + System.lineSeparator() + form.TxtAreaReport.getText());
+    }
+
+    /**
+     * Asks the user whether to start the check with the given explanation, if
+     * it is expected to take longer than {@link #CONFIRM_AFTER_MILLIS}. Called
+     * off the event dispatch thread, which it waits for.
+     *
+     * @param explanation the explanation of the check
+     * @return whether to start the check
+     */
+    private boolean confirmed(EmbassyCheckExplanation explanation) {
+        if (explanation.estimatedMillis <= CONFIRM_AFTER_MILLIS) {
+            return true;
+        }
+        final int[] answer = {JOptionPane.NO_OPTION};
+
+        try {
+            SwingUtilities.invokeAndWait(() -> answer[0] = JOptionPane.showConfirmDialog(new JFrame(),
+                    explanation + System.lineSeparator() + "Start the check?", "Start the Check?",
+                    JOptionPane.YES_NO_OPTION));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (InvocationTargetException ex) {
+            Logger.getLogger(EmbassyCheckController.class.getName()).log(Level.WARNING,
+                    "Failed to ask to confirm the check", ex.getCause());
+            return false;
+        }
+        return answer[0] == JOptionPane.YES_OPTION;
+    }
+
+    /**
+     * Shows the report for the given request as far as it can be built from
+     * cached regions, marked with the age of the oldest data.
+     *
+     * @param request the request
+     * @param refreshing whether the cached regions are being revalidated
+     * @return whether a cached report was shown
+     */
+    private boolean renderCachedReport(EmbassyCheckRequest request, boolean refreshing) {
+        final RegionData mainRegion = regionCache.get(request.mainRegionName);
+
+        if (mainRegion == null || !mainRegion.shards.contains(RegionShard.EMBASSIES)) {
+            return false;
+        }
+
+        final EmbassyCheckQuery query;
+
+        try {
+            query = request.toQuery(regionSource);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+
+        final long now = System.currentTimeMillis() / 1000;
+        final RegionShard[] shards = query.getShardsToRetrieve()
+                .toArray(new RegionShard[query.getShardsToRetrieve().size()]);
+        final List<RegionData> regions = new ArrayList<>();
+        long oldest = mainRegion.retrievedAt;
+        int expired = 0;
+
+        for (String embassyRegionName : mainRegion.embassies) {
+            final RegionData region = regionCache.get(embassyRegionName);
+
+            if (region == null || !region.shards.containsAll(query.getShardsToRetrieve())) {
+                expired++;
+                continue;
+            }
+            if (!regionSource.isUsable(region, shards)) {
+                expired++;
+            }
+            regions.add(region);
+            oldest = Math.min(oldest, region.retrievedAt);
+        }
+
+        String header = "(Cached report; oldest data retrieved " + describeAge(now - oldest) + " ago";
+
+        if (refreshing && expired > 0) {
+            header += "; refreshing " + expired + " of " + mainRegion.embassies.size() + " regions...";
+        }
+        form.TxtAreaReport.setText((plan == null ? "" : plan + System.lineSeparator()) + header + ")"
+                + System.lineSeparator() + System.lineSeparator() + query.asOf(now).evaluate(regions));
+        return true;
+    }
+
+    /**
+     * Describes the given age in the largest sensible unit.
+     *
+     * @param seconds the age in seconds
+     * @return the description
+     */
+    private static String describeAge(long seconds) {
+        if (seconds < TimeUnit.HOURS.toSeconds(1)) {
+            return TimeUnit.SECONDS.toMinutes(seconds) + " minutes";
+        }
+        if (seconds < TimeUnit.DAYS.toSeconds(1)) {
+            return TimeUnit.SECONDS.toHours(seconds) + " hours";
+        }
+        return TimeUnit.SECONDS.toDays(seconds) + " days";
+    }
+
+    /**
+     * Re-evaluates the regions retrieved by the last executed query with the
+     * given criteria, without retrieving anything, and shows the new report.
+     * This is only done if the main region is the same, the retrieved regions
+     * are not stale, and they include the shards the criteria need. Called from
+     * the GUI whenever one of the criteria changes.
+     *
+     * @param mainRegionName
+     * @param checkRmbActivity
+     * @param maxDaysSinceLastRmbMsg
+     * @param checkRegionFounded
+     * @param minDaysSinceFounded
+     * @param checkRegionTags
+     * @param tagsToCheck
+     * @return whether the regions were re-evaluated
+     */
+    public boolean reevaluate(String mainRegionName, boolean checkRmbActivity,
+            int maxDaysSinceLastRmbMsg, boolean checkRegionFounded,
+            int minDaysSinceFounded, boolean checkRegionTags,
+            RegionTag[] tagsToCheck) {
+        final long now = System.currentTimeMillis() / 1000;
+
+        if (running || lastRegions == null || now - lastRetrievedAt >= STALE_AFTER_SECONDS
+                || !EmbassyCheckRequest.normalizeRegionName(mainRegionName).equals(lastRegionName)) {
+            return false;
+        }
+
+        try {
+            final EmbassyCheckQuery query = new EmbassyCheckRequest(mainRegionName, checkRmbActivity,
+                    maxDaysSinceLastRmbMsg, checkRegionFounded, minDaysSinceFounded,
+                    checkRegionTags, tagsToCheck).toQuery(regionSource);
+
+            // Make sure the regions include the shards the checks need.
+            for (RegionData region : lastRegions) {
+                if (!region.shards.containsAll(query.getShardsToRetrieve())) {
+                    return false;
+                }
+            }
+            ignoreRevalidation();
+            form.TxtAreaReport.setText(query.asOf(now).evaluate(lastRegions).toString());
+            return true;
+        } catch (IllegalArgumentException ex) {
+            // Incomplete criteria, such as no tags; keep the current report.
+            return false;
+        }
+    }
+
     /**
      * Enables or disables all GUI components.
      *
@@ -130,15 +616,84 @@ public final class EmbassyCheckController implements RegionEventsListener {
     @Override
     public void handleRetrievingStarted(RegionRetrievingStartedEvent event) {
         SwingUtilities.invokeLater(() -> {
+            if (event.getSource() != currentQuery) {
+                return;
+            }
             form.ProgressBar.setValue(0);
             form.ProgressBar.setMaximum(event.regionsToRetrieve - 1);
+            form.ProgressBar.setString(null);
+            regionsToRetrieve = event.regionsToRetrieve;
+            recentRetrievals.clear();
+            averageRequestNanos = 0;
         });
     }
 
     @Override
     public void handleRegionRetrieved(RegionRetrievedEvent event) {
+        final long retrievedAt = System.nanoTime();
+
         SwingUtilities.invokeLater(() -> {
+            if (event.getSource() != currentQuery) {
+                return;
+            }
             form.ProgressBar.setValue(event.positionInQuery);
+            showThroughput(event, retrievedAt);
+
+            if (!firstRetrievalLogged && !event.fromCache && event.latencyNanos >= 0) {
+                firstRetrievalLogged = true;
+                Logger.getLogger(EmbassyCheckController.class.getName()).log(Level.INFO,
+                        "First region retrieved {0} ms after start", ClientWarmUp.millisSinceStart());
+            }
+
+            // Update the cached report that is being revalidated, at most every so often.
+            final long now = System.currentTimeMillis();
+
+            if (revalidating != null && now - lastRenderedAt >= REVALIDATION_RENDER_INTERVAL_MILLIS) {
+                lastRenderedAt = now;
+                renderCachedReport(revalidating, true);
+            }
         });
     }
+
+    @Override
+    public boolean wantsRetrievalDetail() {
+        return true;
+    }
+
+    /**
+     * Shows the throughput, the average request time and the estimated time
+     * left in the progress bar, based on the most recent retrievals.
+     *
+     * @param event the event of the latest retrieval
+     * @param retrievedAt time in nanoseconds at which the region was retrieved
+     */
+    private void showThroughput(RegionRetrievedEvent event, long retrievedAt) {
+        recentRetrievals.addLast(retrievedAt);
+
+        if (recentRetrievals.size() > THROUGHPUT_WINDOW) {
+            recentRetrievals.removeFirst();
+        }
+        if (!event.fromCache && event.latencyNanos >= 0) {
+            averageRequestNanos = averageRequestNanos == 0 ? event.latencyNanos
+                    : 0.9 * averageRequestNanos + 0.1 * event.latencyNanos;
+        }
+        if (recentRetrievals.size() < 2) {
+            return;
+        }
+
+        final double seconds = (recentRetrievals.getLast() - recentRetrievals.getFirst()) / 1e9;
+        final double perSecond = seconds > 0 ? (recentRetrievals.size() - 1) / seconds : 0;
+        final int remaining = regionsToRetrieve - event.positionInQuery - 1;
+        String progress = (event.positionInQuery + 1) + " of " + regionsToRetrieve + " regions; "
+                + String.format("%.1f", perSecond) + " regions/s";
+
+        if (averageRequestNanos > 0) {
+            progress += "; " + Math.round(averageRequestNanos / 1e6) + " ms per request";
+        }
+        if (perSecond > 0 && remaining > 0) {
+            final long secondsLeft = Math.round(remaining / perSecond);
+            progress += "; about " + (secondsLeft < 60 ? secondsLeft + " seconds" : describeAge(secondsLeft)) + " left";
+        }
+        form.ProgressBar.setString(progress);
+    }
 }
@@ -3,16 +3,22 @@ package com.github.agadar.embassychecker;
 import com.github.agadar.nationstates.enumerator.RegionTag;
 
 import java.awt.Desktop;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 /**
  * EmbassyCheckController form for this application.
@@ -39,12 +45,75 @@ public class EmbassyCheckForm extends javax.swing.JFrame {
     private final static String repositoryLink = "https://github.com/Agadar/"
             + "NationStates-EmbassyChecker";
 
+    /**
+     * Delay in milliseconds after the last change to the region name before the
+     * cached report for that region is shown.
+     */
+    private final static int REGION_NAME_DEBOUNCE_MILLIS = 600;
+
+    /**
+     * Shows the cached report once the region name has stopped changing.
+     */
+    private final Timer regionNameTimer = new Timer(REGION_NAME_DEBOUNCE_MILLIS, evt -> showCachedReport());
+
     /**
      * Creates new form EmbassyCheckerForm
      */
     public EmbassyCheckForm() {
+        this(EmbassyCheckController::new);
+        controller.loadCache(this::showCachedReport);
+    }
+
+    /**
+     * Creates new form EmbassyCheckerForm with the controller the given
+     * function creates for it. The region cache is not loaded, so that no
+     * cached report is shown and no regions are prefetched.
+     *
+     * @param newController creates the controller for the form
+     */
+    EmbassyCheckForm(Function<EmbassyCheckForm, EmbassyCheckController> newController) {
         initComponents();
-        controller = new EmbassyCheckController(this);
+        controller = newController.apply(this);
+
+        // Re-evaluate the last report whenever one of the criteria changes.
+        SpinnerRmbActivity.addChangeListener(evt -> reevaluateReport());
+        SpinnerRegionAge.addChangeListener(evt -> reevaluateReport());
+        TxtFieldTags.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent evt) {
+                reevaluateReport();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent evt) {
+                reevaluateReport();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent evt) {
+                reevaluateReport();
+            }
+        });
+
+        // Show the cached report for the entered region, on startup and
+        // whenever a region name is entered.
+        regionNameTimer.setRepeats(false);
+        TxtFieldRegionName.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent evt) {
+                regionNameTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent evt) {
+                regionNameTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent evt) {
+                regionNameTimer.restart();
+            }
+        });
     }
 
     /**
@@ -360,6 +429,7 @@ public class EmbassyCheckForm extends javax.swing.JFrame {
     {//GEN-HEADEREND:event_ChkbxRmbActivityActionPerformed
         SpinnerRmbActivity.setEnabled(ChkbxRmbActivity.isSelected());
         MaybeDisableBtnStart();
+        reevaluateReport();
     }//GEN-LAST:event_ChkbxRmbActivityActionPerformed
 
     /**
@@ -372,6 +442,7 @@ public class EmbassyCheckForm extends javax.swing.JFrame {
     {//GEN-HEADEREND:event_ChkbxRegionAgeActionPerformed
         SpinnerRegionAge.setEnabled(ChkbxRegionAge.isSelected());
         MaybeDisableBtnStart();
+        reevaluateReport();
     }//GEN-LAST:event_ChkbxRegionAgeActionPerformed
 
     /**
@@ -384,6 +455,7 @@ public class EmbassyCheckForm extends javax.swing.JFrame {
     {//GEN-HEADEREND:event_ChkbxTagsActionPerformed
         TxtFieldTags.setEditable(ChkbxTags.isSelected());
         MaybeDisableBtnStart();
+        reevaluateReport();
     }//GEN-LAST:event_ChkbxTagsActionPerformed
 
     /**
@@ -400,21 +472,11 @@ public class EmbassyCheckForm extends javax.swing.JFrame {
         final boolean checkRegionFounded = ChkbxRegionAge.isSelected();
         final int minDaysSinceFounded = (int) SpinnerRegionAge.getValue();
         final boolean checkRegionTags = ChkbxTags.isSelected();
-        final List<RegionTag> tags = new ArrayList<>();
-
-        // Parse string tags to enum tags.
-        for (String split1 : TxtFieldTags.getText().trim().split(",")) {
-            try {
-                tags.add(RegionTag.fromString(split1.trim()));
-            } catch (IllegalArgumentException ex) {
-                // Ignore invalid input.
-            }
-        }
 
         // Call the controller
         controller.startReporting(mainRegionName, checkRmbActivity,
                 maxDaysSinceLastRmbMsg, checkRegionFounded,
-                minDaysSinceFounded, checkRegionTags, tags.toArray(new RegionTag[tags.size()]));
+                minDaysSinceFounded, checkRegionTags, parseTags());
     }//GEN-LAST:event_BtnStartActionPerformed
 
     /**
@@ -453,6 +515,51 @@ public class EmbassyCheckForm extends javax.swing.JFrame {
         }
     }
 
+    /**
+     * Asks the controller to re-evaluate the last report with the current
+     * criteria.
+     */
+    private void reevaluateReport() {
+        if (!BtnStart.isEnabled()) {
+            return;
+        }
+        controller.reevaluate(TxtFieldRegionName.getText(), ChkbxRmbActivity.isSelected(),
+                (int) SpinnerRmbActivity.getValue(), ChkbxRegionAge.isSelected(),
+                (int) SpinnerRegionAge.getValue(), ChkbxTags.isSelected(), parseTags());
+    }
+
+    /**
+     * Asks the controller to show the cached report for the entered region
+     * with the current criteria.
+     */
+    private void showCachedReport() {
+        if (!BtnStart.isEnabled()) {
+            return;
+        }
+        controller.showCachedReport(TxtFieldRegionName.getText(), ChkbxRmbActivity.isSelected(),
+                (int) SpinnerRmbActivity.getValue(), ChkbxRegionAge.isSelected(),
+                (int) SpinnerRegionAge.getValue(), ChkbxTags.isSelected(), parseTags());
+    }
+
+    /**
+     * Parses the tags in the tags textfield, ignoring invalid input.
+     *
+     * @return the parsed tags
+     */
+    private RegionTag[] parseTags() {
+        final List<RegionTag> tags = new ArrayList<>();
+
+        // Parse string tags to enum tags.
+        for (String split1 : TxtFieldTags.getText().trim().split(",")) {
+            try {
+                tags.add(RegionTag.fromString(split1.trim()));
+            } catch (IllegalArgumentException ex) {
+                // Ignore invalid input.
+            }
+        }
+        return tags.toArray(new RegionTag[tags.size()]);
+    }
+
     /**
      * Disables the start button if all three checkboxes are unchecked.
      */
@@ -472,7 +579,17 @@ public class EmbassyCheckForm extends javax.swing.JFrame {
 
             /* Create and display the form */
             java.awt.EventQueue.invokeLater(() -> {
-                new EmbassyCheckForm().setVisible(true);
+                final EmbassyCheckForm form = new EmbassyCheckForm();
+
+                // Log how long the window took to show, to keep an eye on the cold start.
+                form.addWindowListener(new WindowAdapter() {
+                    @Override
+                    public void windowOpened(WindowEvent evt) {
+                        Logger.getLogger(EmbassyCheckForm.class.getName()).log(Level.INFO,
+                                "Window shown {0} ms after start", ClientWarmUp.millisSinceStart());
+                    }
+                });
+                form.setVisible(true);
             });
         } catch (ClassNotFoundException | InstantiationException |
                 IllegalAccessException |
@@ -1,23 +1,53 @@
 package com.github.agadar.embassychecker;
 
+import com.github.agadar.embassychecker.arena.RegionArena;
+import com.github.agadar.embassychecker.arena.RegionRecord;
+import com.github.agadar.embassychecker.check.CheckPlan;
+import com.github.agadar.embassychecker.check.CheckResults;
+import com.github.agadar.embassychecker.check.RegionAgeCheck;
+import com.github.agadar.embassychecker.check.RegionCheck;
+import com.github.agadar.embassychecker.check.RegionTagsCheck;
+import com.github.agadar.embassychecker.check.RmbActivityCheck;
+import com.github.agadar.embassychecker.domain.EmbassyCheckEstimate;
+import com.github.agadar.embassychecker.domain.EmbassyCheckExplanation;
+import com.github.agadar.embassychecker.domain.EmbassyCheckPreview;
+import com.github.agadar.embassychecker.domain.EmbassyCheckReport;
+import com.github.agadar.embassychecker.domain.RegionData;
 import com.github.agadar.embassychecker.domain.RegionFounded;
 import com.github.agadar.embassychecker.domain.RegionLastMsg;
 import com.github.agadar.embassychecker.domain.RegionWithTags;
 import com.github.agadar.embassychecker.event.RegionEventsListener;
 import com.github.agadar.embassychecker.event.RegionRetrievedEvent;
 import com.github.agadar.embassychecker.event.RegionRetrievingStartedEvent;
+import com.github.agadar.embassychecker.index.ActivityIndex;
+import com.github.agadar.embassychecker.index.RegionDictionary;
+import com.github.agadar.embassychecker.index.RegionExistence;
+import com.github.agadar.embassychecker.index.TagIndex;
+import com.github.agadar.embassychecker.source.NationStatesRegionSource;
+import com.github.agadar.embassychecker.source.RateLimiter;
+import com.github.agadar.embassychecker.source.RegionSource;
+import com.github.agadar.embassychecker.source.RetrievalDetail;
+import com.github.agadar.embassychecker.source.SlidingWindowRateLimiter;
 
 import com.github.agadar.nationstates.NationStates;
-import com.github.agadar.nationstates.domain.region.Region;
-import com.github.agadar.nationstates.enumerator.EmbassyStatus;
 import com.github.agadar.nationstates.enumerator.RegionTag;
 import com.github.agadar.nationstates.shard.RegionShard;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
 
 /**
  * Query for doing an embassies check and returning a report as a String.
@@ -27,7 +57,7 @@ import java.util.concurrent.TimeUnit;
  */
 public class EmbassyCheckQuery {
 
-    private final NationStates nationStates;
+    private final RegionSource regionSource;
 
     /**
      * Name of the region whose embassy regions to check.
@@ -35,30 +65,137 @@ public class EmbassyCheckQuery {
     private final String regionName;
 
     /**
-     * The maximum number of days since the last message on a region's message board
-     * before that region is considered inactive.
+     * The RMB activity check, or null if not selected.
      */
-    private int maxDaysSinceLastRmbMsg;
+    private RmbActivityCheck rmbActivityCheck;
 
     /**
-     * The minimum number of days since a region may have been founded.
+     * The region age check, or null if not selected.
      */
-    private int minDaysSinceFounded;
+    private RegionAgeCheck regionAgeCheck;
 
     /**
-     * The tags to check and warn for.
+     * The region tags check, or null if not selected.
      */
-    private RegionTag[] tagsToCheck;
+    private RegionTagsCheck regionTagsCheck;
 
     /**
-     * The shards to retrieve for each embassy region.
+     * The checks other than the built-in ones, in the order they were added.
+     */
+    private final List<RegionCheck<?>> otherChecks = new ArrayList<>();
+
+    /**
+     * The shards to retrieve for each embassy region: the union of the shards
+     * the checks need, and the shards to also retrieve.
      */
     private final List<RegionShard> shardsToRetrieveLst = new ArrayList<>();
 
     /**
-     * Current time in seconds.
+     * The number of strata a preview splits the embassy list into.
+     */
+    private final static int PREVIEW_STRATA = 4;
+
+    /**
+     * The time in milliseconds a request is assumed to take by a dry run,
+     * besides waiting for the rate limit.
+     */
+    public final static long DEFAULT_REQUEST_MILLIS = 500;
+
+    /**
+     * The memory in bytes a dry run assumes a response to take up while it is
+     * being read, once per execution as the regions are retrieved one at a
+     * time.
+     */
+    private final static long RESPONSE_BYTES = 128 * 1024;
+
+    /**
+     * The main region, once retrieved.
+     */
+    private RegionData mainRegion;
+
+    /**
+     * The IDs of the regions this query came across, by name.
+     */
+    private final RegionDictionary regionIds = new RegionDictionary();
+
+    /**
+     * The regions retrieved so far by ID, with null values for regions that
+     * do not exist. Shared between a preview and a subsequent execution.
+     */
+    private final List<RegionData> retrievedById = new ArrayList<>();
+
+    /**
+     * The IDs of the regions retrieved so far, including the ones that do not
+     * exist.
+     */
+    private final BitSet retrievedIds = new BitSet();
+
+    /**
+     * The time budget in nanoseconds, or 0 if there is none.
+     */
+    private long timeBudgetNanos;
+
+    /**
+     * The maximum number of requests an execution may make, or 0 if there is
+     * no maximum.
+     */
+    private int requestBudget;
+
+    /**
+     * Time in nanoseconds at which the current execution's time budget runs
+     * out.
+     */
+    private long deadlineNanos;
+
+    /**
+     * The number of requests the current execution has made.
      */
-    private final long now = System.currentTimeMillis() / 1000;
+    private int requestsMade;
+
+    /**
+     * The index the tag check is answered from while it is fresh, or null.
+     */
+    private TagIndex tagIndex;
+
+    /**
+     * Age in seconds after which the tag index is too stale to use.
+     */
+    private long tagIndexMaxAgeSeconds;
+
+    /**
+     * The index that proves regions active without retrieving their messages,
+     * or null.
+     */
+    private ActivityIndex activityIndex;
+
+    /**
+     * The filter of the regions known to be dead, which are then not
+     * retrieved, or null.
+     */
+    private RegionExistence existence;
+
+    /**
+     * Age in seconds after which the existence filter is too stale to use.
+     */
+    private long existenceMaxAgeSeconds;
+
+    /**
+     * The number of regions the last execution did not need to retrieve,
+     * because the indexes answered all of their shards or knew them to be
+     * dead.
+     */
+    private int requestsSaved;
+
+    /**
+     * The regions retrieved by the last execution of this query.
+     */
+    private List<RegionData> retrievedRegions = Collections.emptyList();
+
+    /**
+     * Time in seconds as of which the checks are evaluated. Defaults to the
+     * time at which this query was created.
+     */
+    private long now = System.currentTimeMillis() / 1000;
 
     /**
      * The event listeners for this query.
@@ -72,11 +209,23 @@ public class EmbassyCheckQuery {
      * @throws IllegalArgumentException if regionName is null or empty
      */
     public EmbassyCheckQuery(NationStates nationStates, String regionName) {
+        this(new NationStatesRegionSource(nationStates), regionName);
+    }
+
+    /**
+     * Instantiates a new EmbassyCheckQuery, using the given region source and
+     * region name.
+     *
+     * @param regionSource the source to retrieve the regions from
+     * @param regionName name of the region whose embassies to check
+     * @throws IllegalArgumentException if regionName is null or empty
+     */
+    public EmbassyCheckQuery(RegionSource regionSource, String regionName) {
         if (regionName == null || regionName.isEmpty()) {
             throw new IllegalArgumentException("No region name supplied!");
         }
 
-        this.nationStates = nationStates;
+        this.regionSource = regionSource;
         this.regionName = regionName;
         shardsToRetrieveLst.add(RegionShard.NAME);
     }
@@ -108,13 +257,8 @@ public class EmbassyCheckQuery {
      * @throws IllegalArgumentException if days <= 0
      */
     public EmbassyCheckQuery rmbActivity(int days) throws IllegalArgumentException {
-        if (days <= 0) {
-            throw new IllegalArgumentException("The maximum days of no RMB posts" + " must be greater than 0!");
-        }
-
-        maxDaysSinceLastRmbMsg = days;
-        shardsToRetrieveLst.add(RegionShard.REGIONAL_MESSAGES);
-        return this;
+        rmbActivityCheck = new RmbActivityCheck(days);
+        return alsoRetrieve(rmbActivityCheck.getRequiredShards());
     }
 
     /**
@@ -127,13 +271,8 @@ public class EmbassyCheckQuery {
      * @throws IllegalArgumentException if days <= 0
      */
     public EmbassyCheckQuery minimumAge(int days) throws IllegalArgumentException {
-        if (days <= 0) {
-            throw new IllegalArgumentException("The minimum age of region in days" + " must be greater than 0!");
-        }
-
-        minDaysSinceFounded = days;
-        shardsToRetrieveLst.add(RegionShard.FOUNDED);
-        return this;
+        regionAgeCheck = new RegionAgeCheck(days);
+        return alsoRetrieve(regionAgeCheck.getRequiredShards());
     }
 
     /**
@@ -145,15 +284,217 @@ public class EmbassyCheckQuery {
      * @throws IllegalArgumentException if tags is null or empty
      */
     public EmbassyCheckQuery regionTags(RegionTag[] tags) throws IllegalArgumentException {
-        if (tags == null || tags.length == 0) {
-            throw new IllegalArgumentException("At least one tag must be supplied!");
+        regionTagsCheck = new RegionTagsCheck(tags);
+        return alsoRetrieve(regionTagsCheck.getRequiredShards());
+    }
+
+    /**
+     * Makes this query also check each embassy region against the given check,
+     * retrieving the shards it needs along with the shards of the other
+     * checks, so that it takes no additional requests. Its results are
+     * reported under its title, which should differ from the other checks'.
+     *
+     * @param check the check
+     * @return this
+     * @throws IllegalArgumentException if check is null
+     */
+    public EmbassyCheckQuery check(RegionCheck<?> check) throws IllegalArgumentException {
+        if (check == null) {
+            throw new IllegalArgumentException("The check must not be null!");
+        }
+        otherChecks.add(check);
+        return alsoRetrieve(check.getRequiredShards());
+    }
+
+    /**
+     * Makes this query also retrieve the given shards for each embassy region,
+     * even if none of the selected checks needs them. This costs no additional
+     * requests, and allows the retrieved regions to be re-evaluated later with
+     * other checks.
+     *
+     * @param shards the shards to also retrieve
+     * @return this
+     */
+    public EmbassyCheckQuery alsoRetrieve(RegionShard... shards) {
+        return alsoRetrieve(Arrays.asList(shards));
+    }
+
+    /**
+     * Adds the given shards to the shards to retrieve for each embassy region,
+     * leaving out the ones already retrieved.
+     *
+     * @param shards the shards to add
+     * @return this
+     */
+    private EmbassyCheckQuery alsoRetrieve(Collection<RegionShard> shards) {
+        for (RegionShard shard : shards) {
+            if (!shardsToRetrieveLst.contains(shard)) {
+                shardsToRetrieveLst.add(shard);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the selected checks: the built-in ones, followed by the others
+     * in the order they were added.
+     *
+     * @return the checks
+     */
+    private List<RegionCheck<?>> checks() {
+        final List<RegionCheck<?>> checks = new ArrayList<>();
+
+        if (rmbActivityCheck != null) {
+            checks.add(rmbActivityCheck);
+        }
+        if (regionAgeCheck != null) {
+            checks.add(regionAgeCheck);
+        }
+        if (regionTagsCheck != null) {
+            checks.add(regionTagsCheck);
+        }
+        checks.addAll(otherChecks);
+        return checks;
+    }
+
+    /**
+     * Returns the shards this query retrieves for each embassy region.
+     *
+     * @return the shards to retrieve
+     */
+    public List<RegionShard> getShardsToRetrieve() {
+        return Collections.unmodifiableList(shardsToRetrieveLst);
+    }
+
+    /**
+     * Returns the regions retrieved by the last execution of this query, which
+     * can be passed to {@link #evaluate} of another query.
+     *
+     * @return the retrieved regions
+     */
+    public List<RegionData> getRetrievedRegions() {
+        return retrievedRegions;
+    }
+
+    /**
+     * Makes this query evaluate its checks as of the given time, instead of the
+     * time at which this query was created. Used when replaying recorded data.
+     *
+     * @param seconds the time in seconds
+     * @return this
+     */
+    public EmbassyCheckQuery asOf(long seconds) {
+        now = seconds;
+        return this;
+    }
+
+    /**
+     * Makes this query stop retrieving regions once the given time has passed
+     * since its execution started. Regions are then retrieved in order of how
+     * much retrieving them is worth, and the report lists the regions that were
+     * not checked. A retrieval that is already underway is not interrupted.
+     *
+     * @param duration the time budget
+     * @param unit the unit of the time budget
+     * @return this
+     * @throws IllegalArgumentException if duration <= 0
+     */
+    public EmbassyCheckQuery timeBudget(long duration, TimeUnit unit) throws IllegalArgumentException {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("The time budget must be greater than 0!");
         }
 
-        tagsToCheck = tags;
-        shardsToRetrieveLst.add(RegionShard.TAGS);
+        timeBudgetNanos = unit.toNanos(duration);
         return this;
     }
 
+    /**
+     * Makes this query stop retrieving regions once it has made the given
+     * number of requests, including the one for the embassy list. Regions that
+     * can be retrieved without a request do not count. Regions are then
+     * retrieved in order of how much retrieving them is worth, and the report
+     * lists the regions that were not checked.
+     *
+     * @param requests the request budget
+     * @return this
+     * @throws IllegalArgumentException if requests <= 0
+     */
+    public EmbassyCheckQuery requestBudget(int requests) throws IllegalArgumentException {
+        if (requests <= 0) {
+            throw new IllegalArgumentException("The request budget must be greater than 0!");
+        }
+
+        requestBudget = requests;
+        return this;
+    }
+
+    /**
+     * Makes this query answer its tag check from the given index instead of
+     * retrieving the TAGS shard, as long as the index is fresh. Regions the
+     * index does not know are still retrieved with the TAGS shard, and so are
+     * all regions once the index is stale. If the tag check is the only
+     * check, the regions the index knows are not retrieved at all.
+     *
+     * @param index the tag index, or null to use none
+     * @param maxAgeSeconds the age in seconds after which the index is stale
+     * @return this
+     * @throws IllegalArgumentException if maxAgeSeconds <= 0
+     */
+    public EmbassyCheckQuery tagIndex(TagIndex index, long maxAgeSeconds) throws IllegalArgumentException {
+        if (maxAgeSeconds <= 0) {
+            throw new IllegalArgumentException("The maximum age of the tag index must be greater than 0!");
+        }
+
+        tagIndex = index;
+        tagIndexMaxAgeSeconds = maxAgeSeconds;
+        return this;
+    }
+
+    /**
+     * Makes this query skip retrieving the messages of the regions that the
+     * given index has seen receiving a message recently enough to pass the RMB
+     * activity check. If the RMB activity check is the only check, those
+     * regions are not retrieved at all.
+     *
+     * @param index the activity index, or null to use none
+     * @return this
+     */
+    public EmbassyCheckQuery activityIndex(ActivityIndex index) {
+        activityIndex = index;
+        return this;
+    }
+
+    /**
+     * Makes this query report the regions that the given filter knows to be
+     * dead as not existing, without retrieving them, as long as the filter is
+     * fresh.
+     *
+     * @param filter the existence filter, or null to use none
+     * @param maxAgeSeconds the age in seconds after which the filter is stale
+     * @return this
+     * @throws IllegalArgumentException if maxAgeSeconds <= 0
+     */
+    public EmbassyCheckQuery existence(RegionExistence filter, long maxAgeSeconds) throws IllegalArgumentException {
+        if (maxAgeSeconds <= 0) {
+            throw new IllegalArgumentException("The maximum age of the existence filter must be greater than 0!");
+        }
+
+        existence = filter;
+        existenceMaxAgeSeconds = maxAgeSeconds;
+        return this;
+    }
+
+    /**
+     * Returns the number of regions the last execution of this query did not
+     * retrieve, because the indexes answered all the shards it needed or knew
+     * them to be dead.
+     *
+     * @return the number of requests saved
+     */
+    public int getRequestsSaved() {
+        return requestsSaved;
+    }
+
     /**
      * Executes this query, returning a report as a String.
      *
@@ -161,30 +502,425 @@ public class EmbassyCheckQuery {
      * @throws IllegalArgumentException if none of the checks was selected
      */
     public String execute() throws IllegalArgumentException {
+        return executeReport().toString();
+    }
+
+    /**
+     * Executes this query, returning a structured report. Regions that were
+     * already retrieved by a preview of this query are not retrieved again. If
+     * a budget was set and it runs out, the report is partial.
+     *
+     * @return the report
+     * @throws IllegalArgumentException if none of the checks was selected
+     */
+    public EmbassyCheckReport executeReport() throws IllegalArgumentException {
         // Throw exception if none of the checks was selected.
-        if (maxDaysSinceLastRmbMsg == 0 && minDaysSinceFounded == 0 && tagsToCheck == null) {
+        if (checks().isEmpty()) {
             throw new IllegalArgumentException("None of the checks is selected!");
         }
 
-        // Retrieve embassies of the specified region.
-        Region MainRegion = nationStates.getRegion(regionName).shards(RegionShard.EMBASSIES).execute();
+        deadlineNanos = System.nanoTime() + timeBudgetNanos;
+        requestsMade = 0;
+        List<String> embassyRegions = retrieveEmbassyRegions();
 
-        // Null-check on the region.
-        if (MainRegion == null) {
-            throw new IllegalArgumentException("Region does not exist!");
+        // With a budget, retrieve the regions most worth retrieving first.
+        if (timeBudgetNanos > 0 || requestBudget > 0) {
+            embassyRegions = orderByValue(embassyRegions);
         }
 
-        // Extract all region names from embassies that are established or pending,
-        // because we don't care about other embassies.
-        final List<String> embassyRegions = new ArrayList<>();
-        MainRegion.getEmbassies().forEach(embassy -> {
-            if (embassy.getStatus() == EmbassyStatus.ESTABLISHED || embassy.getStatus() == EmbassyStatus.PENDING) {
-                embassyRegions.add(embassy.getRegionName());
+        final Map<String, Set<RegionTag>> indexedTags = indexedTagsOf(embassyRegions);
+        final Map<String, Long> provenActive = provenActiveOf(embassyRegions);
+        final List<String> unchecked = new ArrayList<>();
+        final List<RegionData> regions = retrieveRegions(embassyRegions, indexedTags, provenActive, unchecked);
+        Collections.sort(unchecked);
+        retrievedRegions = Collections.unmodifiableList(regions);
+        return evaluate(regions, unchecked);
+    }
+
+    /**
+     * Plans an execution of this query without executing it, assuming each
+     * request takes {@link #DEFAULT_REQUEST_MILLIS} besides waiting for the
+     * rate limit.
+     *
+     * @return the explanation
+     * @throws IllegalArgumentException if none of the checks was selected
+     * @see #explain(long)
+     */
+    public EmbassyCheckExplanation explain() throws IllegalArgumentException {
+        return explain(DEFAULT_REQUEST_MILLIS);
+    }
+
+    /**
+     * Plans an execution of this query without executing it. Only the embassy
+     * list is retrieved, which a subsequent {@link #executeReport} does not
+     * retrieve again. Each embassy region is then sorted the way an execution
+     * would: known dead, answered by the indexes, served without a request, not
+     * checked because the request budget runs out, or retrieved with a
+     * request. The time is estimated from the requests the rate limiter
+     * already counted, and the peak memory from the shards to retrieve.
+     *
+     * @param requestMillis the time in milliseconds each request is assumed to
+     * take besides waiting for the rate limit
+     * @return the explanation
+     * @throws IllegalArgumentException if none of the checks was selected, or
+     * if requestMillis < 0
+     */
+    public EmbassyCheckExplanation explain(long requestMillis) throws IllegalArgumentException {
+        // Throw exception if none of the checks was selected.
+        if (checks().isEmpty()) {
+            throw new IllegalArgumentException("None of the checks is selected!");
+        }
+        if (requestMillis < 0) {
+            throw new IllegalArgumentException("The time per request may not be negative!");
+        }
+
+        requestsMade = 0;
+        final List<String> embassyRegions = retrieveEmbassyRegions();
+        final Map<String, Set<RegionTag>> indexedTags = indexedTagsOf(embassyRegions);
+        final Map<String, Long> provenActive = provenActiveOf(embassyRegions);
+        final boolean filterDead = existence != null && existence.isFresh(now, existenceMaxAgeSeconds);
+        final Map<RegionShard, Integer> requestsPerShard = new EnumMap<>(RegionShard.class);
+        int requests = 0;
+        int cacheHits = 0;
+        int knownDead = 0;
+        int answeredByIndexes = 0;
+        int overBudget = 0;
+        long retainedBytes = 0;
+
+        for (String embassyRegionName : embassyRegions) {
+            final int id = regionIds.add(embassyRegionName);
+            final RegionShard[] regionShards = shardsLeftFor(indexedTags.containsKey(embassyRegionName),
+                    provenActive.containsKey(embassyRegionName));
+
+            if (filterDead && existence.isKnownDead(embassyRegionName)) {
+                knownDead++;
+            } else if (regionShards.length == 1) {
+                answeredByIndexes++;
+            } else if (retrievedIds.get(id) || regionSource.isFree(embassyRegionName, regionShards)) {
+                cacheHits++;
+            } else if (requestBudget > 0 && requests >= requestBudget) {
+                overBudget++;
+            } else {
+                requests++;
+                retainedBytes += estimatedBytesOf(regionShards);
+
+                for (RegionShard shard : regionShards) {
+                    if (shard != RegionShard.NAME) {
+                        requestsPerShard.merge(shard, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        // The requests are made one after another, each once the rate limit allows it.
+        final RateLimiter rateLimiter = regionSource.getRateLimiter() != null ? regionSource.getRateLimiter()
+                : new SlidingWindowRateLimiter();
+        final long estimatedMillis = requests == 0 ? 0
+                : Math.max(rateLimiter.estimateMillis(requests), (requests - 1) * requestMillis) + requestMillis;
+        return new EmbassyCheckExplanation(regionName, embassyRegions.size(), requestsMade, requests,
+                requestsPerShard, cacheHits, knownDead, answeredByIndexes, overBudget,
+                Math.max(0, estimatedMillis - requests * requestMillis), estimatedMillis,
+                TimeUnit.NANOSECONDS.toMillis(timeBudgetNanos),
+                retainedBytes + (requests > 0 ? RESPONSE_BYTES : 0));
+    }
+
+    /**
+     * Returns the memory in bytes a region retrieved with the given shards is
+     * roughly assumed to take up once read.
+     *
+     * @param shards the shards
+     * @return the memory in bytes
+     */
+    private static long estimatedBytesOf(RegionShard[] shards) {
+        long bytes = 0;
+
+        for (RegionShard shard : shards) {
+            switch (shard) {
+                case NAME:
+                    bytes += 256;
+                    break;
+                case EMBASSIES:
+                    bytes += 64 * 64;
+                    break;
+                case TAGS:
+                    bytes += 128;
+                    break;
+                default:
+                    bytes += 16;
+                    break;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Looks up the tags of the given regions in the tag index, if the tag
+     * check is selected and the index is fresh.
+     *
+     * @param embassyRegions the region names
+     * @return the tags of the regions the index knows
+     */
+    private Map<String, Set<RegionTag>> indexedTagsOf(List<String> embassyRegions) {
+        return regionTagsCheck != null && tagIndex != null && tagIndex.isFresh(now, tagIndexMaxAgeSeconds)
+                ? tagIndex.tagsOf(embassyRegions) : Collections.emptyMap();
+    }
+
+    /**
+     * Looks up which of the given regions the happenings prove active enough to
+     * pass the RMB activity check, if it is selected.
+     *
+     * @param embassyRegions the region names
+     * @return the time of the last message seen of the regions proven active
+     */
+    private Map<String, Long> provenActiveOf(List<String> embassyRegions) {
+        return rmbActivityCheck != null && activityIndex != null
+                ? activityIndex.findActiveSince(embassyRegions, now - TimeUnit.DAYS.toSeconds(rmbActivityCheck.maxDays))
+                : Collections.emptyMap();
+    }
+
+    /**
+     * Returns the shards to retrieve for a region, leaving out the ones the
+     * indexes answer for it.
+     *
+     * @param tagsIndexed whether the tag index answers the region's tags
+     * @param provenActive whether the activity index proved the region active
+     * @return the shards to retrieve, of which the name is always the first
+     */
+    private RegionShard[] shardsLeftFor(boolean tagsIndexed, boolean provenActive) {
+        return shardsToRetrieveLst.stream().filter(shard
+                -> !(shard == RegionShard.TAGS && tagsIndexed)
+                && !(shard == RegionShard.REGIONAL_MESSAGES && provenActive))
+                .toArray(RegionShard[]::new);
+    }
+
+    /**
+     * Orders the given region names by how much retrieving them is worth:
+     * first the regions the region source holds no data for, then the regions
+     * whose held data fails one of the checks, then the rest. Within each
+     * group, the regions with the oldest data come first.
+     *
+     * @param embassyRegions the region names to order
+     * @return the ordered region names
+     */
+    private List<String> orderByValue(List<String> embassyRegions) {
+        final RegionShard[] shards = shardsToRetrieveLst.toArray(new RegionShard[shardsToRetrieveLst.size()]);
+        embassyRegions.forEach(regionIds::add);
+        final RegionData[] heldById = new RegionData[regionIds.size()];
+
+        embassyRegions.forEach(name -> {
+            final int id = regionIds.idOf(name);
+            final RegionData region = retrievedIds.get(id) ? retrievedById.get(id) : regionSource.peek(name, shards);
+            if (region != null) {
+                heldById[id] = region;
             }
         });
 
+        // Find the regions that were flagged on their held data.
+        final CheckPlan plan = new CheckPlan(checks());
+        final BitSet flagged = new BitSet(heldById.length);
+
+        for (int id = 0; id < heldById.length; id++) {
+            if (heldById[id] != null && plan.failsAny(heldById[id], now)) {
+                flagged.set(id);
+            }
+        }
+
+        final List<String> ordered = new ArrayList<>(embassyRegions);
+        ordered.sort(Comparator.<String>comparingInt(name -> {
+            final int id = regionIds.idOf(name);
+            return heldById[id] == null ? 0 : flagged.get(id) ? 1 : 2;
+        }).thenComparingLong(name -> {
+            final RegionData region = heldById[regionIds.idOf(name)];
+            return region == null ? 0 : region.retrievedAt;
+        }));
+        return ordered;
+    }
+
+    /**
+     * Returns whether the current execution's budget has run out.
+     *
+     * @return whether the budget has run out
+     */
+    private boolean isBudgetExhausted() {
+        return (requestBudget > 0 && requestsMade >= requestBudget)
+                || (timeBudgetNanos > 0 && System.nanoTime() - deadlineNanos >= 0);
+    }
+
+    /**
+     * Estimates the outcome of this query from a random sample of the embassy
+     * regions, using no more than the given number of requests. The embassy list
+     * is split into contiguous strata, which follow the order in which
+     * NationStates lists the embassies, and each stratum is sampled in
+     * proportion to its size. The sampled regions are kept, so that a subsequent
+     * {@link #executeReport} does not retrieve them again.
+     *
+     * @param requestBudget the maximum number of requests to make, including
+     * the one for the embassy list
+     * @return the preview
+     * @throws IllegalArgumentException if none of the checks was selected, or
+     * if requestBudget < 2
+     */
+    public EmbassyCheckPreview preview(int requestBudget) throws IllegalArgumentException {
+        // Throw exception if none of the checks was selected.
+        if (checks().isEmpty()) {
+            throw new IllegalArgumentException("None of the checks is selected!");
+        }
+        if (requestBudget < 2) {
+            throw new IllegalArgumentException("The request budget must be at least 2!");
+        }
+
+        deadlineNanos = System.nanoTime() + timeBudgetNanos;
+        requestsMade = 0;
+
+        final boolean mainRegionRetrieved = mainRegion != null;
+        final List<String> embassyRegions = retrieveEmbassyRegions();
+        final int populationSize = embassyRegions.size();
+        final int sampleSize = Math.min(populationSize, requestBudget - (mainRegionRetrieved ? 0 : 1));
+
+        // Split the embassy list into strata, with at least two samples per stratum
+        // so that each stratum's variance can be estimated.
+        final int strataCount = Math.max(1, Math.min(PREVIEW_STRATA, sampleSize / 2));
+        final List<List<String>> strata = new ArrayList<>();
+        final List<List<String>> samples = new ArrayList<>();
+        final List<String> sampleNames = new ArrayList<>();
+        final Random random = new Random();
+
+        for (int h = 0; h < strataCount; h++) {
+            final int from = h * populationSize / strataCount;
+            final int to = (h + 1) * populationSize / strataCount;
+            final List<String> stratum = new ArrayList<>(embassyRegions.subList(from, to));
+
+            // Allocate proportionally, rounding cumulatively so that the sizes add up.
+            final int stratumSampleSize = populationSize == 0 ? 0
+                    : (int) ((long) to * sampleSize / populationSize) - (int) ((long) from * sampleSize / populationSize);
+            Collections.shuffle(stratum, random);
+            strata.add(stratum);
+            samples.add(stratum.subList(0, stratumSampleSize));
+            sampleNames.addAll(samples.get(h));
+        }
+
+        // Retrieve the sample, and evaluate each stratum's sample separately.
+        retrieveRegions(sampleNames, Collections.emptyMap(), Collections.emptyMap(), new ArrayList<>());
+        final CheckPlan plan = new CheckPlan(checks());
+        final List<CheckResults> stratumResults = new ArrayList<>();
+
+        for (List<String> sample : samples) {
+            final List<RegionData> sampledRegions = new ArrayList<>();
+            sample.stream().map(this::retrievedOf).filter(region -> region != null).forEach(sampledRegions::add);
+            stratumResults.add(plan.evaluate(sampledRegions, now));
+        }
+
+        // Estimate the counts per check.
+        final List<EmbassyCheckEstimate> estimates = new ArrayList<>();
+
+        for (RegionCheck<?> check : checks()) {
+            estimates.add(estimate(check.getTitle(), strata, samples, stratumResults,
+                    results -> results.get(check).size()));
+        }
+        return new EmbassyCheckPreview(regionName, populationSize, sampleNames.size(), estimates);
+    }
+
+    /**
+     * Computes the stratified estimate of the number of embassy regions that
+     * fail a criterion, with a 95% confidence interval that uses the finite
+     * population correction.
+     *
+     * @param criterion description of the criterion
+     * @param strata the strata
+     * @param samples the sample of each stratum
+     * @param stratumResults the check results of each stratum's sample
+     * @param failures extracts the number of failing regions from results
+     * @return the estimate
+     */
+    private static EmbassyCheckEstimate estimate(String criterion, List<List<String>> strata,
+            List<List<String>> samples, List<CheckResults> stratumResults,
+            ToIntFunction<CheckResults> failures) {
+        double total = 0;
+        double variance = 0;
+        int sampledFailures = 0;
+        int sampled = 0;
+        int populationSize = 0;
+
+        for (int h = 0; h < strata.size(); h++) {
+            final int stratumSize = strata.get(h).size();
+            final int sampleSize = samples.get(h).size();
+            final int stratumFailures = failures.applyAsInt(stratumResults.get(h));
+            populationSize += stratumSize;
+            sampled += sampleSize;
+            sampledFailures += stratumFailures;
+
+            if (sampleSize == 0) {
+                continue;
+            }
+            final double proportion = (double) stratumFailures / sampleSize;
+            total += stratumSize * proportion;
+
+            if (sampleSize > 1) {
+                variance += (double) stratumSize * stratumSize * (1 - (double) sampleSize / stratumSize)
+                        * proportion * (1 - proportion) / (sampleSize - 1);
+            }
+        }
+
+        // The failures seen in the sample are certain; so are the passes.
+        final double margin = 1.96 * Math.sqrt(variance);
+        final int lowerBound = (int) Math.max(sampledFailures, Math.floor(total - margin));
+        final int upperBound = (int) Math.min(populationSize - (sampled - sampledFailures), Math.ceil(total + margin));
+        return new EmbassyCheckEstimate(criterion, sampledFailures, (int) Math.round(total), lowerBound, upperBound);
+    }
+
+    /**
+     * Retrieves the main region's embassies, unless already retrieved.
+     *
+     * @return the names of the regions with established or pending embassies
+     * @throws IllegalArgumentException if the main region does not exist
+     */
+    private List<String> retrieveEmbassyRegions() throws IllegalArgumentException {
+        if (mainRegion == null) {
+            // Retrieve embassies of the specified region.
+            if (!regionSource.isFree(regionName, RegionShard.EMBASSIES)) {
+                requestsMade++;
+            }
+            mainRegion = regionSource.getRegion(regionName, RegionShard.EMBASSIES);
+
+            // Null-check on the region.
+            if (mainRegion == null) {
+                throw new IllegalArgumentException("Region does not exist!");
+            }
+        }
+        return mainRegion.embassies;
+    }
+
+    /**
+     * Retrieves the regions with the given names, firing the region events.
+     * Regions that were already retrieved by this query are not retrieved
+     * again. Once the budget has run out, only regions that can be retrieved
+     * without a request still are. Shards that the indexes answer for a region
+     * are left out of its retrieval, and a region whose shards the indexes
+     * answer entirely is not retrieved at all.
+     *
+     * @param embassyRegions names of the regions to retrieve
+     * @param indexedTags the tags of the regions whose tags were looked up in
+     * the tag index
+     * @param provenActive the time of the last message seen of the regions
+     * that the activity index proved active
+     * @param unchecked receives the names of the regions that were not
+     * retrieved because the budget ran out
+     * @return the retrieved regions, excluding the ones that do not exist
+     */
+    private List<RegionData> retrieveRegions(List<String> embassyRegions, Map<String, Set<RegionTag>> indexedTags,
+            Map<String, Long> provenActive, List<String> unchecked) {
+        final RegionShard[] shards = shardsToRetrieveLst.toArray(new RegionShard[shardsToRetrieveLst.size()]);
+        final List<RegionShard> shardList = Collections.unmodifiableList(Arrays.asList(shards));
+        final boolean detailed;
+
+        synchronized (listeners) {
+            detailed = listeners.stream().anyMatch(RegionEventsListener::wantsRetrievalDetail);
+        }
+
         // The retrieved regions.
-        final List<Region> regions = new ArrayList<>();
+        final List<RegionData> regions = new ArrayList<>();
+        final boolean filterDead = existence != null && existence.isFresh(now, existenceMaxAgeSeconds);
+        requestsSaved = 0;
 
         // Fire RegionRetrievingStartedEvent
         synchronized (listeners) {
@@ -198,145 +934,308 @@ public class EmbassyCheckQuery {
         // Iterate over retrieved region names, retrieving the regions.
         for (int i = 0; i < embassyRegions.size(); i++) {
             final String embassyRegionName = embassyRegions.get(i);
-            final Region region = nationStates.getRegion(embassyRegionName)
-                    .shards(shardsToRetrieveLst.toArray(new RegionShard[shardsToRetrieveLst.size()])).execute();
+            final int id = regionIds.add(embassyRegionName);
+            final long start = detailed ? System.nanoTime() : 0;
+            final RetrievalDetail detail = detailed ? new RetrievalDetail() : null;
+            final Set<RegionTag> tags = indexedTags.get(embassyRegionName);
+            final Long lastMessage = provenActive.get(embassyRegionName);
+            RegionShard[] regionShards = shards;
+            List<RegionShard> regionShardList = shardList;
+
+            // Leave out the shards the indexes answer.
+            if (tags != null || lastMessage != null) {
+                regionShards = shardsLeftFor(tags != null, lastMessage != null);
+                regionShardList = Collections.unmodifiableList(Arrays.asList(regionShards));
+            }
+            String failureReason = null;
+            RegionData region;
+
+            try {
+                if (filterDead && existence.isKnownDead(embassyRegionName)) {
+                    region = null;
+                    failureReason = "The region does not exist, according to the regions dump";
+                    requestsSaved++;
+
+                    if (detailed) {
+                        detail.markFromCache();
+                    }
+                } else if (regionShards.length == 1) {
+                    // Only the name is left, which the indexes need not retrieve.
+                    region = new RegionData(embassyRegionName, regionShardList,
+                            tags != null ? tagIndex.builtAt : now, Collections.emptyList(), 0, 0,
+                            Collections.emptySet());
+                    requestsSaved++;
+
+                    if (detailed) {
+                        detail.markFromCache();
+                    }
+                } else if (retrievedIds.get(id)) {
+                    region = retrievedById.get(id);
+
+                    if (detailed) {
+                        detail.markFromCache();
+                    }
+                } else if (regionSource.isFree(embassyRegionName, regionShards)) {
+                    region = retrieve(embassyRegionName, id, detail, regionShards);
+                } else if (isBudgetExhausted()) {
+                    region = null;
+                    unchecked.add(embassyRegionName);
+                    failureReason = "The budget ran out";
+                } else {
+                    requestsMade++;
+                    region = retrieve(embassyRegionName, id, detail, regionShards);
+                }
+            } catch (RuntimeException ex) {
+                // Let the listeners know why, and abort the query.
+                fireRegionRetrieved(embassyRegionName, i, null, regionShardList,
+                        ex.getMessage() == null ? ex.toString() : ex.getMessage(), detail, start);
+                throw ex;
+            }
+
+            // Add the shards the indexes answered.
+            if (region != null && (tags != null || lastMessage != null)) {
+                region = withIndexed(region, tags, lastMessage);
+            }
             boolean Retrieved;
 
             // Null check to make sure the region didn't CTE in the meantime.
             if (Retrieved = region != null) {
                 // Add the region to the list.
                 regions.add(region);
+            } else if (failureReason == null) {
+                failureReason = "The region does not exist";
             }
 
-            // Fire RegionRetrievedEvent
-            synchronized (listeners) {
-                final RegionRetrievedEvent event = new RegionRetrievedEvent(this, embassyRegionName, i, Retrieved);
-
-                listeners.stream().forEach((listener) -> {
-                    listener.handleRegionRetrieved(event);
-                });
-            }
+            fireRegionRetrieved(embassyRegionName, i, region, regionShardList, failureReason, detail, start);
         }
+        return regions;
+    }
 
-        // The generated report.
-        String generatedReport = "";
+    /**
+     * Returns the given region with the shards the indexes answered added, as
+     * if they had been retrieved along with its other shards. The last message
+     * seen in the happenings stands in for the region's last message, which
+     * is at least as recent.
+     *
+     * @param region the region
+     * @param tags the region's tags from the tag index, or null
+     * @param lastMessage time in seconds of the last message seen in the
+     * happenings, or null
+     * @return the region with the answered shards
+     */
+    private static RegionData withIndexed(RegionData region, Set<RegionTag> tags, Long lastMessage) {
+        final Set<RegionShard> shards = EnumSet.copyOf(region.shards);
 
-        // Do RMB activity check.
-        if (maxDaysSinceLastRmbMsg > 0) {
-            generatedReport += checkRmbActivity(regions) + "%n";
+        if (tags != null) {
+            shards.add(RegionShard.TAGS);
         }
+        if (lastMessage != null) {
+            shards.add(RegionShard.REGIONAL_MESSAGES);
+        }
+        return new RegionData(region.name, shards, region.retrievedAt, region.embassies,
+                lastMessage != null ? lastMessage : region.lastMessageTimestamp, region.founded,
+                tags != null ? tags : region.tags);
+    }
 
-        // Do region founded check.
-        if (minDaysSinceFounded > 0) {
-            generatedReport += checkRegionFounded(regions) + "%n";
+    /**
+     * Retrieves the region with the given name from the region source, with
+     * details if the given detail is not null, and remembers it.
+     *
+     * @param embassyRegionName name of the region to retrieve
+     * @param id the region's ID
+     * @param detail the detail to record the retrieval in, or null
+     * @param shards the shards to retrieve
+     * @return the region's data, or null if the region does not exist
+     */
+    private RegionData retrieve(String embassyRegionName, int id, RetrievalDetail detail, RegionShard[] shards) {
+        final RegionData region = detail == null ? regionSource.getRegion(embassyRegionName, shards)
+                : regionSource.getRegion(embassyRegionName, detail, shards);
+
+        while (retrievedById.size() <= id) {
+            retrievedById.add(null);
         }
+        retrievedById.set(id, region);
+        retrievedIds.set(id);
+        return region;
+    }
+
+    /**
+     * Returns the region with the given name as retrieved by this query.
+     *
+     * @param regionName name of the region
+     * @return the region's data, or null if it was not retrieved or does not
+     * exist
+     */
+    private RegionData retrievedOf(String regionName) {
+        final int id = regionIds.idOf(regionName);
+        return id >= 0 && retrievedIds.get(id) ? retrievedById.get(id) : null;
+    }
 
-        // Do tags check.
-        if (tagsToCheck != null) {
-            generatedReport += checkRegionTags(regions) + "%n";
+    /**
+     * Fires a RegionRetrievedEvent.
+     *
+     * @param embassyRegionName name of the region
+     * @param position position of the region in the query
+     * @param region the retrieved region, or null
+     * @param shards the requested shards
+     * @param failureReason why the region was not retrieved, or null
+     * @param detail the retrieval details, or null if not measured
+     * @param start time in nanoseconds at which the retrieval started
+     */
+    private void fireRegionRetrieved(String embassyRegionName, int position, RegionData region,
+            List<RegionShard> shards, String failureReason, RetrievalDetail detail, long start) {
+        // Fire RegionRetrievedEvent
+        synchronized (listeners) {
+            final RegionRetrievedEvent event = detail == null
+                    ? new RegionRetrievedEvent(this, embassyRegionName, position, region != null, shards,
+                            failureReason, false, -1, -1, -1)
+                    : new RegionRetrievedEvent(this, embassyRegionName, position, region != null, shards,
+                            failureReason, detail.isFromCache(), System.nanoTime() - start,
+                            detail.getRateLimitWaitNanos(), detail.getBytesReceived());
+
+            listeners.stream().forEach((listener) -> {
+                listener.handleRegionRetrieved(event);
+            });
         }
+    }
 
-        // Final variable needed for invokeLater because Java. Yeah.
-        return String.format(generatedReport);
+    /**
+     * Evaluates this query's checks on the given regions, without retrieving
+     * anything. The regions must have been retrieved with the shards this
+     * query's checks need.
+     *
+     * @param regions the regions to evaluate
+     * @return the report
+     * @throws IllegalArgumentException if none of the checks was selected
+     */
+    public EmbassyCheckReport evaluate(List<RegionData> regions) throws IllegalArgumentException {
+        return evaluate(regions, Collections.emptyList());
     }
 
     /**
-     * Checks the RMB activity of the given regions, and prints results.
+     * Evaluates this query's checks on the regions in the given arena, without
+     * retrieving anything. The records are read through a flyweight, so that
+     * only the regions that fail a check take objects.
      *
-     * @param region the regions of which the RMB activity to check
+     * @param arena the arena holding the regions to evaluate
+     * @return the report
+     * @throws IllegalArgumentException if none of the checks was selected
      */
-    private String checkRmbActivity(List<Region> regions) {
-        // List that will contain regions that haven't had RMB posts in x days.
-        final List<RegionLastMsg> regionLastMsgs = new ArrayList<>();
+    public EmbassyCheckReport evaluate(RegionArena arena) throws IllegalArgumentException {
+        // Throw exception if none of the checks was selected.
+        if (checks().isEmpty()) {
+            throw new IllegalArgumentException("None of the checks is selected!");
+        }
 
-        // Iterate over the regions, doing the check.
-        for (Region region : regions) {
-            // Null/empty check on retrieved messages.
-            if (region.getRegionalMessages() == null || region.getRegionalMessages().isEmpty()) {
-                regionLastMsgs.add(new RegionLastMsg(region.getName()));
-                continue;
-            }
+        final List<RegionLastMsg> inactive = rmbActivityCheck != null ? new ArrayList<>() : null;
+        final List<RegionFounded> young = regionAgeCheck != null ? new ArrayList<>() : null;
+        final List<RegionWithTags> tagged = regionTagsCheck != null ? new ArrayList<>() : null;
+        final List<RegionData> copies = otherChecks.isEmpty() ? null : new ArrayList<>();
+        final RegionRecord record = arena.cursor();
 
-            // Check whether the time between now and when the last posted RMB
-            // message is more than the maxMsSinceLastRmbMsg. If so, add to regionLastMsgs.
-            final long msgTimeStamp = region.getRegionalMessages().get(region.getRegionalMessages().size() - 1).getTimestamp();
-            final long diff = now - msgTimeStamp;
+        // Do the built-in checks on each record in one pass, on the record
+        // itself.
+        for (int i = 0; i < arena.size(); i++) {
+            record.moveTo(i);
 
-            if (diff >= TimeUnit.DAYS.toSeconds(maxDaysSinceLastRmbMsg)) {
-                regionLastMsgs.add(new RegionLastMsg(region.getName(), diff));
+            if (inactive != null) {
+                addIfFailed(inactive, rmbActivityCheck.evaluate(record, now));
+            }
+            if (young != null) {
+                addIfFailed(young, regionAgeCheck.evaluate(record, now));
+            }
+            if (tagged != null) {
+                addIfFailed(tagged, regionTagsCheck.evaluate(record, now));
+            }
+            if (copies != null) {
+                copies.add(arena.get(i));
             }
         }
 
-        // Now sort the list and return it.
-        Collections.sort(regionLastMsgs);
-        String generatedReport = "-------Regions without new RMB messages " + "during the last "
-                + maxDaysSinceLastRmbMsg + " days-------%n";
-        generatedReport += "Total regions found: " + regionLastMsgs.size() + ".%n";
-        generatedReport = regionLastMsgs.stream().map((rlm) -> rlm + "%n").reduce(generatedReport, String::concat);
-        return generatedReport;
+        // Now sort the lists.
+        if (inactive != null) {
+            Collections.sort(inactive);
+        }
+        if (young != null) {
+            Collections.sort(young);
+        }
+        if (tagged != null) {
+            Collections.sort(tagged);
+        }
+
+        // The other checks take the records as regions.
+        final Map<String, List<?>> otherResults = new LinkedHashMap<>();
+
+        if (copies != null) {
+            final CheckResults results = new CheckPlan(otherChecks).evaluate(copies, now);
+            otherChecks.forEach(check -> otherResults.put(check.getTitle(), results.get(check)));
+        }
+        return new EmbassyCheckReport(regionName, now, maxDaysSinceLastRmbMsg(), minDaysSinceFounded(), inactive,
+                young, tagged, otherResults, Collections.emptyList());
     }
 
     /**
-     * Checks the founding dates of the given regions, and prints results.
+     * Adds the given result to the given results, unless it is null.
      *
-     * @param regions the regions of which the founding dates to check
+     * @param <R> the type of the results
+     * @param results the results
+     * @param result the result, or null if the region passed
      */
-    private String checkRegionFounded(List<Region> regions) {
-        // List that will contain regions that haven't had RMB posts in x days.
-        final List<RegionFounded> regionFoundeds = new ArrayList<>();
-
-        // Iterate over the regions, doing the check.
-        regions.stream().filter((region) -> !(region.getFounded() == 0)).forEach((region) -> {
-            // Check whether the time between now and when the region was founded
-            // is less than the minMsSinceFounded. If so, add to regionFoundeds.
-            final long diff = now - region.getFounded();
-            if (diff < TimeUnit.DAYS.toSeconds(minDaysSinceFounded)) {
-                regionFoundeds.add(new RegionFounded(region.getName(), diff));
-            }
-        });
-
-        // Now sort the list and return it.
-        Collections.sort(regionFoundeds);
-        String generatedReport = "-------Regions that were founded less than " + minDaysSinceFounded
-                + " days ago-------%n";
-        generatedReport += "Total regions found: " + regionFoundeds.size() + ".%n";
-        generatedReport = regionFoundeds.stream().map((rf) -> rf + "%n").reduce(generatedReport, String::concat);
-        return generatedReport;
+    private static <R> void addIfFailed(List<R> results, R result) {
+        if (result != null) {
+            results.add(result);
+        }
     }
 
     /**
-     * Checks the tags of the given regions, and prints results.
+     * Evaluates this query's checks on the given regions, reporting the given
+     * regions as not checked.
      *
-     * @param regions the regions of which the tags to check
+     * @param regions the regions to evaluate
+     * @param unchecked names of the regions that were not checked, sorted
+     * @return the report
+     * @throws IllegalArgumentException if none of the checks was selected
      */
-    private String checkRegionTags(List<Region> regions) {
-        // List of regions that have one or more of the tags
-        final List<RegionWithTags> regionsWithTags = new ArrayList<>();
+    private EmbassyCheckReport evaluate(List<RegionData> regions, List<String> unchecked)
+            throws IllegalArgumentException {
+        // Do the selected checks in one pass, the cheapest first.
+        return report(new CheckPlan(checks()).evaluate(regions, now), unchecked);
+    }
 
-        // Array to list.
-        final List<RegionTag> TagsToCheckLst = Arrays.asList(tagsToCheck);
+    /**
+     * Makes a report of the given results of this query's checks.
+     *
+     * @param results the results
+     * @param unchecked names of the regions that were not checked, sorted
+     * @return the report
+     */
+    private EmbassyCheckReport report(CheckResults results, List<String> unchecked) {
+        final Map<String, List<?>> otherResults = new LinkedHashMap<>();
+        otherChecks.forEach(check -> otherResults.put(check.getTitle(), results.get(check)));
 
-        // Iterate over the regions, doing the check.
-        regions.stream().filter((region) -> !(region.getTags() == null || region.getTags().isEmpty())).forEach((region) -> {
-            // Found tags in this region's tags.
-            final List<RegionTag> foundTags = new ArrayList<>();
-            // For each tag to check, check if the region has it. If so, add it to
-            // foundTags.
-            TagsToCheckLst.stream().filter((tagToCheck) -> (region.getTags().contains(tagToCheck))).forEach((tagToCheck) -> {
-                foundTags.add(tagToCheck);
-            });
+        return new EmbassyCheckReport(regionName, now, maxDaysSinceLastRmbMsg(), minDaysSinceFounded(),
+                rmbActivityCheck != null ? results.get(rmbActivityCheck) : null,
+                regionAgeCheck != null ? results.get(regionAgeCheck) : null,
+                regionTagsCheck != null ? results.get(regionTagsCheck) : null, otherResults, unchecked);
+    }
 
-            // If any of the specified tags were found, create an entry in regionsWithTags.
-            if (foundTags.size() > 0) {
-                regionsWithTags.add(new RegionWithTags(region.getName(), foundTags));
-            }
-        });
+    /**
+     * Returns the maximum number of days since the last RMB message of the
+     * RMB activity check.
+     *
+     * @return the maximum number of days, or 0 if the check is not selected
+     */
+    private int maxDaysSinceLastRmbMsg() {
+        return rmbActivityCheck != null ? rmbActivityCheck.maxDays : 0;
+    }
 
-        // Now sort the list and return it.
-        Collections.sort(regionsWithTags);
-        String generatedReport = "-------Regions with one or more of the " + "specified tags-------%n";
-        generatedReport += "Total regions found: " + regionsWithTags.size() + ".%n";
-        generatedReport = regionsWithTags.stream().map((rwt) -> rwt + "%n").reduce(generatedReport, String::concat);
-        return generatedReport;
+    /**
+     * Returns the minimum number of days since founding of the region age
+     * check.
+     *
+     * @return the minimum number of days, or 0 if the check is not selected
+     */
+    private int minDaysSinceFounded() {
+        return regionAgeCheck != null ? regionAgeCheck.minDays : 0;
     }
 }
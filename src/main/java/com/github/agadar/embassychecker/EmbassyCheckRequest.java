@@ -0,0 +1,184 @@
+package com.github.agadar.embassychecker;
+
+import com.github.agadar.embassychecker.source.NationStatesRegionSource;
+import com.github.agadar.embassychecker.source.RegionSource;
+
+import com.github.agadar.nationstates.NationStates;
+import com.github.agadar.nationstates.enumerator.RegionTag;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The parameters of an embassy check, as supplied to
+ * {@link EmbassyCheckController#startReporting}. Two requests are equal if
+ * they would produce the same report, which makes this class usable as a
+ * cache key.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class EmbassyCheckRequest {
+
+    /**
+     * What a region name may consist of.
+     */
+    private final static Pattern REGION_NAME_PATTERN = Pattern.compile("[A-Za-z0-9 _-]{1,40}");
+
+    /**
+     * Name of the region whose embassy regions to check.
+     */
+    public final String mainRegionName;
+
+    /**
+     * The maximum number of days since the last RMB message, or 0 if the RMB
+     * activity is not to be checked.
+     */
+    public final int maxDaysSinceLastRmbMsg;
+
+    /**
+     * The minimum number of days since founding, or 0 if the region age is not
+     * to be checked.
+     */
+    public final int minDaysSinceFounded;
+
+    /**
+     * The tags to check for, or null if the tags are not to be checked.
+     */
+    public final Set<RegionTag> tagsToCheck;
+
+    /**
+     * The normalized main region name, used for equality.
+     */
+    private final String normalizedRegionName;
+
+    /**
+     * Constructor. Takes the same parameters as
+     * {@link EmbassyCheckController#startReporting}.
+     *
+     * @param mainRegionName name of the region whose embassy regions to check
+     * @param checkRmbActivity whether to check the RMB activity
+     * @param maxDaysSinceLastRmbMsg the maximum number of days since the last
+     * RMB message
+     * @param checkRegionFounded whether to check the region age
+     * @param minDaysSinceFounded the minimum number of days since founding
+     * @param checkRegionTags whether to check the region tags
+     * @param tagsToCheck the tags to check for
+     * @throws IllegalArgumentException if a selected check is given a number
+     * of days <= 0
+     */
+    public EmbassyCheckRequest(String mainRegionName, boolean checkRmbActivity,
+            int maxDaysSinceLastRmbMsg, boolean checkRegionFounded,
+            int minDaysSinceFounded, boolean checkRegionTags,
+            RegionTag[] tagsToCheck) throws IllegalArgumentException {
+        if (checkRmbActivity && maxDaysSinceLastRmbMsg <= 0) {
+            throw new IllegalArgumentException("The maximum days of no RMB posts" + " must be greater than 0!");
+        }
+        if (checkRegionFounded && minDaysSinceFounded <= 0) {
+            throw new IllegalArgumentException("The minimum age of region in days" + " must be greater than 0!");
+        }
+        this.mainRegionName = mainRegionName;
+        this.normalizedRegionName = normalizeRegionName(mainRegionName);
+        this.maxDaysSinceLastRmbMsg = checkRmbActivity ? maxDaysSinceLastRmbMsg : 0;
+        this.minDaysSinceFounded = checkRegionFounded ? minDaysSinceFounded : 0;
+
+        if (checkRegionTags) {
+            final Set<RegionTag> tags = EnumSet.noneOf(RegionTag.class);
+            if (tagsToCheck != null) {
+                tags.addAll(Arrays.asList(tagsToCheck));
+            }
+            this.tagsToCheck = Collections.unmodifiableSet(tags);
+        } else {
+            this.tagsToCheck = null;
+        }
+    }
+
+    /**
+     * Builds a new query according to this request's parameters.
+     *
+     * @param nationStates the NationStates instance the query is to use
+     * @return a new query
+     * @throws IllegalArgumentException if any of the parameters is invalid
+     */
+    public EmbassyCheckQuery toQuery(NationStates nationStates) throws IllegalArgumentException {
+        return toQuery(new NationStatesRegionSource(nationStates));
+    }
+
+    /**
+     * Builds a new query according to this request's parameters.
+     *
+     * @param regionSource the source the query is to retrieve regions from
+     * @return a new query
+     * @throws IllegalArgumentException if any of the parameters is invalid
+     */
+    public EmbassyCheckQuery toQuery(RegionSource regionSource) throws IllegalArgumentException {
+        EmbassyCheckQuery query = new EmbassyCheckQuery(regionSource, mainRegionName);
+
+        if (maxDaysSinceLastRmbMsg != 0) {
+            query = query.rmbActivity(maxDaysSinceLastRmbMsg);
+        }
+        if (minDaysSinceFounded != 0) {
+            query = query.minimumAge(minDaysSinceFounded);
+        }
+        if (tagsToCheck != null) {
+            query = query.regionTags(tagsToCheck.toArray(new RegionTag[tagsToCheck.size()]));
+        }
+        return query;
+    }
+
+    /**
+     * Normalizes a region name the way NationStates does: case-insensitive, and
+     * with spaces and underscores being interchangeable.
+     *
+     * @param regionName the region name to normalize
+     * @return the normalized region name, or an empty string if null
+     */
+    public static String normalizeRegionName(String regionName) {
+        if (regionName == null) {
+            return "";
+        }
+        return regionName.trim().toLowerCase(Locale.ROOT).replace(' ', '_');
+    }
+
+    /**
+     * Returns whether the given text looks like a region name, so that it is
+     * worth asking NationStates for: at most 40 letters, digits, spaces,
+     * underscores and hyphens. It may still name no region.
+     *
+     * @param regionName the text to check
+     * @return whether the text looks like a region name
+     */
+    public static boolean looksLikeRegionName(String regionName) {
+        return regionName != null && REGION_NAME_PATTERN.matcher(regionName.trim()).matches();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof EmbassyCheckRequest)) {
+            return false;
+        }
+        final EmbassyCheckRequest other = (EmbassyCheckRequest) obj;
+        return maxDaysSinceLastRmbMsg == other.maxDaysSinceLastRmbMsg
+                && minDaysSinceFounded == other.minDaysSinceFounded
+                && normalizedRegionName.equals(other.normalizedRegionName)
+                && Objects.equals(tagsToCheck, other.tagsToCheck);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(normalizedRegionName, maxDaysSinceLastRmbMsg, minDaysSinceFounded, tagsToCheck);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Region: %s; RMB activity: %s; Region age: %s; Tags: %s.", mainRegionName,
+                maxDaysSinceLastRmbMsg, minDaysSinceFounded, tagsToCheck);
+    }
+}
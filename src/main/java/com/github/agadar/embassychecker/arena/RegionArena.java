@@ -0,0 +1,297 @@
+package com.github.agadar.embassychecker.arena;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.index.RegionDictionary;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Arena of region records held outside the Java heap, for runs over so many
+ * regions that holding them as objects would make the garbage collector
+ * pause for long and the heap grow large. Each region is a record of fixed
+ * layout in a direct buffer, and its embassies are region IDs in a second
+ * direct buffer. Only the region names are held on the heap, once each: the
+ * regions' own names by record, and their embassies' names in a
+ * {@link RegionDictionary}. So are the names of the delegates, once a region
+ * with a delegate is added.
+ * <p>
+ * The records are read through {@link RegionRecord} flyweights, which read
+ * the fields straight from the buffers. The arena is append-only and not
+ * thread-safe.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionArena {
+
+    /**
+     * Size in bytes of a record.
+     */
+    final static int RECORD_SIZE = 72;
+
+    // Offsets of the fields within a record.
+    final static int ID = 0;
+    final static int FLAGS = 4;
+    final static int RETRIEVED_AT = 8;
+    final static int LAST_MESSAGE = 16;
+    final static int FOUNDED = 24;
+    final static int TAGS_LOW = 32;
+    final static int TAGS_HIGH = 40;
+    final static int EMBASSIES_OFFSET = 48;
+    final static int EMBASSY_COUNT = 52;
+    final static int LAST_UPDATE = 56;
+    final static int POPULATION = 64;
+
+    /**
+     * The shards a record can hold, by their bit in its flags.
+     */
+    final static RegionShard[] FLAG_SHARDS = {RegionShard.NAME, RegionShard.EMBASSIES,
+        RegionShard.REGIONAL_MESSAGES, RegionShard.FOUNDED, RegionShard.TAGS, RegionShard.NUMBER_OF_NATIONS,
+        RegionShard.DELEGATE, RegionShard.LAST_UPDATE};
+
+    /**
+     * The IDs of the regions' names and of their embassies' names.
+     */
+    private final RegionDictionary dictionary;
+
+    /**
+     * The regions' own names, by record.
+     */
+    private String[] names;
+
+    /**
+     * The names of the regions' delegates, by record, or null until a region
+     * with a delegate is added.
+     */
+    private String[] delegates;
+
+    /**
+     * The records, from position 0 up to the number of records.
+     */
+    ByteBuffer records;
+
+    /**
+     * The embassies of the regions as region IDs, 4 bytes each.
+     */
+    ByteBuffer embassies;
+
+    /**
+     * The number of records.
+     */
+    private int size;
+
+    /**
+     * The number of embassies held.
+     */
+    private int embassyCount;
+
+    /**
+     * Constructor.
+     *
+     * @param expectedRegions the number of regions to make room for
+     * @throws IllegalArgumentException if expectedRegions <= 0
+     */
+    public RegionArena(int expectedRegions) throws IllegalArgumentException {
+        if (expectedRegions <= 0) {
+            throw new IllegalArgumentException("The expected number of regions must be greater than 0!");
+        }
+        dictionary = new RegionDictionary(expectedRegions);
+        names = new String[expectedRegions];
+        records = allocate((long) expectedRegions * RECORD_SIZE);
+        embassies = allocate((long) expectedRegions * 4 * 8);
+    }
+
+    /**
+     * Adds a record of the given region. Its embassies are added to the
+     * dictionary, so that the record can refer to them by ID.
+     *
+     * @param region the region
+     * @return the index of the record
+     * @throws IllegalStateException if the arena is full
+     */
+    public int add(RegionData region) throws IllegalStateException {
+        final int id = dictionary.add(region.name);
+        final int record = size;
+        final int count = region.embassies.size();
+
+        // Make room for the record and its embassies.
+        if ((long) (record + 1) * RECORD_SIZE > records.capacity()) {
+            records = grow(records, (long) (record + 1) * RECORD_SIZE);
+        }
+        if (record == names.length) {
+            names = Arrays.copyOf(names, records.capacity() / RECORD_SIZE);
+        }
+        if ((long) (embassyCount + count) * 4 > embassies.capacity()) {
+            embassies = grow(embassies, (long) (embassyCount + count) * 4);
+        }
+
+        // Write the embassies.
+        for (int i = 0; i < count; i++) {
+            embassies.putInt((embassyCount + i) * 4, dictionary.add(region.embassies.get(i)));
+        }
+
+        // Write the record, with the tags as a bitmask of their ordinals.
+        final int position = record * RECORD_SIZE;
+        final long[] tagMask = RegionRecord.tagMask(region.tags);
+        int flags = 0;
+
+        for (int bit = 0; bit < FLAG_SHARDS.length; bit++) {
+            if (region.shards.contains(FLAG_SHARDS[bit])) {
+                flags |= 1 << bit;
+            }
+        }
+        records.putInt(position + ID, id)
+                .putInt(position + FLAGS, flags)
+                .putLong(position + RETRIEVED_AT, region.retrievedAt)
+                .putLong(position + LAST_MESSAGE, region.lastMessageTimestamp)
+                .putLong(position + FOUNDED, region.founded)
+                .putLong(position + TAGS_LOW, tagMask[0])
+                .putLong(position + TAGS_HIGH, tagMask[1])
+                .putInt(position + EMBASSIES_OFFSET, embassyCount)
+                .putInt(position + EMBASSY_COUNT, count)
+                .putLong(position + LAST_UPDATE, region.lastUpdate)
+                .putInt(position + POPULATION, region.population);
+        names[record] = region.name;
+
+        if (region.delegate != null && delegates == null) {
+            delegates = new String[names.length];
+        }
+        if (delegates != null) {
+            if (record >= delegates.length) {
+                delegates = Arrays.copyOf(delegates, names.length);
+            }
+            delegates[record] = region.delegate;
+        }
+        embassyCount += count;
+        size++;
+        return record;
+    }
+
+    /**
+     * Returns a new flyweight over this arena, positioned at the first
+     * record. Moving it to other records allocates nothing.
+     *
+     * @return the flyweight
+     */
+    public RegionRecord cursor() {
+        return new RegionRecord(this);
+    }
+
+    /**
+     * Copies the record with the given index to the heap.
+     *
+     * @param record the index of the record
+     * @return the region
+     * @throws IndexOutOfBoundsException if there is no record with the index
+     */
+    public RegionData get(int record) throws IndexOutOfBoundsException {
+        final RegionRecord cursor = cursor().moveTo(record);
+        final Set<RegionShard> shards = EnumSet.noneOf(RegionShard.class);
+        final Set<RegionTag> tags = EnumSet.noneOf(RegionTag.class);
+        final List<String> embassyNames = new ArrayList<>(cursor.embassyCount());
+
+        for (RegionShard shard : FLAG_SHARDS) {
+            if (cursor.hasShard(shard)) {
+                shards.add(shard);
+            }
+        }
+        for (RegionTag tag : RegionTag.values()) {
+            if (cursor.hasTag(tag)) {
+                tags.add(tag);
+            }
+        }
+        for (int i = 0; i < cursor.embassyCount(); i++) {
+            embassyNames.add(cursor.embassyName(i));
+        }
+        return new RegionData(cursor.name(), shards, cursor.retrievedAt(), embassyNames,
+                cursor.lastMessageTimestamp(), cursor.founded(), tags, cursor.population(), cursor.delegate(),
+                cursor.lastUpdate());
+    }
+
+    /**
+     * Returns the number of records.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory this arena holds.
+     *
+     * @return the number of bytes
+     */
+    public long directBytes() {
+        return (long) records.capacity() + embassies.capacity();
+    }
+
+    /**
+     * Returns the own name of the region with the given record.
+     *
+     * @param record the index of the record
+     * @return the region name
+     */
+    String nameOfRecord(int record) {
+        return names[record];
+    }
+
+    /**
+     * Returns the name of the delegate of the region with the given record.
+     *
+     * @param record the index of the record
+     * @return the delegate name, or null if the region has none
+     */
+    String delegateOfRecord(int record) {
+        return delegates == null || record >= delegates.length ? null : delegates[record];
+    }
+
+    /**
+     * Returns the region name with the given ID.
+     *
+     * @param id the ID
+     * @return the region name
+     */
+    String nameOf(int id) {
+        return dictionary.nameOf(id);
+    }
+
+    /**
+     * Allocates a direct buffer of the given capacity, in native byte order.
+     *
+     * @param capacity the capacity in bytes
+     * @return the buffer
+     * @throws IllegalStateException if the capacity is too large for a buffer
+     */
+    private static ByteBuffer allocate(long capacity) throws IllegalStateException {
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The region arena is full!");
+        }
+        return ByteBuffer.allocateDirect((int) capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Copies the given buffer to a new one of at least the given capacity,
+     * doubling its capacity where possible.
+     *
+     * @param buffer the buffer
+     * @param required the capacity required
+     * @return the new buffer
+     * @throws IllegalStateException if the capacity is too large for a buffer
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, long required) throws IllegalStateException {
+        final ByteBuffer grown = allocate(Math.max(required, Math.min(Integer.MAX_VALUE, 2L * buffer.capacity())));
+        final ByteBuffer source = buffer.duplicate();
+        source.clear();
+        grown.put(source).clear();
+        return grown;
+    }
+}
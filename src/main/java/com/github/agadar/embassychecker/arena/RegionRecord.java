@@ -0,0 +1,226 @@
+package com.github.agadar.embassychecker.arena;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+/**
+ * Flyweight over the records of a {@link RegionArena}. It is moved from record
+ * to record and reads the fields of the current record straight from the
+ * arena's buffers, so that going over the records allocates nothing. The
+ * fields read as the corresponding fields of
+ * {@link com.github.agadar.embassychecker.domain.RegionData}.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionRecord {
+
+    /**
+     * The arena whose records this flyweight reads.
+     */
+    private final RegionArena arena;
+
+    /**
+     * The index of the current record.
+     */
+    private int record;
+
+    /**
+     * The position of the current record in the arena's records.
+     */
+    private int position;
+
+    /**
+     * Constructor.
+     *
+     * @param arena the arena whose records this flyweight reads
+     */
+    RegionRecord(RegionArena arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * Builds the bitmask of the given tags, as held in a record: the first 64
+     * tag ordinals in the first long, and the next 64 in the second.
+     *
+     * @param tags the tags
+     * @return the bitmask
+     */
+    public static long[] tagMask(Iterable<RegionTag> tags) {
+        final long[] mask = new long[2];
+
+        for (RegionTag tag : tags) {
+            if (tag.ordinal() < 128) {
+                mask[tag.ordinal() >> 6] |= 1L << (tag.ordinal() & 63);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Moves this flyweight to the record with the given index.
+     *
+     * @param record the index of the record
+     * @return this
+     * @throws IndexOutOfBoundsException if there is no record with the index
+     */
+    public RegionRecord moveTo(int record) throws IndexOutOfBoundsException {
+        if (record < 0 || record >= arena.size()) {
+            throw new IndexOutOfBoundsException("No record with index " + record);
+        }
+        this.record = record;
+        position = record * RegionArena.RECORD_SIZE;
+        return this;
+    }
+
+    /**
+     * Returns the ID of the region's name in the arena's dictionary.
+     *
+     * @return the ID
+     */
+    public int id() {
+        return arena.records.getInt(position + RegionArena.ID);
+    }
+
+    /**
+     * Returns the region's name. The name is held once on the heap, so this
+     * allocates nothing.
+     *
+     * @return the name
+     */
+    public String name() {
+        return arena.nameOfRecord(record);
+    }
+
+    /**
+     * Returns whether the given shard was retrieved.
+     *
+     * @param shard the shard
+     * @return whether the shard was retrieved
+     */
+    public boolean hasShard(RegionShard shard) {
+        final int flags = arena.records.getInt(position + RegionArena.FLAGS);
+
+        for (int bit = 0; bit < RegionArena.FLAG_SHARDS.length; bit++) {
+            if (RegionArena.FLAG_SHARDS[bit] == shard) {
+                return (flags & (1 << bit)) != 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the time in seconds at which the region was retrieved.
+     *
+     * @return the time
+     */
+    public long retrievedAt() {
+        return arena.records.getLong(position + RegionArena.RETRIEVED_AT);
+    }
+
+    /**
+     * Returns the time in seconds of the last message on the region's board.
+     *
+     * @return the time, or 0 if there is none
+     */
+    public long lastMessageTimestamp() {
+        return arena.records.getLong(position + RegionArena.LAST_MESSAGE);
+    }
+
+    /**
+     * Returns the time in seconds at which the region was founded.
+     *
+     * @return the time, or 0 if unknown
+     */
+    public long founded() {
+        return arena.records.getLong(position + RegionArena.FOUNDED);
+    }
+
+    /**
+     * Returns the number of nations in the region.
+     *
+     * @return the number of nations
+     */
+    public int population() {
+        return arena.records.getInt(position + RegionArena.POPULATION);
+    }
+
+    /**
+     * Returns the name of the region's delegate. The name is held once on the
+     * heap, so this allocates nothing.
+     *
+     * @return the name, or null if the region has no delegate
+     */
+    public String delegate() {
+        return arena.delegateOfRecord(record);
+    }
+
+    /**
+     * Returns the time in seconds at which the region last updated.
+     *
+     * @return the time, or 0 if unknown
+     */
+    public long lastUpdate() {
+        return arena.records.getLong(position + RegionArena.LAST_UPDATE);
+    }
+
+    /**
+     * Returns whether the region has the given tag.
+     *
+     * @param tag the tag
+     * @return whether the region has the tag
+     */
+    public boolean hasTag(RegionTag tag) {
+        if (tag.ordinal() >= 128) {
+            return false;
+        }
+        final long tags = arena.records.getLong(position
+                + (tag.ordinal() < 64 ? RegionArena.TAGS_LOW : RegionArena.TAGS_HIGH));
+        return (tags & (1L << (tag.ordinal() & 63))) != 0;
+    }
+
+    /**
+     * Returns whether the region has any of the tags in the given bitmask, as
+     * built by {@link #tagMask(Iterable)}.
+     *
+     * @param mask the bitmask
+     * @return whether the region has any of the tags
+     */
+    public boolean hasAnyTag(long[] mask) {
+        return (arena.records.getLong(position + RegionArena.TAGS_LOW) & mask[0]) != 0
+                || (arena.records.getLong(position + RegionArena.TAGS_HIGH) & mask[1]) != 0;
+    }
+
+    /**
+     * Returns the number of the region's embassies.
+     *
+     * @return the number of embassies
+     */
+    public int embassyCount() {
+        return arena.records.getInt(position + RegionArena.EMBASSY_COUNT);
+    }
+
+    /**
+     * Returns the ID of the region's embassy with the given index.
+     *
+     * @param index the index of the embassy
+     * @return the ID of the embassy's name
+     * @throws IndexOutOfBoundsException if there is no embassy with the index
+     */
+    public int embassyId(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= embassyCount()) {
+            throw new IndexOutOfBoundsException("No embassy with index " + index);
+        }
+        return arena.embassies.getInt((arena.records.getInt(position + RegionArena.EMBASSIES_OFFSET) + index) * 4);
+    }
+
+    /**
+     * Returns the name of the region's embassy with the given index.
+     *
+     * @param index the index of the embassy
+     * @return the embassy's name
+     * @throws IndexOutOfBoundsException if there is no embassy with the index
+     */
+    public String embassyName(int index) throws IndexOutOfBoundsException {
+        return arena.nameOf(embassyId(index));
+    }
+}
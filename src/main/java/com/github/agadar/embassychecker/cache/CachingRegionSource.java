@@ -0,0 +1,102 @@
+package com.github.agadar.embassychecker.cache;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.source.RateLimiter;
+import com.github.agadar.embassychecker.source.RegionSource;
+import com.github.agadar.embassychecker.source.RetrievalDetail;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.Arrays;
+
+/**
+ * Region source that serves regions from a {@link RegionCache} if they were
+ * retrieved recently enough with the requested shards, and otherwise retrieves
+ * them from another source and caches them.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class CachingRegionSource implements RegionSource {
+
+    private final RegionSource delegate;
+    private final RegionCache cache;
+
+    /**
+     * Age in seconds after which a cached region has expired.
+     */
+    private final long maxAgeSeconds;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate the source to retrieve uncached or expired regions from
+     * @param cache the cache to use
+     * @param maxAgeSeconds age in seconds after which a cached region has
+     * expired
+     */
+    public CachingRegionSource(RegionSource delegate, RegionCache cache, long maxAgeSeconds) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    /**
+     * Returns the cache this source uses.
+     *
+     * @return the cache
+     */
+    public RegionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns whether the given cached region is still fresh and has all of the
+     * given shards.
+     *
+     * @param region the cached region, may be null
+     * @param shards the shards that are needed
+     * @return whether the cached region can be used
+     */
+    public boolean isUsable(RegionData region, RegionShard... shards) {
+        return region != null && System.currentTimeMillis() / 1000 - region.retrievedAt < maxAgeSeconds
+                && region.shards.containsAll(Arrays.asList(shards));
+    }
+
+    @Override
+    public RegionData getRegion(String regionName, RegionShard... shards) {
+        return getRegion(regionName, new RetrievalDetail(), shards);
+    }
+
+    @Override
+    public RegionData getRegion(String regionName, RetrievalDetail detail, RegionShard... shards) {
+        final RegionData cached = cache.get(regionName);
+
+        if (isUsable(cached, shards)) {
+            detail.markFromCache();
+            return cached;
+        }
+
+        final RegionData region = delegate.getRegion(regionName, detail, shards);
+
+        if (region != null) {
+            cache.put(regionName, region);
+        }
+        return region;
+    }
+
+    @Override
+    public RegionData peek(String regionName, RegionShard... shards) {
+        final RegionData cached = cache.get(regionName);
+        return cached != null && cached.shards.containsAll(Arrays.asList(shards)) ? cached : null;
+    }
+
+    @Override
+    public boolean isFree(String regionName, RegionShard... shards) {
+        return isUsable(cache.get(regionName), shards);
+    }
+
+    @Override
+    public RateLimiter getRateLimiter() {
+        return delegate.getRateLimiter();
+    }
+}
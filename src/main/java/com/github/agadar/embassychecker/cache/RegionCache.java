@@ -0,0 +1,233 @@
+package com.github.agadar.embassychecker.cache;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.dump.DumpChangeSet;
+import com.github.agadar.embassychecker.source.RegionArchive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bounded cache of retrieved regions by normalized name, which can be saved to
+ * and loaded from disk so that it survives restarts. The least recently used
+ * regions are evicted first.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class RegionCache {
+
+    /**
+     * The default maximum number of cached regions.
+     */
+    public final static int DEFAULT_MAX_ENTRIES = 50000;
+
+    /**
+     * Magic number at the start of a cache file: "ECRC".
+     */
+    private final static int MAGIC = 0x45435243;
+
+    /**
+     * Current version of the cache file format.
+     */
+    private final static int VERSION = 2;
+
+    /**
+     * Version of the cache file format before regions could hold the number
+     * of nations, the delegate and the last update, which reads the same.
+     */
+    private final static int VERSION_WITHOUT_REGION_DETAILS = 1;
+
+    /**
+     * The file this cache is saved to and loaded from.
+     */
+    private final Path file;
+
+    /**
+     * The cached regions, least recently used first.
+     */
+    private final Map<String, RegionData> entries;
+
+    /**
+     * Constructor.
+     *
+     * @param file the file this cache is saved to and loaded from
+     * @param maxEntries the maximum number of cached regions
+     * @throws IllegalArgumentException if maxEntries <= 0
+     */
+    public RegionCache(Path file, int maxEntries) throws IllegalArgumentException {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maximum number of cached regions must be greater than 0!");
+        }
+
+        this.file = file;
+        this.entries = new LinkedHashMap<String, RegionData>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RegionData> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the default cache file in the user's home directory.
+     *
+     * @return the default cache file
+     */
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".nationstates-embassychecker", "region-cache.dat");
+    }
+
+    /**
+     * Returns the cached region with the given name.
+     *
+     * @param regionName name of the region
+     * @return the cached region, or null if not cached
+     */
+    public synchronized RegionData get(String regionName) {
+        return entries.get(EmbassyCheckRequest.normalizeRegionName(regionName));
+    }
+
+    /**
+     * Caches the given region under the given name, replacing any previously
+     * cached region with that name.
+     *
+     * @param regionName name of the region, as requested
+     * @param region the region to cache
+     */
+    public synchronized void put(String regionName, RegionData region) {
+        entries.put(EmbassyCheckRequest.normalizeRegionName(regionName), region);
+    }
+
+    /**
+     * Removes the given region from this cache, if it is still the region
+     * cached under the given name.
+     *
+     * @param regionName name of the region, as requested
+     * @param region the region to remove
+     * @return whether the region was removed
+     */
+    public synchronized boolean remove(String regionName, RegionData region) {
+        return entries.remove(EmbassyCheckRequest.normalizeRegionName(regionName), region);
+    }
+
+    /**
+     * Updates this cache with the given changes between two regions dumps.
+     * Regions that ceased to exist are removed. Regions whose embassies or
+     * tags changed are replaced by their copy in the dump if that holds every
+     * shard cached, and removed otherwise, as their other shards are unknown
+     * as of the dump. Regions that did not change are not touched.
+     *
+     * @param changes the changes between the dumps
+     * @return the number of cached regions updated or removed
+     */
+    public synchronized int apply(DumpChangeSet changes) {
+        int updated = 0;
+
+        for (String regionName : changes.deleted) {
+            if (entries.remove(EmbassyCheckRequest.normalizeRegionName(regionName)) != null) {
+                updated++;
+            }
+        }
+        for (DumpChangeSet.RegionChange change : changes.changed) {
+            final String key = EmbassyCheckRequest.normalizeRegionName(change.region.name);
+            final RegionData cached = entries.get(key);
+
+            if (cached == null || cached.retrievedAt >= changes.dumpedAt) {
+                continue;
+            }
+            if (change.region.shards.containsAll(cached.shards)) {
+                entries.put(key, change.region);
+            } else {
+                entries.remove(key);
+            }
+            updated++;
+        }
+        return updated;
+    }
+
+    /**
+     * Returns the number of cached regions.
+     *
+     * @return the number of cached regions
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Loads the cache file, if it exists, adding its regions to this cache.
+     *
+     * @throws IOException if the cache file could not be read
+     */
+    public void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            final int magic = in.readInt();
+            final int version = in.readInt();
+
+            if (magic != MAGIC || (version != VERSION && version != VERSION_WITHOUT_REGION_DETAILS)) {
+                // Written by an incompatible version; start over.
+                return;
+            }
+            final int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                final String regionName = in.readUTF();
+                final RegionData region = RegionArchive.readRegionData(in);
+
+                synchronized (this) {
+                    entries.putIfAbsent(regionName, region);
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves this cache to the cache file, replacing it atomically.
+     *
+     * @throws IOException if the cache file could not be written
+     */
+    public void save() throws IOException {
+        final List<Map.Entry<String, RegionData>> snapshot;
+
+        synchronized (this) {
+            snapshot = new ArrayList<>(entries.entrySet());
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+
+            for (Map.Entry<String, RegionData> entry : snapshot) {
+                out.writeUTF(entry.getKey());
+                RegionArchive.writeRegionData(out, entry.getValue());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,302 @@
+package com.github.agadar.embassychecker.cache;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.source.RateLimiter;
+import com.github.agadar.embassychecker.source.SlidingWindowRateLimiter;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Retrieves a main region's embassy list and embassy regions speculatively,
+ * before the check is started, so that the check finds them in the cache. A
+ * prefetch runs on a background thread at low priority, with a rate limiter of
+ * its own that allows half of the NationStates API's limit, and stops when a
+ * prefetch for another main region is started or a check claims it.
+ * <p>
+ * The regions a prefetch caches are remembered. When a check is started, the
+ * regions prefetched for other main regions are removed from the cache again,
+ * unless they were replaced in the meantime or also belong to the checked
+ * region.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class RegionPrefetcher {
+
+    private final static Logger LOGGER = Logger.getLogger(RegionPrefetcher.class.getName());
+
+    /**
+     * The number of requests a prefetch may make per window of the
+     * NationStates API: half of its limit.
+     */
+    public final static int DEFAULT_REQUESTS_PER_WINDOW = SlidingWindowRateLimiter.DEFAULT_REQUESTS_PER_WINDOW / 2;
+
+    private final CachingRegionSource regionSource;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * The shards to retrieve for each embassy region.
+     */
+    private final RegionShard[] shards;
+
+    /**
+     * The running prefetch, or null.
+     */
+    private Prefetch current;
+
+    /**
+     * The regions cached by prefetches, by normalized region name, by
+     * normalized main region name.
+     */
+    private final Map<String, Map<String, RegionData>> prefetched = new HashMap<>();
+
+    /**
+     * A prefetch for one main region.
+     */
+    private final class Prefetch implements Runnable {
+
+        /**
+         * Normalized name of the main region.
+         */
+        final String mainRegionName;
+
+        /**
+         * The thread the prefetch runs on.
+         */
+        final Thread thread;
+
+        /**
+         * Whether the prefetch was cancelled. Guarded by this.
+         */
+        private boolean cancelled;
+
+        /**
+         * Whether the prefetch is waiting for the rate limiter, and may be
+         * interrupted. Guarded by this.
+         */
+        private boolean waiting;
+
+        /**
+         * Constructor.
+         *
+         * @param mainRegionName normalized name of the main region
+         */
+        Prefetch(String mainRegionName) {
+            this.mainRegionName = mainRegionName;
+            thread = new Thread(this, "Region prefetcher");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+        }
+
+        @Override
+        public void run() {
+            try {
+                final RegionData mainRegion = fetch(mainRegionName, RegionShard.EMBASSIES);
+
+                if (mainRegion == null) {
+                    return;
+                }
+                int fetched = 0;
+
+                for (String embassyRegionName : mainRegion.embassies) {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    if (!regionSource.isFree(embassyRegionName, shards)) {
+                        fetch(embassyRegionName, shards);
+                        fetched++;
+                    }
+                }
+                LOGGER.log(Level.FINE, "Prefetched {0} embassy regions of {1}",
+                        new Object[]{fetched, mainRegionName});
+            } catch (InterruptedException ex) {
+                // Cancelled while waiting for the rate limiter.
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.FINE, "Prefetch of " + mainRegionName + " failed", ex);
+            }
+        }
+
+        /**
+         * Retrieves the given region through the cache, after waiting for the
+         * rate limiter if a request is needed, and remembers it if this
+         * prefetch cached it.
+         *
+         * @param regionName name of the region
+         * @param regionShards the shards to retrieve
+         * @return the region, or null if it does not exist or the prefetch was
+         * cancelled
+         * @throws InterruptedException if cancelled while waiting for the rate
+         * limiter
+         */
+        private RegionData fetch(String regionName, RegionShard... regionShards) throws InterruptedException {
+            final boolean free = regionSource.isFree(regionName, regionShards);
+
+            if (!free) {
+                synchronized (this) {
+                    if (cancelled) {
+                        return null;
+                    }
+                    waiting = true;
+                }
+                try {
+                    rateLimiter.acquire();
+                } finally {
+                    synchronized (this) {
+                        waiting = false;
+                        Thread.interrupted();
+                    }
+                }
+            }
+            if (isCancelled()) {
+                return null;
+            }
+            final RegionData region = regionSource.getRegion(regionName, regionShards);
+
+            if (region != null && !free) {
+                synchronized (RegionPrefetcher.this) {
+                    prefetched.computeIfAbsent(mainRegionName, name -> new HashMap<>())
+                            .put(EmbassyCheckRequest.normalizeRegionName(regionName), region);
+                }
+            }
+            return region;
+        }
+
+        /**
+         * Returns whether this prefetch was cancelled.
+         *
+         * @return whether this prefetch was cancelled
+         */
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Cancels this prefetch. A request in progress is completed, but a
+         * wait for the rate limiter is interrupted.
+         */
+        synchronized void cancel() {
+            cancelled = true;
+
+            if (waiting) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Constructor, using a rate limiter that allows
+     * {@link #DEFAULT_REQUESTS_PER_WINDOW} requests per window.
+     *
+     * @param regionSource the source to retrieve and cache the regions with
+     * @param shards the shards to retrieve for each embassy region
+     */
+    public RegionPrefetcher(CachingRegionSource regionSource, RegionShard... shards) {
+        this(regionSource, new SlidingWindowRateLimiter(DEFAULT_REQUESTS_PER_WINDOW,
+                SlidingWindowRateLimiter.DEFAULT_WINDOW_MILLIS), shards);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param regionSource the source to retrieve and cache the regions with
+     * @param rateLimiter the rate limiter the prefetches wait for
+     * @param shards the shards to retrieve for each embassy region
+     */
+    public RegionPrefetcher(CachingRegionSource regionSource, RateLimiter rateLimiter, RegionShard... shards) {
+        this.regionSource = regionSource;
+        this.rateLimiter = rateLimiter;
+        this.shards = shards.clone();
+    }
+
+    /**
+     * Starts prefetching the given main region's embassy list and embassy
+     * regions, cancelling the prefetch of any other main region. Does nothing
+     * if the main region is already being prefetched, or if the name does not
+     * look like a region name.
+     *
+     * @param mainRegionName name of the main region
+     */
+    public synchronized void prefetch(String mainRegionName) {
+        if (!EmbassyCheckRequest.looksLikeRegionName(mainRegionName)) {
+            return;
+        }
+        final String normalized = EmbassyCheckRequest.normalizeRegionName(mainRegionName);
+
+        if (current != null && current.mainRegionName.equals(normalized) && current.thread.isAlive()) {
+            return;
+        }
+        if (current != null) {
+            current.cancel();
+        }
+        current = new Prefetch(normalized);
+        current.thread.start();
+    }
+
+    /**
+     * Stops prefetching, waits for a request in progress to complete, and
+     * removes the regions prefetched for main regions other than the given
+     * one from the cache. Called when a check of the given main region is
+     * started, which then finds the regions prefetched for it in the cache.
+     *
+     * @param mainRegionName name of the main region that is checked
+     * @return the number of regions prefetched for the main region
+     */
+    public int claim(String mainRegionName) {
+        final Prefetch prefetch;
+
+        synchronized (this) {
+            prefetch = current;
+            current = null;
+        }
+        if (prefetch != null) {
+            prefetch.cancel();
+            try {
+                prefetch.thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        final String normalized = EmbassyCheckRequest.normalizeRegionName(mainRegionName);
+        final RegionCache cache = regionSource.getCache();
+        final Set<String> relevant = new HashSet<>();
+        final RegionData mainRegion = cache.get(normalized);
+        final Map<String, Map<String, RegionData>> claimed;
+
+        synchronized (this) {
+            claimed = new HashMap<>(prefetched);
+            prefetched.clear();
+        }
+
+        // The checked region and its embassy regions are relevant, whichever
+        // prefetch cached them.
+        relevant.add(normalized);
+        if (mainRegion != null) {
+            mainRegion.embassies.forEach(name -> relevant.add(EmbassyCheckRequest.normalizeRegionName(name)));
+        }
+        int discarded = 0;
+
+        for (Map.Entry<String, Map<String, RegionData>> entry : claimed.entrySet()) {
+            if (entry.getKey().equals(normalized)) {
+                continue;
+            }
+            for (Map.Entry<String, RegionData> region : entry.getValue().entrySet()) {
+                if (!relevant.contains(region.getKey()) && cache.remove(region.getKey(), region.getValue())) {
+                    discarded++;
+                }
+            }
+        }
+        if (discarded > 0) {
+            LOGGER.log(Level.FINE, "Discarded {0} regions prefetched for other regions", discarded);
+        }
+        final Map<String, RegionData> picked = claimed.get(normalized);
+        return picked == null ? 0 : picked.size();
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.agadar.embassychecker.check;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The checks of a query, ordered cheapest first, with the union of the shards
+ * they need. Each region is then retrieved once with that union, and all of
+ * the checks are evaluated in a single pass over the regions.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class CheckPlan {
+
+    /**
+     * The checks, cheapest first.
+     */
+    private final List<RegionCheck<?>> checks;
+
+    /**
+     * The shards the checks need, including the name.
+     */
+    private final Set<RegionShard> shards = EnumSet.of(RegionShard.NAME);
+
+    /**
+     * Constructor. Checks of equal cost keep the given order.
+     *
+     * @param checks the checks
+     * @throws IllegalArgumentException if checks is empty
+     */
+    public CheckPlan(List<? extends RegionCheck<?>> checks) throws IllegalArgumentException {
+        if (checks.isEmpty()) {
+            throw new IllegalArgumentException("None of the checks is selected!");
+        }
+        final List<RegionCheck<?>> ordered = new ArrayList<>(checks);
+        ordered.sort(Comparator.comparingInt(RegionCheck::getCost));
+        this.checks = Collections.unmodifiableList(ordered);
+        ordered.forEach(check -> shards.addAll(check.getRequiredShards()));
+    }
+
+    /**
+     * Returns the checks, cheapest first.
+     *
+     * @return the checks
+     */
+    public List<RegionCheck<?>> getChecks() {
+        return checks;
+    }
+
+    /**
+     * Returns the union of the shards the checks need, including the name.
+     *
+     * @return the shards
+     */
+    public Set<RegionShard> getShards() {
+        return Collections.unmodifiableSet(shards);
+    }
+
+    /**
+     * Evaluates all of the checks on the given regions, in one pass.
+     *
+     * @param regions the regions, holding at least the shards the checks need
+     * @param now time in seconds as of which the checks are evaluated
+     * @return the results, sorted
+     */
+    public CheckResults evaluate(Iterable<RegionData> regions, long now) {
+        final CheckResults results = new CheckResults(checks);
+
+        for (RegionData region : regions) {
+            for (RegionCheck<?> check : checks) {
+                evaluate(check, region, now, results);
+            }
+        }
+        results.sort();
+        return results;
+    }
+
+    /**
+     * Returns whether the given region fails any of the checks.
+     *
+     * @param region the region, holding at least the shards the checks need
+     * @param now time in seconds as of which the checks are evaluated
+     * @return whether the region fails any of the checks
+     */
+    public boolean failsAny(RegionData region, long now) {
+        for (RegionCheck<?> check : checks) {
+            if (check.evaluate(region, now) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates the given check on the given region, adding the result if the
+     * region fails it.
+     *
+     * @param <R> the type of the check's results
+     * @param check the check
+     * @param region the region
+     * @param now time in seconds as of which the check is evaluated
+     * @param results the results to add to
+     */
+    private static <R extends Comparable<? super R>> void evaluate(RegionCheck<R> check, RegionData region,
+            long now, CheckResults results) {
+        final R result = check.evaluate(region, now);
+
+        if (result != null) {
+            results.add(check, result);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.agadar.embassychecker.check;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of evaluating the checks of a {@link CheckPlan}: for each check,
+ * the results of the regions that failed it, sorted by their natural ordering.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class CheckResults {
+
+    /**
+     * The checks, in the order they were evaluated.
+     */
+    private final List<RegionCheck<?>> checks;
+
+    /**
+     * The results by check.
+     */
+    private final Map<RegionCheck<?>, List<?>> results = new IdentityHashMap<>();
+
+    /**
+     * Constructor, for empty results of the given checks.
+     *
+     * @param checks the checks, in the order they are evaluated
+     */
+    CheckResults(List<RegionCheck<?>> checks) {
+        this.checks = checks;
+        checks.forEach(check -> results.put(check, new ArrayList<>()));
+    }
+
+    /**
+     * Adds the given result of the given check.
+     *
+     * @param <R> the type of the check's results
+     * @param check the check
+     * @param result the result
+     */
+    @SuppressWarnings("unchecked")
+    <R extends Comparable<? super R>> void add(RegionCheck<R> check, R result) {
+        ((List<R>) results.get(check)).add(result);
+    }
+
+    /**
+     * Sorts the results of each check.
+     */
+    void sort() {
+        checks.forEach(this::sort);
+    }
+
+    /**
+     * Sorts the results of the given check.
+     *
+     * @param <R> the type of the check's results
+     * @param check the check
+     */
+    private <R extends Comparable<? super R>> void sort(RegionCheck<R> check) {
+        Collections.sort(get(check));
+    }
+
+    /**
+     * Returns the checks, in the order they were evaluated.
+     *
+     * @return the checks
+     */
+    public List<RegionCheck<?>> getChecks() {
+        return checks;
+    }
+
+    /**
+     * Returns the results of the given check.
+     *
+     * @param <R> the type of the check's results
+     * @param check the check
+     * @return the results, sorted
+     * @throws IllegalArgumentException if the check was not evaluated
+     */
+    @SuppressWarnings("unchecked")
+    public <R extends Comparable<? super R>> List<R> get(RegionCheck<R> check) throws IllegalArgumentException {
+        final List<R> checkResults = (List<R>) results.get(check);
+
+        if (checkResults == null) {
+            throw new IllegalArgumentException("The check " + check.getTitle() + " was not evaluated!");
+        }
+        return checkResults;
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.agadar.embassychecker.check;
+
+import com.github.agadar.embassychecker.arena.RegionRecord;
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.domain.RegionFounded;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks whether a region was founded long enough ago. Regions whose founding
+ * time is unknown pass the check.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionAgeCheck implements RegionCheck<RegionFounded> {
+
+    /**
+     * The minimum number of days since a region may have been founded.
+     */
+    public final int minDays;
+
+    /**
+     * The same in seconds.
+     */
+    private final long minSeconds;
+
+    /**
+     * Constructor.
+     *
+     * @param minDays the minimum number of days since founding
+     * @throws IllegalArgumentException if minDays <= 0
+     */
+    public RegionAgeCheck(int minDays) throws IllegalArgumentException {
+        if (minDays <= 0) {
+            throw new IllegalArgumentException("The minimum age of region in days" + " must be greater than 0!");
+        }
+        this.minDays = minDays;
+        this.minSeconds = TimeUnit.DAYS.toSeconds(minDays);
+    }
+
+    @Override
+    public String getTitle() {
+        return "Regions that were founded less than " + minDays + " days ago";
+    }
+
+    @Override
+    public Set<RegionShard> getRequiredShards() {
+        return Collections.unmodifiableSet(EnumSet.of(RegionShard.FOUNDED));
+    }
+
+    @Override
+    public int getCost() {
+        return CHEAP;
+    }
+
+    @Override
+    public RegionFounded evaluate(RegionData region, long now) {
+        if (region.founded == 0) {
+            return null;
+        }
+        final long diff = now - region.founded;
+        return diff < minSeconds ? new RegionFounded(region.name, diff) : null;
+    }
+
+    /**
+     * Evaluates this check on the given arena record, which holds the founded
+     * shard.
+     *
+     * @param record the record
+     * @param now time in seconds as of which the check is evaluated
+     * @return the result if the region fails the check, or null if it passes
+     */
+    public RegionFounded evaluate(RegionRecord record, long now) {
+        final long founded = record.founded();
+        return founded != 0 && now - founded < minSeconds ? new RegionFounded(record.name(), now - founded) : null;
+    }
+}
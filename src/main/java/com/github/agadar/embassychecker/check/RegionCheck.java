@@ -0,0 +1,60 @@
+package com.github.agadar.embassychecker.check;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.Set;
+
+/**
+ * A criterion that embassy regions are checked against. A check declares the
+ * shards it needs, so that a query can retrieve each region once with the
+ * union of the shards of all its checks, and the relative cost of evaluating
+ * it, so that a {@link CheckPlan} can run the cheapest checks first. For each
+ * region that fails the check, it produces a result of its own type.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ * @param <R> the type of the results, which are sorted by their natural
+ * ordering in the report
+ */
+public interface RegionCheck<R extends Comparable<? super R>> {
+
+    /**
+     * The cost of a check that compares a field of a region.
+     */
+    int CHEAP = 1;
+
+    /**
+     * Returns the title of this check's section in the report, such as
+     * "Regions that were founded less than 30 days ago".
+     *
+     * @return the title
+     */
+    String getTitle();
+
+    /**
+     * Returns the shards this check needs of each region, besides its name.
+     *
+     * @return the shards
+     */
+    Set<RegionShard> getRequiredShards();
+
+    /**
+     * Returns the relative cost of evaluating this check on one region. A
+     * check that compares a field costs {@link #CHEAP}; one that goes over a
+     * collection costs more.
+     *
+     * @return the cost
+     */
+    int getCost();
+
+    /**
+     * Evaluates this check on the given region, which holds at least the
+     * shards this check needs.
+     *
+     * @param region the region
+     * @param now time in seconds as of which the check is evaluated
+     * @return the result if the region fails the check, or null if it passes
+     */
+    R evaluate(RegionData region, long now);
+}
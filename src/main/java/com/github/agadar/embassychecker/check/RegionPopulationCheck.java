@@ -0,0 +1,58 @@
+package com.github.agadar.embassychecker.check;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.domain.RegionPopulation;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Checks whether a region has enough nations. Unlike the built-in checks, it is
+ * not part of a request; it is added to a query with
+ * {@link com.github.agadar.embassychecker.EmbassyCheckQuery#check}.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionPopulationCheck implements RegionCheck<RegionPopulation> {
+
+    /**
+     * The minimum number of nations a region may have.
+     */
+    public final int minNations;
+
+    /**
+     * Constructor.
+     *
+     * @param minNations the minimum number of nations
+     * @throws IllegalArgumentException if minNations <= 0
+     */
+    public RegionPopulationCheck(int minNations) throws IllegalArgumentException {
+        if (minNations <= 0) {
+            throw new IllegalArgumentException("The minimum number of nations must be greater than 0!");
+        }
+        this.minNations = minNations;
+    }
+
+    @Override
+    public String getTitle() {
+        return "Regions with fewer than " + minNations + " nations";
+    }
+
+    @Override
+    public Set<RegionShard> getRequiredShards() {
+        return Collections.unmodifiableSet(EnumSet.of(RegionShard.NUMBER_OF_NATIONS));
+    }
+
+    @Override
+    public int getCost() {
+        return CHEAP;
+    }
+
+    @Override
+    public RegionPopulation evaluate(RegionData region, long now) {
+        return region.population < minNations ? new RegionPopulation(region.name, region.population) : null;
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.agadar.embassychecker.check;
+
+import com.github.agadar.embassychecker.arena.RegionRecord;
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.domain.RegionWithTags;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks whether a region has none of the given tags.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionTagsCheck implements RegionCheck<RegionWithTags> {
+
+    /**
+     * The tags to check for, in the order given.
+     */
+    public final List<RegionTag> tags;
+
+    /**
+     * The tags as a record bitmask.
+     */
+    private final long[] tagMask;
+
+    /**
+     * Constructor.
+     *
+     * @param tags the tags to check for
+     * @throws IllegalArgumentException if tags is null or empty
+     */
+    public RegionTagsCheck(RegionTag[] tags) throws IllegalArgumentException {
+        if (tags == null || tags.length == 0) {
+            throw new IllegalArgumentException("At least one tag must be supplied!");
+        }
+        this.tags = Collections.unmodifiableList(Arrays.asList(tags.clone()));
+        this.tagMask = RegionRecord.tagMask(this.tags);
+    }
+
+    @Override
+    public String getTitle() {
+        return "Regions with one or more of the specified tags";
+    }
+
+    @Override
+    public Set<RegionShard> getRequiredShards() {
+        return Collections.unmodifiableSet(EnumSet.of(RegionShard.TAGS));
+    }
+
+    @Override
+    public int getCost() {
+        // Each of the tags is looked up in the region's tags.
+        return CHEAP + tags.size();
+    }
+
+    @Override
+    public RegionWithTags evaluate(RegionData region, long now) {
+        if (region.tags.isEmpty()) {
+            return null;
+        }
+        final List<RegionTag> foundTags = new ArrayList<>();
+
+        for (RegionTag tag : tags) {
+            if (region.tags.contains(tag)) {
+                foundTags.add(tag);
+            }
+        }
+        return foundTags.isEmpty() ? null : new RegionWithTags(region.name, foundTags);
+    }
+
+    /**
+     * Evaluates this check on the given arena record, which holds the tags
+     * shard. Only the records that have any of the tags allocate.
+     *
+     * @param record the record
+     * @param now time in seconds as of which the check is evaluated
+     * @return the result if the region fails the check, or null if it passes
+     */
+    public RegionWithTags evaluate(RegionRecord record, long now) {
+        if (!record.hasAnyTag(tagMask)) {
+            return null;
+        }
+        final List<RegionTag> foundTags = new ArrayList<>();
+
+        for (RegionTag tag : tags) {
+            if (record.hasTag(tag)) {
+                foundTags.add(tag);
+            }
+        }
+        return new RegionWithTags(record.name(), foundTags);
+    }
+}
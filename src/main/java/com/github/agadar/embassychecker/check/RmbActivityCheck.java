@@ -0,0 +1,87 @@
+package com.github.agadar.embassychecker.check;
+
+import com.github.agadar.embassychecker.arena.RegionRecord;
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.domain.RegionLastMsg;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks whether a region's message board had a new message recently enough.
+ * Regions without any messages fail the check.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RmbActivityCheck implements RegionCheck<RegionLastMsg> {
+
+    /**
+     * The maximum number of days since the last message on a region's message
+     * board before that region is considered inactive.
+     */
+    public final int maxDays;
+
+    /**
+     * The same in seconds.
+     */
+    private final long maxSeconds;
+
+    /**
+     * Constructor.
+     *
+     * @param maxDays the maximum number of days since the last message
+     * @throws IllegalArgumentException if maxDays <= 0
+     */
+    public RmbActivityCheck(int maxDays) throws IllegalArgumentException {
+        if (maxDays <= 0) {
+            throw new IllegalArgumentException("The maximum days of no RMB posts" + " must be greater than 0!");
+        }
+        this.maxDays = maxDays;
+        this.maxSeconds = TimeUnit.DAYS.toSeconds(maxDays);
+    }
+
+    @Override
+    public String getTitle() {
+        return "Regions without new RMB messages during the last " + maxDays + " days";
+    }
+
+    @Override
+    public Set<RegionShard> getRequiredShards() {
+        return Collections.unmodifiableSet(EnumSet.of(RegionShard.REGIONAL_MESSAGES));
+    }
+
+    @Override
+    public int getCost() {
+        return CHEAP;
+    }
+
+    @Override
+    public RegionLastMsg evaluate(RegionData region, long now) {
+        if (region.lastMessageTimestamp == 0) {
+            return new RegionLastMsg(region.name);
+        }
+        final long diff = now - region.lastMessageTimestamp;
+        return diff >= maxSeconds ? new RegionLastMsg(region.name, diff) : null;
+    }
+
+    /**
+     * Evaluates this check on the given arena record, which holds the
+     * regional messages shard.
+     *
+     * @param record the record
+     * @param now time in seconds as of which the check is evaluated
+     * @return the result if the region fails the check, or null if it passes
+     */
+    public RegionLastMsg evaluate(RegionRecord record, long now) {
+        final long lastMessage = record.lastMessageTimestamp();
+
+        if (lastMessage == 0) {
+            return new RegionLastMsg(record.name());
+        }
+        return now - lastMessage >= maxSeconds ? new RegionLastMsg(record.name(), now - lastMessage) : null;
+    }
+}
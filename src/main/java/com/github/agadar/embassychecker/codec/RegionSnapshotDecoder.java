@@ -0,0 +1,340 @@
+package com.github.agadar.embassychecker.codec;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streaming decoder of region snapshots written by a
+ * {@link RegionSnapshotEncoder}. Snapshots are decoded straight from a
+ * {@link ByteBuffer}, such as a mapped file, without copying it. Each region
+ * name is decoded only once.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionSnapshotDecoder {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * The shards of the encoder's shard bits, with null for shards unknown
+     * to this version.
+     */
+    private final RegionShard[] shardsByBit;
+
+    /**
+     * The tags of the encoder's tag bits, with null for tags unknown to this
+     * version.
+     */
+    private final RegionTag[] tagsByBit;
+
+    /**
+     * The bits in this stream's shard bitmask of the shards whose fields are
+     * encoded, which need to be read even if this version does not know the
+     * shard.
+     */
+    private long messagesBit;
+    private long foundedBit;
+    private long tagsBit;
+    private long embassiesBit;
+    private long populationBit;
+    private long delegateBit;
+    private long lastUpdateBit;
+
+    /**
+     * The name dictionary, by ID.
+     */
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Retrieval time of the previous snapshot.
+     */
+    private long previousRetrievedAt;
+
+    /**
+     * Whether the end of the stream was reached.
+     */
+    private boolean ended;
+
+    /**
+     * Constructor. Reads the header.
+     *
+     * @param buffer the buffer to decode, positioned at the start of the
+     * stream
+     * @throws IOException if the stream is invalid or of an unsupported
+     * version
+     */
+    public RegionSnapshotDecoder(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        try {
+            if (buffer.getInt() != RegionSnapshotEncoder.MAGIC) {
+                throw new IOException("Not a region snapshot file!");
+            }
+            final long version = getVarint();
+
+            if (version != RegionSnapshotEncoder.VERSION
+                    && version != RegionSnapshotEncoder.VERSION_WITHOUT_REGION_DETAILS) {
+                throw new IOException("Unsupported region snapshot file version!");
+            }
+
+            shardsByBit = new RegionShard[getCount()];
+
+            for (int bit = 0; bit < shardsByBit.length; bit++) {
+                final String shardName = getString();
+                shardsByBit[bit] = valueOf(RegionShard.class, shardName);
+
+                switch (shardName) {
+                    case "REGIONAL_MESSAGES":
+                        messagesBit = 1L << bit;
+                        break;
+                    case "FOUNDED":
+                        foundedBit = 1L << bit;
+                        break;
+                    case "TAGS":
+                        tagsBit = 1L << bit;
+                        break;
+                    case "EMBASSIES":
+                        embassiesBit = 1L << bit;
+                        break;
+                    case "NUMBER_OF_NATIONS":
+                        populationBit = 1L << bit;
+                        break;
+                    case "DELEGATE":
+                        delegateBit = 1L << bit;
+                        break;
+                    case "LAST_UPDATE":
+                        lastUpdateBit = 1L << bit;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            tagsByBit = new RegionTag[getCount()];
+
+            for (int bit = 0; bit < tagsByBit.length; bit++) {
+                tagsByBit[bit] = valueOf(RegionTag.class, getString());
+            }
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("The region snapshot file is truncated!", ex);
+        }
+    }
+
+    /**
+     * Maps the given file and returns a decoder for it.
+     *
+     * @param file the file to decode
+     * @return the decoder
+     * @throws IOException if the file could not be mapped, or is invalid or of
+     * an unsupported version
+     */
+    public static RegionSnapshotDecoder open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new RegionSnapshotDecoder(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Decodes the next snapshot.
+     *
+     * @return the snapshot, or null if the end of the stream was reached
+     * @throws IOException if the stream is invalid
+     */
+    public RegionData next() throws IOException {
+        try {
+            while (!ended) {
+                final byte type = buffer.get();
+
+                if (type == RegionSnapshotEncoder.END) {
+                    ended = true;
+                } else if (type == RegionSnapshotEncoder.NAME) {
+                    names.add(getString());
+                } else if (type == RegionSnapshotEncoder.SNAPSHOT) {
+                    return getSnapshot();
+                } else {
+                    throw new IOException("Invalid entry type " + type + " in region snapshot file!");
+                }
+            }
+            return null;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IOException("The region snapshot file is truncated or corrupt!", ex);
+        }
+    }
+
+    /**
+     * Decodes all remaining snapshots.
+     *
+     * @return the snapshots
+     * @throws IOException if the stream is invalid
+     */
+    public List<RegionData> readAll() throws IOException {
+        final List<RegionData> regions = new ArrayList<>();
+        RegionData region;
+
+        while ((region = next()) != null) {
+            regions.add(region);
+        }
+        return regions;
+    }
+
+    /**
+     * Decodes a snapshot entry, after its type byte.
+     *
+     * @return the snapshot
+     * @throws IOException if the embassy count exceeds the remaining bytes
+     */
+    private RegionData getSnapshot() throws IOException {
+        final String name = names.get((int) getVarint());
+        final long shardBits = getVarint();
+        final long retrievedAt = previousRetrievedAt + unzigzag(getVarint());
+        previousRetrievedAt = retrievedAt;
+
+        final Set<RegionShard> shards = EnumSet.noneOf(RegionShard.class);
+
+        for (int bit = 0; bit < shardsByBit.length; bit++) {
+            if ((shardBits & (1L << bit)) != 0 && shardsByBit[bit] != null) {
+                shards.add(shardsByBit[bit]);
+            }
+        }
+
+        long lastMessageTimestamp = 0;
+        long foundedAt = 0;
+        final Set<RegionTag> regionTags = EnumSet.noneOf(RegionTag.class);
+        final List<String> embassyNames = new ArrayList<>();
+
+        if ((shardBits & messagesBit) != 0) {
+            final long value = getVarint();
+            lastMessageTimestamp = value == 0 ? 0 : retrievedAt - unzigzag(value - 1);
+        }
+        if ((shardBits & foundedBit) != 0) {
+            final long value = getVarint();
+            foundedAt = value == 0 ? 0 : retrievedAt - unzigzag(value - 1);
+        }
+        if ((shardBits & tagsBit) != 0) {
+            final long tagsLow = getVarint();
+            final long tagsHigh = getVarint();
+
+            for (int bit = 0; bit < tagsByBit.length && bit < 128; bit++) {
+                final long word = bit < 64 ? tagsLow : tagsHigh;
+
+                if ((word & (1L << (bit % 64))) != 0 && tagsByBit[bit] != null) {
+                    regionTags.add(tagsByBit[bit]);
+                }
+            }
+        }
+        if ((shardBits & embassiesBit) != 0) {
+            final int count = getCount();
+            int embassyId = 0;
+
+            for (int i = 0; i < count; i++) {
+                embassyId += (int) unzigzag(getVarint());
+                embassyNames.add(names.get(embassyId));
+            }
+        }
+        int population = 0;
+        String delegate = null;
+        long lastUpdate = 0;
+
+        if ((shardBits & populationBit) != 0) {
+            population = (int) getVarint();
+        }
+        if ((shardBits & delegateBit) != 0) {
+            final String value = getString();
+            delegate = value.isEmpty() ? null : value;
+        }
+        if ((shardBits & lastUpdateBit) != 0) {
+            final long value = getVarint();
+            lastUpdate = value == 0 ? 0 : retrievedAt - unzigzag(value - 1);
+        }
+
+        return new RegionData(name, shards, retrievedAt, embassyNames, lastMessageTimestamp, foundedAt, regionTags,
+                population, delegate, lastUpdate);
+    }
+
+    /**
+     * Returns the constant of the given enum with the given name.
+     *
+     * @param <T> the enum type
+     * @param type the enum class
+     * @param name the constant name
+     * @return the constant, or null if the enum has no such constant
+     */
+    private static <T extends Enum<T>> T valueOf(Class<T> type, String name) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Reverses zigzag encoding.
+     *
+     * @param value the encoded value
+     * @return the decoded value
+     */
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @return the value
+     */
+    private long getVarint() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0 && shift < 64);
+        return value;
+    }
+
+    /**
+     * Reads a varint count of items that take up at least a byte each.
+     *
+     * @return the count
+     * @throws IOException if the count exceeds the remaining bytes
+     */
+    private int getCount() throws IOException {
+        final long count = getVarint();
+
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException("The region snapshot file is truncated or corrupt!");
+        }
+        return (int) count;
+    }
+
+    /**
+     * Reads a string as a varint length and UTF-8 bytes, decoding it straight
+     * from the buffer.
+     *
+     * @return the string
+     * @throws IOException if the length exceeds the remaining bytes
+     */
+    private String getString() throws IOException {
+        final int length = getCount();
+        final ByteBuffer bytes = buffer.slice();
+        bytes.limit(length);
+        buffer.position(buffer.position() + length);
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+}
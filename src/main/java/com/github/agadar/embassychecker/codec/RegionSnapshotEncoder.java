@@ -0,0 +1,324 @@
+package com.github.agadar.embassychecker.codec;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming encoder of region snapshots into the compact binary format read by
+ * {@link RegionSnapshotDecoder}.
+ * <p>
+ * The stream starts with a header: the magic number, the version, and the
+ * names of the shards and tags in the order of their bits, so that snapshots
+ * survive changes to the order of the wrapper's enums. It is followed by
+ * entries, each starting with a type byte:
+ * <ul>
+ * <li>{@link #NAME}: a new region name, as a varint length and UTF-8 bytes,
+ * which is assigned the next ID in the name dictionary;</li>
+ * <li>{@link #SNAPSHOT}: a region snapshot, as its name ID, its shard bitmask,
+ * its retrieval time as a delta to the previous snapshot's, and the fields of
+ * its shards: the last message and founding times as deltas to the retrieval
+ * time, the tag bitmask, the embassy list as deltas between name IDs, the
+ * number of nations, the delegate as a string that is empty if there is none,
+ * and the last update time as a delta to the retrieval time;</li>
+ * <li>{@link #END}: the end of the stream.</li>
+ * </ul>
+ * Integers are stored as varints, and signed ones zigzag-encoded first.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionSnapshotEncoder implements Closeable {
+
+    /**
+     * Magic number at the start of every stream: "ECRS".
+     */
+    final static int MAGIC = 0x45435253;
+
+    /**
+     * Current version of the format.
+     */
+    final static int VERSION = 2;
+
+    /**
+     * Version of the format before snapshots could hold the number of nations,
+     * the delegate and the last update. It reads the same, as its header does
+     * not name those shards.
+     */
+    final static int VERSION_WITHOUT_REGION_DETAILS = 1;
+
+    /**
+     * Marks the end of the stream.
+     */
+    final static byte END = 0;
+
+    /**
+     * Marks a new region name.
+     */
+    final static byte NAME = 1;
+
+    /**
+     * Marks a region snapshot.
+     */
+    final static byte SNAPSHOT = 2;
+
+    /**
+     * The shards a snapshot can hold, by their bit in the shard bitmask.
+     */
+    final static RegionShard[] SHARDS = {RegionShard.NAME, RegionShard.EMBASSIES,
+        RegionShard.REGIONAL_MESSAGES, RegionShard.FOUNDED, RegionShard.TAGS, RegionShard.NUMBER_OF_NATIONS,
+        RegionShard.DELEGATE, RegionShard.LAST_UPDATE};
+
+    private final OutputStream out;
+
+    /**
+     * Buffer the entries are encoded into before being written.
+     */
+    private byte[] buffer = new byte[256];
+
+    /**
+     * The number of bytes in the buffer.
+     */
+    private int length;
+
+    /**
+     * Name IDs by normalized name.
+     */
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    /**
+     * Retrieval time of the previous snapshot.
+     */
+    private long previousRetrievedAt;
+
+    /**
+     * The number of snapshots written.
+     */
+    private long count;
+
+    /**
+     * Constructor. Writes the header.
+     *
+     * @param out the stream to write to, which should be buffered
+     * @throws IOException if the header could not be written
+     */
+    public RegionSnapshotEncoder(OutputStream out) throws IOException {
+        this.out = out;
+        putInt(MAGIC);
+        putVarint(VERSION);
+        putVarint(SHARDS.length);
+
+        for (RegionShard shard : SHARDS) {
+            putString(shard.name());
+        }
+        putVarint(RegionTag.values().length);
+
+        for (RegionTag tag : RegionTag.values()) {
+            putString(tag.name());
+        }
+        flushBuffer();
+    }
+
+    /**
+     * Writes a snapshot of the given region.
+     *
+     * @param region the region
+     * @throws IOException if the snapshot could not be written
+     */
+    public void write(RegionData region) throws IOException {
+        final int nameId = idFor(region.name);
+        final int[] embassyIds = new int[region.embassies.size()];
+
+        // Names must be written before the snapshot that refers to them.
+        for (int i = 0; i < embassyIds.length; i++) {
+            embassyIds[i] = idFor(region.embassies.get(i));
+        }
+
+        int shards = 0;
+
+        for (int bit = 0; bit < SHARDS.length; bit++) {
+            if (region.shards.contains(SHARDS[bit])) {
+                shards |= 1 << bit;
+            }
+        }
+
+        buffer(1);
+        buffer[length++] = SNAPSHOT;
+        putVarint(nameId);
+        putVarint(shards);
+        putVarint(zigzag(region.retrievedAt - previousRetrievedAt));
+        previousRetrievedAt = region.retrievedAt;
+
+        if (region.shards.contains(RegionShard.REGIONAL_MESSAGES)) {
+            putVarint(region.lastMessageTimestamp == 0 ? 0
+                    : zigzag(region.retrievedAt - region.lastMessageTimestamp) + 1);
+        }
+        if (region.shards.contains(RegionShard.FOUNDED)) {
+            putVarint(region.founded == 0 ? 0 : zigzag(region.retrievedAt - region.founded) + 1);
+        }
+        if (region.shards.contains(RegionShard.TAGS)) {
+            long tagsLow = 0;
+            long tagsHigh = 0;
+
+            for (RegionTag tag : region.tags) {
+                if (tag.ordinal() < 64) {
+                    tagsLow |= 1L << tag.ordinal();
+                } else if (tag.ordinal() < 128) {
+                    tagsHigh |= 1L << (tag.ordinal() - 64);
+                }
+            }
+            putVarint(tagsLow);
+            putVarint(tagsHigh);
+        }
+        if (region.shards.contains(RegionShard.EMBASSIES)) {
+            putVarint(embassyIds.length);
+            int previousId = 0;
+
+            for (int embassyId : embassyIds) {
+                putVarint(zigzag(embassyId - previousId));
+                previousId = embassyId;
+            }
+        }
+        if (region.shards.contains(RegionShard.NUMBER_OF_NATIONS)) {
+            putVarint(region.population);
+        }
+        if (region.shards.contains(RegionShard.DELEGATE)) {
+            putString(region.delegate == null ? "" : region.delegate);
+        }
+        if (region.shards.contains(RegionShard.LAST_UPDATE)) {
+            putVarint(region.lastUpdate == 0 ? 0 : zigzag(region.retrievedAt - region.lastUpdate) + 1);
+        }
+
+        flushBuffer();
+        count++;
+    }
+
+    /**
+     * Returns the number of snapshots written.
+     *
+     * @return the number of snapshots written
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the end marker and closes the stream.
+     *
+     * @throws IOException if the stream could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        buffer(1);
+        buffer[length++] = END;
+        flushBuffer();
+        out.close();
+    }
+
+    /**
+     * Returns the ID of the given name, writing a name entry if it is new.
+     *
+     * @param name the name
+     * @return the ID
+     * @throws IOException if the name entry could not be written
+     */
+    private int idFor(String name) throws IOException {
+        final String normalized = EmbassyCheckRequest.normalizeRegionName(name);
+        final Integer existing = dictionary.get(normalized);
+
+        if (existing != null) {
+            return existing;
+        }
+        final int id = dictionary.size();
+        dictionary.put(normalized, id);
+        buffer(1);
+        buffer[length++] = NAME;
+        putString(name);
+        flushBuffer();
+        return id;
+    }
+
+    /**
+     * Zigzag-encodes the given value, so that small negative values become
+     * small varints.
+     *
+     * @param value the value
+     * @return the encoded value
+     */
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Ensures the buffer has room for the given number of bytes.
+     *
+     * @param needed the number of bytes
+     */
+    private void buffer(int needed) {
+        if (length + needed > buffer.length) {
+            final byte[] larger = new byte[Math.max(buffer.length * 2, length + needed)];
+            System.arraycopy(buffer, 0, larger, 0, length);
+            buffer = larger;
+        }
+    }
+
+    /**
+     * Appends the given value to the buffer as an unsigned varint.
+     *
+     * @param value the value
+     */
+    private void putVarint(long value) {
+        buffer(10);
+
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    /**
+     * Appends the given value to the buffer as four big-endian bytes.
+     *
+     * @param value the value
+     */
+    private void putInt(int value) {
+        buffer(4);
+        buffer[length++] = (byte) (value >>> 24);
+        buffer[length++] = (byte) (value >>> 16);
+        buffer[length++] = (byte) (value >>> 8);
+        buffer[length++] = (byte) value;
+    }
+
+    /**
+     * Appends the given string to the buffer as a varint length and UTF-8
+     * bytes.
+     *
+     * @param value the string
+     */
+    private void putString(String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarint(bytes.length);
+        buffer(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Writes the buffer to the stream and empties it.
+     *
+     * @throws IOException if the buffer could not be written
+     */
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, length);
+        length = 0;
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.agadar.embassychecker.domain;
+
+/**
+ * A result of a check on an embassy region, with the name of the main region
+ * whose embassy it is, as listed by an audit of many main regions.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ * @param <R> the type of the result
+ */
+public final class AuditRow<R extends Comparable<? super R>> implements Comparable<AuditRow<R>> {
+
+    /**
+     * Name of the main region.
+     */
+    public final String mainRegion;
+
+    /**
+     * The result of the check on the embassy region.
+     */
+    public final R result;
+
+    /**
+     * Constructor.
+     *
+     * @param mainRegion name of the main region
+     * @param result the result of the check on the embassy region
+     */
+    public AuditRow(String mainRegion, R result) {
+        this.mainRegion = mainRegion;
+        this.result = result;
+    }
+
+    @Override
+    public int compareTo(AuditRow<R> t) {
+        final int byMainRegion = mainRegion.compareTo(t.mainRegion);
+        return byMainRegion != 0 ? byMainRegion : result.compareTo(t.result);
+    }
+
+    @Override
+    public String toString() {
+        return "Main region: " + mainRegion + "; " + result;
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.agadar.embassychecker.domain;
+
+/**
+ * An estimate of the number of embassy regions that fail a criterion, with a
+ * 95% confidence interval.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class EmbassyCheckEstimate {
+
+    /**
+     * Description of the criterion.
+     */
+    public final String criterion;
+
+    /**
+     * Number of sampled regions that failed the criterion.
+     */
+    public final int sampledFailures;
+
+    /**
+     * Estimated number of embassy regions that fail the criterion.
+     */
+    public final int estimate;
+
+    /**
+     * Lower bound of the 95% confidence interval.
+     */
+    public final int lowerBound;
+
+    /**
+     * Upper bound of the 95% confidence interval.
+     */
+    public final int upperBound;
+
+    /**
+     * Constructor.
+     *
+     * @param criterion description of the criterion
+     * @param sampledFailures number of sampled regions that failed the
+     * criterion
+     * @param estimate estimated number of embassy regions that fail the
+     * criterion
+     * @param lowerBound lower bound of the 95% confidence interval
+     * @param upperBound upper bound of the 95% confidence interval
+     */
+    public EmbassyCheckEstimate(String criterion, int sampledFailures, int estimate, int lowerBound,
+            int upperBound) {
+        this.criterion = criterion;
+        this.sampledFailures = sampledFailures;
+        this.estimate = estimate;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+    }
+
+    @Override
+    public String toString() {
+        return criterion + ": about " + estimate + " regions (95% CI: " + lowerBound + " - " + upperBound
+                + "; " + sampledFailures + " in sample).";
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.agadar.embassychecker.domain;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of a dry run of an embassy check: how many requests executing it
+ * would make and what for, how many regions need none, and how long and how
+ * much memory it would take. Only the embassy list is retrieved for it.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class EmbassyCheckExplanation {
+
+    /**
+     * Name of the region whose embassy regions would be checked.
+     */
+    public final String regionName;
+
+    /**
+     * Total number of embassy regions.
+     */
+    public final int embassyRegions;
+
+    /**
+     * Number of requests the dry run made, for the embassy list.
+     */
+    public final int requestsMade;
+
+    /**
+     * Number of requests executing the check would make.
+     */
+    public final int requests;
+
+    /**
+     * Number of requests executing the check would make for each shard besides
+     * the name, in shard order.
+     */
+    public final Map<RegionShard, Integer> requestsPerShard;
+
+    /**
+     * Number of embassy regions that would be served without a request, from
+     * the cache or from an earlier preview.
+     */
+    public final int cacheHits;
+
+    /**
+     * Number of embassy regions the existence filter knows to be dead.
+     */
+    public final int knownDead;
+
+    /**
+     * Number of embassy regions whose shards the indexes answer entirely.
+     */
+    public final int answeredByIndexes;
+
+    /**
+     * Number of embassy regions that would not be checked because the request
+     * budget runs out.
+     */
+    public final int overBudget;
+
+    /**
+     * Estimated time in milliseconds executing the check would spend waiting
+     * for the rate limit, given the requests it already counted.
+     */
+    public final long rateLimitWaitMillis;
+
+    /**
+     * Estimated time in milliseconds executing the check would take.
+     */
+    public final long estimatedMillis;
+
+    /**
+     * The time budget in milliseconds, or 0 if there is none.
+     */
+    public final long timeBudgetMillis;
+
+    /**
+     * Estimated peak memory in bytes executing the check would take up.
+     */
+    public final long estimatedPeakBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param regionName name of the region whose embassy regions would be
+     * checked
+     * @param embassyRegions total number of embassy regions
+     * @param requestsMade number of requests the dry run made
+     * @param requests number of requests executing the check would make
+     * @param requestsPerShard number of requests per shard besides the name
+     * @param cacheHits number of embassy regions served without a request
+     * @param knownDead number of embassy regions known to be dead
+     * @param answeredByIndexes number of embassy regions the indexes answer
+     * @param overBudget number of embassy regions over the request budget
+     * @param rateLimitWaitMillis estimated time in milliseconds spent waiting
+     * for the rate limit
+     * @param estimatedMillis estimated time in milliseconds executing the
+     * check would take
+     * @param timeBudgetMillis the time budget in milliseconds, or 0 if there is
+     * none
+     * @param estimatedPeakBytes estimated peak memory in bytes
+     */
+    public EmbassyCheckExplanation(String regionName, int embassyRegions, int requestsMade, int requests,
+            Map<RegionShard, Integer> requestsPerShard, int cacheHits, int knownDead, int answeredByIndexes,
+            int overBudget, long rateLimitWaitMillis, long estimatedMillis, long timeBudgetMillis,
+            long estimatedPeakBytes) {
+        this.regionName = regionName;
+        this.embassyRegions = embassyRegions;
+        this.requestsMade = requestsMade;
+        this.requests = requests;
+        final Map<RegionShard, Integer> inShardOrder = new EnumMap<>(RegionShard.class);
+        inShardOrder.putAll(requestsPerShard);
+        this.requestsPerShard = Collections.unmodifiableMap(inShardOrder);
+        this.cacheHits = cacheHits;
+        this.knownDead = knownDead;
+        this.answeredByIndexes = answeredByIndexes;
+        this.overBudget = overBudget;
+        this.rateLimitWaitMillis = rateLimitWaitMillis;
+        this.estimatedMillis = estimatedMillis;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.estimatedPeakBytes = estimatedPeakBytes;
+    }
+
+    /**
+     * Returns whether the time budget is expected to run out before the check
+     * completes.
+     *
+     * @return whether the time budget runs out
+     */
+    public boolean exceedsTimeBudget() {
+        return timeBudgetMillis > 0 && estimatedMillis > timeBudgetMillis;
+    }
+
+    @Override
+    public String toString() {
+        final String newLine = System.lineSeparator();
+        final StringBuilder explanation = new StringBuilder("-------Dry run for the ").append(embassyRegions)
+                .append(" embassy regions of ").append(regionName).append("-------").append(newLine);
+        explanation.append("Requests to make: ").append(requests);
+
+        if (!requestsPerShard.isEmpty()) {
+            final StringBuilder perShard = new StringBuilder();
+            requestsPerShard.forEach((shard, count) -> perShard.append(perShard.length() > 0 ? ", " : "")
+                    .append(shard).append(": ").append(count));
+            explanation.append(" (").append(perShard).append(')');
+        }
+        explanation.append('.').append(newLine);
+        explanation.append("Served from the cache: ").append(cacheHits).append("; known dead: ").append(knownDead)
+                .append("; answered by the indexes: ").append(answeredByIndexes).append('.').append(newLine);
+
+        if (overBudget > 0) {
+            explanation.append("Not checked as the request budget runs out: ").append(overBudget).append('.')
+                    .append(newLine);
+        }
+        explanation.append("Estimated time: ").append(describeMillis(estimatedMillis)).append(", of which ")
+                .append(describeMillis(rateLimitWaitMillis)).append(" waiting for the rate limit.").append(newLine);
+
+        if (exceedsTimeBudget()) {
+            explanation.append("The time budget of ").append(describeMillis(timeBudgetMillis))
+                    .append(" runs out first.").append(newLine);
+        }
+        explanation.append("Estimated peak memory: ").append(estimatedPeakBytes / 1024).append(" KB.")
+                .append(newLine);
+        if (requestsMade > 0) {
+            explanation.append("The dry run made ").append(requestsMade).append(" request(s) for the embassy list.")
+                    .append(newLine);
+        }
+        return explanation.toString();
+    }
+
+    /**
+     * Describes the given duration in seconds, or in whole minutes once it
+     * takes a few.
+     *
+     * @param millis the duration in milliseconds
+     * @return the description
+     */
+    private static String describeMillis(long millis) {
+        final long seconds = TimeUnit.MILLISECONDS.toSeconds(millis + 500);
+        return seconds < 120 ? seconds + " seconds" : (seconds + 30) / 60 + " minutes";
+    }
+}
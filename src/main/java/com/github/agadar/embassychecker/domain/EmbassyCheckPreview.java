@@ -0,0 +1,58 @@
+package com.github.agadar.embassychecker.domain;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a sampling-based preview of an embassy check: estimated counts
+ * per criterion, based on a random sample of the embassy regions.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class EmbassyCheckPreview {
+
+    /**
+     * Name of the region whose embassy regions were sampled.
+     */
+    public final String regionName;
+
+    /**
+     * Total number of embassy regions.
+     */
+    public final int embassyRegions;
+
+    /**
+     * Number of embassy regions in the sample.
+     */
+    public final int sampledRegions;
+
+    /**
+     * The estimates, one per selected criterion.
+     */
+    public final List<EmbassyCheckEstimate> estimates;
+
+    /**
+     * Constructor.
+     *
+     * @param regionName name of the region whose embassy regions were sampled
+     * @param embassyRegions total number of embassy regions
+     * @param sampledRegions number of embassy regions in the sample
+     * @param estimates the estimates, one per selected criterion
+     */
+    public EmbassyCheckPreview(String regionName, int embassyRegions, int sampledRegions,
+            List<EmbassyCheckEstimate> estimates) {
+        this.regionName = regionName;
+        this.embassyRegions = embassyRegions;
+        this.sampledRegions = sampledRegions;
+        this.estimates = Collections.unmodifiableList(estimates);
+    }
+
+    @Override
+    public String toString() {
+        final String newLine = System.lineSeparator();
+        final StringBuilder preview = new StringBuilder("-------Preview based on ").append(sampledRegions)
+                .append(" of ").append(embassyRegions).append(" embassy regions-------").append(newLine);
+        estimates.forEach(estimate -> preview.append(estimate).append(newLine));
+        return preview.toString();
+    }
+}
@@ -0,0 +1,295 @@
+package com.github.agadar.embassychecker.domain;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+
+/**
+ * The structured result of an embassy check. Lists are null for checks that
+ * were not selected, and are sorted by their elements' natural ordering.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class EmbassyCheckReport {
+
+    /**
+     * Name of the region whose embassy regions were checked.
+     */
+    public final String regionName;
+
+    /**
+     * Time in seconds at which this report was generated.
+     */
+    public final long generatedAt;
+
+    /**
+     * The maximum number of days since the last RMB message that was checked
+     * for, or 0 if the RMB activity check was not selected.
+     */
+    public final int maxDaysSinceLastRmbMsg;
+
+    /**
+     * The minimum number of days since founding that was checked for, or 0 if
+     * the region age check was not selected.
+     */
+    public final int minDaysSinceFounded;
+
+    /**
+     * Regions whose message boards were inactive, or null if not checked.
+     */
+    public final List<RegionLastMsg> inactiveRegions;
+
+    /**
+     * Regions that were founded too recently, or null if not checked.
+     */
+    public final List<RegionFounded> youngRegions;
+
+    /**
+     * Regions that have one or more of the specified tags, or null if not
+     * checked.
+     */
+    public final List<RegionWithTags> taggedRegions;
+
+    /**
+     * The results of the checks other than the built-in ones, by the title of
+     * the check, in the order the checks were evaluated. Empty if there are
+     * none.
+     */
+    public final Map<String, List<?>> otherResults;
+
+    /**
+     * Regions that were not checked because the query's budget ran out, sorted.
+     * Empty if the report is complete.
+     */
+    public final List<String> uncheckedRegions;
+
+    /**
+     * Constructor.
+     *
+     * @param regionName name of the region whose embassy regions were checked
+     * @param generatedAt time in seconds at which this report was generated
+     * @param maxDaysSinceLastRmbMsg the maximum number of days since the last
+     * RMB message, or 0 if not checked
+     * @param minDaysSinceFounded the minimum number of days since founding, or
+     * 0 if not checked
+     * @param inactiveRegions regions with inactive message boards, or null
+     * @param youngRegions regions founded too recently, or null
+     * @param taggedRegions regions with one or more of the tags, or null
+     * @param uncheckedRegions regions that were not checked, sorted
+     */
+    public EmbassyCheckReport(String regionName, long generatedAt, int maxDaysSinceLastRmbMsg,
+            int minDaysSinceFounded, List<RegionLastMsg> inactiveRegions,
+            List<RegionFounded> youngRegions, List<RegionWithTags> taggedRegions,
+            List<String> uncheckedRegions) {
+        this(regionName, generatedAt, maxDaysSinceLastRmbMsg, minDaysSinceFounded, inactiveRegions,
+                youngRegions, taggedRegions, Collections.emptyMap(), uncheckedRegions);
+    }
+
+    /**
+     * Constructor, with the results of checks other than the built-in ones.
+     *
+     * @param regionName name of the region whose embassy regions were checked
+     * @param generatedAt time in seconds at which this report was generated
+     * @param maxDaysSinceLastRmbMsg the maximum number of days since the last
+     * RMB message, or 0 if not checked
+     * @param minDaysSinceFounded the minimum number of days since founding, or
+     * 0 if not checked
+     * @param inactiveRegions regions with inactive message boards, or null
+     * @param youngRegions regions founded too recently, or null
+     * @param taggedRegions regions with one or more of the tags, or null
+     * @param otherResults the results of the other checks by title, sorted
+     * @param uncheckedRegions regions that were not checked, sorted
+     */
+    public EmbassyCheckReport(String regionName, long generatedAt, int maxDaysSinceLastRmbMsg,
+            int minDaysSinceFounded, List<RegionLastMsg> inactiveRegions,
+            List<RegionFounded> youngRegions, List<RegionWithTags> taggedRegions,
+            Map<String, List<?>> otherResults, List<String> uncheckedRegions) {
+        this.regionName = regionName;
+        this.generatedAt = generatedAt;
+        this.maxDaysSinceLastRmbMsg = maxDaysSinceLastRmbMsg;
+        this.minDaysSinceFounded = minDaysSinceFounded;
+        this.inactiveRegions = inactiveRegions == null ? null : Collections.unmodifiableList(inactiveRegions);
+        this.youngRegions = youngRegions == null ? null : Collections.unmodifiableList(youngRegions);
+        this.taggedRegions = taggedRegions == null ? null : Collections.unmodifiableList(taggedRegions);
+        this.otherResults = Collections.unmodifiableMap(new LinkedHashMap<>(otherResults));
+        this.uncheckedRegions = Collections.unmodifiableList(uncheckedRegions);
+    }
+
+    /**
+     * Returns whether all of the embassy regions were checked.
+     *
+     * @return whether this report is complete
+     */
+    public boolean isComplete() {
+        return uncheckedRegions.isEmpty();
+    }
+
+    /**
+     * Returns this report as a JSON object.
+     *
+     * @return this report as a JSON object
+     */
+    public String toJson() {
+        final StringBuilder json = new StringBuilder("{\"region\":");
+        appendJsonString(json, regionName);
+        json.append(",\"generatedAt\":").append(generatedAt);
+
+        if (inactiveRegions != null) {
+            json.append(",\"rmbActivity\":{\"maxDays\":").append(maxDaysSinceLastRmbMsg).append(",\"regions\":[");
+            for (int i = 0; i < inactiveRegions.size(); i++) {
+                final RegionLastMsg rlm = inactiveRegions.get(i);
+                json.append(i == 0 ? "{\"region\":" : ",{\"region\":");
+                appendJsonString(json, rlm.region);
+                json.append(",\"daysSinceLastMsg\":")
+                        .append(rlm.diffInDays == Integer.MAX_VALUE ? "null" : Integer.toString(rlm.diffInDays))
+                        .append('}');
+            }
+            json.append("]}");
+        }
+
+        if (youngRegions != null) {
+            json.append(",\"regionAge\":{\"minDays\":").append(minDaysSinceFounded).append(",\"regions\":[");
+            for (int i = 0; i < youngRegions.size(); i++) {
+                final RegionFounded rf = youngRegions.get(i);
+                json.append(i == 0 ? "{\"region\":" : ",{\"region\":");
+                appendJsonString(json, rf.region);
+                json.append(",\"daysSinceFounded\":").append(rf.diffInDays).append('}');
+            }
+            json.append("]}");
+        }
+
+        if (taggedRegions != null) {
+            json.append(",\"regionTags\":{\"regions\":[");
+            for (int i = 0; i < taggedRegions.size(); i++) {
+                final RegionWithTags rwt = taggedRegions.get(i);
+                json.append(i == 0 ? "{\"region\":" : ",{\"region\":");
+                appendJsonString(json, rwt.region);
+                json.append(",\"tags\":[");
+                boolean first = true;
+                for (RegionTag tag : rwt.tags) {
+                    if (!first) {
+                        json.append(',');
+                    }
+                    appendJsonString(json, tag.toString());
+                    first = false;
+                }
+                json.append("]}");
+            }
+            json.append("]}");
+        }
+
+        if (!otherResults.isEmpty()) {
+            json.append(",\"otherChecks\":[");
+            boolean firstCheck = true;
+            for (Map.Entry<String, List<?>> entry : otherResults.entrySet()) {
+                json.append(firstCheck ? "{\"title\":" : ",{\"title\":");
+                appendJsonString(json, entry.getKey());
+                json.append(",\"results\":[");
+                for (int i = 0; i < entry.getValue().size(); i++) {
+                    if (i > 0) {
+                        json.append(',');
+                    }
+                    appendJsonString(json, entry.getValue().get(i).toString());
+                }
+                json.append("]}");
+                firstCheck = false;
+            }
+            json.append(']');
+        }
+
+        json.append(",\"unchecked\":[");
+        for (int i = 0; i < uncheckedRegions.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendJsonString(json, uncheckedRegions.get(i));
+        }
+        return json.append("]}").toString();
+    }
+
+    @Override
+    public String toString() {
+        final String newLine = System.lineSeparator();
+        final StringBuilder report = new StringBuilder();
+
+        if (inactiveRegions != null) {
+            report.append("-------Regions without new RMB messages during the last ")
+                    .append(maxDaysSinceLastRmbMsg).append(" days-------").append(newLine);
+            report.append("Total regions found: ").append(inactiveRegions.size()).append('.').append(newLine);
+            inactiveRegions.forEach(rlm -> report.append(rlm).append(newLine));
+            report.append(newLine);
+        }
+
+        if (youngRegions != null) {
+            report.append("-------Regions that were founded less than ")
+                    .append(minDaysSinceFounded).append(" days ago-------").append(newLine);
+            report.append("Total regions found: ").append(youngRegions.size()).append('.').append(newLine);
+            youngRegions.forEach(rf -> report.append(rf).append(newLine));
+            report.append(newLine);
+        }
+
+        if (taggedRegions != null) {
+            report.append("-------Regions with one or more of the specified tags-------").append(newLine);
+            report.append("Total regions found: ").append(taggedRegions.size()).append('.').append(newLine);
+            taggedRegions.forEach(rwt -> report.append(rwt).append(newLine));
+            report.append(newLine);
+        }
+
+        otherResults.forEach((title, results) -> {
+            report.append("-------").append(title).append("-------").append(newLine);
+            report.append("Total regions found: ").append(results.size()).append('.').append(newLine);
+            results.forEach(result -> report.append(result).append(newLine));
+            report.append(newLine);
+        });
+
+        if (!uncheckedRegions.isEmpty()) {
+            report.append("-------Regions that were not checked before the budget ran out-------").append(newLine);
+            report.append("Total regions not checked: ").append(uncheckedRegions.size()).append('.').append(newLine);
+            uncheckedRegions.forEach(region -> report.append(region).append(newLine));
+            report.append(newLine);
+        }
+
+        return report.toString();
+    }
+
+    /**
+     * Appends the given value to the given builder as a quoted, escaped JSON
+     * string.
+     *
+     * @param json the builder to append to
+     * @param value the value to append
+     */
+    public static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
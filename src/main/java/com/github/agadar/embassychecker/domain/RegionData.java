@@ -0,0 +1,196 @@
+package com.github.agadar.embassychecker.domain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.github.agadar.nationstates.domain.region.Region;
+import com.github.agadar.nationstates.enumerator.EmbassyStatus;
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+/**
+ * The facts about a region that the embassy checks need, extracted from a
+ * retrieved region. Only the fields belonging to the retrieved shards are
+ * meaningful.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionData {
+
+    /**
+     * Name of the region.
+     */
+    public final String name;
+
+    /**
+     * The shards that were retrieved.
+     */
+    public final Set<RegionShard> shards;
+
+    /**
+     * Time in seconds at which the region was retrieved.
+     */
+    public final long retrievedAt;
+
+    /**
+     * Names of the regions this region has established or pending embassies
+     * with.
+     */
+    public final List<String> embassies;
+
+    /**
+     * Time in seconds at which the last message was posted on the region's
+     * message board, or 0 if there are no messages.
+     */
+    public final long lastMessageTimestamp;
+
+    /**
+     * Time in seconds at which the region was founded, or 0 if unknown.
+     */
+    public final long founded;
+
+    /**
+     * The region's tags.
+     */
+    public final Set<RegionTag> tags;
+
+    /**
+     * The number of nations in the region.
+     */
+    public final int population;
+
+    /**
+     * Name of the region's World Assembly delegate, or null if it has none.
+     */
+    public final String delegate;
+
+    /**
+     * Time in seconds at which the region last updated, or 0 if unknown.
+     */
+    public final long lastUpdate;
+
+    /**
+     * Constructor, for a region without the population, delegate and last
+     * update shards.
+     *
+     * @param name name of the region
+     * @param shards the shards that were retrieved
+     * @param retrievedAt time in seconds at which the region was retrieved
+     * @param embassies names of the regions this region has established or
+     * pending embassies with
+     * @param lastMessageTimestamp time in seconds of the last RMB message, or 0
+     * @param founded time in seconds at which the region was founded, or 0
+     * @param tags the region's tags
+     */
+    public RegionData(String name, Collection<RegionShard> shards, long retrievedAt,
+            Collection<String> embassies, long lastMessageTimestamp, long founded,
+            Collection<RegionTag> tags) {
+        this(name, shards, retrievedAt, embassies, lastMessageTimestamp, founded, tags, 0, null, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name name of the region
+     * @param shards the shards that were retrieved
+     * @param retrievedAt time in seconds at which the region was retrieved
+     * @param embassies names of the regions this region has established or
+     * pending embassies with
+     * @param lastMessageTimestamp time in seconds of the last RMB message, or 0
+     * @param founded time in seconds at which the region was founded, or 0
+     * @param tags the region's tags
+     * @param population the number of nations in the region
+     * @param delegate name of the region's delegate, or null
+     * @param lastUpdate time in seconds at which the region last updated, or 0
+     */
+    public RegionData(String name, Collection<RegionShard> shards, long retrievedAt,
+            Collection<String> embassies, long lastMessageTimestamp, long founded,
+            Collection<RegionTag> tags, int population, String delegate, long lastUpdate) {
+        this.name = name;
+        this.shards = Collections.unmodifiableSet(shards.isEmpty()
+                ? EnumSet.noneOf(RegionShard.class) : EnumSet.copyOf(shards));
+        this.retrievedAt = retrievedAt;
+        this.embassies = Collections.unmodifiableList(new ArrayList<>(embassies));
+        this.lastMessageTimestamp = lastMessageTimestamp;
+        this.founded = founded;
+        this.tags = Collections.unmodifiableSet(tags.isEmpty()
+                ? EnumSet.noneOf(RegionTag.class) : EnumSet.copyOf(tags));
+        this.population = population;
+        this.delegate = delegate;
+        this.lastUpdate = lastUpdate;
+    }
+
+    /**
+     * Extracts the facts from the given retrieved region.
+     *
+     * @param region the retrieved region
+     * @param shards the shards that were retrieved
+     * @param retrievedAt time in seconds at which the region was retrieved
+     * @return the extracted facts
+     */
+    public static RegionData fromRegion(Region region, Collection<RegionShard> shards, long retrievedAt) {
+        return fromRegion(region, region.getName(), shards, retrievedAt);
+    }
+
+    /**
+     * Extracts the facts from the given retrieved region, using the given name
+     * if the region has none, such as when its name was not requested.
+     *
+     * @param region the retrieved region
+     * @param regionName the name to use if the region has none
+     * @param shards the shards that were retrieved
+     * @param retrievedAt time in seconds at which the region was retrieved
+     * @return the extracted facts
+     */
+    public static RegionData fromRegion(Region region, String regionName, Collection<RegionShard> shards,
+            long retrievedAt) {
+        final List<String> embassies = new ArrayList<>();
+
+        // We only care about embassies that are established or pending.
+        if (region.getEmbassies() != null) {
+            region.getEmbassies().forEach(embassy -> {
+                if (embassy.getStatus() == EmbassyStatus.ESTABLISHED || embassy.getStatus() == EmbassyStatus.PENDING) {
+                    embassies.add(embassy.getRegionName());
+                }
+            });
+        }
+
+        // The last message in the list is the most recent one.
+        long lastMessageTimestamp = 0;
+
+        if (region.getRegionalMessages() != null && !region.getRegionalMessages().isEmpty()) {
+            lastMessageTimestamp = region.getRegionalMessages().get(region.getRegionalMessages().size() - 1).getTimestamp();
+        }
+
+        final Set<RegionTag> tags = EnumSet.noneOf(RegionTag.class);
+
+        if (region.getTags() != null) {
+            region.getTags().forEach(tags::add);
+        }
+
+        final String name = region.getName() == null || region.getName().isEmpty() ? regionName : region.getName();
+        return new RegionData(name, shards, retrievedAt, embassies, lastMessageTimestamp,
+                region.getFounded(), tags, region.getNumberOfNations(), delegateOf(region.getDelegate()),
+                region.getLastUpdate());
+    }
+
+    /**
+     * Returns the given delegate name as held by this class: the API reports a
+     * region without a delegate as having delegate "0".
+     *
+     * @param delegate the delegate name as reported by the API
+     * @return the delegate name, or null if the region has no delegate
+     */
+    public static String delegateOf(String delegate) {
+        return delegate == null || delegate.isEmpty() || delegate.equals("0") ? null : delegate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Region: %s; Shards: %s; Retrieved at: %s.", name, shards, retrievedAt);
+    }
+}
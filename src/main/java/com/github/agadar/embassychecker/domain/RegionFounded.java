@@ -58,7 +58,7 @@ public final class RegionFounded implements Comparable<RegionFounded> {
 
     @Override
     public String toString() {
-        return String.format("Region: %s; Founded: %s days ago.", region, diffInDays);
+        return "Region: " + region + "; Founded: " + diffInDays + " days ago.";
     }
 
 }
@@ -69,15 +69,10 @@ public final class RegionLastMsg implements Comparable<RegionLastMsg> {
 
     @Override
     public String toString() {
-        String help = String.format("Region: %s; Last RMB msg: ", region);
-
         if (diffInDays != Integer.MAX_VALUE) {
-            help += String.format("%s days ago.", diffInDays);
-        } else {
-            help += "Never.";
+            return "Region: " + region + "; Last RMB msg: " + diffInDays + " days ago.";
         }
-
-        return help;
+        return "Region: " + region + "; Last RMB msg: Never.";
     }
 
 }
@@ -0,0 +1,49 @@
+package com.github.agadar.embassychecker.domain;
+
+/**
+ * A region name with the number of nations in the region.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionPopulation implements Comparable<RegionPopulation> {
+
+    /**
+     * Name of the region.
+     */
+    public final String region;
+
+    /**
+     * The number of nations in the region.
+     */
+    public final int nations;
+
+    /**
+     * Constructor.
+     *
+     * @param region name of the region
+     * @param nations the number of nations in the region
+     */
+    public RegionPopulation(String region, int nations) {
+        this.region = region;
+        this.nations = nations;
+    }
+
+    @Override
+    public int compareTo(RegionPopulation t) {
+        if (nations > t.nations) {
+            return 1;
+        }
+
+        if (nations < t.nations) {
+            return -1;
+        }
+
+        return region.compareTo(t.region);
+    }
+
+    @Override
+    public String toString() {
+        return "Region: " + region + "; Nations: " + nations + ".";
+    }
+
+}
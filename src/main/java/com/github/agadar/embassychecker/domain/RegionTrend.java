@@ -0,0 +1,76 @@
+package com.github.agadar.embassychecker.domain;
+
+/**
+ * A region name with how often new messages were seen on the region's message
+ * board in the earlier and later halves of a period, as recorded in the
+ * region history.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionTrend implements Comparable<RegionTrend> {
+
+    /**
+     * Name of the region.
+     */
+    public final String region;
+
+    /**
+     * The number of snapshots in the earlier half of the period that showed a
+     * new message.
+     */
+    public final int earlierActiveSnapshots;
+
+    /**
+     * The number of snapshots in the later half of the period that showed a
+     * new message.
+     */
+    public final int laterActiveSnapshots;
+
+    /**
+     * Time difference in days between the last message and the last snapshot,
+     * or Integer.MAX_VALUE if not a single message was ever posted.
+     */
+    public final int daysSinceLastMsg;
+
+    /**
+     * Constructor.
+     *
+     * @param region name of the region
+     * @param earlierActiveSnapshots the number of snapshots in the earlier half
+     * that showed a new message
+     * @param laterActiveSnapshots the number of snapshots in the later half
+     * that showed a new message
+     * @param daysSinceLastMsg days between the last message and the last
+     * snapshot, or Integer.MAX_VALUE
+     */
+    public RegionTrend(String region, int earlierActiveSnapshots, int laterActiveSnapshots, int daysSinceLastMsg) {
+        this.region = region;
+        this.earlierActiveSnapshots = earlierActiveSnapshots;
+        this.laterActiveSnapshots = laterActiveSnapshots;
+        this.daysSinceLastMsg = daysSinceLastMsg;
+    }
+
+    /**
+     * Returns how much the activity dropped from the earlier to the later half.
+     *
+     * @return the drop in active snapshots
+     */
+    public int getDrop() {
+        return earlierActiveSnapshots - laterActiveSnapshots;
+    }
+
+    @Override
+    public int compareTo(RegionTrend t) {
+        if (getDrop() != t.getDrop()) {
+            return getDrop() > t.getDrop() ? -1 : 1;
+        }
+        return region.compareTo(t.region);
+    }
+
+    @Override
+    public String toString() {
+        return "Region: " + region + "; New RMB msgs in " + laterActiveSnapshots + " snapshots, down from "
+                + earlierActiveSnapshots + "; Last RMB msg: "
+                + (daysSinceLastMsg == Integer.MAX_VALUE ? "Never." : daysSinceLastMsg + " days ago.");
+    }
+}
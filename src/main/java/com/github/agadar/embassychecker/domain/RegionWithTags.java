@@ -42,6 +42,6 @@ public final class RegionWithTags implements Comparable<RegionWithTags> {
     @Override
     public String toString() {
         String tagsText = tags.stream().map(tag -> tag.toString()).collect(Collectors.joining(", "));
-        return String.format("Region: %s; Tags: %s.", region, tagsText);
+        return "Region: " + region + "; Tags: " + tagsText + ".";
     }
 }
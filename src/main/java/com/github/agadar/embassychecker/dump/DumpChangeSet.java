@@ -0,0 +1,127 @@
+package com.github.agadar.embassychecker.dump;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes between two regions dumps, as found by a {@link DumpDigest}:
+ * the regions that were founded, that ceased to exist, and whose embassies or
+ * tags changed. Regions that did not change are only counted.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class DumpChangeSet {
+
+    /**
+     * Time in seconds at which the previous dump was made, or 0 if there was
+     * none, in which case every region counts as new.
+     */
+    public final long previousDumpedAt;
+
+    /**
+     * Time in seconds at which the current dump was made.
+     */
+    public final long dumpedAt;
+
+    /**
+     * The regions that are new in the current dump, as read from it.
+     */
+    public final List<RegionData> added;
+
+    /**
+     * The names of the regions that are no longer in the current dump.
+     */
+    public final List<String> deleted;
+
+    /**
+     * The regions whose embassies or tags changed.
+     */
+    public final List<RegionChange> changed;
+
+    /**
+     * The number of regions that did not change.
+     */
+    public final int unchanged;
+
+    /**
+     * A region whose embassies or tags changed.
+     */
+    public static final class RegionChange {
+
+        /**
+         * The region, as read from the current dump.
+         */
+        public final RegionData region;
+
+        /**
+         * The embassies the region has in the current dump but did not have in
+         * the previous one.
+         */
+        public final List<String> embassiesAdded;
+
+        /**
+         * The embassies the region had in the previous dump but no longer has
+         * in the current one.
+         */
+        public final List<String> embassiesRemoved;
+
+        /**
+         * Constructor.
+         *
+         * @param region the region, as read from the current dump
+         * @param embassiesAdded the embassies the region gained
+         * @param embassiesRemoved the embassies the region lost
+         */
+        RegionChange(RegionData region, List<String> embassiesAdded, List<String> embassiesRemoved) {
+            this.region = region;
+            this.embassiesAdded = Collections.unmodifiableList(embassiesAdded);
+            this.embassiesRemoved = Collections.unmodifiableList(embassiesRemoved);
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param previousDumpedAt time in seconds at which the previous dump was
+     * made, or 0 if there was none
+     * @param dumpedAt time in seconds at which the current dump was made
+     * @param added the regions that are new
+     * @param deleted the names of the regions that ceased to exist
+     * @param changed the regions whose embassies or tags changed
+     * @param unchanged the number of regions that did not change
+     */
+    DumpChangeSet(long previousDumpedAt, long dumpedAt, List<RegionData> added, List<String> deleted,
+            List<RegionChange> changed, int unchanged) {
+        this.previousDumpedAt = previousDumpedAt;
+        this.dumpedAt = dumpedAt;
+        this.added = Collections.unmodifiableList(added);
+        this.deleted = Collections.unmodifiableList(deleted);
+        this.changed = Collections.unmodifiableList(changed);
+        this.unchanged = unchanged;
+    }
+
+    /**
+     * Returns the number of regions that were added, deleted or changed.
+     *
+     * @return the number of changes
+     */
+    public int size() {
+        return added.size() + deleted.size() + changed.size();
+    }
+
+    @Override
+    public String toString() {
+        int embassiesAdded = 0;
+        int embassiesRemoved = 0;
+
+        for (RegionChange change : changed) {
+            embassiesAdded += change.embassiesAdded.size();
+            embassiesRemoved += change.embassiesRemoved.size();
+        }
+        return added.size() + " regions new, " + deleted.size() + " deleted, " + changed.size() + " changed ("
+                + embassiesAdded + " embassies added, " + embassiesRemoved + " removed), " + unchanged
+                + " unchanged";
+    }
+}
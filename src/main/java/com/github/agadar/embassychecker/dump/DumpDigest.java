@@ -0,0 +1,329 @@
+package com.github.agadar.embassychecker.dump;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Digest of the last regions dump read: a content hash of every region's
+ * embassies and tags, and its embassy list. Comparing a new dump to the digest
+ * yields a {@link DumpChangeSet}, from which caches, indexes and the region
+ * history can be updated without reloading every region. The digest is kept
+ * in a file between runs.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class DumpDigest {
+
+    /**
+     * Magic number at the start of the digest file: "ECDD".
+     */
+    private final static int MAGIC = 0x45434444;
+
+    /**
+     * Current version of the digest file.
+     */
+    private final static int VERSION = 1;
+
+    /**
+     * The offset basis of the 64-bit FNV-1a hash.
+     */
+    private final static long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * The prime of the 64-bit FNV-1a hash.
+     */
+    private final static long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * The file the digest is kept in.
+     */
+    private final Path file;
+
+    /**
+     * The regions of the last dump read, by normalized name.
+     */
+    private Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Time in seconds at which the last dump read was made, or 0 if none was.
+     */
+    private long dumpedAt;
+
+    /**
+     * A region of the last dump read.
+     */
+    private static final class Entry {
+
+        /**
+         * The name of the region.
+         */
+        final String name;
+
+        /**
+         * The content hash of the region's embassies and tags.
+         */
+        final long hash;
+
+        /**
+         * The region's embassies, sorted.
+         */
+        final String[] embassies;
+
+        /**
+         * Constructor.
+         *
+         * @param name the name of the region
+         * @param hash the content hash of the region's embassies and tags
+         * @param embassies the region's embassies, sorted
+         */
+        Entry(String name, long hash, String[] embassies) {
+            this.name = name;
+            this.hash = hash;
+            this.embassies = embassies;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file the file to keep the digest in
+     */
+    public DumpDigest(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the default digest file in the user's home directory.
+     *
+     * @return the default digest file
+     */
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".nationstates-embassychecker", "dump-digest.dat");
+    }
+
+    /**
+     * Returns the time in seconds at which the last dump read was made.
+     *
+     * @return the time, or 0 if no dump was read
+     */
+    public synchronized long getDumpedAt() {
+        return dumpedAt;
+    }
+
+    /**
+     * Returns the number of regions in the last dump read.
+     *
+     * @return the number of regions
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Reads the given dump file with the given pipeline, compares it to the
+     * last dump read, and makes it the last dump read. If no dump was read
+     * before, every region counts as new.
+     *
+     * @param dumpFile the dump file
+     * @param pipeline the pipeline to read the dump with
+     * @return the changes since the last dump read
+     * @throws IOException if the dump could not be read or is invalid
+     */
+    public synchronized DumpChangeSet update(Path dumpFile, DumpPipeline pipeline) throws IOException {
+        final Map<String, Entry> previous = entries;
+        final Map<String, Entry> current = new HashMap<>(Math.max(16, previous.size() * 4 / 3 + 1));
+        final List<RegionData> added = new ArrayList<>();
+        final List<DumpChangeSet.RegionChange> changed = new ArrayList<>();
+        final int[] unchanged = new int[1];
+        final long[] currentDumpedAt = new long[1];
+
+        pipeline.run(dumpFile, region -> {
+            final String key = EmbassyCheckRequest.normalizeRegionName(region.name);
+            final String[] embassies = region.embassies.toArray(new String[0]);
+            Arrays.sort(embassies);
+            final long hash = hashOf(region, embassies);
+            final Entry old = previous.get(key);
+            currentDumpedAt[0] = region.retrievedAt;
+
+            if (old == null) {
+                added.add(region);
+                current.put(key, new Entry(region.name, hash, embassies));
+            } else if (old.hash != hash) {
+                changed.add(compare(region, old.embassies, embassies));
+                current.put(key, new Entry(region.name, hash, embassies));
+            } else {
+                unchanged[0]++;
+                current.put(key, old);
+            }
+        });
+
+        // The regions of the previous dump that are not in the current one were deleted.
+        final List<String> deleted = new ArrayList<>();
+
+        for (Map.Entry<String, Entry> entry : previous.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                deleted.add(entry.getValue().name);
+            }
+        }
+        final DumpChangeSet changes = new DumpChangeSet(dumpedAt, currentDumpedAt[0], added, deleted, changed,
+                unchanged[0]);
+        entries = current;
+        dumpedAt = currentDumpedAt[0];
+        return changes;
+    }
+
+    /**
+     * Compares the given region's embassies to the ones it had before.
+     *
+     * @param region the region, as read from the current dump
+     * @param before the embassies it had before, sorted
+     * @param after the embassies it has now, sorted
+     * @return the change
+     */
+    private static DumpChangeSet.RegionChange compare(RegionData region, String[] before, String[] after) {
+        final List<String> embassiesAdded = new ArrayList<>();
+        final List<String> embassiesRemoved = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+
+        // Merge the sorted lists.
+        while (i < before.length || j < after.length) {
+            final int order = i == before.length ? 1 : j == after.length ? -1 : before[i].compareTo(after[j]);
+
+            if (order < 0) {
+                embassiesRemoved.add(before[i++]);
+            } else if (order > 0) {
+                embassiesAdded.add(after[j++]);
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return new DumpChangeSet.RegionChange(region, embassiesAdded, embassiesRemoved);
+    }
+
+    /**
+     * Computes the content hash of the given region's embassies and tags.
+     *
+     * @param region the region
+     * @param embassies the region's embassies, sorted
+     * @return the content hash
+     */
+    private static long hashOf(RegionData region, String[] embassies) {
+        long hash = FNV_OFFSET;
+
+        for (String embassy : embassies) {
+            hash = hash(hash, embassy);
+        }
+        hash = hash(hash, region.shards.contains(RegionShard.TAGS) ? "#tags" : "#notags");
+
+        for (RegionTag tag : region.tags) {
+            hash = hash(hash, tag.name());
+        }
+        return hash;
+    }
+
+    /**
+     * Adds the given string, followed by a separator, to the given hash.
+     *
+     * @param hash the hash so far
+     * @param value the string
+     * @return the hash
+     */
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ 0xFFFF) * FNV_PRIME;
+    }
+
+    /**
+     * Loads the digest file, if it exists, replacing this digest.
+     *
+     * @throws IOException if the digest file could not be read
+     */
+    public void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                // Written by an incompatible version; start over.
+                return;
+            }
+            final long loadedDumpedAt = in.readLong();
+            final int count = in.readInt();
+            final Map<String, Entry> loaded = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+
+            // Share the embassy names between the regions, as each is listed many times.
+            final Map<String, String> names = new HashMap<>();
+
+            for (int i = 0; i < count; i++) {
+                final String name = in.readUTF();
+                final long hash = in.readLong();
+                final String[] embassies = new String[in.readInt()];
+
+                for (int j = 0; j < embassies.length; j++) {
+                    embassies[j] = names.computeIfAbsent(in.readUTF(), embassy -> embassy);
+                }
+                loaded.put(EmbassyCheckRequest.normalizeRegionName(name), new Entry(name, hash, embassies));
+            }
+
+            synchronized (this) {
+                entries = loaded;
+                dumpedAt = loadedDumpedAt;
+            }
+        }
+    }
+
+    /**
+     * Saves this digest to the digest file, replacing it atomically.
+     *
+     * @throws IOException if the digest file could not be written
+     */
+    public synchronized void save() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dumpedAt);
+            out.writeInt(entries.size());
+
+            for (Entry entry : entries.values()) {
+                out.writeUTF(entry.name);
+                out.writeLong(entry.hash);
+                out.writeInt(entry.embassies.length);
+
+                for (String embassy : entry.embassies) {
+                    out.writeUTF(embassy);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,425 @@
+package com.github.agadar.embassychecker.dump;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the regions dump in a pipeline of threads, so that reading it is not
+ * limited to a single core. One thread decompresses the dump and cuts it into
+ * fragments of whole regions, a number of parser threads each parse the
+ * fragments given to them into regions, and the calling thread passes the
+ * regions to a sink in dump order. The stages are connected by bounded
+ * lock-free queues, so that a slow stage holds back the faster ones instead of
+ * letting fragments pile up in memory.
+ * <p>
+ * Fragments are cut directly after the end tag of a region. The dump escapes
+ * the markup in the regions' text, so that such a tag is never part of it.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class DumpPipeline {
+
+    /**
+     * The default number of parser threads: the cores left after the
+     * decompressing and the calling thread, but at least one.
+     */
+    public final static int DEFAULT_PARSERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+
+    /**
+     * The size in bytes a fragment is grown to before it is cut.
+     */
+    private final static int FRAGMENT_SIZE = 1 << 18;
+
+    /**
+     * The number of fragments or batches a queue holds between two stages.
+     */
+    private final static int QUEUE_CAPACITY = 4;
+
+    private final static byte[] REGION_START = "<REGION>".getBytes(StandardCharsets.US_ASCII);
+    private final static byte[] REGION_END = "</REGION>".getBytes(StandardCharsets.US_ASCII);
+    private final static byte[] DUMP_END = "</REGIONS>".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Marks the end of the fragments for a parser.
+     */
+    private final static byte[] END_OF_FRAGMENTS = new byte[0];
+
+    /**
+     * Marks the end of the batches of a parser.
+     */
+    private final static List<RegionData> END_OF_BATCHES = Collections.unmodifiableList(new ArrayList<>());
+
+    /**
+     * The number of parser threads.
+     */
+    private final int parsers;
+
+    /**
+     * Constructor.
+     *
+     * @param parsers the number of parser threads
+     * @throws IllegalArgumentException if parsers <= 0
+     */
+    public DumpPipeline(int parsers) throws IllegalArgumentException {
+        if (parsers <= 0) {
+            throw new IllegalArgumentException("The number of parsers must be greater than 0!");
+        }
+        this.parsers = parsers;
+    }
+
+    /**
+     * Reads the given dump file, decompressing it if its name ends with .gz,
+     * and passes its regions to the given sink in dump order on the calling
+     * thread. The regions are as read by {@link RegionDumpReader}, and the
+     * file's modification time is taken as the time the dump was made. On a
+     * single core, where the threads would only add overhead, the dump is
+     * read on the calling thread instead.
+     *
+     * @param file the dump file
+     * @param sink the sink to pass the regions to
+     * @return the number of regions read
+     * @throws IOException if the file could not be read or is invalid
+     */
+    public long run(Path file, Consumer<RegionData> sink) throws IOException {
+        if (Runtime.getRuntime().availableProcessors() == 1) {
+            return runSequentially(file, sink);
+        }
+        final long dumpedAt = Files.getLastModifiedTime(file).toMillis() / 1000;
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        final List<SpscRingBuffer<byte[]>> fragments = new ArrayList<>();
+        final List<SpscRingBuffer<List<RegionData>>> batches = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+        final AtomicReference<byte[]> prologue = new AtomicReference<>();
+
+        for (int i = 0; i < parsers; i++) {
+            fragments.add(new SpscRingBuffer<>(QUEUE_CAPACITY));
+            batches.add(new SpscRingBuffer<>(QUEUE_CAPACITY));
+        }
+
+        // Start the decompressing thread, which also finds the prologue the
+        // parsers need to be able to parse a fragment.
+        start("Dump decompressor", threads, failure, () -> {
+            try (InputStream in = open(file)) {
+                split(in, fragments, prologue);
+            }
+        });
+
+        // Start the parser threads.
+        for (int i = 0; i < parsers; i++) {
+            final SpscRingBuffer<byte[]> in = fragments.get(i);
+            final SpscRingBuffer<List<RegionData>> out = batches.get(i);
+            start("Dump parser " + (i + 1), threads, failure, () -> {
+                byte[] fragment;
+
+                while ((fragment = in.take()) != END_OF_FRAGMENTS) {
+                    out.put(parse(prologue.get(), fragment, dumpedAt));
+                }
+                out.put(END_OF_BATCHES);
+            });
+        }
+
+        // Pass the batches to the sink in the order the fragments were cut.
+        long regions = 0;
+
+        try {
+            for (int i = 0;; i = (i + 1) % parsers) {
+                final List<RegionData> batch = takeBatch(batches.get(i), failure);
+
+                if (batch == END_OF_BATCHES) {
+                    break;
+                }
+                for (RegionData region : batch) {
+                    sink.accept(region);
+                }
+                regions += batch.size();
+            }
+        } finally {
+            synchronized (threads) {
+                threads.forEach(Thread::interrupt);
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Reads the given dump file on the calling thread, passing its regions to
+     * the given sink.
+     *
+     * @param file the dump file
+     * @param sink the sink to pass the regions to
+     * @return the number of regions read
+     * @throws IOException if the file could not be read or is invalid
+     */
+    private static long runSequentially(Path file, Consumer<RegionData> sink) throws IOException {
+        long regions = 0;
+
+        try (RegionDumpReader reader = RegionDumpReader.open(file)) {
+            RegionData region;
+
+            while ((region = reader.next()) != null) {
+                sink.accept(region);
+                regions++;
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Starts a daemon thread running the given stage and adds it to the given
+     * threads. If the stage fails, the failure is recorded and every thread of
+     * the pipeline is interrupted.
+     *
+     * @param name the name of the thread
+     * @param threads the threads of the pipeline
+     * @param failure where to record the failure
+     * @param stage the stage
+     */
+    private static void start(String name, List<Thread> threads, AtomicReference<IOException> failure,
+            Stage stage) {
+        final Thread thread = new Thread(() -> {
+            try {
+                stage.run();
+            } catch (InterruptedException ex) {
+                // Stopped by another stage.
+            } catch (IOException | RuntimeException ex) {
+                failure.compareAndSet(null, ex instanceof IOException ? (IOException) ex
+                        : new IOException("The regions dump could not be read!", ex));
+
+                synchronized (threads) {
+                    threads.stream().filter(other -> other != Thread.currentThread()).forEach(Thread::interrupt);
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+
+        synchronized (threads) {
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Takes a batch from the given queue, waiting for one, unless a stage
+     * failed.
+     *
+     * @param queue the queue
+     * @param failure the failure of a stage, if any
+     * @return the batch
+     * @throws IOException if a stage failed, or the thread was interrupted
+     */
+    private static List<RegionData> takeBatch(SpscRingBuffer<List<RegionData>> queue,
+            AtomicReference<IOException> failure) throws IOException {
+        try {
+            List<RegionData> batch;
+
+            for (int spins = 0; (batch = queue.poll()) == null; spins++) {
+                if (failure.get() != null) {
+                    throw failure.get();
+                }
+                SpscRingBuffer.await(spins);
+            }
+            return batch;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading the regions dump");
+        }
+    }
+
+    /**
+     * Opens the given dump file, decompressing it if its name ends with .gz.
+     *
+     * @param file the dump file
+     * @return the stream
+     * @throws IOException if the file could not be opened
+     */
+    private static InputStream open(Path file) throws IOException {
+        final InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+
+        try {
+            return file.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Cuts the given dump into fragments of whole regions, distributing them
+     * over the given queues in turn and ending each queue with
+     * {@link #END_OF_FRAGMENTS}. Everything before the first region is set as
+     * the prologue before the first fragment is queued.
+     *
+     * @param in the uncompressed dump
+     * @param queues the queues of the parsers
+     * @param prologue where to set the prologue
+     * @throws IOException if the dump could not be read or has no regions
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    private static void split(InputStream in, List<SpscRingBuffer<byte[]>> queues,
+            AtomicReference<byte[]> prologue) throws IOException, InterruptedException {
+        byte[] buffer = new byte[2 * FRAGMENT_SIZE];
+        int length = 0;
+        int next = 0;
+        boolean foundPrologue = false;
+        boolean eof = false;
+
+        while (!eof) {
+            // Fill the buffer up to the fragment size, growing it for regions
+            // larger than a fragment.
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            final int read = in.read(buffer, length, buffer.length - length);
+
+            if (read < 0) {
+                eof = true;
+            } else {
+                length += read;
+            }
+            if (!foundPrologue) {
+                final int start = indexOf(buffer, length, REGION_START);
+
+                if (start < 0) {
+                    if (eof) {
+                        throw new IOException("The regions dump has no regions!");
+                    }
+                    continue;
+                }
+                prologue.set(Arrays.copyOf(buffer, start));
+                System.arraycopy(buffer, start, buffer, 0, length - start);
+                length -= start;
+                foundPrologue = true;
+            }
+            if (length < FRAGMENT_SIZE && !eof) {
+                continue;
+            }
+
+            // Cut the buffer after its last complete region.
+            final int end = lastIndexOf(buffer, length, REGION_END);
+
+            if (end < 0) {
+                if (eof && length > 0 && indexOf(buffer, length, REGION_START) >= 0) {
+                    throw new IOException("The regions dump ends inside a region!");
+                }
+                continue;
+            }
+            final int cut = end + REGION_END.length;
+            queues.get(next).put(Arrays.copyOf(buffer, cut));
+            next = (next + 1) % queues.size();
+            System.arraycopy(buffer, cut, buffer, 0, length - cut);
+            length -= cut;
+        }
+        for (SpscRingBuffer<byte[]> queue : queues) {
+            queue.put(END_OF_FRAGMENTS);
+        }
+    }
+
+    /**
+     * Parses a fragment of whole regions, by reading it as a dump with the
+     * given prologue.
+     *
+     * @param prologue everything before the first region in the dump
+     * @param fragment the fragment
+     * @param dumpedAt time in seconds at which the dump was made
+     * @return the regions in the fragment
+     * @throws IOException if the fragment is invalid
+     */
+    private static List<RegionData> parse(byte[] prologue, byte[] fragment, long dumpedAt) throws IOException {
+        final List<RegionData> regions = new ArrayList<>();
+        final InputStream in = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(prologue), new ByteArrayInputStream(fragment),
+                new ByteArrayInputStream(DUMP_END))));
+
+        try (RegionDumpReader reader = new RegionDumpReader(in, dumpedAt)) {
+            RegionData region;
+
+            while ((region = reader.next()) != null) {
+                regions.add(region);
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Finds the first occurrence of the given pattern in the given buffer.
+     *
+     * @param buffer the buffer
+     * @param length the number of bytes in use in the buffer
+     * @param pattern the pattern
+     * @return the index of the occurrence, or -1 if there is none
+     */
+    private static int indexOf(byte[] buffer, int length, byte[] pattern) {
+        for (int i = 0; i <= length - pattern.length; i++) {
+            if (matches(buffer, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the last occurrence of the given pattern in the given buffer.
+     *
+     * @param buffer the buffer
+     * @param length the number of bytes in use in the buffer
+     * @param pattern the pattern
+     * @return the index of the occurrence, or -1 if there is none
+     */
+    private static int lastIndexOf(byte[] buffer, int length, byte[] pattern) {
+        for (int i = length - pattern.length; i >= 0; i--) {
+            if (matches(buffer, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether the given pattern occurs in the given buffer at the
+     * given index.
+     *
+     * @param buffer the buffer
+     * @param index the index
+     * @param pattern the pattern
+     * @return whether the pattern occurs at the index
+     */
+    private static boolean matches(byte[] buffer, int index, byte[] pattern) {
+        for (int j = 0; j < pattern.length; j++) {
+            if (buffer[index + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A stage of the pipeline, run on its own thread.
+     */
+    @FunctionalInterface
+    private interface Stage {
+
+        /**
+         * Runs the stage.
+         *
+         * @throws IOException if the stage failed
+         * @throws InterruptedException if interrupted while waiting
+         */
+        void run() throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,230 @@
+package com.github.agadar.embassychecker.dump;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming reader of the daily NationStates regions dump, which holds every
+ * region in the world. Only the regions' names, embassies and tags are read;
+ * all other elements are skipped without being decoded.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionDumpReader implements Closeable {
+
+    /**
+     * Where NationStates publishes the regions dump.
+     */
+    public final static String DUMP_URL = "https://www.nationstates.net/pages/regions.xml.gz";
+
+    /**
+     * The embassy types in the dump of embassies that count as established or
+     * pending. Established embassies have no type.
+     */
+    private final static String PENDING_EMBASSY_TYPE = "pending";
+
+    /**
+     * The XML input factory of each thread, as creating one is slow and they
+     * are not guaranteed to be thread-safe.
+     */
+    private final static ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    });
+
+    private final InputStream in;
+    private final XMLStreamReader reader;
+
+    /**
+     * Time in seconds at which the dump was made.
+     */
+    private final long dumpedAt;
+
+    /**
+     * Whether any region read so far had a TAGS element.
+     */
+    private boolean sawTags;
+
+    /**
+     * Constructor.
+     *
+     * @param in the stream to read the dump from, uncompressed
+     * @param dumpedAt time in seconds at which the dump was made
+     * @throws IOException if the stream is not XML
+     */
+    public RegionDumpReader(InputStream in, long dumpedAt) throws IOException {
+        try {
+            this.reader = FACTORY.get().createXMLStreamReader(in);
+        } catch (XMLStreamException ex) {
+            throw new IOException("The regions dump is not XML!", ex);
+        }
+        this.in = in;
+        this.dumpedAt = dumpedAt;
+    }
+
+    /**
+     * Opens the given dump file, decompressing it if its name ends with .gz.
+     * The file's modification time is taken as the time the dump was made.
+     *
+     * @param file the dump file
+     * @return the reader
+     * @throws IOException if the file could not be opened
+     */
+    public static RegionDumpReader open(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+
+        try {
+            if (file.getFileName().toString().endsWith(".gz")) {
+                in = new GZIPInputStream(in, 1 << 16);
+            }
+            return new RegionDumpReader(in, Files.getLastModifiedTime(file).toMillis() / 1000);
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the time in seconds at which the dump was made.
+     *
+     * @return the time at which the dump was made
+     */
+    public long getDumpedAt() {
+        return dumpedAt;
+    }
+
+    /**
+     * Returns whether any region read so far had tags listed. Older dumps list
+     * no tags at all, in which case the regions' lack of tags means nothing.
+     *
+     * @return whether any region read so far had tags listed
+     */
+    public boolean hasSeenTags() {
+        return sawTags;
+    }
+
+    /**
+     * Reads the next region. Its shards are NAME, EMBASSIES and, if the dump
+     * lists its tags, TAGS. Tags unknown to this version are left out.
+     *
+     * @return the region, or null if the end of the dump was reached
+     * @throws IOException if the dump could not be read or is invalid
+     */
+    public RegionData next() throws IOException {
+        try {
+            // Find the next region.
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("REGION")) {
+                    return readRegion();
+                }
+            }
+            return null;
+        } catch (XMLStreamException ex) {
+            throw new IOException("The regions dump is invalid!", ex);
+        }
+    }
+
+    /**
+     * Reads a region, from its start element up to and including its end
+     * element.
+     *
+     * @return the region
+     * @throws XMLStreamException if the dump is invalid
+     */
+    private RegionData readRegion() throws XMLStreamException {
+        final Set<RegionShard> shards = EnumSet.of(RegionShard.NAME, RegionShard.EMBASSIES);
+        final List<String> embassies = new ArrayList<>();
+        final Set<RegionTag> tags = EnumSet.noneOf(RegionTag.class);
+        String name = null;
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "NAME":
+                    name = reader.getElementText();
+                    break;
+                case "EMBASSIES":
+                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        final String type = reader.getAttributeValue(null, "type");
+                        final String embassy = reader.getElementText();
+
+                        if (type == null || type.equals(PENDING_EMBASSY_TYPE)) {
+                            embassies.add(embassy);
+                        }
+                    }
+                    break;
+                case "TAGS":
+                    shards.add(RegionShard.TAGS);
+                    sawTags = true;
+
+                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        try {
+                            tags.add(RegionTag.fromString(reader.getElementText()));
+                        } catch (IllegalArgumentException ex) {
+                            // A tag that was added after this version.
+                        }
+                    }
+                    break;
+                default:
+                    skipElement();
+                    break;
+            }
+        }
+        if (name == null) {
+            throw new XMLStreamException("Region without a name", reader.getLocation());
+        }
+        return new RegionData(name, shards, dumpedAt, embassies, 0, 0, tags);
+    }
+
+    /**
+     * Skips the current element, from its start element up to and including
+     * its end element.
+     *
+     * @throws XMLStreamException if the dump is invalid
+     */
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+
+        while (depth > 0) {
+            final int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.agadar.embassychecker.dump;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue between exactly one producer thread and one consumer
+ * thread. A producer that finds the queue full, or a consumer that finds it
+ * empty, spins briefly and then parks, which gives backpressure between the
+ * stages of a pipeline.
+ *
+ * @param <T> the type of the elements
+ * @author Agadar <https://github.com/Agadar/>
+ */
+final class SpscRingBuffer<T> {
+
+    /**
+     * The number of times to spin before parking.
+     */
+    private final static int SPINS = 100;
+
+    /**
+     * Time in nanoseconds to park for while waiting.
+     */
+    private final static long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Object[] slots;
+    private final int mask;
+
+    /**
+     * The number of elements taken, only written by the consumer.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The number of elements put, only written by the producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The producer's last read of the head, to avoid reading it on every put.
+     */
+    private long cachedHead;
+
+    /**
+     * The consumer's last read of the tail, to avoid reading it on every take.
+     */
+    private long cachedTail;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the minimum capacity, which is rounded up to a power of
+     * two
+     * @throws IllegalArgumentException if capacity <= 0
+     */
+    SpscRingBuffer(int capacity) throws IllegalArgumentException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be greater than 0!");
+        }
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        slots = new Object[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Adds the given element if there is room. Only called by the producer.
+     *
+     * @param element the element
+     * @return whether the element was added
+     */
+    boolean offer(T element) {
+        final long t = tail.get();
+
+        if (t - cachedHead >= slots.length) {
+            cachedHead = head.get();
+
+            if (t - cachedHead >= slots.length) {
+                return false;
+            }
+        }
+        slots[(int) t & mask] = element;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element, if there is one. Only called by the
+     * consumer.
+     *
+     * @return the element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    T poll() {
+        final long h = head.get();
+
+        if (h >= cachedTail) {
+            cachedTail = tail.get();
+
+            if (h >= cachedTail) {
+                return null;
+            }
+        }
+        final int slot = (int) h & mask;
+        final T element = (T) slots[slot];
+        slots[slot] = null;
+        head.lazySet(h + 1);
+        return element;
+    }
+
+    /**
+     * Adds the given element, waiting for room. Only called by the producer.
+     *
+     * @param element the element
+     * @throws InterruptedException if interrupted, even if there is room
+     */
+    void put(T element) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        for (int spins = 0; !offer(element); spins++) {
+            await(spins);
+        }
+    }
+
+    /**
+     * Removes the oldest element, waiting for one. Only called by the
+     * consumer.
+     *
+     * @return the element
+     * @throws InterruptedException if interrupted, even if there is an element
+     */
+    T take() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        T element;
+
+        for (int spins = 0; (element = poll()) == null; spins++) {
+            await(spins);
+        }
+        return element;
+    }
+
+    /**
+     * Waits a little, spinning at first and parking later.
+     *
+     * @param spins the number of times waited so far
+     * @throws InterruptedException if interrupted
+     */
+    static void await(int spins) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (spins < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
@@ -20,4 +20,15 @@ public interface RegionEventsListener {
      * @param event
      */
     void handleRegionRetrieved(RegionRetrievedEvent event);
+
+    /**
+     * Whether this listener wants the timing and source details in
+     * {@link RegionRetrievedEvent}. Measuring them is skipped unless at least
+     * one listener of a query wants them.
+     *
+     * @return whether this listener wants the retrieval details
+     */
+    default boolean wantsRetrievalDetail() {
+        return false;
+    }
 }
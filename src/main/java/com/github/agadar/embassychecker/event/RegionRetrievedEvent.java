@@ -1,6 +1,10 @@
 package com.github.agadar.embassychecker.event;
 
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.Collections;
 import java.util.EventObject;
+import java.util.List;
 
 /**
  * Event that is fired when a region has been retrieved.
@@ -26,7 +30,39 @@ public class RegionRetrievedEvent extends EventObject {
     public final boolean retrieved;
 
     /**
-     * Constructs a new event.
+     * The shards that were requested.
+     */
+    public final List<RegionShard> shards;
+
+    /**
+     * Why the region was not retrieved, or null if it was.
+     */
+    public final String failureReason;
+
+    /**
+     * Whether the region was served from a cache, or from an earlier retrieval
+     * by the same query, without a request to NationStates.
+     */
+    public final boolean fromCache;
+
+    /**
+     * Time in nanoseconds the retrieval took, including any wait for the rate
+     * limit, or -1 if not measured.
+     */
+    public final long latencyNanos;
+
+    /**
+     * Time in nanoseconds spent waiting for the rate limit, or -1 if unknown.
+     */
+    public final long rateLimitWaitNanos;
+
+    /**
+     * The number of bytes received, or -1 if unknown.
+     */
+    public final long bytesReceived;
+
+    /**
+     * Constructs a new event, without retrieval details.
      *
      * @param source object that fired this event
      * @param regionName name of the region that was retrieved
@@ -35,10 +71,37 @@ public class RegionRetrievedEvent extends EventObject {
      */
     public RegionRetrievedEvent(Object source, String regionName, int positionInQuery,
             boolean retrieved) {
+        this(source, regionName, positionInQuery, retrieved, Collections.emptyList(), null, false, -1, -1, -1);
+    }
+
+    /**
+     * Constructs a new event.
+     *
+     * @param source object that fired this event
+     * @param regionName name of the region that was retrieved
+     * @param positionInQuery position of the retrieved region in the query
+     * @param retrieved whether the region was retrieved successfully
+     * @param shards the shards that were requested
+     * @param failureReason why the region was not retrieved, or null
+     * @param fromCache whether the region was served without a request
+     * @param latencyNanos time in nanoseconds the retrieval took, or -1
+     * @param rateLimitWaitNanos time in nanoseconds spent waiting for the rate
+     * limit, or -1
+     * @param bytesReceived the number of bytes received, or -1
+     */
+    public RegionRetrievedEvent(Object source, String regionName, int positionInQuery,
+            boolean retrieved, List<RegionShard> shards, String failureReason, boolean fromCache,
+            long latencyNanos, long rateLimitWaitNanos, long bytesReceived) {
         super(source);
         this.regionName = regionName;
         this.positionInQuery = positionInQuery;
         this.retrieved = retrieved;
+        this.shards = shards;
+        this.failureReason = failureReason;
+        this.fromCache = fromCache;
+        this.latencyNanos = latencyNanos;
+        this.rateLimitWaitNanos = rateLimitWaitNanos;
+        this.bytesReceived = bytesReceived;
     }
 
 }
@@ -0,0 +1,72 @@
+package com.github.agadar.embassychecker.history;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.source.RateLimiter;
+import com.github.agadar.embassychecker.source.RegionSource;
+import com.github.agadar.embassychecker.source.RetrievalDetail;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Region source that appends a snapshot of every region retrieved through
+ * another source to a {@link RegionHistory}. Snapshots are only appended while
+ * the history is open, and failing to append one does not fail the retrieval.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class HistoryRegionSource implements RegionSource {
+
+    private final static Logger LOGGER = Logger.getLogger(HistoryRegionSource.class.getName());
+
+    private final RegionSource delegate;
+    private final RegionHistory history;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate the source to retrieve the regions from
+     * @param history the history to append the snapshots to
+     */
+    public HistoryRegionSource(RegionSource delegate, RegionHistory history) {
+        this.delegate = delegate;
+        this.history = history;
+    }
+
+    @Override
+    public RegionData getRegion(String regionName, RegionShard... shards) {
+        return getRegion(regionName, new RetrievalDetail(), shards);
+    }
+
+    @Override
+    public RegionData getRegion(String regionName, RetrievalDetail detail, RegionShard... shards) {
+        final RegionData region = delegate.getRegion(regionName, detail, shards);
+
+        if (region != null && history.isOpen()) {
+            try {
+                history.append(region);
+            } catch (IOException | IllegalArgumentException | IllegalStateException ex) {
+                LOGGER.log(Level.WARNING, "Failed to append region " + regionName + " to the history", ex);
+            }
+        }
+        return region;
+    }
+
+    @Override
+    public RegionData peek(String regionName, RegionShard... shards) {
+        return delegate.peek(regionName, shards);
+    }
+
+    @Override
+    public boolean isFree(String regionName, RegionShard... shards) {
+        return delegate.isFree(regionName, shards);
+    }
+
+    @Override
+    public RateLimiter getRateLimiter() {
+        return delegate.getRateLimiter();
+    }
+}
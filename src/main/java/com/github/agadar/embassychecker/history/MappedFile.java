@@ -0,0 +1,219 @@
+package com.github.agadar.embassychecker.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only file that is read through memory mappings. The file is
+ * mapped in segments, which are remapped as the file grows. Values must be
+ * aligned to their size, so that none straddles two segments.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+final class MappedFile implements Closeable {
+
+    /**
+     * Size in bytes of a mapped segment.
+     */
+    private final static long SEGMENT_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+
+    /**
+     * The mapped segments, each of which may map less than a full segment.
+     */
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * The size of the file in bytes.
+     */
+    private long size;
+
+    /**
+     * The most recently used segment, and the range of the file it maps.
+     */
+    private MappedByteBuffer current;
+    private long currentStart;
+    private long currentEnd;
+
+    /**
+     * Opens or creates the given file. A partially written trailing unit is
+     * truncated.
+     *
+     * @param file the file
+     * @param unit size in bytes of the units the file consists of
+     * @throws IOException if the file could not be opened
+     */
+    MappedFile(Path file, int unit) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        size = channel.size() - channel.size() % unit;
+        channel.truncate(size);
+    }
+
+    /**
+     * Returns the size of the file in bytes.
+     *
+     * @return the size of the file
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Appends the remaining bytes of the given buffer to the file.
+     *
+     * @param data the bytes to append
+     * @return the position at which the bytes were written
+     * @throws IOException if the bytes could not be written
+     */
+    long append(ByteBuffer data) throws IOException {
+        final long position = size;
+
+        while (data.hasRemaining()) {
+            size += channel.write(data, size);
+        }
+        return position;
+    }
+
+    /**
+     * Overwrites bytes within the file with the remaining bytes of the given
+     * buffer.
+     *
+     * @param position the position to write at
+     * @param data the bytes to write
+     * @throws IOException if the bytes could not be written
+     * @throws IndexOutOfBoundsException if the bytes would extend the file
+     */
+    void write(long position, ByteBuffer data) throws IOException, IndexOutOfBoundsException {
+        if (position < 0 || position + data.remaining() > size) {
+            throw new IndexOutOfBoundsException("Position " + position + " is beyond the end of the file!");
+        }
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+
+    /**
+     * Reads the given number of bytes at the given position.
+     *
+     * @param position the position to read at
+     * @param length the number of bytes to read
+     * @return the bytes
+     * @throws IOException if the bytes could not be read
+     * @throws IndexOutOfBoundsException if the bytes are beyond the end of the
+     * file
+     */
+    ByteBuffer read(long position, int length) throws IOException, IndexOutOfBoundsException {
+        if (position < 0 || position + length > size) {
+            throw new IndexOutOfBoundsException("Position " + position + " is beyond the end of the file!");
+        }
+        final ByteBuffer data = ByteBuffer.allocate(length);
+
+        while (data.hasRemaining()) {
+            if (channel.read(data, position + data.position()) < 0) {
+                throw new IOException("Unexpected end of file!");
+            }
+        }
+        data.flip();
+        return data;
+    }
+
+    /**
+     * Truncates the file to the given size.
+     *
+     * @param newSize the new size in bytes
+     * @throws IOException if the file could not be truncated
+     */
+    void truncate(long newSize) throws IOException {
+        channel.truncate(newSize);
+        size = newSize;
+        segments.clear();
+        current = null;
+        currentStart = 0;
+        currentEnd = 0;
+    }
+
+    /**
+     * Reads the int at the given position.
+     *
+     * @param position the position, which must be a multiple of 4
+     * @return the int
+     * @throws IOException if the file could not be mapped
+     */
+    int getInt(long position) throws IOException {
+        if (position >= currentStart && position + 4 <= currentEnd) {
+            return current.getInt((int) (position - currentStart));
+        }
+        return segment(position, 4).getInt((int) (position - currentStart));
+    }
+
+    /**
+     * Reads the long at the given position.
+     *
+     * @param position the position, which must be a multiple of 8
+     * @return the long
+     * @throws IOException if the file could not be mapped
+     */
+    long getLong(long position) throws IOException {
+        if (position >= currentStart && position + 8 <= currentEnd) {
+            return current.getLong((int) (position - currentStart));
+        }
+        return segment(position, 8).getLong((int) (position - currentStart));
+    }
+
+    /**
+     * Forces the appended bytes to the storage device.
+     *
+     * @throws IOException if the bytes could not be forced
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments.clear();
+        current = null;
+        currentEnd = 0;
+        channel.close();
+    }
+
+    /**
+     * Returns the segment that maps the given range, mapping or remapping it
+     * if necessary, and makes it the current segment.
+     *
+     * @param position start of the range
+     * @param length length of the range
+     * @return the segment
+     * @throws IOException if the file could not be mapped
+     */
+    private MappedByteBuffer segment(long position, int length) throws IOException {
+        if (position < 0 || position + length > size) {
+            throw new IndexOutOfBoundsException("Position " + position + " is beyond the end of the file!");
+        }
+        final int index = (int) (position / SEGMENT_SIZE);
+
+        while (segments.size() <= index) {
+            segments.add(null);
+        }
+        MappedByteBuffer segment = segments.get(index);
+        final long start = index * SEGMENT_SIZE;
+
+        if (segment == null || start + segment.capacity() < position + length) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            segments.set(index, segment);
+        }
+        current = segment;
+        currentStart = start;
+        currentEnd = start + segment.capacity();
+        return segment;
+    }
+}
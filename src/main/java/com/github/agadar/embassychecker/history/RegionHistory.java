@@ -0,0 +1,948 @@
+package com.github.agadar.embassychecker.history;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.codec.RegionSnapshotDecoder;
+import com.github.agadar.embassychecker.codec.RegionSnapshotEncoder;
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.domain.RegionLastMsg;
+import com.github.agadar.embassychecker.domain.RegionTrend;
+import com.github.agadar.embassychecker.dump.DumpChangeSet;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded store of region snapshots over time. Snapshots are appended to a
+ * file of fixed-size records, which is memory-mapped for reads and indexed in
+ * memory by region ID and time. Region names are stored once in a dictionary
+ * that assigns the IDs, and embassy lists are stored as lists of region IDs
+ * in a separate file, shared between consecutive snapshots when unchanged.
+ * Tags are stored as a bitmask, whose bits are assigned to tag names in a
+ * table in the header, so that the stored tags keep their meaning when the
+ * tags are reordered in a later version. The number of nations, the delegate
+ * and the last update are not stored, so no snapshot has their shards.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class RegionHistory implements Closeable {
+
+    /**
+     * Magic number at the start of a history file: "ECHS".
+     */
+    private final static int MAGIC = 0x45434853;
+
+    /**
+     * Current version of the history file format.
+     */
+    private final static int VERSION = 2;
+
+    /**
+     * Version of the history file format that stored the tags by their
+     * ordinals, which is converted when opened.
+     */
+    private final static int VERSION_ORDINAL_TAGS = 1;
+
+    /**
+     * Size in bytes of a snapshot record, and of a record of the header.
+     */
+    private final static int RECORD_SIZE = 64;
+
+    /**
+     * The number of tags the tag table has room for, which is the number of
+     * bits in a record's tag bitmask. The name of the tag of each bit is
+     * stored in its own header record, as its length followed by its UTF-8
+     * bytes.
+     */
+    private final static int TAG_SLOTS = 128;
+
+    /**
+     * The number of records of the header: the magic number and version,
+     * followed by the tag table.
+     */
+    private final static int HEADER_RECORDS = 1 + TAG_SLOTS;
+
+    // Offsets of the fields within a snapshot record.
+    private final static int REGION_ID = 0;
+    private final static int FLAGS = 4;
+    private final static int OBSERVED_AT = 8;
+    private final static int LAST_MESSAGE = 16;
+    private final static int FOUNDED = 24;
+    private final static int TAGS_LOW = 32;
+    private final static int TAGS_HIGH = 40;
+    private final static int EMBASSIES_OFFSET = 48;
+    private final static int EMBASSY_COUNT = 56;
+
+    /**
+     * The shards a snapshot can hold, by their bit in a record's flags.
+     */
+    private final static RegionShard[] FLAG_SHARDS = {RegionShard.NAME, RegionShard.EMBASSIES,
+        RegionShard.REGIONAL_MESSAGES, RegionShard.FOUNDED, RegionShard.TAGS};
+
+    /**
+     * The directory the history files are in.
+     */
+    private final Path directory;
+
+    private MappedFile records;
+    private MappedFile embassies;
+    private FileChannel namesChannel;
+
+    /**
+     * Region names by ID.
+     */
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Region IDs by normalized name.
+     */
+    private final Map<String, Integer> idsByName = new HashMap<>();
+
+    /**
+     * The tags by their bit in a record's tag bitmask, holding null for names
+     * of tags that this version does not know.
+     */
+    private final List<RegionTag> tagsByBit = new ArrayList<>();
+
+    /**
+     * The bits in a record's tag bitmask by tag.
+     */
+    private final Map<RegionTag, Integer> bitsByTag = new EnumMap<>(RegionTag.class);
+
+    /**
+     * Record indices by region ID, in order of time.
+     */
+    private int[][] recordsByRegion = new int[0][];
+
+    /**
+     * The number of records by region ID.
+     */
+    private int[] recordCounts = new int[0];
+
+    /**
+     * Constructor. The history is not usable until it is opened.
+     *
+     * @param directory the directory the history files are in
+     */
+    public RegionHistory(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the default history directory in the user's home directory.
+     *
+     * @return the default history directory
+     */
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".nationstates-embassychecker", "history");
+    }
+
+    /**
+     * Opens the history files, creating them if they do not exist, and indexes
+     * the snapshots. Snapshots that were only partially written are discarded.
+     *
+     * @throws IOException if the history files could not be read, or were
+     * written by an incompatible version
+     */
+    public synchronized void open() throws IOException {
+        if (records != null) {
+            return;
+        }
+        Files.createDirectories(directory);
+
+        // Read the region names.
+        final Path namesFile = directory.resolve("regions.dat");
+        final ByteBuffer namesBuffer = ByteBuffer.wrap(Files.exists(namesFile)
+                ? Files.readAllBytes(namesFile) : new byte[0]);
+
+        while (namesBuffer.remaining() >= 2) {
+            final int length = namesBuffer.getShort(namesBuffer.position()) & 0xFFFF;
+
+            if (namesBuffer.remaining() < 2 + length) {
+                break;
+            }
+            namesBuffer.position(namesBuffer.position() + 2);
+            final byte[] bytes = new byte[length];
+            namesBuffer.get(bytes);
+            addName(new String(bytes, StandardCharsets.UTF_8));
+        }
+        namesChannel = FileChannel.open(namesFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        namesChannel.truncate(namesBuffer.position());
+        namesChannel.position(namesBuffer.position());
+
+        embassies = new MappedFile(directory.resolve("embassies.dat"), 4);
+        final Path recordsFile = directory.resolve("history.dat");
+        records = new MappedFile(recordsFile, RECORD_SIZE);
+
+        if (records.size() >= RECORD_SIZE && records.getInt(0) == MAGIC
+                && records.getInt(4) == VERSION_ORDINAL_TAGS) {
+            records.close();
+            convertOrdinalTags(recordsFile);
+            records = new MappedFile(recordsFile, RECORD_SIZE);
+        }
+        if (records.size() == 0) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_RECORDS * RECORD_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).rewind();
+            records.append(header);
+        } else if (records.size() < HEADER_RECORDS * RECORD_SIZE || records.getInt(0) != MAGIC
+                || records.getInt(4) != VERSION) {
+            close();
+            throw new IOException("The region history was written by an incompatible version!");
+        }
+
+        // Read the tag table.
+        tagsByBit.clear();
+        bitsByTag.clear();
+
+        for (int bit = 0; bit < TAG_SLOTS; bit++) {
+            final ByteBuffer slot = records.read((1L + bit) * RECORD_SIZE, RECORD_SIZE);
+            final int length = slot.getInt();
+
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > slot.remaining()) {
+                close();
+                throw new IOException("The tag table of the region history is corrupt!");
+            }
+            final byte[] bytes = new byte[length];
+            slot.get(bytes);
+            addTag(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        // Index the snapshots, discarding the ones that were only partially written.
+        final long recordCount = records.size() / RECORD_SIZE - HEADER_RECORDS;
+
+        for (int i = 0; i < recordCount; i++) {
+            final long position = position(i);
+            final int regionId = records.getInt(position + REGION_ID);
+            final long embassiesEnd = records.getLong(position + EMBASSIES_OFFSET)
+                    + 4L * records.getInt(position + EMBASSY_COUNT);
+
+            if (regionId < 0 || regionId >= names.size() || embassiesEnd > embassies.size()) {
+                records.truncate(position);
+                break;
+            }
+            index(regionId, i);
+        }
+    }
+
+    /**
+     * Returns whether this history is open.
+     *
+     * @return whether this history is open
+     */
+    public synchronized boolean isOpen() {
+        return records != null;
+    }
+
+    /**
+     * Returns the number of stored snapshots.
+     *
+     * @return the number of stored snapshots
+     */
+    public synchronized long size() {
+        return records == null ? 0 : records.size() / RECORD_SIZE - HEADER_RECORDS;
+    }
+
+    /**
+     * Appends a snapshot of the given region. The snapshot is skipped if it is
+     * not newer than the region's last snapshot, such as when cached data is
+     * served again.
+     *
+     * @param region the region
+     * @return whether the snapshot was appended
+     * @throws IOException if the snapshot could not be written
+     * @throws IllegalArgumentException if the region or one of its embassy
+     * regions has no name
+     * @throws IllegalStateException if this history is not open
+     */
+    public synchronized boolean append(RegionData region) throws IOException, IllegalArgumentException,
+            IllegalStateException {
+        ensureOpen();
+        final int regionId = idFor(region.name);
+        final int flags = flagsOf(region.shards);
+        final int count = recordCounts[regionId];
+        final long lastPosition = count == 0 ? -1 : position(recordsByRegion[regionId][count - 1]);
+
+        if (lastPosition >= 0) {
+            final long lastObservedAt = records.getLong(lastPosition + OBSERVED_AT);
+            final int lastFlags = records.getInt(lastPosition + FLAGS);
+
+            if (region.retrievedAt < lastObservedAt
+                    || (region.retrievedAt == lastObservedAt && (flags & ~lastFlags) == 0)) {
+                return false;
+            }
+        }
+
+        // Write the embassy list, unless it is the same as in the last snapshot.
+        long embassiesOffset = 0;
+        int embassyCount = 0;
+
+        if (region.shards.contains(RegionShard.EMBASSIES)) {
+            final int[] embassyIds = new int[region.embassies.size()];
+
+            for (int i = 0; i < embassyIds.length; i++) {
+                embassyIds[i] = idFor(region.embassies.get(i));
+            }
+
+            if (lastPosition >= 0 && hasFlag(lastPosition, RegionShard.EMBASSIES)
+                    && Arrays.equals(embassyIds, readEmbassyIds(lastPosition))) {
+                embassiesOffset = records.getLong(lastPosition + EMBASSIES_OFFSET);
+            } else {
+                final ByteBuffer buffer = ByteBuffer.allocate(4 * embassyIds.length);
+                buffer.asIntBuffer().put(embassyIds);
+                embassiesOffset = embassies.append(buffer);
+            }
+            embassyCount = embassyIds.length;
+        }
+
+        // Encode the tags as a bitmask of their bits in the tag table.
+        long tagsLow = 0;
+        long tagsHigh = 0;
+
+        for (RegionTag tag : region.tags) {
+            final int bit = bitFor(tag);
+
+            if (bit < 64) {
+                tagsLow |= 1L << bit;
+            } else {
+                tagsHigh |= 1L << (bit - 64);
+            }
+        }
+
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putInt(regionId).putInt(flags).putLong(region.retrievedAt).putLong(region.lastMessageTimestamp)
+                .putLong(region.founded).putLong(tagsLow).putLong(tagsHigh).putLong(embassiesOffset)
+                .putInt(embassyCount).rewind();
+        index(regionId, (int) (records.append(record) / RECORD_SIZE - HEADER_RECORDS));
+        return true;
+    }
+
+    /**
+     * Appends snapshots of the regions that are new or changed according to
+     * the given changes between two regions dumps. The regions that did not
+     * change keep their last snapshot, which still holds.
+     *
+     * @param changes the changes between the dumps
+     * @return the number of snapshots appended
+     * @throws IOException if a snapshot could not be written
+     * @throws IllegalStateException if this history is not open
+     */
+    public synchronized int apply(DumpChangeSet changes) throws IOException, IllegalStateException {
+        int appended = 0;
+
+        for (RegionData region : changes.added) {
+            appended += append(region) ? 1 : 0;
+        }
+        for (DumpChangeSet.RegionChange change : changes.changed) {
+            appended += append(change.region) ? 1 : 0;
+        }
+        return appended;
+    }
+
+    /**
+     * Writes all snapshots to the given encoder, in the order they were
+     * appended.
+     *
+     * @param encoder the encoder to write to
+     * @throws IOException if the history could not be read, or the snapshots
+     * could not be written
+     * @throws IllegalStateException if this history is not open
+     */
+    public synchronized void exportTo(RegionSnapshotEncoder encoder) throws IOException, IllegalStateException {
+        ensureOpen();
+        final long recordCount = size();
+
+        for (int i = 0; i < recordCount; i++) {
+            encoder.write(readSnapshot(i));
+        }
+    }
+
+    /**
+     * Appends all snapshots from the given decoder, such as ones exported by
+     * another machine. Snapshots that are not newer than the region's last
+     * snapshot are skipped.
+     *
+     * @param decoder the decoder to read from
+     * @return the number of snapshots appended
+     * @throws IOException if the snapshots could not be read, or could not be
+     * written
+     * @throws IllegalStateException if this history is not open
+     */
+    public synchronized long importFrom(RegionSnapshotDecoder decoder) throws IOException, IllegalStateException {
+        long appended = 0;
+        RegionData region;
+
+        while ((region = decoder.next()) != null) {
+            if (append(region)) {
+                appended++;
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * Returns the last snapshot of the given region at or before the given
+     * time that has all of the given shards.
+     *
+     * @param regionName name of the region
+     * @param asOf time in seconds
+     * @param shards the shards the snapshot must have
+     * @return the snapshot, or null if there is none
+     * @throws IOException if the history could not be read
+     * @throws IllegalStateException if this history is not open
+     */
+    public synchronized RegionData getSnapshot(String regionName, long asOf, RegionShard... shards)
+            throws IOException, IllegalStateException {
+        ensureOpen();
+        final Integer regionId = idsByName.get(EmbassyCheckRequest.normalizeRegionName(regionName));
+        final int record = regionId == null || !holdsAll(shards) ? -1
+                : findRecord(regionId, asOf, flagsOf(Arrays.asList(shards)));
+        return record < 0 ? null : readSnapshot(record);
+    }
+
+    /**
+     * Returns the snapshots of the given region between the given times that
+     * have all of the given shards, oldest first.
+     *
+     * @param regionName name of the region
+     * @param from time in seconds, inclusive
+     * @param to time in seconds, inclusive
+     * @param shards the shards the snapshots must have
+     * @return the snapshots
+     * @throws IOException if the history could not be read
+     * @throws IllegalStateException if this history is not open
+     */
+    public synchronized List<RegionData> getHistory(String regionName, long from, long to, RegionShard... shards)
+            throws IOException, IllegalStateException {
+        ensureOpen();
+        final Integer regionId = idsByName.get(EmbassyCheckRequest.normalizeRegionName(regionName));
+        final List<RegionData> snapshots = new ArrayList<>();
+
+        if (regionId == null || !holdsAll(shards)) {
+            return snapshots;
+        }
+        final int requiredFlags = flagsOf(Arrays.asList(shards));
+
+        for (int i = firstRecordFrom(regionId, from); i < recordCounts[regionId]; i++) {
+            final long position = position(recordsByRegion[regionId][i]);
+
+            if (records.getLong(position + OBSERVED_AT) > to) {
+                break;
+            }
+            if ((records.getInt(position + FLAGS) & requiredFlags) == requiredFlags) {
+                snapshots.add(readSnapshot(recordsByRegion[regionId][i]));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Finds the embassy regions of the given region whose message boards saw
+     * new messages less often in the later half of the given period than in
+     * the earlier half. The embassy regions are those of the region's last
+     * snapshot at or before the end of the period.
+     *
+     * @param mainRegionName name of the region whose embassy regions to check
+     * @param from start of the period in seconds
+     * @param to end of the period in seconds
+     * @return the regions whose activity dropped, largest drop first
+     * @throws IOException if the history could not be read
+     * @throws IllegalArgumentException if no embassies of the region were
+     * recorded
+     * @throws IllegalStateException if this history is not open
+     */
+    public synchronized List<RegionTrend> findSlidingTowardInactivity(String mainRegionName, long from, long to)
+            throws IOException, IllegalArgumentException, IllegalStateException {
+        final int messagesFlag = flagsOf(Collections.singleton(RegionShard.REGIONAL_MESSAGES));
+        final long middle = from + (to - from) / 2;
+        final List<RegionTrend> trends = new ArrayList<>();
+
+        for (int regionId : embassyIdsOf(mainRegionName, to)) {
+            int earlier = 0;
+            int later = 0;
+            long previousMessage = -1;
+            long lastObservedAt = 0;
+
+            for (int i = firstRecordFrom(regionId, from); i < recordCounts[regionId]; i++) {
+                final long position = position(recordsByRegion[regionId][i]);
+                final long observedAt = records.getLong(position + OBSERVED_AT);
+
+                if (observedAt > to) {
+                    break;
+                }
+                if ((records.getInt(position + FLAGS) & messagesFlag) == 0) {
+                    continue;
+                }
+                final long lastMessage = records.getLong(position + LAST_MESSAGE);
+
+                // A snapshot shows a new message if the last message is newer than in the previous one.
+                if (previousMessage >= 0 && lastMessage > previousMessage) {
+                    if (observedAt < middle) {
+                        earlier++;
+                    } else {
+                        later++;
+                    }
+                }
+                previousMessage = lastMessage;
+                lastObservedAt = observedAt;
+            }
+
+            if (later < earlier) {
+                trends.add(new RegionTrend(names.get(regionId), earlier, later, previousMessage == 0
+                        ? Integer.MAX_VALUE : (int) TimeUnit.SECONDS.toDays(lastObservedAt - previousMessage)));
+            }
+        }
+
+        Collections.sort(trends);
+        return trends;
+    }
+
+    /**
+     * Finds the embassy regions of the given region that were active as of the
+     * given earlier time, but are inactive as of their last snapshot at or
+     * before the given later time. The embassy regions are those of the
+     * region's last snapshot at or before the later time.
+     *
+     * @param mainRegionName name of the region whose embassy regions to check
+     * @param maxDaysSinceLastRmbMsg the maximum number of days since the last
+     * message before a region is considered inactive
+     * @param since the earlier time in seconds
+     * @param now the later time in seconds
+     * @return the newly inactive regions, sorted
+     * @throws IOException if the history could not be read
+     * @throws IllegalArgumentException if no embassies of the region were
+     * recorded, or if maxDaysSinceLastRmbMsg <= 0
+     * @throws IllegalStateException if this history is not open
+     */
+    public synchronized List<RegionLastMsg> findNewlyInactive(String mainRegionName, int maxDaysSinceLastRmbMsg,
+            long since, long now) throws IOException, IllegalArgumentException, IllegalStateException {
+        if (maxDaysSinceLastRmbMsg <= 0) {
+            throw new IllegalArgumentException("The maximum days of no RMB posts" + " must be greater than 0!");
+        }
+        final int messagesFlag = flagsOf(Collections.singleton(RegionShard.REGIONAL_MESSAGES));
+        final long maxSeconds = TimeUnit.DAYS.toSeconds(maxDaysSinceLastRmbMsg);
+        final List<RegionLastMsg> inactive = new ArrayList<>();
+
+        for (int regionId : embassyIdsOf(mainRegionName, now)) {
+            final int before = findRecord(regionId, since, messagesFlag);
+            final int after = findRecord(regionId, now, messagesFlag);
+
+            if (before < 0 || after == before) {
+                continue;
+            }
+            final long beforePosition = position(before);
+            final long afterPosition = position(after);
+            final long messageBefore = records.getLong(beforePosition + LAST_MESSAGE);
+            final long messageAfter = records.getLong(afterPosition + LAST_MESSAGE);
+            final long silenceAfter = records.getLong(afterPosition + OBSERVED_AT) - messageAfter;
+
+            if (messageBefore != 0 && records.getLong(beforePosition + OBSERVED_AT) - messageBefore < maxSeconds
+                    && (messageAfter == 0 || silenceAfter >= maxSeconds)) {
+                inactive.add(messageAfter == 0 ? new RegionLastMsg(names.get(regionId))
+                        : new RegionLastMsg(names.get(regionId), silenceAfter));
+            }
+        }
+
+        Collections.sort(inactive);
+        return inactive;
+    }
+
+    /**
+     * Forces the appended snapshots to the storage device.
+     *
+     * @throws IOException if the snapshots could not be forced
+     */
+    public synchronized void flush() throws IOException {
+        if (records != null) {
+            namesChannel.force(false);
+            embassies.force();
+            records.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (records != null) {
+            namesChannel.close();
+            embassies.close();
+            records.close();
+            records = null;
+        }
+    }
+
+    /**
+     * Throws an exception if this history is not open.
+     *
+     * @throws IllegalStateException if this history is not open
+     */
+    private void ensureOpen() throws IllegalStateException {
+        if (records == null) {
+            throw new IllegalStateException("The region history is not open!");
+        }
+    }
+
+    /**
+     * Returns the position of the record with the given index.
+     *
+     * @param record the record index
+     * @return the position
+     */
+    private static long position(int record) {
+        return ((long) record + HEADER_RECORDS) * RECORD_SIZE;
+    }
+
+    /**
+     * Adds the tag with the given name to the tag table in memory, assigning
+     * it the next bit.
+     *
+     * @param tagName the name of the tag
+     */
+    private void addTag(String tagName) {
+        RegionTag tag;
+
+        try {
+            tag = RegionTag.valueOf(tagName);
+        } catch (IllegalArgumentException ex) {
+            tag = null;
+        }
+        if (tag != null && !bitsByTag.containsKey(tag)) {
+            bitsByTag.put(tag, tagsByBit.size());
+        }
+        tagsByBit.add(tag);
+    }
+
+    /**
+     * Returns the bit of the given tag in a record's tag bitmask, writing the
+     * tag to the tag table if it is not in it yet.
+     *
+     * @param tag the tag
+     * @return the bit
+     * @throws IOException if the tag could not be written, or the tag table is
+     * full
+     */
+    private int bitFor(RegionTag tag) throws IOException {
+        final Integer bit = bitsByTag.get(tag);
+
+        if (bit != null) {
+            return bit;
+        }
+        if (tagsByBit.size() >= TAG_SLOTS) {
+            throw new IOException("The tag table of the region history is full!");
+        }
+        records.write((1L + tagsByBit.size()) * RECORD_SIZE, tagSlot(tag.name()));
+        addTag(tag.name());
+        return tagsByBit.size() - 1;
+    }
+
+    /**
+     * Returns the header record of the tag table that holds the given name.
+     *
+     * @param tagName the name of the tag
+     * @return the header record
+     * @throws IOException if the name does not fit in a record
+     */
+    private static ByteBuffer tagSlot(String tagName) throws IOException {
+        final byte[] bytes = tagName.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length > RECORD_SIZE - 4) {
+            throw new IOException("The tag name " + tagName + " is too long for the region history!");
+        }
+        final ByteBuffer slot = ByteBuffer.allocate(RECORD_SIZE);
+        slot.putInt(bytes.length).put(bytes).rewind();
+        return slot;
+    }
+
+    /**
+     * Converts the given history file of the format that stored the tags by
+     * their ordinals to the current format, writing a tag table that assigns
+     * each bit the tag that has it as its ordinal.
+     *
+     * @param recordsFile the history file
+     * @throws IOException if the file could not be converted
+     */
+    private static void convertOrdinalTags(Path recordsFile) throws IOException {
+        final Path converted = recordsFile.resolveSibling(recordsFile.getFileName() + ".converting");
+        final RegionTag[] tags = RegionTag.values();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_RECORDS * RECORD_SIZE);
+        header.putInt(MAGIC).putInt(VERSION);
+
+        for (int bit = 0; bit < Math.min(tags.length, TAG_SLOTS); bit++) {
+            header.position((1 + bit) * RECORD_SIZE);
+            header.put(tagSlot(tags[bit].name()));
+        }
+        header.rewind();
+
+        try (FileChannel in = FileChannel.open(recordsFile, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(converted, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            final long size = in.size();
+            long copied = RECORD_SIZE;
+
+            while (copied < size) {
+                copied += in.transferTo(copied, size - copied, out);
+            }
+            out.force(false);
+        }
+        Files.move(converted, recordsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the flags for the given shards.
+     *
+     * @param shards the shards
+     * @return the flags
+     */
+    private static int flagsOf(Iterable<RegionShard> shards) {
+        int flags = 0;
+
+        for (RegionShard shard : shards) {
+            for (int bit = 0; bit < FLAG_SHARDS.length; bit++) {
+                if (FLAG_SHARDS[bit] == shard) {
+                    flags |= 1 << bit;
+                }
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Returns whether snapshots can hold all of the given shards.
+     *
+     * @param shards the shards
+     * @return whether snapshots can hold the shards
+     */
+    private static boolean holdsAll(RegionShard... shards) {
+        return Arrays.asList(FLAG_SHARDS).containsAll(Arrays.asList(shards));
+    }
+
+    /**
+     * Returns whether the record at the given position has the given shard.
+     *
+     * @param position the record position
+     * @param shard the shard
+     * @return whether the record has the shard
+     * @throws IOException if the history could not be read
+     */
+    private boolean hasFlag(long position, RegionShard shard) throws IOException {
+        final int flag = flagsOf(Collections.singleton(shard));
+        return (records.getInt(position + FLAGS) & flag) == flag;
+    }
+
+    /**
+     * Adds the given region name to the in-memory dictionary.
+     *
+     * @param regionName the region name
+     * @return the assigned ID
+     */
+    private int addName(String regionName) {
+        final int regionId = names.size();
+        names.add(regionName);
+        idsByName.put(EmbassyCheckRequest.normalizeRegionName(regionName), regionId);
+
+        if (regionId >= recordCounts.length) {
+            final int capacity = Math.max(16, recordCounts.length * 2);
+            recordsByRegion = Arrays.copyOf(recordsByRegion, capacity);
+            recordCounts = Arrays.copyOf(recordCounts, capacity);
+        }
+        recordsByRegion[regionId] = new int[0];
+        return regionId;
+    }
+
+    /**
+     * Returns the ID of the given region name, adding it to the dictionary if
+     * it is new.
+     *
+     * @param regionName the region name
+     * @return the ID
+     * @throws IOException if the name could not be written
+     * @throws IllegalArgumentException if the name is null or empty
+     */
+    private int idFor(String regionName) throws IOException, IllegalArgumentException {
+        if (regionName == null || regionName.isEmpty()) {
+            throw new IllegalArgumentException("A region without a name cannot be added to the history!");
+        }
+        final Integer existing = idsByName.get(EmbassyCheckRequest.normalizeRegionName(regionName));
+
+        if (existing != null) {
+            return existing;
+        }
+        final byte[] bytes = regionName.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocate(2 + bytes.length);
+        buffer.putShort((short) bytes.length).put(bytes).rewind();
+
+        while (buffer.hasRemaining()) {
+            namesChannel.write(buffer);
+        }
+        return addName(regionName);
+    }
+
+    /**
+     * Adds the given record to the index.
+     *
+     * @param regionId the record's region ID
+     * @param record the record index
+     */
+    private void index(int regionId, int record) {
+        final int count = recordCounts[regionId];
+
+        if (count == recordsByRegion[regionId].length) {
+            recordsByRegion[regionId] = Arrays.copyOf(recordsByRegion[regionId], Math.max(4, count * 2));
+        }
+        recordsByRegion[regionId][count] = record;
+        recordCounts[regionId] = count + 1;
+    }
+
+    /**
+     * Returns the position in the given region's index of its first record at
+     * or after the given time.
+     *
+     * @param regionId the region ID
+     * @param from time in seconds
+     * @return the position in the region's index
+     * @throws IOException if the history could not be read
+     */
+    private int firstRecordFrom(int regionId, long from) throws IOException {
+        int low = 0;
+        int high = recordCounts[regionId];
+
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+
+            if (records.getLong(position(recordsByRegion[regionId][middle]) + OBSERVED_AT) < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the given region's last record at or before the given time that
+     * has all of the given flags.
+     *
+     * @param regionId the region ID
+     * @param asOf time in seconds
+     * @param requiredFlags the flags the record must have
+     * @return the record index, or -1 if there is none
+     * @throws IOException if the history could not be read
+     */
+    private int findRecord(int regionId, long asOf, int requiredFlags) throws IOException {
+        for (int i = firstRecordFrom(regionId, asOf == Long.MAX_VALUE ? asOf : asOf + 1) - 1; i >= 0; i--) {
+            final int record = recordsByRegion[regionId][i];
+
+            if ((records.getInt(position(record) + FLAGS) & requiredFlags) == requiredFlags) {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the IDs of the embassy regions of the given region, as of its
+     * last snapshot with embassies at or before the given time.
+     *
+     * @param mainRegionName name of the region
+     * @param asOf time in seconds
+     * @return the embassy region IDs
+     * @throws IOException if the history could not be read
+     * @throws IllegalArgumentException if no embassies of the region were
+     * recorded
+     * @throws IllegalStateException if this history is not open
+     */
+    private int[] embassyIdsOf(String mainRegionName, long asOf)
+            throws IOException, IllegalArgumentException, IllegalStateException {
+        ensureOpen();
+        final Integer regionId = idsByName.get(EmbassyCheckRequest.normalizeRegionName(mainRegionName));
+        final int record = regionId == null ? -1
+                : findRecord(regionId, asOf, flagsOf(Collections.singleton(RegionShard.EMBASSIES)));
+
+        if (record < 0) {
+            throw new IllegalArgumentException("No embassies of the region were recorded!");
+        }
+        return readEmbassyIds(position(record));
+    }
+
+    /**
+     * Reads the embassy region IDs of the record at the given position.
+     *
+     * @param position the record position
+     * @return the embassy region IDs
+     * @throws IOException if the history could not be read
+     */
+    private int[] readEmbassyIds(long position) throws IOException {
+        final long offset = records.getLong(position + EMBASSIES_OFFSET);
+        final int[] embassyIds = new int[records.getInt(position + EMBASSY_COUNT)];
+
+        for (int i = 0; i < embassyIds.length; i++) {
+            embassyIds[i] = embassies.getInt(offset + 4L * i);
+        }
+        return embassyIds;
+    }
+
+    /**
+     * Reads the record with the given index as a region snapshot.
+     *
+     * @param record the record index
+     * @return the snapshot
+     * @throws IOException if the history could not be read
+     */
+    private RegionData readSnapshot(int record) throws IOException {
+        final long position = position(record);
+        final int flags = records.getInt(position + FLAGS);
+        final Set<RegionShard> shards = EnumSet.noneOf(RegionShard.class);
+
+        for (int bit = 0; bit < FLAG_SHARDS.length; bit++) {
+            if ((flags & (1 << bit)) != 0) {
+                shards.add(FLAG_SHARDS[bit]);
+            }
+        }
+
+        final List<String> embassyNames = new ArrayList<>();
+
+        for (int embassyId : readEmbassyIds(position)) {
+            embassyNames.add(names.get(embassyId));
+        }
+
+        final long tagsLow = records.getLong(position + TAGS_LOW);
+        final long tagsHigh = records.getLong(position + TAGS_HIGH);
+        final Set<RegionTag> tags = EnumSet.noneOf(RegionTag.class);
+
+        for (int bit = 0; bit < tagsByBit.size(); bit++) {
+            final boolean set = bit < 64 ? (tagsLow & (1L << bit)) != 0 : (tagsHigh & (1L << (bit - 64))) != 0;
+
+            if (set && tagsByBit.get(bit) != null) {
+                tags.add(tagsByBit.get(bit));
+            }
+        }
+
+        return new RegionData(names.get(records.getInt(position + REGION_ID)), shards,
+                records.getLong(position + OBSERVED_AT), embassyNames, records.getLong(position + LAST_MESSAGE),
+                records.getLong(position + FOUNDED), tags);
+    }
+}
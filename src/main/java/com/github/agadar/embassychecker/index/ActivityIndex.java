@@ -0,0 +1,319 @@
+package com.github.agadar.embassychecker.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Index of the last time each region was seen receiving a message on its
+ * regional message board, according to the world happenings. The happenings
+ * are ingested incrementally, from the API or from recorded copies, and the
+ * index is kept in a file between runs.
+ * <p>
+ * The happenings only prove activity: a region seen receiving a message
+ * recently is active, but a region not seen may still be active, as the
+ * happenings feed does not reach back far.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class ActivityIndex {
+
+    /**
+     * Magic number at the start of the index file: "ECAI".
+     */
+    private final static int MAGIC = 0x45434149;
+
+    /**
+     * Current version of the index file.
+     */
+    private final static int VERSION = 1;
+
+    /**
+     * Matches the regions mentioned in a happening.
+     */
+    private final static Pattern REGION_PATTERN = Pattern.compile("%%([^%]+)%%");
+
+    /**
+     * The file the index is kept in.
+     */
+    private final Path file;
+
+    /**
+     * The IDs of the regions seen.
+     */
+    private final RegionDictionary dictionary = new RegionDictionary();
+
+    /**
+     * Time in seconds of the last message seen, by region ID.
+     */
+    private final IntLongMap lastMessageById = new IntLongMap(1024);
+
+    /**
+     * ID of the most recent happening ingested, or 0 if none was.
+     */
+    private long lastEventId;
+
+    /**
+     * The outcome of ingesting a list of happenings.
+     */
+    public static final class Ingested {
+
+        /**
+         * The number of happenings in the list.
+         */
+        public final int events;
+
+        /**
+         * The number of regional messages among the happenings.
+         */
+        public final int messages;
+
+        /**
+         * ID of the oldest happening in the list, or 0 if it was empty.
+         */
+        public final long oldestEventId;
+
+        /**
+         * Constructor.
+         *
+         * @param events the number of happenings in the list
+         * @param messages the number of regional messages among the happenings
+         * @param oldestEventId ID of the oldest happening in the list
+         */
+        Ingested(int events, int messages, long oldestEventId) {
+            this.events = events;
+            this.messages = messages;
+            this.oldestEventId = oldestEventId;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file the file to keep the index in
+     */
+    public ActivityIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the default index file in the user's home directory.
+     *
+     * @return the default index file
+     */
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".nationstates-embassychecker", "activity-index.dat");
+    }
+
+    /**
+     * Ingests a list of happenings, as returned by the API's world happenings
+     * shard. Only happenings of messages being lodged on a regional message
+     * board count.
+     *
+     * @param in the list of happenings
+     * @return the outcome
+     * @throws IOException if the list is invalid
+     */
+    public synchronized Ingested ingest(InputStream in) throws IOException {
+        int events = 0;
+        int messages = 0;
+        long oldestEventId = 0;
+
+        try {
+            final XMLStreamReader reader = WorldShardClient.createReader(in);
+
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT || !reader.getLocalName().equals("EVENT")) {
+                    continue;
+                }
+                final String id = reader.getAttributeValue(null, "id");
+                final long eventId = id == null ? 0 : Long.parseLong(id);
+                long timestamp = 0;
+                String text = "";
+
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    if (reader.getLocalName().equals("TIMESTAMP")) {
+                        timestamp = Long.parseLong(reader.getElementText().trim());
+                    } else if (reader.getLocalName().equals("TEXT")) {
+                        text = reader.getElementText();
+                    } else {
+                        reader.getElementText();
+                    }
+                }
+
+                events++;
+                lastEventId = Math.max(lastEventId, eventId);
+                oldestEventId = oldestEventId == 0 ? eventId : Math.min(oldestEventId, eventId);
+
+                if (text.contains(" lodged ")) {
+                    final Matcher matcher = REGION_PATTERN.matcher(text);
+
+                    if (matcher.find()) {
+                        lastMessageById.putMax(dictionary.add(matcher.group(1)), timestamp);
+                        messages++;
+                    }
+                }
+            }
+        } catch (XMLStreamException | NumberFormatException ex) {
+            throw new IOException("The list of happenings is invalid!", ex);
+        }
+        return new Ingested(events, messages, oldestEventId);
+    }
+
+    /**
+     * Ingests the happenings since the most recent one ingested, using no more
+     * than the given number of requests. The newest happenings are requested
+     * first. If the requests run out before reaching the most recent one
+     * ingested, the happenings in between are skipped.
+     *
+     * @param client the client to request the happenings with
+     * @param maxRequests the maximum number of requests to make
+     * @return the number of requests made
+     * @throws IOException if a request failed
+     */
+    public int update(HappeningsClient client, int maxRequests) throws IOException {
+        final long sinceId;
+
+        synchronized (this) {
+            sinceId = lastEventId;
+        }
+        long beforeId = 0;
+        int requests = 0;
+
+        while (requests < maxRequests) {
+            final Ingested page = client.fetchInto(this, sinceId, beforeId);
+            requests++;
+
+            // A page that is not full holds the oldest happenings still missing.
+            if (page.events < HappeningsClient.PAGE_SIZE) {
+                break;
+            }
+            beforeId = page.oldestEventId;
+        }
+        return requests;
+    }
+
+    /**
+     * Returns the time of the last message seen on the given region's board.
+     *
+     * @param regionName name of the region
+     * @return the time in seconds, or 0 if no message was seen
+     */
+    public synchronized long lastMessageOf(String regionName) {
+        final int id = dictionary.idOf(regionName);
+        return id < 0 ? 0 : lastMessageById.get(id, 0);
+    }
+
+    /**
+     * Finds the regions among the given ones that were seen receiving a
+     * message after the given time.
+     *
+     * @param regionNames the names of the regions
+     * @param since time in seconds
+     * @return the time in seconds of the last message seen, by the name as
+     * given, of the regions that received one after the given time
+     */
+    public synchronized Map<String, Long> findActiveSince(Collection<String> regionNames, long since) {
+        final Map<String, Long> active = new HashMap<>();
+
+        for (String name : regionNames) {
+            final int id = dictionary.idOf(name);
+            final long lastMessage = id < 0 ? 0 : lastMessageById.get(id, 0);
+
+            if (lastMessage > since) {
+                active.put(name, lastMessage);
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Returns the number of regions seen receiving a message.
+     *
+     * @return the number of regions
+     */
+    public synchronized int size() {
+        return lastMessageById.size();
+    }
+
+    /**
+     * Loads the index file, if it exists, adding its regions to this index.
+     *
+     * @throws IOException if the index file could not be read
+     */
+    public void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                // Written by an incompatible version; start over.
+                return;
+            }
+
+            synchronized (this) {
+                lastEventId = Math.max(lastEventId, in.readLong());
+                final int count = in.readInt();
+
+                for (int i = 0; i < count; i++) {
+                    final String regionName = in.readUTF();
+                    lastMessageById.putMax(dictionary.add(regionName), in.readLong());
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves this index to the index file, replacing it atomically.
+     *
+     * @throws IOException if the index file could not be written
+     */
+    public synchronized void save() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lastEventId);
+            out.writeInt(lastMessageById.size());
+
+            final IOException[] failure = new IOException[1];
+            lastMessageById.forEach((id, lastMessage) -> {
+                if (failure[0] == null) {
+                    try {
+                        out.writeUTF(dictionary.nameOf(id));
+                        out.writeLong(lastMessage);
+                    } catch (IOException ex) {
+                        failure[0] = ex;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
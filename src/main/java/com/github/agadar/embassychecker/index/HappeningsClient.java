@@ -0,0 +1,55 @@
+package com.github.agadar.embassychecker.index;
+
+import com.github.agadar.embassychecker.source.RateLimiter;
+
+import java.io.IOException;
+
+/**
+ * Client for the NationStates API's world happenings shard, filtered to
+ * regional message board happenings. The wrapper does not offer the filtered
+ * shard, so it is requested directly.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class HappeningsClient extends WorldShardClient {
+
+    /**
+     * The number of happenings requested per page, which is the most the API
+     * returns.
+     */
+    final static int PAGE_SIZE = 200;
+
+    /**
+     * Constructor.
+     *
+     * @param userAgent the user agent to identify with
+     * @param rateLimiter the rate limiter every request is counted against
+     */
+    public HappeningsClient(String userAgent, RateLimiter rateLimiter) {
+        super(userAgent, rateLimiter);
+    }
+
+    /**
+     * Requests a page of the newest regional message board happenings within
+     * the given range and ingests it into the given index, using one request.
+     *
+     * @param index the index to ingest the happenings into
+     * @param sinceId only happenings after the one with this ID, or 0 for no
+     * lower bound
+     * @param beforeId only happenings before the one with this ID, or 0 for no
+     * upper bound
+     * @return the outcome
+     * @throws IOException if the request failed or the response is invalid
+     */
+    public ActivityIndex.Ingested fetchInto(ActivityIndex index, long sinceId, long beforeId) throws IOException {
+        final StringBuilder query = new StringBuilder("happenings;filter=rmb;limit=").append(PAGE_SIZE);
+
+        if (sinceId > 0) {
+            query.append(";sinceid=").append(sinceId);
+        }
+        if (beforeId > 0) {
+            query.append(";beforeid=").append(beforeId);
+        }
+        return request(query.toString(), index::ingest);
+    }
+}
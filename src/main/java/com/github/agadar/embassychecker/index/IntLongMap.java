@@ -0,0 +1,173 @@
+package com.github.agadar.embassychecker.index;
+
+import java.util.Arrays;
+
+/**
+ * Map from non-negative ints to longs, held in two primitive arrays with open
+ * addressing and linear probing, so that it takes no objects per entry.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class IntLongMap {
+
+    /**
+     * Marks an empty slot.
+     */
+    private final static int EMPTY = -1;
+
+    /**
+     * The maximum fraction of slots in use before the arrays are grown.
+     */
+    private final static double MAX_LOAD = 0.5;
+
+    /**
+     * The keys by slot, or {@link #EMPTY}. The length is a power of two.
+     */
+    private int[] keys;
+
+    /**
+     * The values by slot.
+     */
+    private long[] values;
+
+    /**
+     * The number of entries.
+     */
+    private int size;
+
+    /**
+     * Receives the entries of a map.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * Receives an entry.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        void accept(int key, long value);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expectedSize the number of entries to make room for
+     */
+    public IntLongMap(int expectedSize) {
+        int capacity = 16;
+
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Returns the value of the given key.
+     *
+     * @param key the key
+     * @param defaultValue the value to return if the key is absent
+     * @return the value, or the default value if the key is absent
+     */
+    public long get(int key, long defaultValue) {
+        final int mask = keys.length - 1;
+
+        for (int slot = mix(key) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Puts the given value for the given key, unless the key already has a
+     * greater value.
+     *
+     * @param key the key, which must be non-negative
+     * @param value the value
+     * @throws IllegalArgumentException if the key is negative
+     */
+    public void putMax(int key, long value) throws IllegalArgumentException {
+        if (key < 0) {
+            throw new IllegalArgumentException("The key must be non-negative!");
+        }
+        final int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+
+        for (; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                values[slot] = Math.max(values[slot], value);
+                return;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+
+        if (++size > keys.length * MAX_LOAD) {
+            grow();
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Passes every entry to the given consumer, in no particular order.
+     *
+     * @param consumer the consumer
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Doubles the number of slots, re-inserting the entries.
+     */
+    private void grow() {
+        final int[] oldKeys = keys;
+        final long[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        final int mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = mix(oldKeys[i]) & mask;
+
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of the given key, as dense keys would otherwise fill
+     * consecutive slots.
+     *
+     * @param key the key
+     * @return the mixed key
+     */
+    private static int mix(int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,272 @@
+package com.github.agadar.embassychecker.index;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary that assigns dense int IDs to region names, so that sets of
+ * regions can be held as bit sets and maps of regions as arrays. Names are
+ * matched normalized, so that differences in case and in spaces versus
+ * underscores do not matter.
+ * <p>
+ * The IDs are held in a table with open addressing and linear probing, along
+ * with each name's hash, so that looking up a name takes no objects and only
+ * compares the names whose hash matches. Names of plain ASCII are normalized
+ * while being hashed and compared, without being copied.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionDictionary {
+
+    /**
+     * Marks an empty slot.
+     */
+    private final static int EMPTY = -1;
+
+    /**
+     * The maximum fraction of slots in use before the table is grown. The
+     * arrays by ID hold this fraction of the number of slots.
+     */
+    private final static double MAX_LOAD = 0.5;
+
+    /**
+     * The IDs by slot, or {@link #EMPTY}. The length is a power of two.
+     */
+    private int[] slots;
+
+    /**
+     * Normalized names by ID.
+     */
+    private String[] keys;
+
+    /**
+     * Names as first added, by ID.
+     */
+    private String[] names;
+
+    /**
+     * Hashes of the normalized names, by ID.
+     */
+    private int[] hashes;
+
+    /**
+     * The number of names.
+     */
+    private int size;
+
+    /**
+     * Constructor, for an empty dictionary.
+     */
+    public RegionDictionary() {
+        this(16);
+    }
+
+    /**
+     * Constructor, for an empty dictionary with room for the given number of
+     * names.
+     *
+     * @param expectedSize the number of names to make room for
+     */
+    public RegionDictionary(int expectedSize) {
+        int capacity = 16;
+
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity <<= 1;
+        }
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        keys = new String[capacity / 2];
+        names = new String[capacity / 2];
+        hashes = new int[capacity / 2];
+    }
+
+    /**
+     * Constructor, for a copy of the given dictionary with the same IDs.
+     *
+     * @param other the dictionary to copy
+     */
+    public RegionDictionary(RegionDictionary other) {
+        this.slots = other.slots.clone();
+        this.keys = other.keys.clone();
+        this.names = other.names.clone();
+        this.hashes = other.hashes.clone();
+        this.size = other.size;
+    }
+
+    /**
+     * Returns the ID of the given region name, assigning it the next ID if it
+     * is new.
+     *
+     * @param regionName the region name
+     * @return the ID
+     */
+    public int add(String regionName) {
+        final String name = isPlain(regionName) ? regionName : EmbassyCheckRequest.normalizeRegionName(regionName);
+        final int hash = hash(name);
+        final int mask = slots.length - 1;
+        int slot = hash & mask;
+
+        for (; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            final int id = slots[slot];
+
+            if (hashes[id] == hash && matches(keys[id], name)) {
+                return id;
+            }
+        }
+
+        // Make room for the new name first, if needed.
+        if (size == keys.length) {
+            grow();
+            slot = freeSlot(hash);
+        }
+        final int id = size++;
+        slots[slot] = id;
+        keys[id] = EmbassyCheckRequest.normalizeRegionName(regionName);
+        names[id] = regionName;
+        hashes[id] = hash;
+        return id;
+    }
+
+    /**
+     * Returns the ID of the given region name.
+     *
+     * @param regionName the region name
+     * @return the ID, or -1 if the name is not in this dictionary
+     */
+    public int idOf(String regionName) {
+        final String name = isPlain(regionName) ? regionName : EmbassyCheckRequest.normalizeRegionName(regionName);
+        final int hash = hash(name);
+        final int mask = slots.length - 1;
+
+        for (int slot = hash & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            final int id = slots[slot];
+
+            if (hashes[id] == hash && matches(keys[id], name)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the region name with the given ID, as it was first added.
+     *
+     * @param id the ID
+     * @return the region name
+     * @throws IndexOutOfBoundsException if there is no region with the ID
+     */
+    public String nameOf(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No region with ID " + id);
+        }
+        return names[id];
+    }
+
+    /**
+     * Returns the number of region names in this dictionary, which is also
+     * the next ID to be assigned.
+     *
+     * @return the number of region names
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Doubles the number of slots, re-inserting the IDs.
+     */
+    private void grow() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, EMPTY);
+        keys = Arrays.copyOf(keys, slots.length / 2);
+        names = Arrays.copyOf(names, slots.length / 2);
+        hashes = Arrays.copyOf(hashes, slots.length / 2);
+
+        for (int id = 0; id < size; id++) {
+            slots[freeSlot(hashes[id])] = id;
+        }
+    }
+
+    /**
+     * Finds the first empty slot for the given hash.
+     *
+     * @param hash the hash
+     * @return the slot
+     */
+    private int freeSlot(int hash) {
+        final int mask = slots.length - 1;
+        int slot = hash & mask;
+
+        while (slots[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns whether the given name is plain ASCII without surrounding
+     * whitespace, so that it can be normalized one character at a time.
+     *
+     * @param name the name
+     * @return whether the name is plain
+     */
+    private static boolean isPlain(String name) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return name.charAt(0) > ' ' && name.charAt(name.length() - 1) > ' ';
+    }
+
+    /**
+     * Normalizes a character of a plain or normalized name.
+     *
+     * @param c the character
+     * @return the normalized character
+     */
+    private static char normalize(char c) {
+        return c == ' ' ? '_' : c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Hashes a plain or normalized name as if it were normalized, and spreads
+     * the bits of the hash.
+     *
+     * @param name the name
+     * @return the hash
+     */
+    private static int hash(String name) {
+        int hash = 0;
+
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + normalize(name.charAt(i));
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns whether the given normalized name is the normalized form of the
+     * given plain or normalized name.
+     *
+     * @param key the normalized name
+     * @param name the plain or normalized name
+     * @return whether the names match
+     */
+    private static boolean matches(String key, String name) {
+        if (key.length() != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != normalize(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.agadar.embassychecker.index;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.dump.DumpPipeline;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Existence filter built from the regions dump: which regions existed when
+ * the dump was made, and which regions were known to be dead by then. A
+ * region is known to be dead if the dump lists it among another region's
+ * embassies but does not list the region itself, as NationStates keeps
+ * listing embassies with regions that ceased to exist. Regions the dump does
+ * not mention at all may have been founded since, so they are not known to be
+ * dead. The filter is immutable.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionExistence {
+
+    /**
+     * Default age in seconds after which a filter is too stale to use. The
+     * regions dump is published daily.
+     */
+    public final static long DEFAULT_MAX_AGE_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    /**
+     * Time in seconds as of which the filter holds.
+     */
+    public final long builtAt;
+
+    /**
+     * The IDs of the regions the dump mentions.
+     */
+    private final RegionDictionary dictionary;
+
+    /**
+     * The regions that existed, by ID.
+     */
+    private final BitSet existing;
+
+    /**
+     * The regions known to be dead, by ID.
+     */
+    private final BitSet dead;
+
+    /**
+     * Builds an existence filter from the regions of a dump, in any order.
+     */
+    public static final class DumpIndexer implements Consumer<RegionData> {
+
+        private final RegionDictionary dictionary = new RegionDictionary(1 << 15);
+        private final BitSet existing = new BitSet();
+        private final BitSet mentioned = new BitSet();
+
+        /**
+         * Time in seconds at which the dump was made.
+         */
+        private long dumpedAt;
+
+        @Override
+        public void accept(RegionData region) {
+            existing.set(dictionary.add(region.name));
+            dumpedAt = region.retrievedAt;
+
+            for (String embassy : region.embassies) {
+                mentioned.set(dictionary.add(embassy));
+            }
+        }
+
+        /**
+         * Builds the filter from the regions accepted.
+         *
+         * @return the filter
+         */
+        public RegionExistence build() {
+            final BitSet dead = (BitSet) mentioned.clone();
+            dead.andNot(existing);
+            return new RegionExistence(dumpedAt, dictionary, existing, dead);
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param builtAt time in seconds as of which the filter holds
+     * @param dictionary the IDs of the regions the dump mentions
+     * @param existing the regions that existed, by ID
+     * @param dead the regions known to be dead, by ID
+     */
+    private RegionExistence(long builtAt, RegionDictionary dictionary, BitSet existing, BitSet dead) {
+        this.builtAt = builtAt;
+        this.dictionary = dictionary;
+        this.existing = existing;
+        this.dead = dead;
+    }
+
+    /**
+     * Builds a filter from the given regions dump file, reading it with the
+     * given pipeline.
+     *
+     * @param file the dump file
+     * @param pipeline the pipeline to read the dump with
+     * @return the filter
+     * @throws IOException if the dump could not be read
+     */
+    public static RegionExistence fromDump(Path file, DumpPipeline pipeline) throws IOException {
+        final DumpIndexer indexer = new DumpIndexer();
+        pipeline.run(file, indexer);
+        return indexer.build();
+    }
+
+    /**
+     * Returns whether this filter is fresh enough to use.
+     *
+     * @param now the current time in seconds
+     * @param maxAgeSeconds the age in seconds after which the filter is stale
+     * @return whether this filter is fresh enough to use
+     */
+    public boolean isFresh(long now, long maxAgeSeconds) {
+        return now - builtAt < maxAgeSeconds;
+    }
+
+    /**
+     * Returns whether the given region existed when the dump was made.
+     *
+     * @param regionName name of the region
+     * @return whether the region existed
+     */
+    public boolean existed(String regionName) {
+        final int id = dictionary.idOf(regionName);
+        return id >= 0 && existing.get(id);
+    }
+
+    /**
+     * Returns whether the given region is known to be dead.
+     *
+     * @param regionName name of the region
+     * @return whether the region is known to be dead
+     */
+    public boolean isKnownDead(String regionName) {
+        final int id = dictionary.idOf(regionName);
+        return id >= 0 && dead.get(id);
+    }
+
+    /**
+     * Returns the number of regions that existed when the dump was made.
+     *
+     * @return the number of regions
+     */
+    public int size() {
+        return existing.cardinality();
+    }
+
+    /**
+     * Returns the number of regions known to be dead.
+     *
+     * @return the number of regions
+     */
+    public int deadCount() {
+        return dead.cardinality();
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.agadar.embassychecker.index;
+
+import com.github.agadar.embassychecker.source.RateLimiter;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Client for the NationStates API's world shard that lists all regions with a
+ * given tag. The wrapper does not offer this shard, so it is requested
+ * directly.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class RegionsByTagClient extends WorldShardClient {
+
+    /**
+     * Constructor.
+     *
+     * @param userAgent the user agent to identify with
+     * @param rateLimiter the rate limiter every request is counted against
+     */
+    public RegionsByTagClient(String userAgent, RateLimiter rateLimiter) {
+        super(userAgent, rateLimiter);
+    }
+
+    /**
+     * Returns the names of all regions with the given tag, using one request.
+     *
+     * @param tag the tag
+     * @return the region names, as the API lists them
+     * @throws IOException if the request failed or the response is invalid
+     */
+    public List<String> getRegions(RegionTag tag) throws IOException {
+        return request("regionsbytag;tags=" + URLEncoder.encode(apiName(tag), StandardCharsets.UTF_8),
+                RegionsByTagClient::parse);
+    }
+
+    /**
+     * Returns the name by which the API knows the given tag.
+     *
+     * @param tag the tag
+     * @return the API's name of the tag
+     */
+    static String apiName(RegionTag tag) {
+        return tag.toString().toLowerCase(Locale.ROOT).replace(' ', '_');
+    }
+
+    /**
+     * Parses a response, which lists the region names comma-separated in a
+     * REGIONS element.
+     *
+     * @param in the response
+     * @return the region names
+     * @throws IOException if the response is invalid
+     */
+    static List<String> parse(InputStream in) throws IOException {
+        final List<String> regions = new ArrayList<>();
+
+        try {
+            final XMLStreamReader reader = createReader(in);
+
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("REGIONS")) {
+                    for (String region : reader.getElementText().split(",")) {
+                        if (!region.trim().isEmpty()) {
+                            regions.add(region.trim());
+                        }
+                    }
+                    return regions;
+                }
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("The list of tagged regions is invalid!", ex);
+        }
+        throw new IOException("The list of tagged regions holds no regions element!");
+    }
+}
@@ -0,0 +1,294 @@
+package com.github.agadar.embassychecker.index;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.dump.DumpChangeSet;
+import com.github.agadar.embassychecker.dump.DumpPipeline;
+import com.github.agadar.embassychecker.dump.RegionDumpReader;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reverse index from region tags to the regions that have them, built from
+ * one of the bulk sources: the regions dump, or the API's list of regions by
+ * tag. Looking up the tags of a list of regions intersects that list with the
+ * regions of each tag, without requesting anything. The index is immutable.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class TagIndex {
+
+    /**
+     * Default age in seconds after which an index is too stale to use. The
+     * regions dump is published daily.
+     */
+    public final static long DEFAULT_MAX_AGE_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    /**
+     * Time in seconds as of which the index holds the tags.
+     */
+    public final long builtAt;
+
+    /**
+     * The IDs of the regions the index knows the tags of, unless it knows the
+     * tags of all regions.
+     */
+    private final RegionDictionary dictionary;
+
+    /**
+     * The regions that have each tag, by ID.
+     */
+    private final Map<RegionTag, BitSet> regionsByTag;
+
+    /**
+     * The regions in the dictionary that ceased to exist since, by ID, which
+     * the index no longer knows.
+     */
+    private final BitSet ceased;
+
+    /**
+     * Whether the index knows the tags of all regions, so that regions it does
+     * not know have no tags.
+     */
+    private final boolean coversAllRegions;
+
+    /**
+     * Constructor.
+     *
+     * @param builtAt time in seconds as of which the index holds the tags
+     * @param dictionary the IDs of the regions the index knows
+     * @param regionsByTag the regions that have each tag, by ID
+     * @param ceased the regions in the dictionary that ceased to exist, by ID
+     * @param coversAllRegions whether the index knows the tags of all regions
+     */
+    private TagIndex(long builtAt, RegionDictionary dictionary, Map<RegionTag, BitSet> regionsByTag,
+            BitSet ceased, boolean coversAllRegions) {
+        this.builtAt = builtAt;
+        this.dictionary = dictionary;
+        this.regionsByTag = regionsByTag;
+        this.ceased = ceased;
+        this.coversAllRegions = coversAllRegions;
+    }
+
+    /**
+     * Builds an index from the regions dump, reading it to the end. Regions
+     * founded after the dump are not known to the index.
+     *
+     * @param dump the dump to read
+     * @return the index
+     * @throws IOException if the dump could not be read, or lists no tags
+     */
+    public static TagIndex fromDump(RegionDumpReader dump) throws IOException {
+        final DumpIndexer indexer = new DumpIndexer();
+        RegionData region;
+
+        while ((region = dump.next()) != null) {
+            indexer.accept(region);
+        }
+        return indexer.build();
+    }
+
+    /**
+     * Builds an index from the given regions dump file, reading it with the
+     * given pipeline. Regions founded after the dump are not known to the
+     * index.
+     *
+     * @param file the dump file
+     * @param pipeline the pipeline to read the dump with
+     * @return the index
+     * @throws IOException if the dump could not be read, or lists no tags
+     */
+    public static TagIndex fromDump(Path file, DumpPipeline pipeline) throws IOException {
+        final DumpIndexer indexer = new DumpIndexer();
+        pipeline.run(file, indexer);
+        return indexer.build();
+    }
+
+    /**
+     * Returns a copy of this index updated with the given changes between the
+     * dump it was built from and a newer dump. Only the regions in the changes
+     * are touched.
+     *
+     * @param changes the changes between the dumps
+     * @return the updated index
+     * @throws IllegalArgumentException if this index was not built from a
+     * dump, or the changes are not newer than this index
+     */
+    public TagIndex withChanges(DumpChangeSet changes) throws IllegalArgumentException {
+        if (coversAllRegions) {
+            throw new IllegalArgumentException("Only an index built from a dump can be updated with its changes!");
+        }
+        if (changes.dumpedAt < builtAt) {
+            throw new IllegalArgumentException("The changes are older than the index!");
+        }
+        final RegionDictionary updatedDictionary = new RegionDictionary(dictionary);
+        final Map<RegionTag, BitSet> updatedRegionsByTag = new EnumMap<>(RegionTag.class);
+        final BitSet updatedCeased = (BitSet) ceased.clone();
+        regionsByTag.forEach((tag, regions) -> updatedRegionsByTag.put(tag, (BitSet) regions.clone()));
+
+        for (String regionName : changes.deleted) {
+            final int id = updatedDictionary.idOf(regionName);
+
+            if (id >= 0) {
+                updatedRegionsByTag.values().forEach(regions -> regions.clear(id));
+                updatedCeased.set(id);
+            }
+        }
+        final List<RegionData> updated = new ArrayList<>(changes.added);
+        changes.changed.forEach(change -> updated.add(change.region));
+
+        for (RegionData region : updated) {
+            final int id = updatedDictionary.add(region.name);
+            updatedRegionsByTag.values().forEach(regions -> regions.clear(id));
+            updatedCeased.clear(id);
+            region.tags.forEach(tag -> updatedRegionsByTag.computeIfAbsent(tag, t -> new BitSet()).set(id));
+        }
+        return new TagIndex(changes.dumpedAt, updatedDictionary, updatedRegionsByTag, updatedCeased, false);
+    }
+
+    /**
+     * Builds an index from the regions of a dump, in dump order.
+     */
+    public static final class DumpIndexer implements Consumer<RegionData> {
+
+        private final RegionDictionary dictionary = new RegionDictionary();
+        private final Map<RegionTag, BitSet> regionsByTag = new EnumMap<>(RegionTag.class);
+
+        /**
+         * Time in seconds at which the dump was made.
+         */
+        private long dumpedAt;
+
+        /**
+         * Whether any region had its tags listed.
+         */
+        private boolean sawTags;
+
+        @Override
+        public void accept(RegionData region) {
+            final int id = dictionary.add(region.name);
+            dumpedAt = region.retrievedAt;
+            sawTags |= region.shards.contains(RegionShard.TAGS);
+
+            for (RegionTag tag : region.tags) {
+                regionsByTag.computeIfAbsent(tag, t -> new BitSet()).set(id);
+            }
+        }
+
+        /**
+         * Builds the index from the regions accepted.
+         *
+         * @return the index
+         * @throws IOException if the dump lists no tags
+         */
+        public TagIndex build() throws IOException {
+            if (!sawTags) {
+                throw new IOException("The regions dump lists no tags!");
+            }
+            return new TagIndex(dumpedAt, dictionary, regionsByTag, new BitSet(), false);
+        }
+    }
+
+    /**
+     * Builds an index from the API's list of regions by tag, using one request
+     * per tag.
+     *
+     * @param client the client to list the regions with
+     * @return the index
+     * @throws IOException if listing the regions of any tag failed
+     */
+    public static TagIndex fromRegionsByTag(RegionsByTagClient client) throws IOException {
+        final RegionDictionary dictionary = new RegionDictionary();
+        final Map<RegionTag, BitSet> regionsByTag = new EnumMap<>(RegionTag.class);
+
+        for (RegionTag tag : RegionTag.values()) {
+            final BitSet regions = new BitSet();
+            client.getRegions(tag).forEach(name -> regions.set(dictionary.add(name)));
+            regionsByTag.put(tag, regions);
+        }
+        return new TagIndex(System.currentTimeMillis() / 1000, dictionary, regionsByTag, new BitSet(), true);
+    }
+
+    /**
+     * Returns whether this index is fresh enough to use.
+     *
+     * @param now the current time in seconds
+     * @param maxAgeSeconds the age in seconds after which the index is stale
+     * @return whether this index is fresh enough to use
+     */
+    public boolean isFresh(long now, long maxAgeSeconds) {
+        return now - builtAt < maxAgeSeconds;
+    }
+
+    /**
+     * Looks up the tags of the given regions, by intersecting them with the
+     * regions of each tag. Regions this index does not know are left out,
+     * unless it knows the tags of all regions, in which case they have none.
+     *
+     * @param regionNames the names of the regions
+     * @return the tags of each known region, by the name as given
+     */
+    public Map<String, Set<RegionTag>> tagsOf(Collection<String> regionNames) {
+        final Map<String, Set<RegionTag>> tagsByName = new HashMap<>();
+        final String[] namesById = new String[dictionary.size()];
+        final BitSet known = new BitSet(namesById.length);
+
+        // Map the names to IDs, noting the known regions along the way.
+        for (String name : regionNames) {
+            final int id = dictionary.idOf(name);
+
+            if (id >= 0 && !ceased.get(id)) {
+                namesById[id] = name;
+                known.set(id);
+                tagsByName.put(name, EnumSet.noneOf(RegionTag.class));
+            } else if (coversAllRegions) {
+                tagsByName.put(name, EnumSet.noneOf(RegionTag.class));
+            }
+        }
+
+        // Intersect the known regions with the regions of each tag.
+        regionsByTag.forEach((tag, tagged) -> {
+            final BitSet hits = (BitSet) known.clone();
+            hits.and(tagged);
+
+            for (int id = hits.nextSetBit(0); id >= 0; id = hits.nextSetBit(id + 1)) {
+                tagsByName.get(namesById[id]).add(tag);
+            }
+        });
+        return tagsByName;
+    }
+
+    /**
+     * Returns the number of regions this index knows by name.
+     *
+     * @return the number of regions
+     */
+    public int size() {
+        return dictionary.size() - ceased.cardinality();
+    }
+
+    /**
+     * Returns the number of regions with the given tag.
+     *
+     * @param tag the tag
+     * @return the number of regions with the tag
+     */
+    public int count(RegionTag tag) {
+        final BitSet tagged = regionsByTag.get(tag);
+        return tagged == null ? 0 : tagged.cardinality();
+    }
+}
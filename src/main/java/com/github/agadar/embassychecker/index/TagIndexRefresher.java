@@ -0,0 +1,98 @@
+package com.github.agadar.embassychecker.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a tag index up to date by rebuilding it on a schedule, on a background
+ * thread. The previous index stays in use while a new one is being built, and
+ * when building one fails.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class TagIndexRefresher implements Closeable {
+
+    private final static Logger LOGGER = Logger.getLogger(TagIndexRefresher.class.getName());
+
+    /**
+     * Builds a tag index from one of the bulk sources.
+     */
+    @FunctionalInterface
+    public interface Builder {
+
+        /**
+         * Builds a tag index.
+         *
+         * @return the index
+         * @throws IOException if the index could not be built
+         */
+        TagIndex build() throws IOException;
+    }
+
+    private final Builder builder;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * The latest index, or null if none was built yet.
+     */
+    private volatile TagIndex index;
+
+    /**
+     * Constructor. Builds the first index right away, and then a new one every
+     * period.
+     *
+     * @param builder builds the indexes
+     * @param period the time between the starts of two builds
+     * @param unit the unit of the period
+     * @throws IllegalArgumentException if the period is <= 0
+     */
+    public TagIndexRefresher(Builder builder, long period, TimeUnit unit) throws IllegalArgumentException {
+        if (period <= 0) {
+            throw new IllegalArgumentException("The refresh period must be greater than 0!");
+        }
+        this.builder = builder;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "Tag index refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::refresh, 0, period, unit);
+    }
+
+    /**
+     * Returns the latest index.
+     *
+     * @return the latest index, or null if none was built yet
+     */
+    public TagIndex get() {
+        return index;
+    }
+
+    /**
+     * Builds a new index and puts it in use.
+     */
+    private void refresh() {
+        final long start = System.nanoTime();
+
+        try {
+            index = builder.build();
+            LOGGER.log(Level.INFO, "Rebuilt the tag index of {0} regions in {1} ms",
+                    new Object[]{index.size(), (System.nanoTime() - start) / 1_000_000});
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Failed to rebuild the tag index", ex);
+        }
+    }
+
+    /**
+     * Stops refreshing the index.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
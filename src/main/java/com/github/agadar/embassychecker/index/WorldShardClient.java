@@ -0,0 +1,122 @@
+package com.github.agadar.embassychecker.index;
+
+import com.github.agadar.embassychecker.source.RateLimiter;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Base of the clients for the NationStates API's world shards that the
+ * wrapper does not offer, which request them directly.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+abstract class WorldShardClient {
+
+    /**
+     * The API's URL, to which the query is appended.
+     */
+    private final static String API_URL = "https://www.nationstates.net/cgi-bin/api.cgi?q=";
+
+    /**
+     * Timeouts in milliseconds for connecting and reading.
+     */
+    private final static int TIMEOUT_MILLIS = 30000;
+
+    private final String userAgent;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * Parses a response.
+     *
+     * @param <T> the type of the parsed response
+     */
+    @FunctionalInterface
+    interface ResponseParser<T> {
+
+        /**
+         * Parses the given response.
+         *
+         * @param in the response
+         * @return the parsed response
+         * @throws IOException if the response is invalid
+         */
+        T parse(InputStream in) throws IOException;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param userAgent the user agent to identify with
+     * @param rateLimiter the rate limiter every request is counted against
+     */
+    WorldShardClient(String userAgent, RateLimiter rateLimiter) {
+        this.userAgent = userAgent;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Requests the given world shard query and parses the response.
+     *
+     * @param <T> the type of the parsed response
+     * @param query the query, such as <code>happenings;filter=rmb</code>
+     * @param parser parses the response
+     * @return the parsed response
+     * @throws IOException if the request failed or the response is invalid
+     */
+    <T> T request(String query, ResponseParser<T> parser) throws IOException {
+        try {
+            rateLimiter.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+        }
+
+        final HttpURLConnection connection = (HttpURLConnection) new URL(API_URL + query).openConnection();
+        connection.setRequestProperty("User-Agent", userAgent);
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+
+        try {
+            final int status = connection.getResponseCode();
+
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("The request for " + query + " failed with HTTP status " + status);
+            }
+            try (InputStream in = new BufferedInputStream(connection.getInputStream())) {
+                return parser.parse(in);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Creates a reader for the given XML document, with external entities
+     * disabled.
+     *
+     * @param in the document
+     * @return the reader
+     * @throws IOException if the document is not XML
+     */
+    static XMLStreamReader createReader(InputStream in) throws IOException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+
+        try {
+            return factory.createXMLStreamReader(in);
+        } catch (XMLStreamException ex) {
+            throw new IOException("The response is not XML!", ex);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.agadar.embassychecker.report;
+
+import com.github.agadar.embassychecker.EmbassyCheckCli;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a {@link WorldAudit} over several worker processes on this host, each
+ * of which reads the regions dump itself and audits one partition of the main
+ * regions. The workers are started with the command line interface, and hand
+ * their results back through files: each writes a partial report, and exits
+ * with status 0 once it is complete. The coordinator then merges the partial
+ * reports into the report. No requests are made to NationStates.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class AuditCoordinator {
+
+    /**
+     * The number of workers.
+     */
+    private final int workers;
+
+    /**
+     * The directory the partial reports are written to.
+     */
+    private final Path directory;
+
+    /**
+     * The command line arguments of each worker, besides its partition and
+     * its partial report file.
+     */
+    private final List<String> workerArguments;
+
+    /**
+     * Constructor.
+     *
+     * @param workers the number of workers
+     * @param directory the directory to write the partial reports to
+     * @param workerArguments the command line arguments of each worker,
+     * besides its partition and its partial report file
+     * @throws IllegalArgumentException if workers <= 0
+     */
+    public AuditCoordinator(int workers, Path directory, List<String> workerArguments)
+            throws IllegalArgumentException {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("The number of workers must be greater than 0!");
+        }
+        this.workers = workers;
+        this.directory = directory;
+        this.workerArguments = new ArrayList<>(workerArguments);
+    }
+
+    /**
+     * Runs the workers, waits for all of them to complete, and merges their
+     * partial reports into the report. The partial reports are deleted
+     * afterwards.
+     *
+     * @param out the writer to write the report to
+     * @return the number of rows written
+     * @throws IOException if a worker could not be started or failed, or the
+     * partial reports could not be merged
+     */
+    public long run(Writer out) throws IOException {
+        final List<Path> partials = new ArrayList<>();
+        final List<Process> processes = new ArrayList<>();
+
+        try {
+            // Start the workers, each with the JVM options of this process.
+            for (int partition = 0; partition < workers; partition++) {
+                final Path partial = Files.createTempFile(directory, "audit-part-" + partition + "-", ".dat");
+                partials.add(partial);
+
+                final List<String> command = new ArrayList<>();
+                command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+                ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                        .filter(argument -> argument.startsWith("-X"))
+                        .forEach(command::add);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(EmbassyCheckCli.class.getName());
+                command.addAll(workerArguments);
+                command.add("--partition");
+                command.add(partition + "/" + workers);
+                command.add("--partial");
+                command.add(partial.toString());
+
+                processes.add(new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+
+            // Wait for all of them to complete.
+            for (int partition = 0; partition < workers; partition++) {
+                final int status = processes.get(partition).waitFor();
+
+                if (status != 0) {
+                    throw new IOException("Worker " + partition + " failed with exit status " + status + "!");
+                }
+            }
+            return WorldAudit.merge(partials, out);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the workers");
+        } finally {
+            processes.forEach(Process::destroy);
+
+            for (Path partial : partials) {
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.github.agadar.embassychecker.report;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts more rows than fit comfortably in the heap, holding no more than a
+ * given number of them in memory. Whenever that many rows were added, they are
+ * sorted and spilled to a temporary file as a run, in the compact binary form
+ * of a {@link RowCodec}. The sorted rows are then read by merging the runs,
+ * reading one row of each run at a time. If there are more runs than can be
+ * merged at once, the first runs are merged into one first.
+ * <p>
+ * The sort is stable: rows that compare equal keep the order in which they
+ * were added. The temporary files are deleted when the sorter is closed.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ * @param <T> the type of the rows
+ */
+public final class ExternalSorter<T> implements Closeable {
+
+    /**
+     * The maximum number of runs merged at once, each of which holds a read
+     * buffer.
+     */
+    public final static int MAX_FAN_IN = 64;
+
+    /**
+     * Size in bytes of the buffer of each run file.
+     */
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    private final Comparator<? super T> comparator;
+    private final RowCodec<T> codec;
+
+    /**
+     * The maximum number of rows held in memory.
+     */
+    private final int maxRowsInMemory;
+
+    /**
+     * The directory the run files are made in.
+     */
+    private final Path directory;
+
+    /**
+     * The rows added since the last spill, in the order they were added.
+     */
+    private final List<T> buffer = new ArrayList<>();
+
+    /**
+     * The run files, in the order their rows were added.
+     */
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * The number of rows in each run file.
+     */
+    private final List<Long> runSizes = new ArrayList<>();
+
+    /**
+     * The readers of the run files that are open.
+     */
+    private final List<RunReader> readers = new ArrayList<>();
+
+    /**
+     * The number of rows added.
+     */
+    private long size;
+
+    /**
+     * The number of runs spilled while adding rows.
+     */
+    private int spilledRuns;
+
+    /**
+     * Whether the sorted rows were read, after which no rows may be added.
+     */
+    private boolean read;
+
+    /**
+     * Reads the rows of one run file in order.
+     */
+    private final class RunReader implements Closeable {
+
+        /**
+         * The index of the run, which orders rows that compare equal.
+         */
+        final int order;
+
+        private final DataInputStream in;
+
+        /**
+         * The number of rows left to read after the head.
+         */
+        private long remaining;
+
+        /**
+         * The current row, or null if all rows were read.
+         */
+        T head;
+
+        /**
+         * Constructor, reading the first row.
+         *
+         * @param order the index of the run
+         * @param run the run file
+         * @param rows the number of rows in the run file
+         * @throws IOException if the run file could not be read
+         */
+        RunReader(int order, Path run, long rows) throws IOException {
+            this.order = order;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+            this.remaining = rows;
+            readers.add(this);
+            advance();
+        }
+
+        /**
+         * Reads the next row into the head, closing the file after the last.
+         *
+         * @throws IOException if the run file could not be read
+         */
+        void advance() throws IOException {
+            if (remaining == 0) {
+                head = null;
+                close();
+                return;
+            }
+            head = codec.read(in);
+            remaining--;
+        }
+
+        @Override
+        public void close() throws IOException {
+            readers.remove(this);
+            in.close();
+        }
+    }
+
+    /**
+     * Constructor, making the run files in the default temporary directory.
+     *
+     * @param comparator the ordering of the rows
+     * @param codec the codec the rows are spilled with
+     * @param maxRowsInMemory the maximum number of rows held in memory
+     * @throws IllegalArgumentException if maxRowsInMemory <= 0
+     */
+    public ExternalSorter(Comparator<? super T> comparator, RowCodec<T> codec, int maxRowsInMemory)
+            throws IllegalArgumentException {
+        this(comparator, codec, maxRowsInMemory, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param comparator the ordering of the rows
+     * @param codec the codec the rows are spilled with
+     * @param maxRowsInMemory the maximum number of rows held in memory
+     * @param directory the directory to make the run files in
+     * @throws IllegalArgumentException if maxRowsInMemory <= 0
+     */
+    public ExternalSorter(Comparator<? super T> comparator, RowCodec<T> codec, int maxRowsInMemory,
+            Path directory) throws IllegalArgumentException {
+        if (maxRowsInMemory <= 0) {
+            throw new IllegalArgumentException("The maximum number of rows in memory must be greater than 0!");
+        }
+        this.comparator = comparator;
+        this.codec = codec;
+        this.maxRowsInMemory = maxRowsInMemory;
+        this.directory = directory;
+    }
+
+    /**
+     * Adds the given row, spilling the rows held in memory if there are as
+     * many as may be held.
+     *
+     * @param row the row
+     * @throws IOException if the rows could not be spilled
+     * @throws IllegalStateException if the sorted rows were already read
+     */
+    public void add(T row) throws IOException, IllegalStateException {
+        if (read) {
+            throw new IllegalStateException("The sorted rows were already read!");
+        }
+        buffer.add(row);
+        size++;
+
+        if (buffer.size() >= maxRowsInMemory) {
+            spill();
+            spilledRuns++;
+        }
+    }
+
+    /**
+     * Returns the number of rows added.
+     *
+     * @return the number of rows
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of runs spilled to disk while adding rows, which is
+     * 0 if all rows fit in memory.
+     *
+     * @return the number of runs
+     */
+    public int getSpilledRuns() {
+        return spilledRuns;
+    }
+
+    /**
+     * Returns the rows in sorted order. If no rows were spilled, they are
+     * sorted in memory; otherwise the rows held in memory are spilled as the
+     * last run, and the runs are merged while they are read. May be called
+     * once.
+     *
+     * @return the sorted rows; reading them throws UncheckedIOException if a
+     * run file could not be read
+     * @throws IOException if the runs could not be spilled or merged
+     * @throws IllegalStateException if the sorted rows were already read
+     */
+    public Iterator<T> sorted() throws IOException, IllegalStateException {
+        if (read) {
+            throw new IllegalStateException("The sorted rows were already read!");
+        }
+        read = true;
+
+        if (runs.isEmpty()) {
+            buffer.sort(comparator);
+            return buffer.iterator();
+        }
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+
+        // Merge the first runs into one until all can be merged at once.
+        while (runs.size() > MAX_FAN_IN) {
+            final Iterator<T> merged = merge(MAX_FAN_IN);
+            final Path run = Files.createTempFile(directory, "sort-run-", ".bin");
+            long rows = 0;
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(run), BUFFER_SIZE))) {
+                while (merged.hasNext()) {
+                    codec.write(out, merged.next());
+                    rows++;
+                }
+            } catch (UncheckedIOException ex) {
+                // The merged run is not among the runs yet, so closing would not delete it.
+                Files.deleteIfExists(run);
+                throw ex.getCause();
+            } catch (IOException | RuntimeException ex) {
+                Files.deleteIfExists(run);
+                throw ex;
+            }
+            for (int i = 0; i < MAX_FAN_IN; i++) {
+                Files.deleteIfExists(runs.remove(0));
+                runSizes.remove(0);
+            }
+            runs.add(0, run);
+            runSizes.add(0, rows);
+        }
+        return merge(runs.size());
+    }
+
+    /**
+     * Deletes the run files.
+     *
+     * @throws IOException if a run file could not be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        while (!readers.isEmpty()) {
+            readers.get(0).close();
+        }
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        runSizes.clear();
+        buffer.clear();
+    }
+
+    /**
+     * Sorts the rows held in memory and writes them to a new run file.
+     *
+     * @throws IOException if the run file could not be written
+     */
+    private void spill() throws IOException {
+        buffer.sort(comparator);
+        final Path run = Files.createTempFile(directory, "sort-run-", ".bin");
+        runs.add(run);
+        runSizes.add((long) buffer.size());
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(run), BUFFER_SIZE))) {
+            for (T row : buffer) {
+                codec.write(out, row);
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the rows of the first given number of runs, merged.
+     *
+     * @param count the number of runs to merge
+     * @return the merged rows; reading them throws UncheckedIOException if a
+     * run file could not be read
+     * @throws IOException if a run file could not be opened
+     */
+    private Iterator<T> merge(int count) throws IOException {
+        final PriorityQueue<RunReader> heads = new PriorityQueue<>(Math.max(1, count),
+                (a, b) -> {
+                    final int byRow = comparator.compare(a.head, b.head);
+                    return byRow != 0 ? byRow : Integer.compare(a.order, b.order);
+                });
+
+        for (int i = 0; i < count; i++) {
+            final RunReader reader = new RunReader(i, runs.get(i), runSizes.get(i));
+
+            if (reader.head != null) {
+                heads.add(reader);
+            }
+        }
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                final RunReader reader = heads.poll();
+
+                if (reader == null) {
+                    throw new NoSuchElementException();
+                }
+                final T row = reader.head;
+
+                try {
+                    reader.advance();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException("Failed to read a sorted run", ex);
+                }
+                if (reader.head != null) {
+                    heads.add(reader);
+                }
+                return row;
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.agadar.embassychecker.report;
+
+import com.github.agadar.embassychecker.domain.AuditRow;
+import com.github.agadar.embassychecker.domain.RegionFounded;
+import com.github.agadar.embassychecker.domain.RegionLastMsg;
+import com.github.agadar.embassychecker.domain.RegionWithTags;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes rows to and reads them from the compact binary form in which an
+ * {@link ExternalSorter} spills them to disk.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ * @param <T> the type of the rows
+ */
+public interface RowCodec<T> {
+
+    /**
+     * Codec of {@link RegionLastMsg}: the region name and the days.
+     */
+    RowCodec<RegionLastMsg> REGION_LAST_MSG = new RowCodec<RegionLastMsg>() {
+        @Override
+        public void write(DataOutput out, RegionLastMsg row) throws IOException {
+            out.writeUTF(row.region);
+            out.writeInt(row.diffInDays);
+        }
+
+        @Override
+        public RegionLastMsg read(DataInput in) throws IOException {
+            return new RegionLastMsg(in.readUTF(), in.readInt());
+        }
+    };
+
+    /**
+     * Codec of {@link RegionFounded}: the region name and the days.
+     */
+    RowCodec<RegionFounded> REGION_FOUNDED = new RowCodec<RegionFounded>() {
+        @Override
+        public void write(DataOutput out, RegionFounded row) throws IOException {
+            out.writeUTF(row.region);
+            out.writeInt(row.diffInDays);
+        }
+
+        @Override
+        public RegionFounded read(DataInput in) throws IOException {
+            return new RegionFounded(in.readUTF(), in.readInt());
+        }
+    };
+
+    /**
+     * Codec of {@link RegionWithTags}: the region name, the number of tags and
+     * the tags' ordinals, one byte each.
+     */
+    RowCodec<RegionWithTags> REGION_WITH_TAGS = new RowCodec<RegionWithTags>() {
+        @Override
+        public void write(DataOutput out, RegionWithTags row) throws IOException {
+            out.writeUTF(row.region);
+            out.writeByte(row.tags.size());
+
+            for (RegionTag tag : row.tags) {
+                out.writeByte(tag.ordinal());
+            }
+        }
+
+        @Override
+        public RegionWithTags read(DataInput in) throws IOException {
+            final String region = in.readUTF();
+            final int count = in.readUnsignedByte();
+            final RegionTag[] values = RegionTag.values();
+            final List<RegionTag> tags = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                tags.add(values[in.readUnsignedByte()]);
+            }
+            return new RegionWithTags(region, tags);
+        }
+    };
+
+    /**
+     * Writes the given row.
+     *
+     * @param out the output to write to
+     * @param row the row
+     * @throws IOException if the row could not be written
+     */
+    void write(DataOutput out, T row) throws IOException;
+
+    /**
+     * Reads a row.
+     *
+     * @param in the input to read from
+     * @return the row
+     * @throws IOException if the row could not be read
+     */
+    T read(DataInput in) throws IOException;
+
+    /**
+     * Returns the codec of audit rows whose results are written with the given
+     * codec: the main region name, followed by the result.
+     *
+     * @param <R> the type of the results
+     * @param resultCodec the codec of the results
+     * @return the codec of the audit rows
+     */
+    static <R extends Comparable<? super R>> RowCodec<AuditRow<R>> auditRows(RowCodec<R> resultCodec) {
+        return new RowCodec<AuditRow<R>>() {
+            @Override
+            public void write(DataOutput out, AuditRow<R> row) throws IOException {
+                out.writeUTF(row.mainRegion);
+                resultCodec.write(out, row.result);
+            }
+
+            @Override
+            public AuditRow<R> read(DataInput in) throws IOException {
+                final String mainRegion = in.readUTF();
+                return new AuditRow<>(mainRegion, resultCodec.read(in));
+            }
+        };
+    }
+}
@@ -0,0 +1,608 @@
+package com.github.agadar.embassychecker.report;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.arena.RegionArena;
+import com.github.agadar.embassychecker.arena.RegionRecord;
+import com.github.agadar.embassychecker.check.RegionAgeCheck;
+import com.github.agadar.embassychecker.check.RegionTagsCheck;
+import com.github.agadar.embassychecker.check.RmbActivityCheck;
+import com.github.agadar.embassychecker.domain.AuditRow;
+import com.github.agadar.embassychecker.domain.RegionFounded;
+import com.github.agadar.embassychecker.domain.RegionLastMsg;
+import com.github.agadar.embassychecker.domain.RegionWithTags;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Audit of the embassies of every region in an arena, such as every region in
+ * the world read from the regions dump. Each region in the arena is a main
+ * region, and each of its embassy regions that is in the arena and fails a
+ * check is a row of the report, as an {@link AuditRow}. As that makes for
+ * millions of rows, the rows are sorted with an {@link ExternalSorter}, which
+ * holds a bounded number of them in memory, and are written to the report as
+ * they are merged.
+ * <p>
+ * A check is only evaluated on the embassy regions whose records hold the
+ * shard it needs. The regions dump holds the tags, but not the regional
+ * messages or the founding dates.
+ * <p>
+ * An audit can be split over several processes by main region: each audits
+ * one partition of the main regions, against all regions as embassy regions,
+ * and writes its sorted rows to a partial report file. The partial reports
+ * are then merged into the report with {@link #merge(List, Writer)}.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class WorldAudit {
+
+    /**
+     * The default maximum number of rows held in memory.
+     */
+    public final static int DEFAULT_MAX_ROWS_IN_MEMORY = 1000000;
+
+    /**
+     * Magic number at the start of a partial report file: "ECAP".
+     */
+    private final static int MAGIC = 0x45434150;
+
+    /**
+     * Current version of the partial report file format.
+     */
+    private final static int VERSION = 1;
+
+    // The kinds of the sections in a partial report file.
+    private final static byte RMB_ACTIVITY = 0;
+    private final static byte REGION_AGE = 1;
+    private final static byte REGION_TAGS = 2;
+
+    /**
+     * Size in bytes of the buffer of a partial report file.
+     */
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The regions to audit.
+     */
+    private final RegionArena arena;
+
+    /**
+     * The maximum number of rows held in memory, over all checks.
+     */
+    private final int maxRowsInMemory;
+
+    /**
+     * The directory the sorted runs are spilled to.
+     */
+    private final Path directory;
+
+    /**
+     * The RMB activity check, or null if not selected.
+     */
+    private RmbActivityCheck rmbActivityCheck;
+
+    /**
+     * The region age check, or null if not selected.
+     */
+    private RegionAgeCheck regionAgeCheck;
+
+    /**
+     * The region tags check, or null if not selected.
+     */
+    private RegionTagsCheck regionTagsCheck;
+
+    /**
+     * Time in seconds as of which the checks are evaluated.
+     */
+    private long now = System.currentTimeMillis() / 1000;
+
+    /**
+     * The partition of the main regions to audit.
+     */
+    private int partition;
+
+    /**
+     * The number of partitions the main regions are split into.
+     */
+    private int partitions = 1;
+
+    /**
+     * The number of runs the last audit spilled to disk.
+     */
+    private int spilledRuns;
+
+    /**
+     * Writes the sorted rows of the checks somewhere.
+     */
+    @FunctionalInterface
+    private interface SectionWriter {
+
+        /**
+         * Writes the sorted rows of a check.
+         *
+         * @param kind the kind of the check
+         * @param title the title of the check
+         * @param sorter the sorter holding the check's rows
+         * @return the number of rows written
+         * @throws IOException if the rows could not be read or written
+         */
+        long write(byte kind, String title, ExternalSorter<?> sorter) throws IOException;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param arena the regions to audit
+     * @param maxRowsInMemory the maximum number of rows held in memory
+     * @param directory the directory to spill the sorted runs to
+     * @throws IllegalArgumentException if maxRowsInMemory <= 0
+     */
+    public WorldAudit(RegionArena arena, int maxRowsInMemory, Path directory) throws IllegalArgumentException {
+        if (maxRowsInMemory <= 0) {
+            throw new IllegalArgumentException("The maximum number of rows in memory must be greater than 0!");
+        }
+        this.arena = arena;
+        this.maxRowsInMemory = maxRowsInMemory;
+        this.directory = directory;
+    }
+
+    /**
+     * Makes this audit check the RMB activity of the embassy regions.
+     *
+     * @param days the maximum number of days since the last RMB message
+     * @return this
+     * @throws IllegalArgumentException if days <= 0
+     */
+    public WorldAudit rmbActivity(int days) throws IllegalArgumentException {
+        rmbActivityCheck = new RmbActivityCheck(days);
+        return this;
+    }
+
+    /**
+     * Makes this audit check the age of the embassy regions.
+     *
+     * @param days the minimum number of days since founding
+     * @return this
+     * @throws IllegalArgumentException if days <= 0
+     */
+    public WorldAudit minimumAge(int days) throws IllegalArgumentException {
+        regionAgeCheck = new RegionAgeCheck(days);
+        return this;
+    }
+
+    /**
+     * Makes this audit check the embassy regions for the given tags.
+     *
+     * @param tags the tags to check for
+     * @return this
+     * @throws IllegalArgumentException if tags is null or empty
+     */
+    public WorldAudit regionTags(RegionTag[] tags) throws IllegalArgumentException {
+        regionTagsCheck = new RegionTagsCheck(tags);
+        return this;
+    }
+
+    /**
+     * Evaluates the checks as of the given time rather than now.
+     *
+     * @param now time in seconds as of which the checks are evaluated
+     * @return this
+     */
+    public WorldAudit asOf(long now) {
+        this.now = now;
+        return this;
+    }
+
+    /**
+     * Makes this audit only audit the main regions in the given partition.
+     * The main regions are partitioned by the hash of their normalized names,
+     * which is the same in every process.
+     *
+     * @param partition the partition to audit
+     * @param partitions the number of partitions
+     * @return this
+     * @throws IllegalArgumentException if partitions <= 0, or partition is not
+     * between 0 and partitions
+     */
+    public WorldAudit partition(int partition, int partitions) throws IllegalArgumentException {
+        if (partitions <= 0 || partition < 0 || partition >= partitions) {
+            throw new IllegalArgumentException("The partition must be between 0 and the number of partitions!");
+        }
+        this.partition = partition;
+        this.partitions = partitions;
+        return this;
+    }
+
+    /**
+     * Returns the partition the given main region is in.
+     *
+     * @param regionName name of the main region
+     * @param partitions the number of partitions
+     * @return the partition
+     */
+    public static int partitionOf(String regionName, int partitions) {
+        return Math.floorMod(EmbassyCheckRequest.normalizeRegionName(regionName).hashCode(), partitions);
+    }
+
+    /**
+     * Returns the number of runs the last audit spilled to disk, which is 0
+     * if all rows fit in memory.
+     *
+     * @return the number of runs
+     */
+    public int getSpilledRuns() {
+        return spilledRuns;
+    }
+
+    /**
+     * Audits the regions, and writes the report to the given writer: a
+     * section per check, with its rows sorted by main region and then as in
+     * the report of a single region.
+     *
+     * @param out the writer to write the report to
+     * @return the number of rows written
+     * @throws IOException if the rows could not be spilled, or the report
+     * could not be written
+     * @throws IllegalArgumentException if none of the checks was selected
+     */
+    public long write(Writer out) throws IOException, IllegalArgumentException {
+        final long written = run((kind, title, sorter) -> {
+            writeHeader(out, title, sorter.size());
+            try {
+                writeRows(out, sorter.sorted());
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            return sorter.size();
+        });
+        out.flush();
+        return written;
+    }
+
+    /**
+     * Audits the regions, and writes the sorted rows to the given partial
+     * report file, to be merged with the other partitions' with
+     * {@link #merge(List, Writer)}.
+     *
+     * @param file the partial report file
+     * @return the number of rows written
+     * @throws IOException if the rows could not be spilled, or the file could
+     * not be written
+     * @throws IllegalArgumentException if none of the checks was selected
+     */
+    public long writePartial(Path file) throws IOException, IllegalArgumentException {
+        final int sections = (rmbActivityCheck != null ? 1 : 0) + (regionAgeCheck != null ? 1 : 0)
+                + (regionTagsCheck != null ? 1 : 0);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sections);
+
+            return run((kind, title, sorter) -> {
+                out.writeByte(kind);
+                out.writeUTF(title);
+                out.writeLong(sorter.size());
+
+                try {
+                    switch (kind) {
+                        case RMB_ACTIVITY:
+                            writeRows(out, sorter, RowCodec.auditRows(RowCodec.REGION_LAST_MSG));
+                            break;
+                        case REGION_AGE:
+                            writeRows(out, sorter, RowCodec.auditRows(RowCodec.REGION_FOUNDED));
+                            break;
+                        default:
+                            writeRows(out, sorter, RowCodec.auditRows(RowCodec.REGION_WITH_TAGS));
+                            break;
+                    }
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+                return sorter.size();
+            });
+        }
+    }
+
+    /**
+     * Merges the given partial report files, each of the same checks but of
+     * another partition, and writes the report to the given writer, as
+     * {@link #write(Writer)} would have written it for all partitions.
+     *
+     * @param partials the partial report files
+     * @param out the writer to write the report to
+     * @return the number of rows written
+     * @throws IOException if a partial report file could not be read or is
+     * invalid, or the report could not be written
+     */
+    public static long merge(List<Path> partials, Writer out) throws IOException {
+        final List<DataInputStream> ins = new ArrayList<>();
+
+        try {
+            int sections = -1;
+
+            for (Path partial : partials) {
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        Files.newInputStream(partial), BUFFER_SIZE));
+                ins.add(in);
+
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException(partial + " is not a partial report!");
+                }
+                final int partialSections = in.readInt();
+
+                if (sections >= 0 && partialSections != sections) {
+                    throw new IOException(partial + " holds other checks than the other partial reports!");
+                }
+                sections = partialSections;
+            }
+            long written = 0;
+
+            for (int section = 0; section < sections; section++) {
+                final long[] counts = new long[ins.size()];
+                byte kind = -1;
+                String title = null;
+                long total = 0;
+
+                for (int i = 0; i < ins.size(); i++) {
+                    final byte partialKind = ins.get(i).readByte();
+                    final String partialTitle = ins.get(i).readUTF();
+
+                    if (title != null && (partialKind != kind || !partialTitle.equals(title))) {
+                        throw new IOException(partials.get(i) + " holds other checks than the other partial reports!");
+                    }
+                    kind = partialKind;
+                    title = partialTitle;
+                    counts[i] = ins.get(i).readLong();
+                    total += counts[i];
+                }
+                writeHeader(out, title, total);
+
+                switch (kind) {
+                    case RMB_ACTIVITY:
+                        mergeRows(ins, counts, RowCodec.auditRows(RowCodec.REGION_LAST_MSG), out);
+                        break;
+                    case REGION_AGE:
+                        mergeRows(ins, counts, RowCodec.auditRows(RowCodec.REGION_FOUNDED), out);
+                        break;
+                    case REGION_TAGS:
+                        mergeRows(ins, counts, RowCodec.auditRows(RowCodec.REGION_WITH_TAGS), out);
+                        break;
+                    default:
+                        throw new IOException("Unknown check in partial report: " + kind);
+                }
+                written += total;
+            }
+            out.flush();
+            return written;
+        } finally {
+            for (DataInputStream in : ins) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Audits the regions in this audit's partition, and passes the sorted rows
+     * of each check to the given writer.
+     *
+     * @param sections writes the rows of each check
+     * @return the number of rows written
+     * @throws IOException if the rows could not be spilled or written
+     * @throws IllegalArgumentException if none of the checks was selected
+     */
+    private long run(SectionWriter sections) throws IOException, IllegalArgumentException {
+        final int checks = (rmbActivityCheck != null ? 1 : 0) + (regionAgeCheck != null ? 1 : 0)
+                + (regionTagsCheck != null ? 1 : 0);
+
+        if (checks == 0) {
+            throw new IllegalArgumentException("None of the checks is selected!");
+        }
+        final int rowsPerCheck = Math.max(1, maxRowsInMemory / checks);
+
+        try (ExternalSorter<AuditRow<RegionLastMsg>> inactive = rmbActivityCheck == null ? null
+                : new ExternalSorter<>(Comparator.naturalOrder(), RowCodec.auditRows(RowCodec.REGION_LAST_MSG),
+                        rowsPerCheck, directory);
+                ExternalSorter<AuditRow<RegionFounded>> young = regionAgeCheck == null ? null
+                : new ExternalSorter<>(Comparator.naturalOrder(), RowCodec.auditRows(RowCodec.REGION_FOUNDED),
+                        rowsPerCheck, directory);
+                ExternalSorter<AuditRow<RegionWithTags>> tagged = regionTagsCheck == null ? null
+                : new ExternalSorter<>(Comparator.naturalOrder(), RowCodec.auditRows(RowCodec.REGION_WITH_TAGS),
+                        rowsPerCheck, directory)) {
+            final int[] recordsById = recordsById();
+            final RegionRecord main = arena.cursor();
+            final RegionRecord embassy = arena.cursor();
+
+            // Check the embassy regions of each main region.
+            for (int i = 0; i < arena.size(); i++) {
+                main.moveTo(i);
+
+                if (partitions > 1 && partitionOf(main.name(), partitions) != partition) {
+                    continue;
+                }
+                for (int e = 0; e < main.embassyCount(); e++) {
+                    final int id = main.embassyId(e);
+
+                    if (id >= recordsById.length || recordsById[id] < 0) {
+                        continue;
+                    }
+                    embassy.moveTo(recordsById[id]);
+
+                    if (inactive != null && embassy.hasShard(RegionShard.REGIONAL_MESSAGES)) {
+                        addIfFailed(inactive, main.name(), rmbActivityCheck.evaluate(embassy, now));
+                    }
+                    if (young != null && embassy.hasShard(RegionShard.FOUNDED)) {
+                        addIfFailed(young, main.name(), regionAgeCheck.evaluate(embassy, now));
+                    }
+                    if (tagged != null && embassy.hasShard(RegionShard.TAGS)) {
+                        addIfFailed(tagged, main.name(), regionTagsCheck.evaluate(embassy, now));
+                    }
+                }
+            }
+            spilledRuns = (inactive != null ? inactive.getSpilledRuns() : 0)
+                    + (young != null ? young.getSpilledRuns() : 0)
+                    + (tagged != null ? tagged.getSpilledRuns() : 0);
+
+            // Write the sections, merging the runs as they are written.
+            long written = 0;
+
+            if (inactive != null) {
+                written += sections.write(RMB_ACTIVITY, rmbActivityCheck.getTitle(), inactive);
+            }
+            if (young != null) {
+                written += sections.write(REGION_AGE, regionAgeCheck.getTitle(), young);
+            }
+            if (tagged != null) {
+                written += sections.write(REGION_TAGS, regionTagsCheck.getTitle(), tagged);
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Maps the IDs of the regions' names to the indexes of their records.
+     *
+     * @return the index of the record by ID, or -1 for IDs without a record
+     */
+    private int[] recordsById() {
+        final RegionRecord record = arena.cursor();
+        int maxId = -1;
+
+        for (int i = 0; i < arena.size(); i++) {
+            maxId = Math.max(maxId, record.moveTo(i).id());
+        }
+        final int[] recordsById = new int[maxId + 1];
+        Arrays.fill(recordsById, -1);
+
+        for (int i = 0; i < arena.size(); i++) {
+            recordsById[record.moveTo(i).id()] = i;
+        }
+        return recordsById;
+    }
+
+    /**
+     * Adds a row of the given result to the given sorter, unless it is null.
+     *
+     * @param <R> the type of the result
+     * @param sorter the sorter
+     * @param mainRegion name of the main region
+     * @param result the result, or null if the embassy region passed
+     * @throws IOException if the rows could not be spilled
+     */
+    private static <R extends Comparable<? super R>> void addIfFailed(ExternalSorter<AuditRow<R>> sorter,
+            String mainRegion, R result) throws IOException {
+        if (result != null) {
+            sorter.add(new AuditRow<>(mainRegion, result));
+        }
+    }
+
+    /**
+     * Writes the header of the section of a check.
+     *
+     * @param out the writer to write to
+     * @param title the title of the check
+     * @param rows the number of rows in the section
+     * @throws IOException if the header could not be written
+     */
+    private static void writeHeader(Writer out, String title, long rows) throws IOException {
+        final String newLine = System.lineSeparator();
+        out.append("-------").append(title).append("-------").append(newLine);
+        out.append("Total regions found: ").append(Long.toString(rows)).append('.').append(newLine);
+    }
+
+    /**
+     * Writes the given rows of a section as text, followed by the empty line
+     * that ends the section.
+     *
+     * @param out the writer to write to
+     * @param rows the rows
+     * @throws IOException if the rows could not be written
+     */
+    private static void writeRows(Writer out, Iterator<?> rows) throws IOException {
+        final String newLine = System.lineSeparator();
+
+        while (rows.hasNext()) {
+            out.append(rows.next().toString()).append(newLine);
+        }
+        out.append(newLine);
+    }
+
+    /**
+     * Writes the sorted rows of the given sorter to a partial report file.
+     *
+     * @param <T> the type of the rows
+     * @param out the output to write to
+     * @param sorter the sorter, whose rows are of the codec's type
+     * @param codec the codec of the rows
+     * @throws IOException if the rows could not be read or written
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void writeRows(DataOutputStream out, ExternalSorter<?> sorter, RowCodec<T> codec)
+            throws IOException {
+        final Iterator<T> rows = ((ExternalSorter<T>) sorter).sorted();
+
+        while (rows.hasNext()) {
+            codec.write(out, rows.next());
+        }
+    }
+
+    /**
+     * Merges the rows of a section of the given partial report files, and
+     * writes them as text.
+     *
+     * @param <R> the type of the results
+     * @param ins the partial report files, at the section's rows
+     * @param counts the number of rows of the section in each file
+     * @param codec the codec of the rows
+     * @param out the writer to write to
+     * @throws IOException if a file could not be read, or the rows could not
+     * be written
+     */
+    private static <R extends Comparable<? super R>> void mergeRows(List<DataInputStream> ins, long[] counts,
+            RowCodec<AuditRow<R>> codec, Writer out) throws IOException {
+        final long[] remaining = counts.clone();
+        final List<AuditRow<R>> heads = new ArrayList<>();
+        final PriorityQueue<Integer> order = new PriorityQueue<>(Math.max(1, ins.size()),
+                Comparator.<Integer, AuditRow<R>>comparing(heads::get).thenComparing(Comparator.naturalOrder()));
+        final String newLine = System.lineSeparator();
+
+        // Take the first row of each partition, then keep taking the least.
+        for (int i = 0; i < ins.size(); i++) {
+            heads.add(null);
+
+            if (remaining[i] > 0) {
+                heads.set(i, codec.read(ins.get(i)));
+                remaining[i]--;
+                order.add(i);
+            }
+        }
+        while (!order.isEmpty()) {
+            final int i = order.poll();
+            out.append(heads.get(i).toString()).append(newLine);
+
+            if (remaining[i] > 0) {
+                heads.set(i, codec.read(ins.get(i)));
+                remaining[i]--;
+                order.add(i);
+            }
+        }
+        out.append(newLine);
+    }
+}
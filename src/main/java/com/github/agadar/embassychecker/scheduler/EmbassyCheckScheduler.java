@@ -0,0 +1,421 @@
+package com.github.agadar.embassychecker.scheduler;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.domain.EmbassyCheckReport;
+import com.github.agadar.embassychecker.domain.RegionData;
+import com.github.agadar.embassychecker.event.RegionEventsListener;
+import com.github.agadar.embassychecker.index.TagIndex;
+import com.github.agadar.embassychecker.source.RateLimiter;
+import com.github.agadar.embassychecker.source.RegionSource;
+import com.github.agadar.embassychecker.source.RetrievalDetail;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Holds queued embassy check jobs, and hands out the shared rate limit's tokens
+ * to the running jobs by priority and weighted fair share. Jobs of a higher
+ * priority class always go first; within a class, each job receives tokens in
+ * proportion to its weight, so that a small check is not starved by a large
+ * one that was started earlier.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class EmbassyCheckScheduler {
+
+    /**
+     * Virtual time a job of weight 1 advances per granted token.
+     */
+    private final static double STRIDE = 1.0;
+
+    private final RegionSource regionSource;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * Executes the jobs, highest priority first.
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * Hands out the tokens.
+     */
+    private final Thread dispatcher;
+
+    /**
+     * Used to number the submitted jobs.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * The jobs that were submitted and are not yet done.
+     */
+    private final List<ScheduledJob> activeJobs = new ArrayList<>();
+
+    /**
+     * The running jobs that are waiting for a token. Guarded by this.
+     */
+    private final List<ScheduledJob> waiting = new ArrayList<>();
+
+    /**
+     * Virtual time of the last granted token. Guarded by this.
+     */
+    private double virtualTime;
+
+    /**
+     * Whether this scheduler has been shut down. Guarded by this.
+     */
+    private boolean shutdown;
+
+    /**
+     * Supplies the tag index the jobs answer their tag checks from, or null.
+     */
+    private volatile Supplier<TagIndex> tagIndex = () -> null;
+
+    /**
+     * Age in seconds after which the tag index is too stale to use.
+     */
+    private volatile long tagIndexMaxAgeSeconds = TagIndex.DEFAULT_MAX_AGE_SECONDS;
+
+    /**
+     * Constructor. Starts the token dispatcher.
+     *
+     * @param regionSource the source the jobs retrieve regions from
+     * @param rateLimiter the rate limit that all jobs share
+     * @param maxConcurrentJobs the maximum number of jobs to run at the same
+     * time
+     * @throws IllegalArgumentException if maxConcurrentJobs <= 0
+     */
+    public EmbassyCheckScheduler(RegionSource regionSource, RateLimiter rateLimiter, int maxConcurrentJobs)
+            throws IllegalArgumentException {
+        if (maxConcurrentJobs <= 0) {
+            throw new IllegalArgumentException("The maximum number of concurrent jobs must be greater than 0!");
+        }
+
+        this.regionSource = regionSource;
+        this.rateLimiter = rateLimiter;
+        this.workers = new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>());
+        this.dispatcher = new Thread(this::dispatchTokens, "EmbassyCheckScheduler-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Makes the jobs that start from now on answer their tag checks from the
+     * index the given supplier supplies, as long as it is fresh.
+     *
+     * @param tagIndex supplies the tag index, or null if there is none yet
+     * @param maxAgeSeconds the age in seconds after which the index is stale
+     * @throws IllegalArgumentException if maxAgeSeconds <= 0
+     */
+    public void useTagIndex(Supplier<TagIndex> tagIndex, long maxAgeSeconds) throws IllegalArgumentException {
+        if (maxAgeSeconds <= 0) {
+            throw new IllegalArgumentException("The maximum age of the tag index must be greater than 0!");
+        }
+        this.tagIndexMaxAgeSeconds = maxAgeSeconds;
+        this.tagIndex = tagIndex;
+    }
+
+    /**
+     * Submits a new job with weight 1.
+     *
+     * @param request the request to execute
+     * @param priority the priority class of the job
+     * @param listeners the listeners to add to the job's query
+     * @return the job
+     */
+    public ScheduledJob submit(EmbassyCheckRequest request, JobPriority priority, RegionEventsListener... listeners) {
+        return submit(request, priority, 1, listeners);
+    }
+
+    /**
+     * Submits a new job.
+     *
+     * @param request the request to execute
+     * @param priority the priority class of the job
+     * @param weight the weight of the job within its priority class
+     * @param listeners the listeners to add to the job's query
+     * @return the job, whose future has already failed if this scheduler was
+     * shut down
+     * @throws IllegalArgumentException if weight <= 0
+     */
+    public ScheduledJob submit(EmbassyCheckRequest request, JobPriority priority, int weight,
+            RegionEventsListener... listeners) throws IllegalArgumentException {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("The weight must be greater than 0!");
+        }
+
+        final ScheduledJob job = new ScheduledJob(request, priority, weight, sequence.getAndIncrement(), listeners);
+
+        synchronized (activeJobs) {
+            activeJobs.add(job);
+        }
+        try {
+            workers.execute(new PrioritizedRun(job));
+        } catch (RejectedExecutionException ex) {
+            fail(job, ex);
+        }
+        return job;
+    }
+
+    /**
+     * Returns the number of jobs that are queued and not yet running.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Returns the number of running jobs that are waiting for a token.
+     *
+     * @return the number of jobs waiting for a token
+     */
+    public synchronized int getJobsWaitingForToken() {
+        return waiting.size();
+    }
+
+    /**
+     * Returns the jobs that were submitted and are not yet done, both queued and
+     * running.
+     *
+     * @return the active jobs
+     */
+    public List<ScheduledJob> getActiveJobs() {
+        synchronized (activeJobs) {
+            return Collections.unmodifiableList(new ArrayList<>(activeJobs));
+        }
+    }
+
+    /**
+     * Stops accepting new jobs, lets queued and running jobs complete, and then
+     * stops the dispatcher. The jobs that are not done once the timeout passes
+     * fail: the running ones at their next request, the queued ones right away.
+     *
+     * @param timeout the maximum time to wait for the jobs
+     * @param unit the unit of the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        workers.shutdown();
+        final boolean terminated = workers.awaitTermination(timeout, unit);
+
+        // Wake the dispatcher and the workers waiting for a token.
+        synchronized (this) {
+            shutdown = true;
+            notifyAll();
+        }
+        if (terminated) {
+            return;
+        }
+        final IllegalStateException stopped = new IllegalStateException("The scheduler was shut down!");
+
+        for (Runnable queued : workers.shutdownNow()) {
+            fail(((PrioritizedRun) queued).job, stopped);
+        }
+    }
+
+    /**
+     * Fails the given job that will not run, and forgets it.
+     *
+     * @param job the job
+     * @param cause why the job failed
+     */
+    private void fail(ScheduledJob job, Exception cause) {
+        job.getFuture().completeExceptionally(cause);
+
+        synchronized (activeJobs) {
+            activeJobs.remove(job);
+        }
+    }
+
+    /**
+     * Executes the given job on the calling worker thread.
+     *
+     * @param job the job to execute
+     */
+    private void run(ScheduledJob job) {
+        try {
+            if (job.getFuture().isDone()) {
+                // Cancelled while queued.
+                return;
+            }
+            job.markStarted();
+            final RegionSource jobSource = new RegionSource() {
+                @Override
+                public RegionData getRegion(String regionName, RegionShard... shards) {
+                    return getRegion(regionName, new RetrievalDetail(), shards);
+                }
+
+                @Override
+                public RegionData getRegion(String regionName, RetrievalDetail detail, RegionShard... shards) {
+                    return EmbassyCheckScheduler.this.getRegion(job, regionName, detail, shards);
+                }
+
+                @Override
+                public RegionData peek(String regionName, RegionShard... shards) {
+                    return regionSource.peek(regionName, shards);
+                }
+
+                @Override
+                public boolean isFree(String regionName, RegionShard... shards) {
+                    return regionSource.isFree(regionName, shards);
+                }
+
+                @Override
+                public RateLimiter getRateLimiter() {
+                    return rateLimiter;
+                }
+            };
+            final EmbassyCheckReport report = job.request.toQuery(jobSource).addListeners(job.listeners)
+                    .tagIndex(tagIndex.get(), tagIndexMaxAgeSeconds).executeReport();
+            job.getFuture().complete(report);
+        } catch (RuntimeException ex) {
+            job.getFuture().completeExceptionally(ex);
+        } finally {
+            synchronized (activeJobs) {
+                activeJobs.remove(job);
+            }
+        }
+    }
+
+    /**
+     * Retrieves a region on behalf of the given job, after waiting for a token
+     * unless the source can serve the region without making a request.
+     *
+     * @param job the job
+     * @param regionName name of the region to retrieve
+     * @param detail the detail to record the retrieval in
+     * @param shards the shards to retrieve
+     * @return the region's data, or null if the region does not exist
+     */
+    private RegionData getRegion(ScheduledJob job, String regionName, RetrievalDetail detail,
+            RegionShard... shards) {
+        // Regions the source already holds do not count against the rate limit.
+        if (regionSource.isFree(regionName, shards)) {
+            return regionSource.getRegion(regionName, detail, shards);
+        }
+        final long start = System.nanoTime();
+
+        synchronized (this) {
+            job.pass = Math.max(job.pass, virtualTime);
+            job.tokenGranted = false;
+            waiting.add(job);
+            notifyAll();
+
+            try {
+                while (!job.tokenGranted && !shutdown) {
+                    wait();
+                }
+            } catch (InterruptedException ex) {
+                waiting.remove(job);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the rate limit!", ex);
+            }
+            if (!job.tokenGranted) {
+                waiting.remove(job);
+                throw new IllegalStateException("The scheduler was shut down!");
+            }
+        }
+
+        final long tokenWait = System.nanoTime() - start;
+        job.recordToken(tokenWait);
+        detail.addRateLimitWait(tokenWait);
+        return regionSource.getRegion(regionName, detail, shards);
+    }
+
+    /**
+     * Main loop of the dispatcher: waits for a job to request a token, waits for
+     * the rate limit to allow a request, and then grants the token to the job
+     * that is next in line at that moment.
+     */
+    private void dispatchTokens() {
+        boolean holdingToken = false;
+
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (waiting.isEmpty() && !shutdown) {
+                        wait();
+                    }
+                    if (shutdown) {
+                        return;
+                    }
+                }
+
+                if (!holdingToken) {
+                    rateLimiter.acquire();
+                    holdingToken = true;
+                }
+
+                synchronized (this) {
+                    final ScheduledJob next = nextInLine();
+
+                    // If the waiting job went away in the meantime, keep the token.
+                    if (next != null) {
+                        waiting.remove(next);
+                        virtualTime = next.pass;
+                        next.pass += STRIDE / next.weight;
+                        next.tokenGranted = true;
+                        holdingToken = false;
+                        notifyAll();
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the waiting job that should receive the next token: the one with
+     * the highest priority class and, within that class, the lowest virtual
+     * time. Must be called while holding this.
+     *
+     * @return the next job, or null if none is waiting
+     */
+    private ScheduledJob nextInLine() {
+        ScheduledJob next = null;
+
+        for (ScheduledJob job : waiting) {
+            if (next == null || job.priority.compareTo(next.priority) < 0
+                    || (job.priority == next.priority && job.pass < next.pass)) {
+                next = job;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Wraps a job so that the worker pool's priority queue orders it by the
+     * job's priority.
+     */
+    private final class PrioritizedRun implements Runnable, Comparable<PrioritizedRun> {
+
+        private final ScheduledJob job;
+
+        PrioritizedRun(ScheduledJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            EmbassyCheckScheduler.this.run(job);
+        }
+
+        @Override
+        public int compareTo(PrioritizedRun t) {
+            return job.compareTo(t.job);
+        }
+    }
+}
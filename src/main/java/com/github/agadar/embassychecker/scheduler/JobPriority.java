@@ -0,0 +1,23 @@
+package com.github.agadar.embassychecker.scheduler;
+
+/**
+ * Priority classes of scheduled embassy check jobs. A job only receives a rate
+ * limit token when no job of a higher priority class is waiting for one.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public enum JobPriority {
+
+    /**
+     * Runs started by a user who is waiting for the result.
+     */
+    INTERACTIVE,
+    /**
+     * Batch jobs that should complete in reasonable time.
+     */
+    BATCH,
+    /**
+     * Background audits that only use spare capacity.
+     */
+    BACKGROUND
+}
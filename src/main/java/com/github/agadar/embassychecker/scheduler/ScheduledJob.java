@@ -0,0 +1,176 @@
+package com.github.agadar.embassychecker.scheduler;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.domain.EmbassyCheckReport;
+import com.github.agadar.embassychecker.event.RegionEventsListener;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An embassy check job held by an {@link EmbassyCheckScheduler}. Exposes the
+ * job's result and how long it has been waiting.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class ScheduledJob implements Comparable<ScheduledJob> {
+
+    /**
+     * The request this job executes.
+     */
+    public final EmbassyCheckRequest request;
+
+    /**
+     * The priority class of this job.
+     */
+    public final JobPriority priority;
+
+    /**
+     * The weight of this job within its priority class. A job with weight 2
+     * receives twice as many tokens as a job with weight 1.
+     */
+    public final int weight;
+
+    /**
+     * The listeners to add to this job's query.
+     */
+    final RegionEventsListener[] listeners;
+
+    /**
+     * Order in which this job was submitted, used to break ties.
+     */
+    private final long sequenceNumber;
+
+    /**
+     * The future that completes with this job's report.
+     */
+    private final CompletableFuture<EmbassyCheckReport> future = new CompletableFuture<>();
+
+    /**
+     * Time in nanoseconds at which this job was submitted.
+     */
+    private final long submittedAt = System.nanoTime();
+
+    /**
+     * Time in nanoseconds at which this job started executing, or 0.
+     */
+    private volatile long startedAt;
+
+    /**
+     * Total time in nanoseconds this job spent waiting for tokens.
+     */
+    private volatile long tokenWaitNanos;
+
+    /**
+     * Number of tokens granted to this job.
+     */
+    private volatile int tokensGranted;
+
+    /**
+     * Virtual time of this job for the fair share. Guarded by the scheduler.
+     */
+    double pass;
+
+    /**
+     * Whether this job's pending token request has been granted. Guarded by the
+     * scheduler.
+     */
+    boolean tokenGranted;
+
+    /**
+     * Constructor.
+     *
+     * @param request the request to execute
+     * @param priority the priority class
+     * @param weight the weight within the priority class
+     * @param sequenceNumber order in which this job was submitted
+     * @param listeners the listeners to add to the query
+     */
+    ScheduledJob(EmbassyCheckRequest request, JobPriority priority, int weight, long sequenceNumber,
+            RegionEventsListener[] listeners) {
+        this.request = request;
+        this.priority = priority;
+        this.weight = weight;
+        this.sequenceNumber = sequenceNumber;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Returns the future that completes with this job's report.
+     *
+     * @return the future
+     */
+    public CompletableFuture<EmbassyCheckReport> getFuture() {
+        return future;
+    }
+
+    /**
+     * Returns whether this job has started executing.
+     *
+     * @return whether this job has started executing
+     */
+    public boolean isStarted() {
+        return startedAt != 0;
+    }
+
+    /**
+     * Returns how long this job waited in the queue before it started
+     * executing, or has been waiting so far if it has not yet started.
+     *
+     * @return the queue wait in milliseconds
+     */
+    public long getQueueWaitMillis() {
+        final long started = startedAt;
+        return TimeUnit.NANOSECONDS.toMillis((started != 0 ? started : System.nanoTime()) - submittedAt);
+    }
+
+    /**
+     * Returns the total time this job spent waiting for rate limit tokens.
+     *
+     * @return the token wait in milliseconds
+     */
+    public long getTokenWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tokenWaitNanos);
+    }
+
+    /**
+     * Returns the number of rate limit tokens granted to this job, which equals
+     * the number of requests it made.
+     *
+     * @return the number of tokens granted
+     */
+    public int getTokensGranted() {
+        return tokensGranted;
+    }
+
+    /**
+     * Marks this job as started.
+     */
+    void markStarted() {
+        startedAt = System.nanoTime();
+    }
+
+    /**
+     * Records a granted token and the time spent waiting for it.
+     *
+     * @param waitNanos the time spent waiting in nanoseconds
+     */
+    synchronized void recordToken(long waitNanos) {
+        tokenWaitNanos += waitNanos;
+        tokensGranted++;
+    }
+
+    @Override
+    public int compareTo(ScheduledJob t) {
+        if (priority != t.priority) {
+            return priority.compareTo(t.priority);
+        }
+        return Long.compare(sequenceNumber, t.sequenceNumber);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Job: %s; Priority: %s; Weight: %s; Queue wait: %s ms; Token wait: %s ms; Requests: %s.",
+                request.mainRegionName, priority, weight, getQueueWaitMillis(), getTokenWaitMillis(), tokensGranted);
+    }
+}
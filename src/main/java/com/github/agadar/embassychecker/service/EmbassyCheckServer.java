@@ -0,0 +1,338 @@
+package com.github.agadar.embassychecker.service;
+
+import com.github.agadar.embassychecker.EmbassyCheckController;
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.domain.EmbassyCheckReport;
+import com.github.agadar.embassychecker.dump.DumpPipeline;
+import com.github.agadar.embassychecker.index.RegionsByTagClient;
+import com.github.agadar.embassychecker.index.TagIndex;
+import com.github.agadar.embassychecker.index.TagIndexRefresher;
+import com.github.agadar.embassychecker.scheduler.EmbassyCheckScheduler;
+import com.github.agadar.embassychecker.scheduler.JobPriority;
+import com.github.agadar.embassychecker.scheduler.ScheduledJob;
+import com.github.agadar.embassychecker.source.NationStatesRegionSource;
+import com.github.agadar.embassychecker.source.RateLimiter;
+import com.github.agadar.embassychecker.source.SharedRateLimiter;
+
+import com.github.agadar.nationstates.DefaultNationStatesImpl;
+import com.github.agadar.nationstates.enumerator.RegionTag;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local HTTP service exposing embassy checks as JSON, so that multiple users
+ * can share a single process and rate budget. A check is requested via
+ * <code>GET /check?region=...&amp;rmbActivity=30&amp;regionAge=90&amp;tags=Raider,Mercenary</code>,
+ * where each of the last three parameters is optional and enables the
+ * corresponding check. An optional <code>priority</code> parameter selects the
+ * job priority class. The scheduler's state is available via
+ * <code>GET /status</code>.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class EmbassyCheckServer {
+
+    private final static Logger LOGGER = Logger.getLogger(EmbassyCheckServer.class.getName());
+
+    private final EmbassyCheckService service;
+    private final HttpServer server;
+
+    /**
+     * Constructor. Binds the server to the given address, but does not yet
+     * start it.
+     *
+     * @param service the service that executes the checks
+     * @param address the address to bind to
+     * @throws IOException if the server could not be bound
+     */
+    public EmbassyCheckServer(EmbassyCheckService service, InetSocketAddress address) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/check", this::handleCheck);
+        server.createContext("/status", this::handleStatus);
+        server.setExecutor(Executors.newCachedThreadPool());
+    }
+
+    /**
+     * Starts the server.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Handles a check request, responding asynchronously once the report is
+     * available.
+     *
+     * @param exchange the exchange
+     * @throws IOException if the response could not be sent
+     */
+    private void handleCheck(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, errorJson("Only GET is supported!"));
+            return;
+        }
+
+        final EmbassyCheckRequest request;
+        final JobPriority priority;
+
+        try {
+            final Map<String, String> params = parseQueryString(exchange.getRequestURI().getRawQuery());
+            request = parseRequest(params);
+            priority = params.containsKey("priority")
+                    ? JobPriority.valueOf(params.get("priority").trim().toUpperCase(Locale.ROOT))
+                    : JobPriority.INTERACTIVE;
+        } catch (IllegalArgumentException ex) {
+            respond(exchange, 400, errorJson(ex.getMessage()));
+            return;
+        }
+
+        service.check(request, priority).whenComplete((report, ex) -> {
+            try {
+                if (ex == null) {
+                    respond(exchange, 200, report.toJson());
+                    return;
+                }
+                final Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                        ? ex.getCause() : ex;
+
+                if (cause instanceof IllegalArgumentException) {
+                    respond(exchange, 400, errorJson(cause.getMessage()));
+                } else {
+                    LOGGER.log(Level.WARNING, "Check failed: " + request, cause);
+                    respond(exchange, 502, errorJson("Failed to retrieve data from NationStates!"));
+                }
+            } catch (IOException ioEx) {
+                LOGGER.log(Level.FINE, "Could not send response", ioEx);
+            }
+        });
+    }
+
+    /**
+     * Handles a status request, responding with the scheduler's queue depth and
+     * the wait times of its active jobs.
+     *
+     * @param exchange the exchange
+     * @throws IOException if the response could not be sent
+     */
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        final EmbassyCheckScheduler scheduler = service.getScheduler();
+        final StringBuilder json = new StringBuilder("{\"queueDepth\":").append(scheduler.getQueueDepth())
+                .append(",\"waitingForToken\":").append(scheduler.getJobsWaitingForToken())
+                .append(",\"checksInFlight\":").append(service.getChecksInFlight())
+                .append(",\"jobs\":[");
+        boolean first = true;
+
+        for (ScheduledJob job : scheduler.getActiveJobs()) {
+            json.append(first ? "{" : ",{")
+                    .append("\"region\":");
+            EmbassyCheckReport.appendJsonString(json, job.request.mainRegionName);
+            json.append(",\"priority\":\"").append(job.priority)
+                    .append("\",\"weight\":").append(job.weight)
+                    .append(",\"started\":").append(job.isStarted())
+                    .append(",\"queueWaitMillis\":").append(job.getQueueWaitMillis())
+                    .append(",\"tokenWaitMillis\":").append(job.getTokenWaitMillis())
+                    .append(",\"requests\":").append(job.getTokensGranted())
+                    .append('}');
+            first = false;
+        }
+        respond(exchange, 200, json.append("]}").toString());
+    }
+
+    /**
+     * Parses the given query string parameters into a request.
+     *
+     * @param params the query string parameters
+     * @return the request
+     * @throws IllegalArgumentException if a parameter is missing or invalid
+     */
+    private static EmbassyCheckRequest parseRequest(Map<String, String> params) throws IllegalArgumentException {
+        final String rmbActivity = params.get("rmbActivity");
+        final String regionAge = params.get("regionAge");
+        final String tagsParam = params.get("tags");
+        final List<RegionTag> tags = new ArrayList<>();
+
+        if (tagsParam != null) {
+            for (String tag : tagsParam.split(",")) {
+                if (!tag.trim().isEmpty()) {
+                    tags.add(RegionTag.fromString(tag.trim()));
+                }
+            }
+        }
+
+        return new EmbassyCheckRequest(params.get("region"),
+                rmbActivity != null, parseDays(rmbActivity, "rmbActivity"),
+                regionAge != null, parseDays(regionAge, "regionAge"),
+                tagsParam != null, tags.toArray(new RegionTag[tags.size()]));
+    }
+
+    /**
+     * Parses a number of days, returning 0 if the value is null.
+     *
+     * @param value the value to parse
+     * @param name name of the parameter, for the error message
+     * @return the number of days
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    private static int parseDays(String value, String name) throws IllegalArgumentException {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Parameter '" + name + "' must be a number of days!");
+        }
+    }
+
+    /**
+     * Parses a raw query string into a map of decoded parameters.
+     *
+     * @param rawQuery the raw query string, may be null
+     * @return the parameters
+     */
+    private static Map<String, String> parseQueryString(String rawQuery) {
+        final Map<String, String> params = new HashMap<>();
+
+        if (rawQuery == null) {
+            return params;
+        }
+
+        for (String pair : rawQuery.split("&")) {
+            final int separator = pair.indexOf('=');
+
+            if (separator > 0) {
+                params.put(decode(pair.substring(0, separator)), decode(pair.substring(separator + 1)));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * URL-decodes the given value.
+     *
+     * @param value the value to decode
+     * @return the decoded value
+     */
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Returns a JSON object containing the given error message.
+     *
+     * @param message the error message
+     * @return the JSON object
+     */
+    private static String errorJson(String message) {
+        final StringBuilder json = new StringBuilder("{\"error\":");
+        EmbassyCheckReport.appendJsonString(json, String.valueOf(message));
+        return json.append('}').toString();
+    }
+
+    /**
+     * Sends the given JSON body with the given status code, and closes the
+     * exchange.
+     *
+     * @param exchange the exchange to respond to
+     * @param status the HTTP status code
+     * @param json the JSON body
+     * @throws IOException if the response could not be sent
+     */
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Starts the service. Supported arguments are <code>--host</code>
+     * (default 127.0.0.1), <code>--port</code> (default 8080),
+     * <code>--concurrency</code> (default 2), <code>--cache-ttl</code> in
+     * seconds (default 600) and <code>--cache-size</code> (default 100).
+     * <code>--tag-index-refresh</code> makes the checks answer their tag
+     * checks from a tag index that is rebuilt every given number of hours,
+     * from the regions dump file given by <code>--tag-dump</code> or else from
+     * the API's list of regions by tag. Requests are counted against the rate
+     * limit shared by every checker process on the host, kept in the file
+     * given by <code>--rate-limit-file</code> (default in the home directory).
+     *
+     * @param args the command line arguments
+     * @throws IOException if the server could not be bound
+     */
+    public static void main(String[] args) throws IOException {
+        final Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+
+        final String host = options.getOrDefault("--host", "127.0.0.1");
+        final int port = Integer.parseInt(options.getOrDefault("--port", "8080"));
+        final int concurrency = Integer.parseInt(options.getOrDefault("--concurrency", "2"));
+        final long cacheTtl = Long.parseLong(options.getOrDefault("--cache-ttl", "600"));
+        final int cacheSize = Integer.parseInt(options.getOrDefault("--cache-size", "100"));
+
+        final RateLimiter rateLimiter = SharedRateLimiter.openOrLocal(options.containsKey("--rate-limit-file")
+                ? Paths.get(options.get("--rate-limit-file")) : SharedRateLimiter.defaultFile());
+        final EmbassyCheckScheduler scheduler = new EmbassyCheckScheduler(
+                new NationStatesRegionSource(new DefaultNationStatesImpl(EmbassyCheckController.USER_AGENT)),
+                rateLimiter, concurrency);
+
+        if (options.containsKey("--tag-index-refresh")) {
+            final long hours = Long.parseLong(options.get("--tag-index-refresh"));
+            final TagIndexRefresher.Builder builder;
+
+            if (options.containsKey("--tag-dump")) {
+                final Path dump = Paths.get(options.get("--tag-dump"));
+                final DumpPipeline pipeline = new DumpPipeline(DumpPipeline.DEFAULT_PARSERS);
+                builder = () -> TagIndex.fromDump(dump, pipeline);
+            } else {
+                final RegionsByTagClient client = new RegionsByTagClient(EmbassyCheckController.USER_AGENT, rateLimiter);
+                builder = () -> TagIndex.fromRegionsByTag(client);
+            }
+            final TagIndexRefresher refresher = new TagIndexRefresher(builder, hours, TimeUnit.HOURS);
+            scheduler.useTagIndex(refresher::get, Math.max(TagIndex.DEFAULT_MAX_AGE_SECONDS,
+                    TimeUnit.HOURS.toSeconds(2 * hours)));
+        }
+        final EmbassyCheckService service = new EmbassyCheckService(scheduler, cacheTtl, cacheSize);
+        final EmbassyCheckServer server = new EmbassyCheckServer(service, new InetSocketAddress(host, port));
+        server.start();
+        LOGGER.log(Level.INFO, "Embassy check service listening on {0}:{1}", new Object[]{host, String.valueOf(port)});
+    }
+}
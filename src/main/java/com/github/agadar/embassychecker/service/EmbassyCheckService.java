@@ -0,0 +1,211 @@
+package com.github.agadar.embassychecker.service;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.domain.EmbassyCheckReport;
+import com.github.agadar.embassychecker.scheduler.EmbassyCheckScheduler;
+import com.github.agadar.embassychecker.scheduler.JobPriority;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes embassy checks on behalf of multiple clients, using a single
+ * scheduler and therefore a single rate budget. Recent reports are cached, and
+ * identical requests that overlap in time share one execution.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class EmbassyCheckService {
+
+    /**
+     * Executes the checks. Its maximum number of concurrent jobs is the
+     * concurrency limit.
+     */
+    private final EmbassyCheckScheduler scheduler;
+
+    /**
+     * How long a report stays cached, in seconds.
+     */
+    private final long cacheTtlSeconds;
+
+    /**
+     * The maximum number of cached reports.
+     */
+    private final int maxCachedReports;
+
+    /**
+     * Recently generated reports, least recently used first.
+     */
+    private final Map<EmbassyCheckRequest, EmbassyCheckReport> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The checks that are currently queued or executing.
+     */
+    private final Map<EmbassyCheckRequest, CompletableFuture<EmbassyCheckReport>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param scheduler the scheduler to execute all checks with
+     * @param cacheTtlSeconds how long a report stays cached, in seconds
+     * @param maxCachedReports the maximum number of cached reports
+     * @throws IllegalArgumentException if cacheTtlSeconds < 0 or
+     * maxCachedReports < 0
+     */
+    public EmbassyCheckService(EmbassyCheckScheduler scheduler, long cacheTtlSeconds, int maxCachedReports)
+            throws IllegalArgumentException {
+        if (cacheTtlSeconds < 0 || maxCachedReports < 0) {
+            throw new IllegalArgumentException("The cache settings may not be negative!");
+        }
+
+        this.scheduler = scheduler;
+        this.cacheTtlSeconds = cacheTtlSeconds;
+        this.maxCachedReports = maxCachedReports;
+    }
+
+    /**
+     * Returns the report for the given request, executing it with interactive
+     * priority if needed.
+     *
+     * @param request the request to execute
+     * @return a future that completes with the report
+     */
+    public CompletableFuture<EmbassyCheckReport> check(EmbassyCheckRequest request) {
+        return check(request, JobPriority.INTERACTIVE);
+    }
+
+    /**
+     * Returns the report for the given request. A cached report is returned if
+     * it is recent enough. Otherwise, if an identical request is already being
+     * executed, its result is shared. Otherwise, a new check is scheduled with
+     * the given priority.
+     *
+     * @param request the request to execute
+     * @param priority the priority to schedule a new check with
+     * @return a future that completes with the report
+     */
+    public CompletableFuture<EmbassyCheckReport> check(EmbassyCheckRequest request, JobPriority priority) {
+        final EmbassyCheckReport cached = getCached(request);
+
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        // Join an identical check that is already in flight, if any.
+        final CompletableFuture<EmbassyCheckReport> created = new CompletableFuture<>();
+        final CompletableFuture<EmbassyCheckReport> existing = inFlight.putIfAbsent(request, created);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        // An identical check may have completed in the meantime.
+        final EmbassyCheckReport completed = getCached(request);
+
+        if (completed != null) {
+            inFlight.remove(request, created);
+            created.complete(completed);
+            return created;
+        }
+
+        try {
+            scheduler.submit(request, priority).getFuture().whenComplete((report, ex) -> {
+                if (ex == null) {
+                    putCached(request, report);
+                }
+                inFlight.remove(request, created);
+
+                if (ex == null) {
+                    created.complete(report);
+                } else {
+                    created.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(request, created);
+            created.completeExceptionally(ex);
+        }
+        return created;
+    }
+
+    /**
+     * Returns the number of checks that are currently queued or executing.
+     *
+     * @return the number of checks in flight
+     */
+    public int getChecksInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Returns the scheduler this service executes its checks with.
+     *
+     * @return the scheduler
+     */
+    public EmbassyCheckScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Stops accepting new checks, and waits up to the given time for the
+     * running checks to complete. The checks that do not complete in time fail.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        scheduler.shutdown(timeout, unit);
+    }
+
+    /**
+     * Returns the cached report for the given request if it is recent enough.
+     *
+     * @param request the request
+     * @return the cached report, or null
+     */
+    private EmbassyCheckReport getCached(EmbassyCheckRequest request) {
+        final long now = System.currentTimeMillis() / 1000;
+
+        synchronized (cache) {
+            final EmbassyCheckReport report = cache.get(request);
+
+            if (report == null) {
+                return null;
+            }
+            if (now - report.generatedAt >= cacheTtlSeconds) {
+                cache.remove(request);
+                return null;
+            }
+            return report;
+        }
+    }
+
+    /**
+     * Caches the given report, evicting the least recently used reports if the
+     * cache is full.
+     *
+     * @param request the request the report was generated for
+     * @param report the report to cache
+     */
+    private void putCached(EmbassyCheckRequest request, EmbassyCheckReport report) {
+        if (maxCachedReports == 0 || cacheTtlSeconds == 0) {
+            return;
+        }
+
+        synchronized (cache) {
+            cache.put(request, report);
+            final Iterator<EmbassyCheckRequest> iterator = cache.keySet().iterator();
+
+            while (cache.size() > maxCachedReports && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+}
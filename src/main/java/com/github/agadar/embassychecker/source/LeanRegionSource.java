@@ -0,0 +1,125 @@
+package com.github.agadar.embassychecker.source;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Region source that requests regions from the NationStates API directly and
+ * reads the responses with a {@link RegionResponseParser}, rather than having
+ * the wrapper build the full object graph of each response, messages
+ * included.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class LeanRegionSource implements RegionSource {
+
+    /**
+     * The API's URL, to which the region and the query are appended.
+     */
+    private final static String API_URL = "https://www.nationstates.net/cgi-bin/api.cgi?region=";
+
+    /**
+     * Timeouts in milliseconds for connecting and reading.
+     */
+    private final static int TIMEOUT_MILLIS = 30000;
+
+    private final String apiUrl;
+    private final String userAgent;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * Constructor.
+     *
+     * @param userAgent the user agent to identify with
+     * @param rateLimiter the rate limiter every request is counted against
+     */
+    public LeanRegionSource(String userAgent, RateLimiter rateLimiter) {
+        this(API_URL, userAgent, rateLimiter);
+    }
+
+    /**
+     * Constructor, requesting the regions from the given URL instead of the
+     * API's, such as a local server that serves recorded responses.
+     *
+     * @param apiUrl the URL, to which the region name and the query are
+     * appended
+     * @param userAgent the user agent to identify with
+     * @param rateLimiter the rate limiter every request is counted against
+     */
+    public LeanRegionSource(String apiUrl, String userAgent, RateLimiter rateLimiter) {
+        this.apiUrl = apiUrl;
+        this.userAgent = userAgent;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public RegionData getRegion(String regionName, RegionShard... shards) {
+        return getRegion(regionName, new RetrievalDetail(), shards);
+    }
+
+    @Override
+    public RegionData getRegion(String regionName, RetrievalDetail detail, RegionShard... shards) {
+        final long start = System.nanoTime();
+
+        try {
+            rateLimiter.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the rate limit!", ex);
+        }
+        detail.addRateLimitWait(System.nanoTime() - start);
+
+        final List<RegionShard> shardList = Arrays.asList(shards);
+
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(apiUrl
+                    + URLEncoder.encode(EmbassyCheckRequest.normalizeRegionName(regionName),
+                            StandardCharsets.UTF_8.name())
+                    + "&q=" + RegionResponseParser.queryOf(shardList)).openConnection();
+            connection.setRequestProperty("User-Agent", userAgent);
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+
+            try {
+                final int status = connection.getResponseCode();
+
+                // The API answers with 404 for regions that do not exist.
+                if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                    return null;
+                }
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("The request for region " + regionName + " failed with HTTP status "
+                            + status);
+                }
+                if (connection.getContentLengthLong() > 0) {
+                    detail.addBytesReceived(connection.getContentLengthLong());
+                }
+                try (InputStream in = new BufferedInputStream(connection.getInputStream())) {
+                    return RegionResponseParser.parse(in, shardList, System.currentTimeMillis() / 1000);
+                }
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to retrieve region " + regionName, ex);
+        }
+    }
+
+    @Override
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+}
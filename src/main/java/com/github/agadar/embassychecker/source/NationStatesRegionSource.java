@@ -0,0 +1,95 @@
+package com.github.agadar.embassychecker.source;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.NationStates;
+import com.github.agadar.nationstates.domain.region.Region;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Region source that retrieves regions from the NationStates API.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class NationStatesRegionSource implements RegionSource {
+
+    private final Supplier<NationStates> nationStates;
+
+    /**
+     * The rate limiter every request is counted against, or null if the
+     * NationStates instance is left to limit the rate on its own.
+     */
+    private final RateLimiter rateLimiter;
+
+    /**
+     * Constructor.
+     *
+     * @param nationStates the NationStates instance to retrieve regions with
+     */
+    public NationStatesRegionSource(NationStates nationStates) {
+        this(() -> nationStates);
+    }
+
+    /**
+     * Constructor, taking a supplier of the NationStates instance so that it
+     * can still be in the making, such as by {@link
+     * com.github.agadar.embassychecker.ClientWarmUp}. The supplier is called
+     * for every retrieval.
+     *
+     * @param nationStates supplier of the NationStates instance to retrieve
+     * regions with
+     */
+    public NationStatesRegionSource(Supplier<NationStates> nationStates) {
+        this(nationStates, null);
+    }
+
+    /**
+     * Constructor, taking a supplier of the NationStates instance and a rate
+     * limiter that every request is counted against before it is made, such as
+     * a {@link SharedRateLimiter} that other processes count their requests
+     * against as well.
+     *
+     * @param nationStates supplier of the NationStates instance to retrieve
+     * regions with
+     * @param rateLimiter the rate limiter every request is counted against
+     */
+    public NationStatesRegionSource(Supplier<NationStates> nationStates, RateLimiter rateLimiter) {
+        this.nationStates = nationStates;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public RegionData getRegion(String regionName, RegionShard... shards) {
+        return getRegion(regionName, new RetrievalDetail(), shards);
+    }
+
+    @Override
+    public RegionData getRegion(String regionName, RetrievalDetail detail, RegionShard... shards) {
+        if (rateLimiter != null) {
+            final long start = System.nanoTime();
+
+            try {
+                rateLimiter.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the rate limit!", ex);
+            }
+            detail.addRateLimitWait(System.nanoTime() - start);
+        }
+        final Region region = nationStates.get().getRegion(regionName).shards(shards).execute();
+
+        // Without the name shard, fall back to the normalized name the region was requested by.
+        return region == null ? null
+                : RegionData.fromRegion(region, EmbassyCheckRequest.normalizeRegionName(regionName),
+                        Arrays.asList(shards), System.currentTimeMillis() / 1000);
+    }
+
+    @Override
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.agadar.embassychecker.source;
+
+/**
+ * Limits the rate at which requests are made to the NationStates API.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public interface RateLimiter {
+
+    /**
+     * Blocks until a request may be made, and then counts that request against
+     * the budget.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void acquire() throws InterruptedException;
+
+    /**
+     * Estimates how long it would take from now until the given number of
+     * requests were made one after another, given the requests already
+     * counted. Requests that others count in the meantime are not foreseen,
+     * nor is the time the requests themselves take.
+     *
+     * @param requests the number of requests
+     * @return the estimated time in milliseconds
+     */
+    default long estimateMillis(int requests) {
+        return 0;
+    }
+}
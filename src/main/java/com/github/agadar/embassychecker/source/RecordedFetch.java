@@ -0,0 +1,64 @@
+package com.github.agadar.embassychecker.source;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A single region retrieval as stored in a {@link RegionArchive}.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RecordedFetch {
+
+    /**
+     * Time in milliseconds between the start of the recording and the start of
+     * this retrieval.
+     */
+    public final long offsetMillis;
+
+    /**
+     * Time in milliseconds this retrieval took.
+     */
+    public final long durationMillis;
+
+    /**
+     * Name of the region as requested.
+     */
+    public final String regionName;
+
+    /**
+     * The shards that were requested.
+     */
+    public final Set<RegionShard> shards;
+
+    /**
+     * The retrieved region's data, or null if the region did not exist.
+     */
+    public final RegionData region;
+
+    /**
+     * Constructor.
+     *
+     * @param offsetMillis time in milliseconds between the start of the
+     * recording and the start of this retrieval
+     * @param durationMillis time in milliseconds this retrieval took
+     * @param regionName name of the region as requested
+     * @param shards the shards that were requested
+     * @param region the retrieved region's data, or null
+     */
+    public RecordedFetch(long offsetMillis, long durationMillis, String regionName,
+            Collection<RegionShard> shards, RegionData region) {
+        this.offsetMillis = offsetMillis;
+        this.durationMillis = durationMillis;
+        this.regionName = regionName;
+        this.shards = Collections.unmodifiableSet(shards.isEmpty()
+                ? EnumSet.noneOf(RegionShard.class) : EnumSet.copyOf(shards));
+        this.region = region;
+    }
+}
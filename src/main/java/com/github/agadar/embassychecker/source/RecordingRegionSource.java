@@ -0,0 +1,94 @@
+package com.github.agadar.embassychecker.source;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Region source that records every retrieval made through another source into
+ * a {@link RegionArchive}, along with its timing, so that the run can later be
+ * replayed offline by a {@link ReplayRegionSource}.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class RecordingRegionSource implements RegionSource, Closeable {
+
+    private final RegionSource delegate;
+    private final DataOutputStream out;
+
+    /**
+     * Time in nanoseconds at which the recording started.
+     */
+    private final long recordingStartNanos = System.nanoTime();
+
+    /**
+     * Constructor. Creates or overwrites the archive.
+     *
+     * @param delegate the source to retrieve the regions from
+     * @param archive path to the archive to write
+     * @throws IOException if the archive could not be created
+     */
+    public RecordingRegionSource(RegionSource delegate, Path archive) throws IOException {
+        this.delegate = delegate;
+        this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(archive))));
+        RegionArchive.writeHeader(out, System.currentTimeMillis());
+    }
+
+    @Override
+    public RegionData getRegion(String regionName, RegionShard... shards) {
+        return getRegion(regionName, new RetrievalDetail(), shards);
+    }
+
+    @Override
+    public RegionData getRegion(String regionName, RetrievalDetail detail, RegionShard... shards) {
+        final long start = System.nanoTime();
+        final RegionData region = delegate.getRegion(regionName, detail, shards);
+        final long end = System.nanoTime();
+
+        synchronized (out) {
+            try {
+                out.writeByte(RegionArchive.RECORD);
+                out.writeLong((start - recordingStartNanos) / 1000000);
+                out.writeLong((end - start) / 1000000);
+                out.writeUTF(regionName);
+                RegionArchive.writeShards(out, Arrays.asList(shards));
+                out.writeBoolean(region != null);
+
+                if (region != null) {
+                    RegionArchive.writeRegionData(out, region);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to record region " + regionName, ex);
+            }
+        }
+        return region;
+    }
+
+    @Override
+    public RateLimiter getRateLimiter() {
+        return delegate.getRateLimiter();
+    }
+
+    /**
+     * Writes the end marker and closes the archive.
+     *
+     * @throws IOException if the archive could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (out) {
+            out.writeByte(RegionArchive.END);
+            out.close();
+        }
+    }
+}
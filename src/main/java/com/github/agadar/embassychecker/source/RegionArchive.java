@@ -0,0 +1,240 @@
+package com.github.agadar.embassychecker.source;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The on-disk format of recorded region retrievals: a gzipped stream with a
+ * header, followed by one record per retrieval and an end marker. Shards and
+ * tags are stored by name, so that archives survive changes to the order of
+ * the wrapper's enums.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionArchive {
+
+    /**
+     * Magic number at the start of every archive: "ECRA".
+     */
+    final static int MAGIC = 0x45435241;
+
+    /**
+     * Current version of the format.
+     */
+    final static int VERSION = 2;
+
+    /**
+     * Version of the format before regions could hold the number of nations,
+     * the delegate and the last update. Its region data reads the same, as
+     * those fields are only written for regions with their shards.
+     */
+    final static int VERSION_WITHOUT_REGION_DETAILS = 1;
+
+    /**
+     * Marks the start of a record.
+     */
+    final static byte RECORD = 1;
+
+    /**
+     * Marks the end of the archive.
+     */
+    final static byte END = 0;
+
+    private RegionArchive() {
+    }
+
+    /**
+     * Reads all recorded retrievals from the given archive, in recorded order.
+     *
+     * @param archive path to the archive
+     * @return the recorded retrievals
+     * @throws IOException if the archive could not be read or is invalid
+     */
+    public static List<RecordedFetch> readAll(Path archive) throws IOException {
+        final List<RecordedFetch> fetches = new ArrayList<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(archive))))) {
+            readHeader(in);
+            RecordedFetch fetch;
+
+            while ((fetch = readFetch(in)) != null) {
+                fetches.add(fetch);
+            }
+        }
+        return fetches;
+    }
+
+    /**
+     * Reads the next recorded retrieval.
+     *
+     * @param in the input to read from, positioned after the header or a
+     * previous record
+     * @return the recorded retrieval, or null if the end of the archive was
+     * reached
+     * @throws IOException if reading failed
+     */
+    static RecordedFetch readFetch(DataInput in) throws IOException {
+        if (in.readByte() != RECORD) {
+            return null;
+        }
+        final long offsetMillis = in.readLong();
+        final long durationMillis = in.readLong();
+        final String regionName = in.readUTF();
+        final List<RegionShard> shards = readShards(in);
+        final RegionData region = in.readBoolean() ? readRegionData(in) : null;
+        return new RecordedFetch(offsetMillis, durationMillis, regionName, shards, region);
+    }
+
+    /**
+     * Reads and validates the header.
+     *
+     * @param in the input to read from
+     * @return time in milliseconds at which the recording started
+     * @throws IOException if the header is invalid
+     */
+    static long readHeader(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a region archive!");
+        }
+        final int version = in.readInt();
+
+        if (version != VERSION && version != VERSION_WITHOUT_REGION_DETAILS) {
+            throw new IOException("Unsupported region archive version: " + version);
+        }
+        return in.readLong();
+    }
+
+    /**
+     * Writes the header.
+     *
+     * @param out the output to write to
+     * @param recordingStart time in milliseconds at which the recording started
+     * @throws IOException if writing failed
+     */
+    static void writeHeader(DataOutput out, long recordingStart) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(recordingStart);
+    }
+
+    /**
+     * Writes the given shards by name.
+     *
+     * @param out the output to write to
+     * @param shards the shards to write
+     * @throws IOException if writing failed
+     */
+    static void writeShards(DataOutput out, Collection<RegionShard> shards) throws IOException {
+        out.writeByte(shards.size());
+
+        for (RegionShard shard : shards) {
+            out.writeUTF(shard.name());
+        }
+    }
+
+    /**
+     * Reads shards written by {@link #writeShards}.
+     *
+     * @param in the input to read from
+     * @return the shards
+     * @throws IOException if reading failed
+     */
+    static List<RegionShard> readShards(DataInput in) throws IOException {
+        final int count = in.readUnsignedByte();
+        final List<RegionShard> shards = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            shards.add(RegionShard.valueOf(in.readUTF()));
+        }
+        return shards;
+    }
+
+    /**
+     * Writes the given region data.
+     *
+     * @param out the output to write to
+     * @param region the region data to write
+     * @throws IOException if writing failed
+     */
+    public static void writeRegionData(DataOutput out, RegionData region) throws IOException {
+        out.writeBoolean(region.name != null);
+
+        if (region.name != null) {
+            out.writeUTF(region.name);
+        }
+        writeShards(out, region.shards);
+        out.writeLong(region.retrievedAt);
+        out.writeInt(region.embassies.size());
+
+        for (String embassy : region.embassies) {
+            out.writeUTF(embassy);
+        }
+        out.writeLong(region.lastMessageTimestamp);
+        out.writeLong(region.founded);
+        out.writeByte(region.tags.size());
+
+        for (RegionTag tag : region.tags) {
+            out.writeUTF(tag.name());
+        }
+        if (region.shards.contains(RegionShard.NUMBER_OF_NATIONS)) {
+            out.writeInt(region.population);
+        }
+        if (region.shards.contains(RegionShard.DELEGATE)) {
+            out.writeBoolean(region.delegate != null);
+
+            if (region.delegate != null) {
+                out.writeUTF(region.delegate);
+            }
+        }
+        if (region.shards.contains(RegionShard.LAST_UPDATE)) {
+            out.writeLong(region.lastUpdate);
+        }
+    }
+
+    /**
+     * Reads region data written by {@link #writeRegionData}.
+     *
+     * @param in the input to read from
+     * @return the region data
+     * @throws IOException if reading failed
+     */
+    public static RegionData readRegionData(DataInput in) throws IOException {
+        final String name = in.readBoolean() ? in.readUTF() : null;
+        final List<RegionShard> shards = readShards(in);
+        final long retrievedAt = in.readLong();
+        final int embassyCount = in.readInt();
+        final List<String> embassies = new ArrayList<>(embassyCount);
+
+        for (int i = 0; i < embassyCount; i++) {
+            embassies.add(in.readUTF());
+        }
+        final long lastMessageTimestamp = in.readLong();
+        final long founded = in.readLong();
+        final int tagCount = in.readUnsignedByte();
+        final List<RegionTag> tags = new ArrayList<>(tagCount);
+
+        for (int i = 0; i < tagCount; i++) {
+            tags.add(RegionTag.valueOf(in.readUTF()));
+        }
+        final int population = shards.contains(RegionShard.NUMBER_OF_NATIONS) ? in.readInt() : 0;
+        final String delegate = shards.contains(RegionShard.DELEGATE) && in.readBoolean() ? in.readUTF() : null;
+        final long lastUpdate = shards.contains(RegionShard.LAST_UPDATE) ? in.readLong() : 0;
+        return new RegionData(name, shards, retrievedAt, embassies, lastMessageTimestamp, founded, tags,
+                population, delegate, lastUpdate);
+    }
+}
@@ -0,0 +1,294 @@
+package com.github.agadar.embassychecker.source;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Pull parser of the NationStates API's region responses, which reads only
+ * the fields the checks need straight into a {@link RegionData}: the name, the
+ * established and pending embassies, the founding time, the tags, the
+ * timestamp of the last regional message, the number of nations, the delegate
+ * and the time of the last update. Everything else, such as the bodies of the
+ * messages, is skipped without being turned into strings, and no object graph
+ * of the response is built.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RegionResponseParser {
+
+    /**
+     * The embassy type of pending embassies. Established embassies have no
+     * type.
+     */
+    private final static String PENDING_EMBASSY_TYPE = "pending";
+
+    /**
+     * The XML input factory of each thread, as creating one is slow and they
+     * are not guaranteed to be thread-safe. Text is not coalesced, so that the
+     * text of skipped elements is not gathered.
+     */
+    private final static ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    });
+
+    private RegionResponseParser() {
+    }
+
+    /**
+     * Returns the query names of the given shards, as the API expects them
+     * after <code>q=</code>, separated by plus signs.
+     *
+     * @param shards the shards
+     * @return the query names
+     */
+    public static String queryOf(Collection<RegionShard> shards) {
+        final StringBuilder query = new StringBuilder();
+
+        for (RegionShard shard : shards) {
+            if (query.length() > 0) {
+                query.append('+');
+            }
+            query.append(queryNameOf(shard));
+        }
+        return query.toString();
+    }
+
+    /**
+     * Parses the given region response.
+     *
+     * @param in the response
+     * @param shards the shards that were requested
+     * @param retrievedAt time in seconds at which the region was retrieved
+     * @return the region
+     * @throws IOException if the response is not a valid region response
+     */
+    public static RegionData parse(InputStream in, Collection<RegionShard> shards, long retrievedAt)
+            throws IOException {
+        try {
+            final XMLStreamReader reader = FACTORY.get().createXMLStreamReader(in);
+
+            try {
+                // Find the region.
+                while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    // Skip the prolog.
+                }
+                if (!reader.getLocalName().equals("REGION")) {
+                    throw new XMLStreamException("Not a region response", reader.getLocation());
+                }
+                return readRegion(reader, shards, retrievedAt);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | IllegalStateException ex) {
+            throw new IOException("The region response is invalid!", ex);
+        }
+    }
+
+    /**
+     * Reads a region, from its start element up to and including its end
+     * element.
+     *
+     * @param reader the reader, at the region's start element
+     * @param shards the shards that were requested
+     * @param retrievedAt time in seconds at which the region was retrieved
+     * @return the region
+     * @throws XMLStreamException if the response is invalid
+     */
+    private static RegionData readRegion(XMLStreamReader reader, Collection<RegionShard> shards,
+            long retrievedAt) throws XMLStreamException {
+        final List<String> embassies = new ArrayList<>();
+        final Set<RegionTag> tags = EnumSet.noneOf(RegionTag.class);
+
+        // The region's id is its normalized name, for when the name was not requested.
+        String name = reader.getAttributeValue(null, "id");
+        long founded = 0;
+        long lastMessageTimestamp = 0;
+        int population = 0;
+        String delegate = null;
+        long lastUpdate = 0;
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "NAME":
+                    name = reader.getElementText();
+                    break;
+                case "EMBASSIES":
+                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        final String type = reader.getAttributeValue(null, "type");
+
+                        if (type == null || type.equals(PENDING_EMBASSY_TYPE)) {
+                            embassies.add(reader.getElementText());
+                        } else {
+                            skipElement(reader);
+                        }
+                    }
+                    break;
+                case "FOUNDEDTIME":
+                    founded = readLong(reader);
+                    break;
+                case "MESSAGES":
+                    // The last message in the list is the most recent one.
+                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        lastMessageTimestamp = readPostTimestamp(reader);
+                    }
+                    break;
+                case "TAGS":
+                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        try {
+                            tags.add(RegionTag.fromString(reader.getElementText()));
+                        } catch (IllegalArgumentException ex) {
+                            // A tag that was added after this version.
+                        }
+                    }
+                    break;
+                case "NUMNATIONS":
+                    population = (int) readLong(reader);
+                    break;
+                case "DELEGATE":
+                    delegate = RegionData.delegateOf(reader.getElementText());
+                    break;
+                case "LASTUPDATE":
+                    lastUpdate = readLong(reader);
+                    break;
+                default:
+                    skipElement(reader);
+                    break;
+            }
+        }
+        if (name == null) {
+            throw new XMLStreamException("Region without a name or id", reader.getLocation());
+        }
+        return new RegionData(name, shards, retrievedAt, embassies, lastMessageTimestamp, founded, tags,
+                population, delegate, lastUpdate);
+    }
+
+    /**
+     * Reads a message, from its start element up to and including its end
+     * element, skipping all but its timestamp.
+     *
+     * @param reader the reader, at the message's start element
+     * @return the timestamp of the message, or 0 if it has none
+     * @throws XMLStreamException if the response is invalid
+     */
+    private static long readPostTimestamp(XMLStreamReader reader) throws XMLStreamException {
+        long timestamp = 0;
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (reader.getLocalName().equals("TIMESTAMP")) {
+                timestamp = readLong(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return timestamp;
+    }
+
+    /**
+     * Reads the text of the current element as a number, from its start
+     * element up to and including its end element, without making a string of
+     * it.
+     *
+     * @param reader the reader, at the element's start element
+     * @return the number
+     * @throws XMLStreamException if the response is invalid or the text is not
+     * a number
+     */
+    private static long readLong(XMLStreamReader reader) throws XMLStreamException {
+        long value = 0;
+        boolean digits = false;
+        int event;
+
+        while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+            if (event != XMLStreamConstants.CHARACTERS && event != XMLStreamConstants.SPACE) {
+                continue;
+            }
+            final char[] text = reader.getTextCharacters();
+            final int end = reader.getTextStart() + reader.getTextLength();
+
+            for (int i = reader.getTextStart(); i < end; i++) {
+                final char c = text[i];
+
+                if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    digits = true;
+                } else if (!Character.isWhitespace(c)) {
+                    throw new XMLStreamException("Not a number", reader.getLocation());
+                }
+            }
+        }
+        if (!digits) {
+            throw new XMLStreamException("Not a number", reader.getLocation());
+        }
+        return value;
+    }
+
+    /**
+     * Skips the current element, from its start element up to and including
+     * its end element, without reading its text.
+     *
+     * @param reader the reader, at the element's start element
+     * @throws XMLStreamException if the response is invalid
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+
+        while (depth > 0) {
+            final int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Returns the query name of the given shard. The founding time is
+     * requested as a timestamp rather than as text.
+     *
+     * @param shard the shard
+     * @return the query name
+     */
+    private static String queryNameOf(RegionShard shard) {
+        switch (shard) {
+            case NAME:
+                return "name";
+            case EMBASSIES:
+                return "embassies";
+            case REGIONAL_MESSAGES:
+                return "messages";
+            case FOUNDED:
+                return "foundedtime";
+            case TAGS:
+                return "tags";
+            case NUMBER_OF_NATIONS:
+                return "numnations";
+            case DELEGATE:
+                return "delegate";
+            case LAST_UPDATE:
+                return "lastupdate";
+            default:
+                throw new IllegalArgumentException("Unsupported shard: " + shard);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.agadar.embassychecker.source;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+/**
+ * Source of regions for an embassy check. Implementations may retrieve
+ * regions from the NationStates API directly, or decorate another source.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public interface RegionSource {
+
+    /**
+     * Retrieves the region with the given name, with the given shards.
+     *
+     * @param regionName name of the region to retrieve
+     * @param shards the shards to retrieve
+     * @return the region's data, or null if the region does not exist
+     */
+    RegionData getRegion(String regionName, RegionShard... shards);
+
+    /**
+     * Retrieves the region with the given name, with the given shards, and
+     * records what this source knows about the retrieval in the given detail.
+     * Decorating sources pass the detail on to the source they decorate.
+     *
+     * @param regionName name of the region to retrieve
+     * @param detail the detail to record the retrieval in
+     * @param shards the shards to retrieve
+     * @return the region's data, or null if the region does not exist
+     */
+    default RegionData getRegion(String regionName, RetrievalDetail detail, RegionShard... shards) {
+        return getRegion(regionName, shards);
+    }
+
+    /**
+     * Returns the data this source already holds for the given region, with at
+     * least the given shards, regardless of its age. Nothing is retrieved.
+     *
+     * @param regionName name of the region
+     * @param shards the shards that are needed
+     * @return the held data, or null if this source holds none
+     */
+    default RegionData peek(String regionName, RegionShard... shards) {
+        return null;
+    }
+
+    /**
+     * Returns whether retrieving the given region with the given shards would
+     * be served without making a request to NationStates.
+     *
+     * @param regionName name of the region
+     * @param shards the shards that are needed
+     * @return whether retrieving the region is free
+     */
+    default boolean isFree(String regionName, RegionShard... shards) {
+        return false;
+    }
+
+    /**
+     * Returns the rate limiter the requests of this source are counted
+     * against. Decorating sources return the one of the source they decorate.
+     *
+     * @return the rate limiter, or null if this source knows of none
+     */
+    default RateLimiter getRateLimiter() {
+        return null;
+    }
+}
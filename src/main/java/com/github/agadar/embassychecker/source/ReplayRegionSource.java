@@ -0,0 +1,138 @@
+package com.github.agadar.embassychecker.source;
+
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Region source that serves the retrievals recorded in a {@link RegionArchive}
+ * instead of contacting the NationStates API. Retrievals of the same region are
+ * served in recorded order. Each retrieval is delayed so that it completes at
+ * its recorded time relative to the first retrieval, divided by the speed
+ * factor.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class ReplayRegionSource implements RegionSource {
+
+    /**
+     * The recorded retrievals per normalized region name, in recorded order.
+     */
+    private final Map<String, Deque<RecordedFetch>> fetches = new HashMap<>();
+
+    /**
+     * Time in milliseconds at which the recording started.
+     */
+    private final long recordingStart;
+
+    /**
+     * The speed factor: 1 replays at recorded speed, 10 ten times as fast, and
+     * 0 as fast as possible.
+     */
+    private final double speed;
+
+    /**
+     * Offset of the first recorded retrieval in milliseconds.
+     */
+    private final long firstOffsetMillis;
+
+    /**
+     * Time in nanoseconds at which the replay started, or 0 if not yet started.
+     * Guarded by fetches.
+     */
+    private long replayStartNanos;
+
+    /**
+     * Constructor. Loads the whole archive.
+     *
+     * @param archive path to the archive to replay
+     * @param speed the speed factor: 1 replays at recorded speed, 10 ten times
+     * as fast, and 0 as fast as possible
+     * @throws IOException if the archive could not be read
+     * @throws IllegalArgumentException if speed < 0
+     */
+    public ReplayRegionSource(Path archive, double speed) throws IOException, IllegalArgumentException {
+        if (speed < 0) {
+            throw new IllegalArgumentException("The replay speed may not be negative!");
+        }
+        this.speed = speed;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(archive))))) {
+            this.recordingStart = RegionArchive.readHeader(in);
+            long firstOffset = -1;
+            RecordedFetch fetch;
+
+            while ((fetch = RegionArchive.readFetch(in)) != null) {
+                if (firstOffset < 0) {
+                    firstOffset = fetch.offsetMillis;
+                }
+                fetches.computeIfAbsent(EmbassyCheckRequest.normalizeRegionName(fetch.regionName),
+                        name -> new ArrayDeque<>()).addLast(fetch);
+            }
+            this.firstOffsetMillis = Math.max(0, firstOffset);
+        }
+    }
+
+    /**
+     * Returns the time in seconds at which the recording started. Queries that
+     * replay the recording should evaluate their checks as of this time.
+     *
+     * @return the time in seconds at which the recording started
+     */
+    public long getRecordingStartSeconds() {
+        return recordingStart / 1000;
+    }
+
+    @Override
+    public RegionData getRegion(String regionName, RegionShard... shards) {
+        final RecordedFetch fetch;
+        final long replayStart;
+
+        synchronized (fetches) {
+            final Deque<RecordedFetch> regionFetches = fetches.get(EmbassyCheckRequest.normalizeRegionName(regionName));
+
+            if (regionFetches == null || regionFetches.isEmpty()) {
+                throw new IllegalStateException("Region '" + regionName + "' is not in the recording!");
+            }
+
+            // Keep serving the last retrieval if the region is requested more often
+            // than it was recorded.
+            fetch = regionFetches.size() > 1 ? regionFetches.removeFirst() : regionFetches.peekFirst();
+
+            if (replayStartNanos == 0) {
+                replayStartNanos = System.nanoTime();
+            }
+            replayStart = replayStartNanos;
+        }
+
+        if (speed > 0) {
+            final long dueNanos = replayStart + (long) (TimeUnit.MILLISECONDS.toNanos(
+                    fetch.offsetMillis - firstOffsetMillis + fetch.durationMillis) / speed);
+            final long waitNanos = dueNanos - System.nanoTime();
+
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while replaying!", ex);
+                }
+            }
+        }
+        return fetch.region;
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.agadar.embassychecker.source;
+
+/**
+ * Details of a single region retrieval, filled in by the region sources it
+ * passes through. Details that none of the sources could measure stay unknown.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class RetrievalDetail {
+
+    /**
+     * Time in nanoseconds spent waiting for the rate limit, or -1 if unknown.
+     */
+    private long rateLimitWaitNanos = -1;
+
+    /**
+     * The number of bytes received, or -1 if unknown.
+     */
+    private long bytesReceived = -1;
+
+    /**
+     * Whether the region was served from a cache.
+     */
+    private boolean fromCache;
+
+    /**
+     * Adds the given time to the time spent waiting for the rate limit.
+     *
+     * @param nanos the time in nanoseconds
+     */
+    public void addRateLimitWait(long nanos) {
+        rateLimitWaitNanos = Math.max(rateLimitWaitNanos, 0) + nanos;
+    }
+
+    /**
+     * Adds the given number of bytes to the bytes received.
+     *
+     * @param bytes the number of bytes
+     */
+    public void addBytesReceived(long bytes) {
+        bytesReceived = Math.max(bytesReceived, 0) + bytes;
+    }
+
+    /**
+     * Marks the region as served from a cache.
+     */
+    public void markFromCache() {
+        fromCache = true;
+    }
+
+    /**
+     * Returns the time in nanoseconds spent waiting for the rate limit.
+     *
+     * @return the time spent waiting, or -1 if unknown
+     */
+    public long getRateLimitWaitNanos() {
+        return rateLimitWaitNanos;
+    }
+
+    /**
+     * Returns the number of bytes received.
+     *
+     * @return the number of bytes received, or -1 if unknown
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Returns whether the region was served from a cache.
+     *
+     * @return whether the region was served from a cache
+     */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+}
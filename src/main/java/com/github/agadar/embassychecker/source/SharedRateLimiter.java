@@ -0,0 +1,323 @@
+package com.github.agadar.embassychecker.source;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sliding window rate limiter whose state lives in a small memory-mapped file,
+ * so that every checker process on the host that uses the same file shares
+ * one budget, and a restarted process still knows what was spent shortly
+ * before. The file holds the times of the most recent requests in a ring; a
+ * request may be made once the request as many requests ago has left the
+ * window. Each update is made while holding a lock on the file, which the
+ * operating system releases if a process dies.
+ * <p>
+ * The times are wall-clock times, as they are compared between processes. A
+ * time that lies more than a window ahead, such as after the clock was set
+ * back, counts as having left the window.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class SharedRateLimiter implements RateLimiter {
+
+    private final static Logger LOGGER = Logger.getLogger(SharedRateLimiter.class.getName());
+
+    /**
+     * Magic number at the start of the file: "ECRL".
+     */
+    private final static int MAGIC = 0x4543524c;
+
+    /**
+     * Current version of the file.
+     */
+    private final static int VERSION = 1;
+
+    // Offsets of the fields in the file.
+    private final static int MAGIC_OFFSET = 0;
+    private final static int VERSION_OFFSET = 4;
+    private final static int REQUESTS_OFFSET = 8;
+    private final static int WINDOW_OFFSET = 16;
+    private final static int COUNT_OFFSET = 24;
+    private final static int RING_OFFSET = 32;
+
+    /**
+     * The limiters opened in this process, by absolute file path. File locks
+     * are held per process, so that two limiters on the same file in one
+     * process would get in each other's way.
+     */
+    private final static Map<Path, SharedRateLimiter> OPENED = new HashMap<>();
+
+    /**
+     * The number of requests allowed per window.
+     */
+    private final int requestsPerWindow;
+
+    /**
+     * The length of the window in milliseconds.
+     */
+    private final long windowMillis;
+
+    private final FileChannel channel;
+
+    /**
+     * The mapped file.
+     */
+    private final MappedByteBuffer state;
+
+    /**
+     * Constructor.
+     *
+     * @param file the file
+     * @param requestsPerWindow the number of requests allowed per window
+     * @param windowMillis the length of the window in milliseconds
+     * @throws IOException if the file could not be opened or mapped
+     */
+    private SharedRateLimiter(Path file, int requestsPerWindow, long windowMillis) throws IOException {
+        this.requestsPerWindow = requestsPerWindow;
+        this.windowMillis = windowMillis;
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        state = channel.map(FileChannel.MapMode.READ_WRITE, 0, RING_OFFSET + 8L * requestsPerWindow);
+        state.order(ByteOrder.LITTLE_ENDIAN);
+
+        // Start over if the file is new, or was written with another limit.
+        final FileLock lock;
+
+        try {
+            lock = lock();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while locking the rate limit file");
+        }
+        try {
+            if (state.getInt(MAGIC_OFFSET) != MAGIC || state.getInt(VERSION_OFFSET) != VERSION
+                    || state.getInt(REQUESTS_OFFSET) != requestsPerWindow
+                    || state.getLong(WINDOW_OFFSET) != windowMillis) {
+                for (int position = 0; position < state.capacity(); position += 8) {
+                    state.putLong(position, 0);
+                }
+                state.putInt(MAGIC_OFFSET, MAGIC)
+                        .putInt(VERSION_OFFSET, VERSION)
+                        .putInt(REQUESTS_OFFSET, requestsPerWindow)
+                        .putLong(WINDOW_OFFSET, windowMillis);
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Returns the default file in the user's home directory, shared by the
+     * GUI, the command line and the service.
+     *
+     * @return the default file
+     */
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".nationstates-embassychecker", "rate-limit.dat");
+    }
+
+    /**
+     * Opens the limiter kept in the given file, using the NationStates API's
+     * limit. Within a process, the same limiter is returned for the same file.
+     *
+     * @param file the file
+     * @return the limiter
+     * @throws IOException if the file could not be opened or mapped
+     */
+    public static SharedRateLimiter open(Path file) throws IOException {
+        return open(file, SlidingWindowRateLimiter.DEFAULT_REQUESTS_PER_WINDOW,
+                SlidingWindowRateLimiter.DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * Opens the limiter kept in the given file. Within a process, the same
+     * limiter is returned for the same file. If the file was written with
+     * another limit, its state is discarded.
+     *
+     * @param file the file
+     * @param requestsPerWindow the number of requests allowed per window
+     * @param windowMillis the length of the window in milliseconds
+     * @return the limiter
+     * @throws IOException if the file could not be opened or mapped
+     * @throws IllegalArgumentException if either limit is <= 0, or if the file
+     * is already open in this process with another limit
+     */
+    public static synchronized SharedRateLimiter open(Path file, int requestsPerWindow, long windowMillis)
+            throws IOException, IllegalArgumentException {
+        if (requestsPerWindow <= 0 || windowMillis <= 0) {
+            throw new IllegalArgumentException("The rate limit must be greater than 0!");
+        }
+        final Path key = file.toAbsolutePath().normalize();
+        SharedRateLimiter limiter = OPENED.get(key);
+
+        if (limiter == null) {
+            limiter = new SharedRateLimiter(key, requestsPerWindow, windowMillis);
+            OPENED.put(key, limiter);
+        } else if (limiter.requestsPerWindow != requestsPerWindow || limiter.windowMillis != windowMillis) {
+            throw new IllegalArgumentException("The rate limit file is already open with another limit!");
+        }
+        return limiter;
+    }
+
+    /**
+     * Opens the limiter kept in the given file, using the NationStates API's
+     * limit, or returns a limiter for this process only if the file could not
+     * be opened.
+     *
+     * @param file the file
+     * @return the limiter
+     */
+    public static RateLimiter openOrLocal(Path file) {
+        try {
+            return open(file);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to open the shared rate limit; limiting this process only", ex);
+            return new SlidingWindowRateLimiter();
+        }
+    }
+
+    @Override
+    public synchronized void acquire() throws InterruptedException {
+        long waitMillis;
+
+        while ((waitMillis = tryAcquire()) > 0) {
+            wait(waitMillis);
+        }
+    }
+
+    /**
+     * Returns the number of requests that may currently be made without
+     * waiting, by any process sharing this limiter.
+     *
+     * @return the number of available requests
+     */
+    public synchronized int available() {
+        try {
+            final FileLock lock = lock();
+
+            try {
+                final long now = System.currentTimeMillis();
+                int available = 0;
+
+                for (int slot = 0; slot < requestsPerWindow; slot++) {
+                    if (hasLeft(state.getLong(RING_OFFSET + 8 * slot), now)) {
+                        available++;
+                    }
+                }
+                return available;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to lock the rate limit file!", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while locking the rate limit file!", ex);
+        }
+    }
+
+    @Override
+    public synchronized long estimateMillis(int requests) {
+        try {
+            final FileLock lock = lock();
+
+            try {
+                final long now = System.currentTimeMillis();
+                final long[] times = new long[requestsPerWindow];
+                int count = 0;
+
+                for (int slot = 0; slot < requestsPerWindow; slot++) {
+                    final long time = state.getLong(RING_OFFSET + 8 * slot);
+
+                    if (!hasLeft(time, now)) {
+                        times[count++] = time;
+                    }
+                }
+                final long[] window = Arrays.copyOf(times, count);
+                Arrays.sort(window);
+                return SlidingWindowRateLimiter.estimateMillis(window, requestsPerWindow, windowMillis, now,
+                        requests);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to lock the rate limit file!", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while locking the rate limit file!", ex);
+        }
+    }
+
+    /**
+     * Counts a request against the budget if one may be made now.
+     *
+     * @return 0 if the request was counted, or the number of milliseconds
+     * after which one may be made
+     * @throws InterruptedException if interrupted while polling for the lock
+     */
+    private long tryAcquire() throws InterruptedException {
+        try {
+            final FileLock lock = lock();
+
+            try {
+                final long now = System.currentTimeMillis();
+                final long count = state.getLong(COUNT_OFFSET);
+                final int slot = RING_OFFSET + 8 * (int) (count % requestsPerWindow);
+                final long oldest = state.getLong(slot);
+
+                if (!hasLeft(oldest, now)) {
+                    return Math.max(1, oldest + windowMillis - now);
+                }
+                state.putLong(slot, now).putLong(COUNT_OFFSET, count + 1);
+                return 0;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to lock the rate limit file!", ex);
+        }
+    }
+
+    /**
+     * Locks the file against the other processes. The lock is polled for
+     * rather than waited for, as a thread interrupted while waiting for a file
+     * lock closes the channel.
+     *
+     * @return the lock
+     * @throws IOException if the file could not be locked
+     * @throws InterruptedException if interrupted while polling for the lock
+     */
+    private FileLock lock() throws IOException, InterruptedException {
+        FileLock lock;
+
+        while ((lock = channel.tryLock()) == null) {
+            Thread.sleep(1);
+        }
+        return lock;
+    }
+
+    /**
+     * Returns whether the request made at the given time has left the window.
+     *
+     * @param time the time in milliseconds of the request
+     * @param now the current time in milliseconds
+     * @return whether the request has left the window
+     */
+    private boolean hasLeft(long time, long now) {
+        return time + windowMillis <= now || time - now > windowMillis;
+    }
+}
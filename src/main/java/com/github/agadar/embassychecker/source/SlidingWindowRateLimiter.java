@@ -0,0 +1,147 @@
+package com.github.agadar.embassychecker.source;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Rate limiter that allows a fixed number of requests within any sliding time
+ * window, which is how the NationStates API enforces its limit.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class SlidingWindowRateLimiter implements RateLimiter {
+
+    /**
+     * The number of requests the NationStates API allows per window.
+     */
+    public final static int DEFAULT_REQUESTS_PER_WINDOW = 50;
+
+    /**
+     * The length of the NationStates API's window in milliseconds.
+     */
+    public final static long DEFAULT_WINDOW_MILLIS = 30000;
+
+    /**
+     * The number of requests allowed per window.
+     */
+    private final int requestsPerWindow;
+
+    /**
+     * The length of the window in milliseconds.
+     */
+    private final long windowMillis;
+
+    /**
+     * The times in milliseconds at which the requests in the current window
+     * were made, oldest first.
+     */
+    private final Deque<Long> requestTimes = new ArrayDeque<>();
+
+    /**
+     * Constructor, using the NationStates API's limit.
+     */
+    public SlidingWindowRateLimiter() {
+        this(DEFAULT_REQUESTS_PER_WINDOW, DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param requestsPerWindow the number of requests allowed per window
+     * @param windowMillis the length of the window in milliseconds
+     * @throws IllegalArgumentException if either argument is <= 0
+     */
+    public SlidingWindowRateLimiter(int requestsPerWindow, long windowMillis) throws IllegalArgumentException {
+        if (requestsPerWindow <= 0 || windowMillis <= 0) {
+            throw new IllegalArgumentException("The rate limit must be greater than 0!");
+        }
+        this.requestsPerWindow = requestsPerWindow;
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    public synchronized void acquire() throws InterruptedException {
+        long waitMillis;
+
+        while ((waitMillis = millisUntilAvailable()) > 0) {
+            wait(waitMillis);
+        }
+        requestTimes.addLast(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the number of requests that may currently be made without
+     * waiting.
+     *
+     * @return the number of available requests
+     */
+    public synchronized int available() {
+        evictExpired(System.currentTimeMillis());
+        return requestsPerWindow - requestTimes.size();
+    }
+
+    @Override
+    public synchronized long estimateMillis(int requests) {
+        final long now = System.currentTimeMillis();
+        evictExpired(now);
+        return estimateMillis(requestTimes.stream().mapToLong(Long::longValue).toArray(), requestsPerWindow,
+                windowMillis, now, requests);
+    }
+
+    /**
+     * Estimates how long it would take until the given number of requests
+     * were made one after another within a sliding window, by playing them
+     * out: each request is made once it may, which is when the request made
+     * the window's number of requests earlier leaves the window.
+     *
+     * @param requestTimes the times in milliseconds of the requests in the
+     * current window, oldest first
+     * @param requestsPerWindow the number of requests allowed per window
+     * @param windowMillis the length of the window in milliseconds
+     * @param now the current time in milliseconds
+     * @param requests the number of requests
+     * @return the estimated time in milliseconds
+     */
+    static long estimateMillis(long[] requestTimes, int requestsPerWindow, long windowMillis, long now,
+            int requests) {
+        final Deque<Long> window = new ArrayDeque<>();
+        long last = now;
+
+        for (long time : requestTimes) {
+            window.addLast(time);
+        }
+        for (int i = 0; i < requests; i++) {
+            last = window.size() < requestsPerWindow ? now : Math.max(now, window.removeFirst() + windowMillis);
+            window.addLast(last);
+        }
+        return last - now;
+    }
+
+    /**
+     * Returns the number of milliseconds until a request may be made, evicting
+     * requests that have left the window.
+     *
+     * @return the number of milliseconds to wait, or 0 if a request may be made
+     * now
+     */
+    private long millisUntilAvailable() {
+        final long now = System.currentTimeMillis();
+        evictExpired(now);
+
+        if (requestTimes.size() < requestsPerWindow) {
+            return 0;
+        }
+        return Math.max(1, requestTimes.peekFirst() + windowMillis - now);
+    }
+
+    /**
+     * Removes the requests that have left the window.
+     *
+     * @param now the current time in milliseconds
+     */
+    private void evictExpired(long now) {
+        while (!requestTimes.isEmpty() && requestTimes.peekFirst() + windowMillis <= now) {
+            requestTimes.removeFirst();
+        }
+    }
+}
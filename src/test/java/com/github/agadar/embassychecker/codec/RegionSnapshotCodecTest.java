@@ -0,0 +1,413 @@
+package com.github.agadar.embassychecker.codec;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+/**
+ * Round-trip tests of {@link RegionSnapshotEncoder} and
+ * {@link RegionSnapshotDecoder}.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class RegionSnapshotCodecTest {
+
+    /**
+     * Retrieval time of the first snapshot in the tests.
+     */
+    private final static long NOW = 1_700_000_000L;
+
+    /**
+     * A name seen before is written once and resolved from the dictionary,
+     * while a new name is added to it.
+     *
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    public void roundTripsNameDictionaryHitsAndMisses() throws IOException {
+        final List<RegionData> regions = Arrays.asList(
+                region("Alpha", NOW, Arrays.asList("Beta", "Gamma")),
+                region("Beta", NOW + 10, Arrays.asList("Alpha", "Delta")),
+                region("Alpha", NOW + 20, Arrays.asList("Gamma", "Beta", "Epsilon")));
+        final byte[] encoded = encode(regions);
+
+        assertRoundTrips(regions, encoded);
+        assertEquals(1, occurrences(encoded, "Alpha"));
+        assertEquals(1, occurrences(encoded, "Gamma"));
+    }
+
+    /**
+     * A differently written name of a region already in the dictionary is
+     * resolved to the name as first written.
+     *
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    public void resolvesDictionaryHitsByNormalizedName() throws IOException {
+        final List<RegionData> decoded = decode(encode(Arrays.asList(
+                region("The Alpha", NOW, Collections.emptyList()),
+                region("the_alpha", NOW, Collections.singletonList("THE ALPHA")))));
+
+        assertEquals("The Alpha", decoded.get(1).name);
+        assertEquals(Collections.singletonList("The Alpha"), decoded.get(1).embassies);
+    }
+
+    /**
+     * Every combination of shards round-trips, and the fields of absent shards
+     * are left at their defaults.
+     *
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    public void roundTripsEachShardPresentOrAbsent() throws IOException {
+        final RegionShard[] shards = RegionSnapshotEncoder.SHARDS;
+
+        for (int mask = 0; mask < 1 << shards.length; mask++) {
+            final Set<RegionShard> present = EnumSet.noneOf(RegionShard.class);
+
+            for (int bit = 0; bit < shards.length; bit++) {
+                if ((mask & (1 << bit)) != 0) {
+                    present.add(shards[bit]);
+                }
+            }
+            final RegionData region = new RegionData("Region " + mask, present, NOW,
+                    present.contains(RegionShard.EMBASSIES) ? Arrays.asList("Beta", "Gamma")
+                    : Collections.emptyList(),
+                    present.contains(RegionShard.REGIONAL_MESSAGES) ? NOW - 3600 : 0,
+                    present.contains(RegionShard.FOUNDED) ? NOW - 86400 * 400L : 0,
+                    present.contains(RegionShard.TAGS) ? EnumSet.of(RegionTag.RAIDER, RegionTag.LARGE)
+                    : Collections.emptySet(),
+                    present.contains(RegionShard.NUMBER_OF_NATIONS) ? 42 : 0,
+                    present.contains(RegionShard.DELEGATE) ? "Delta" : null,
+                    present.contains(RegionShard.LAST_UPDATE) ? NOW - 7200 : 0);
+
+            assertRoundTrips(Collections.singletonList(region), encode(Collections.singletonList(region)));
+        }
+    }
+
+    /**
+     * Zero last message and founding times, which mean there are no messages
+     * and the founding time is unknown, stay zero rather than becoming the
+     * retrieval time.
+     *
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    public void roundTripsZeroLastMessageAndFoundedTimes() throws IOException {
+        final List<RegionData> regions = Arrays.asList(
+                new RegionData("Alpha", allShards(), NOW, Collections.emptyList(), 0, 0, Collections.emptySet()),
+                new RegionData("Beta", allShards(), NOW, Collections.emptyList(), NOW, NOW, Collections.emptySet()),
+                new RegionData("Gamma", allShards(), NOW, Collections.emptyList(), NOW + 60, 1,
+                        Collections.emptySet()));
+
+        assertRoundTrips(regions, encode(regions));
+    }
+
+    /**
+     * The number of nations, the delegate and the time of the last update
+     * round-trip, with a region without a delegate keeping a null delegate and
+     * an unknown last update staying zero.
+     *
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    public void roundTripsPopulationDelegateAndLastUpdate() throws IOException {
+        final List<RegionData> regions = Arrays.asList(
+                new RegionData("Alpha", allShards(), NOW, Collections.emptyList(), 0, 0, Collections.emptySet(),
+                        1, "Alpha Delegate", NOW - 3600),
+                new RegionData("Beta", allShards(), NOW, Collections.emptyList(), 0, 0, Collections.emptySet(),
+                        0, null, 0),
+                new RegionData("Gamma", allShards(), NOW, Collections.emptyList(), 0, 0, Collections.emptySet(),
+                        Integer.MAX_VALUE, "\u00c9lan", NOW + 60),
+                new RegionData("Delta", allShards(), NOW, Collections.emptyList(), 0, 0, Collections.emptySet(),
+                        3, "Delta", NOW));
+
+        assertRoundTrips(regions, encode(regions));
+    }
+
+    /**
+     * Each tag round-trips on its own, and all of them together.
+     *
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    public void roundTripsEveryTag() throws IOException {
+        final List<RegionData> regions = new ArrayList<>();
+
+        for (RegionTag tag : RegionTag.values()) {
+            regions.add(new RegionData("Tagged " + tag.ordinal(), EnumSet.of(RegionShard.TAGS), NOW,
+                    Collections.emptyList(), 0, 0, EnumSet.of(tag)));
+        }
+        regions.add(new RegionData("All Tags", EnumSet.of(RegionShard.TAGS), NOW, Collections.emptyList(), 0, 0,
+                Arrays.asList(RegionTag.values())));
+
+        assertRoundTrips(regions, encode(regions));
+    }
+
+    /**
+     * The tags beyond ordinal 63, which are stored in the second word of the
+     * tag bitmask, round-trip alongside ones in the first word.
+     *
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    public void roundTripsTagsBeyondOrdinal63() throws IOException {
+        assumeTrue("The wrapper has no more than 64 tags", RegionTag.values().length > 64);
+        final List<RegionData> regions = new ArrayList<>();
+
+        for (RegionTag tag : RegionTag.values()) {
+            if (tag.ordinal() >= 63) {
+                regions.add(new RegionData("Tagged " + tag.ordinal(), EnumSet.of(RegionShard.TAGS), NOW,
+                        Collections.emptyList(), 0, 0, EnumSet.of(tag, RegionTag.values()[0])));
+            }
+        }
+        assertRoundTrips(regions, encode(regions));
+    }
+
+    /**
+     * Snapshots that were retrieved earlier than the snapshot before them
+     * round-trip, as do last message times after the retrieval time.
+     *
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    public void roundTripsNegativeRetrievalTimeDeltas() throws IOException {
+        final List<RegionData> regions = Arrays.asList(
+                new RegionData("Alpha", allShards(), NOW, Collections.emptyList(), NOW - 10, NOW - 20,
+                        Collections.emptySet()),
+                new RegionData("Beta", allShards(), NOW - 86400, Collections.emptyList(), NOW, NOW - 5,
+                        Collections.emptySet()),
+                new RegionData("Gamma", allShards(), 0, Collections.emptyList(), NOW, NOW,
+                        Collections.emptySet()),
+                new RegionData("Delta", allShards(), Long.MAX_VALUE / 4, Collections.emptyList(), NOW, NOW,
+                        Collections.emptySet()));
+
+        assertRoundTrips(regions, encode(regions));
+    }
+
+    /**
+     * A shard or tag in the header that the decoder does not know is left out
+     * of the decoded snapshots, while the rest of them still decodes.
+     *
+     * @throws IOException if encoding or decoding fails
+     */
+    @Test
+    public void skipsShardsAndTagsUnknownToTheDecoder() throws IOException {
+        final RegionData region = new RegionData("Alpha", allShards(), NOW, Arrays.asList("Beta", "Gamma"),
+                NOW - 60, NOW - 86400, EnumSet.of(RegionTag.RAIDER, RegionTag.LARGE));
+        final byte[] encoded = encode(Arrays.asList(region, region("Beta", NOW + 1, Arrays.asList("Alpha"))));
+
+        // Rename a shard without fields and a tag in the header.
+        renameInHeader(encoded, RegionShard.NAME.name(), "NAMX");
+        renameInHeader(encoded, RegionTag.LARGE.name(), "LARGX");
+
+        final List<RegionData> decoded = decode(encoded);
+        final Set<RegionShard> expectedShards = EnumSet.copyOf(allShards());
+        expectedShards.remove(RegionShard.NAME);
+
+        assertEquals(2, decoded.size());
+        assertEquals(expectedShards, decoded.get(0).shards);
+        assertEquals(EnumSet.of(RegionTag.RAIDER), decoded.get(0).tags);
+        assertEquals(region.embassies, decoded.get(0).embassies);
+        assertEquals(region.lastMessageTimestamp, decoded.get(0).lastMessageTimestamp);
+        assertEquals(region.founded, decoded.get(0).founded);
+        assertEquals(Collections.singletonList("Alpha"), decoded.get(1).embassies);
+    }
+
+    /**
+     * A truncated stream fails with an {@link IOException} at every length.
+     *
+     * @throws IOException if encoding fails
+     */
+    @Test
+    public void rejectsTruncatedStreams() throws IOException {
+        final byte[] encoded = encode(Arrays.asList(
+                region("Alpha", NOW, Arrays.asList("Beta", "Gamma")),
+                region("Beta", NOW + 10, Arrays.asList("Alpha"))));
+
+        for (int length = 0; length < encoded.length; length++) {
+            try {
+                decode(Arrays.copyOf(encoded, length));
+                fail("Decoded a stream truncated to " + length + " bytes");
+            } catch (IOException ex) {
+                // Expected.
+            }
+        }
+    }
+
+    /**
+     * A string length beyond the end of the stream fails with an
+     * {@link IOException}.
+     *
+     * @throws IOException if encoding fails
+     */
+    @Test
+    public void rejectsCorruptStringLengths() throws IOException {
+        final byte[] encoded = encode(Collections.singletonList(region("Alpha", NOW, Collections.emptyList())));
+        final int nameEntry = indexOf(encoded, "Alpha") - 2;
+        assertEquals(RegionSnapshotEncoder.NAME, encoded[nameEntry]);
+        encoded[nameEntry + 1] = 0x7F;
+
+        try {
+            decode(encoded);
+            fail("Decoded a stream with a corrupt string length");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("corrupt"));
+        }
+    }
+
+    /**
+     * Returns a region with all shards and the given embassies.
+     *
+     * @param name name of the region
+     * @param retrievedAt time in seconds at which the region was retrieved
+     * @param embassies names of the embassy regions
+     * @return the region
+     */
+    private static RegionData region(String name, long retrievedAt, List<String> embassies) {
+        return new RegionData(name, allShards(), retrievedAt, embassies, retrievedAt - 600,
+                retrievedAt - 86400 * 30L, EnumSet.of(RegionTag.DEFENDER), embassies.size() + 1, "Testlandia",
+                retrievedAt - 1800);
+    }
+
+    /**
+     * Returns all shards a snapshot can hold.
+     *
+     * @return the shards
+     */
+    private static Set<RegionShard> allShards() {
+        return EnumSet.copyOf(Arrays.asList(RegionSnapshotEncoder.SHARDS));
+    }
+
+    /**
+     * Encodes the given snapshots.
+     *
+     * @param regions the snapshots
+     * @return the encoded stream
+     * @throws IOException if encoding fails
+     */
+    private static byte[] encode(List<RegionData> regions) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (RegionSnapshotEncoder encoder = new RegionSnapshotEncoder(out)) {
+            for (RegionData region : regions) {
+                encoder.write(region);
+            }
+            assertEquals(regions.size(), encoder.getCount());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes all snapshots in the given stream.
+     *
+     * @param encoded the encoded stream
+     * @return the snapshots
+     * @throws IOException if decoding fails
+     */
+    private static List<RegionData> decode(byte[] encoded) throws IOException {
+        return new RegionSnapshotDecoder(ByteBuffer.wrap(encoded)).readAll();
+    }
+
+    /**
+     * Asserts that the given stream decodes to the given snapshots.
+     *
+     * @param expected the snapshots
+     * @param encoded the encoded stream
+     * @throws IOException if decoding fails
+     */
+    private static void assertRoundTrips(List<RegionData> expected, byte[] encoded) throws IOException {
+        final List<RegionData> actual = decode(encoded);
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            final RegionData want = expected.get(i);
+            final RegionData got = actual.get(i);
+            final String which = "Snapshot " + i + " (" + want.name + ")";
+
+            assertEquals(which, want.name, got.name);
+            assertEquals(which, want.shards, got.shards);
+            assertEquals(which, want.retrievedAt, got.retrievedAt);
+            assertEquals(which, want.embassies, got.embassies);
+            assertEquals(which, want.lastMessageTimestamp, got.lastMessageTimestamp);
+            assertEquals(which, want.founded, got.founded);
+            assertEquals(which, want.tags, got.tags);
+            assertEquals(which, want.population, got.population);
+            assertEquals(which, want.delegate, got.delegate);
+            assertEquals(which, want.lastUpdate, got.lastUpdate);
+        }
+    }
+
+    /**
+     * Returns how often the given text occurs in the given bytes as UTF-8.
+     *
+     * @param bytes the bytes
+     * @param text the text
+     * @return the number of occurrences
+     */
+    private static int occurrences(byte[] bytes, String text) {
+        final byte[] needle = text.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+
+        for (int i = 0; i + needle.length <= bytes.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + needle.length), needle)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given text in the given
+     * bytes as UTF-8.
+     *
+     * @param bytes the bytes
+     * @param text the text
+     * @return the index, or -1 if it does not occur
+     */
+    private static int indexOf(byte[] bytes, String text) {
+        final byte[] needle = text.getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i + needle.length <= bytes.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + needle.length), needle)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces the first string in the given stream that is the given name, as
+     * a length followed by the name, by another name of the same length.
+     *
+     * @param bytes the stream
+     * @param name the name to replace
+     * @param replacement the replacement
+     */
+    private static void renameInHeader(byte[] bytes, String name, String replacement) {
+        assertEquals(name.length(), replacement.length());
+        final int index = indexOf(bytes, (char) name.length() + name);
+        assertTrue(name + " does not occur", index >= 0);
+        final byte[] with = replacement.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(with, 0, bytes, index + 1, with.length);
+    }
+}
@@ -0,0 +1,246 @@
+package com.github.agadar.embassychecker.dump;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of {@link DumpDigest}: the changes between two dumps, and a digest
+ * saved, loaded and compared to the next dump as if it had never been saved.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class DumpDigestTest {
+
+    /**
+     * Time in seconds at which the first dump in the tests was made.
+     */
+    private final static long DUMPED_AT = 1_700_000_000L;
+
+    /**
+     * The first dump in the tests.
+     */
+    private final static String FIRST_DUMP = dump(
+            region("Alpha", Arrays.asList("Beta", "Gamma"), "Raider"),
+            region("Beta", Arrays.asList("Alpha"), "Large", "Defender"),
+            region("Gamma", Arrays.asList("Alpha"), "Small"),
+            region("D\u00e9lta", Collections.emptyList()));
+
+    /**
+     * The second dump in the tests: Alpha swapped an embassy, Beta lost a tag,
+     * Gamma is unchanged, the accented Delta ceased to exist and Epsilon was
+     * founded.
+     */
+    private final static String SECOND_DUMP = dump(
+            region("Alpha", Arrays.asList("Epsilon", "Beta"), "Raider"),
+            region("Beta", Arrays.asList("Alpha"), "Large"),
+            region("Gamma", Arrays.asList("Alpha"), "Small"),
+            region("Epsilon", Arrays.asList("Alpha")));
+
+    /**
+     * The directory the dump and digest files of a test are in.
+     */
+    private Path directory;
+
+    /**
+     * Creates the directory.
+     *
+     * @throws IOException if the directory could not be created
+     */
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("dump-digest-test");
+    }
+
+    /**
+     * Deletes the directory.
+     *
+     * @throws IOException if the directory could not be deleted
+     */
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * The first dump makes every region new, and the second yields the
+     * founded, deleted and changed regions and the embassies gained and lost.
+     *
+     * @throws IOException if a dump could not be read
+     */
+    @Test
+    public void findsTheChangesBetweenDumps() throws IOException {
+        final DumpDigest digest = new DumpDigest(directory.resolve("digest.dat"));
+
+        final DumpChangeSet first = update(digest, FIRST_DUMP, DUMPED_AT);
+        assertEquals(0, first.previousDumpedAt);
+        assertEquals(DUMPED_AT, first.dumpedAt);
+        assertEquals(Arrays.asList("Alpha", "Beta", "Gamma", "D\u00e9lta"), namesOf(first.added));
+        assertEquals(0, first.changed.size());
+
+        assertSecondDumpChanges(update(digest, SECOND_DUMP, DUMPED_AT + 86400));
+    }
+
+    /**
+     * A saved digest loads as it was, and the next dump compared to it yields
+     * the same changes as compared to the digest that was saved.
+     *
+     * @throws IOException if a dump or the digest could not be read or written
+     */
+    @Test
+    public void roundTripsThroughTheDigestFile() throws IOException {
+        final Path file = directory.resolve("digest.dat");
+        final DumpDigest saved = new DumpDigest(file);
+        update(saved, FIRST_DUMP, DUMPED_AT);
+        saved.save();
+        assertFalse(Files.exists(file.resolveSibling("digest.dat.tmp")));
+
+        final DumpDigest loaded = new DumpDigest(file);
+        loaded.load();
+        assertEquals(DUMPED_AT, loaded.getDumpedAt());
+        assertEquals(4, loaded.size());
+
+        final DumpChangeSet changes = update(loaded, SECOND_DUMP, DUMPED_AT + 86400);
+        assertEquals(DUMPED_AT, changes.previousDumpedAt);
+        assertSecondDumpChanges(changes);
+
+        // Saving again replaces the file.
+        loaded.save();
+        final DumpDigest reloaded = new DumpDigest(file);
+        reloaded.load();
+        assertEquals(DUMPED_AT + 86400, reloaded.getDumpedAt());
+        assertEquals(4, reloaded.size());
+        assertEquals(4, update(reloaded, SECOND_DUMP, DUMPED_AT + 2 * 86400).unchanged);
+    }
+
+    /**
+     * A missing digest file, or one of another version, leaves the digest
+     * empty, so that every region of the next dump counts as new.
+     *
+     * @throws IOException if a dump or the digest could not be read or written
+     */
+    @Test
+    public void startsOverWithoutACompatibleFile() throws IOException {
+        final Path file = directory.resolve("digest.dat");
+        final DumpDigest missing = new DumpDigest(file);
+        missing.load();
+        assertEquals(0, missing.size());
+
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(0x45434444);
+            out.writeInt(99);
+            out.writeLong(DUMPED_AT);
+            out.writeInt(1);
+        }
+        final DumpDigest other = new DumpDigest(file);
+        other.load();
+        assertEquals(0, other.size());
+        assertEquals(0, other.getDumpedAt());
+        assertEquals(4, update(other, FIRST_DUMP, DUMPED_AT).added.size());
+    }
+
+    /**
+     * Asserts that the given changes are those from the first dump to the
+     * second.
+     *
+     * @param changes the changes
+     */
+    private static void assertSecondDumpChanges(DumpChangeSet changes) {
+        assertEquals(Arrays.asList("Epsilon"), namesOf(changes.added));
+        assertEquals(Arrays.asList("D\u00e9lta"), changes.deleted);
+        assertEquals(1, changes.unchanged);
+        assertEquals(2, changes.changed.size());
+
+        final DumpChangeSet.RegionChange alpha = changes.changed.get(0);
+        assertEquals("Alpha", alpha.region.name);
+        assertEquals(Arrays.asList("Epsilon"), alpha.embassiesAdded);
+        assertEquals(Arrays.asList("Gamma"), alpha.embassiesRemoved);
+
+        final DumpChangeSet.RegionChange beta = changes.changed.get(1);
+        assertEquals("Beta", beta.region.name);
+        assertEquals(Collections.emptyList(), beta.embassiesAdded);
+        assertEquals(Collections.emptyList(), beta.embassiesRemoved);
+    }
+
+    /**
+     * Writes the given dump, made at the given time, and updates the given
+     * digest with it.
+     *
+     * @param digest the digest
+     * @param dump the dump
+     * @param dumpedAt time in seconds at which the dump was made
+     * @return the changes
+     * @throws IOException if the dump could not be written or read
+     */
+    private DumpChangeSet update(DumpDigest digest, String dump, long dumpedAt) throws IOException {
+        final Path file = directory.resolve("regions-" + dumpedAt + ".xml");
+        Files.write(file, dump.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(dumpedAt * 1000));
+        return digest.update(file, new DumpPipeline(2));
+    }
+
+    /**
+     * Returns the names of the given regions.
+     *
+     * @param regions the regions
+     * @return the names
+     */
+    private static List<String> namesOf(List<RegionData> regions) {
+        final List<String> names = new ArrayList<>();
+        regions.forEach(region -> names.add(region.name));
+        return names;
+    }
+
+    /**
+     * Returns a regions dump of the given regions.
+     *
+     * @param regions the regions, as dump elements
+     * @return the dump
+     */
+    private static String dump(String... regions) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<REGIONS>\n" + String.join("\n", regions)
+                + "\n</REGIONS>\n";
+    }
+
+    /**
+     * Returns the dump element of a region, with a closing embassy that does
+     * not count as one of its embassies.
+     *
+     * @param name the region's name
+     * @param embassies the region's embassies
+     * @param tags the region's tags
+     * @return the element
+     */
+    private static String region(String name, List<String> embassies, String... tags) {
+        final StringBuilder region = new StringBuilder("<REGION><NAME>").append(name)
+                .append("</NAME><NUMNATIONS>3</NUMNATIONS><EMBASSIES>");
+        embassies.forEach(embassy -> region.append("<EMBASSY>").append(embassy).append("</EMBASSY>"));
+        region.append("<EMBASSY type=\"closing\">Zeta</EMBASSY></EMBASSIES><TAGS>");
+
+        for (int i = tags.length - 1; i >= 0; i--) {
+            region.append("<TAG>").append(tags[i]).append("</TAG>");
+        }
+        return region.append("</TAGS></REGION>").toString();
+    }
+}
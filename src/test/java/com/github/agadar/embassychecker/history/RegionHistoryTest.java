@@ -0,0 +1,324 @@
+package com.github.agadar.embassychecker.history;
+
+import com.github.agadar.embassychecker.domain.RegionData;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+import com.github.agadar.nationstates.shard.RegionShard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of {@link RegionHistory}: snapshots written, reopened and read back,
+ * and the conversion of history files that stored the tags by their ordinals.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class RegionHistoryTest {
+
+    /**
+     * Retrieval time of the first snapshot in the tests.
+     */
+    private final static long NOW = 1_700_000_000L;
+
+    /**
+     * The directory the history files of a test are in.
+     */
+    private Path directory;
+
+    /**
+     * Creates the history directory.
+     *
+     * @throws IOException if the directory could not be created
+     */
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("region-history-test");
+    }
+
+    /**
+     * Deletes the history directory.
+     *
+     * @throws IOException if the directory could not be deleted
+     */
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * A snapshot with only the embassies, as the main region is retrieved, is
+     * appended under the name it was requested by and read back after the
+     * history is reopened.
+     *
+     * @throws IOException if the history could not be written or read
+     */
+    @Test
+    public void roundTripsEmbassiesOnlySnapshots() throws IOException {
+        final RegionData main = new RegionData("the_main_region", EnumSet.of(RegionShard.EMBASSIES), NOW,
+                Arrays.asList("Alpha", "Beta", "Gamma"), 0, 0, Collections.emptySet());
+
+        try (RegionHistory history = open()) {
+            assertEquals(true, history.append(main));
+        }
+        try (RegionHistory history = open()) {
+            final RegionData snapshot = history.getSnapshot("The Main Region", NOW, RegionShard.EMBASSIES);
+
+            assertNotNull(snapshot);
+            assertEquals("the_main_region", snapshot.name);
+            assertEquals(EnumSet.of(RegionShard.EMBASSIES), snapshot.shards);
+            assertEquals(NOW, snapshot.retrievedAt);
+            assertEquals(main.embassies, snapshot.embassies);
+            assertNull(history.getSnapshot("The Main Region", NOW, RegionShard.TAGS));
+        }
+    }
+
+    /**
+     * An unchanged embassy list is not appended again, and a changed one is
+     * kept apart from the one before it.
+     *
+     * @throws IOException if the history could not be written or read
+     */
+    @Test
+    public void keepsEachEmbassyListOfARegion() throws IOException {
+        final List<String> before = Arrays.asList("Alpha", "Beta");
+        final List<String> after = Arrays.asList("Alpha", "Gamma", "Delta");
+
+        try (RegionHistory history = open()) {
+            history.append(embassiesOf("Main", NOW, before));
+            history.append(embassiesOf("Main", NOW + 60, before));
+            history.append(embassiesOf("Main", NOW + 120, after));
+            assertFalse(history.append(embassiesOf("Main", NOW + 120, after)));
+        }
+        try (RegionHistory history = open()) {
+            final List<RegionData> snapshots = history.getHistory("main", NOW, NOW + 120, RegionShard.EMBASSIES);
+
+            assertEquals(3, snapshots.size());
+            assertEquals(before, snapshots.get(1).embassies);
+            assertEquals(after, snapshots.get(2).embassies);
+            assertEquals(before, history.getSnapshot("main", NOW + 119, RegionShard.EMBASSIES).embassies);
+        }
+    }
+
+    /**
+     * A snapshot of a region without a name is rejected, rather than failing
+     * with an unchecked exception from deep within the history.
+     *
+     * @throws IOException if the history could not be opened
+     */
+    @Test
+    public void rejectsRegionsWithoutAName() throws IOException {
+        try (RegionHistory history = open()) {
+            for (String name : Arrays.asList(null, "")) {
+                try {
+                    history.append(embassiesOf(name, NOW, Collections.singletonList("Alpha")));
+                    fail("Appended a region named " + name);
+                } catch (IllegalArgumentException ex) {
+                    // Expected.
+                }
+            }
+            assertEquals(0, history.size());
+        }
+    }
+
+    /**
+     * All fields of a snapshot round-trip, with zero last message and founding
+     * times staying zero.
+     *
+     * @throws IOException if the history could not be written or read
+     */
+    @Test
+    public void roundTripsAllShards() throws IOException {
+        final EnumSet<RegionShard> shards = EnumSet.of(RegionShard.NAME, RegionShard.EMBASSIES,
+                RegionShard.REGIONAL_MESSAGES, RegionShard.FOUNDED, RegionShard.TAGS);
+        final RegionData full = new RegionData("Alpha", shards, NOW, Arrays.asList("Beta"), NOW - 60,
+                NOW - 86400, EnumSet.of(RegionTag.RAIDER, RegionTag.LARGE));
+        final RegionData empty = new RegionData("Beta", shards, NOW, Collections.emptyList(), 0, 0,
+                Collections.emptySet());
+
+        try (RegionHistory history = open()) {
+            history.append(full);
+            history.append(empty);
+        }
+        try (RegionHistory history = open()) {
+            assertSame(full, history.getSnapshot("alpha", NOW));
+            assertSame(empty, history.getSnapshot("beta", NOW));
+        }
+    }
+
+    /**
+     * The tags are read back through the names in the tag table, so that a
+     * bit keeps its meaning whatever the order of the tags in this version.
+     *
+     * @throws IOException if the history could not be written or read
+     */
+    @Test
+    public void mapsTagBitsThroughTheTagTable() throws IOException {
+        try (RegionHistory history = open()) {
+            history.append(tagged("Alpha", RegionTag.LARGE));
+            history.append(tagged("Beta", RegionTag.ANARCHIST));
+        }
+
+        // LARGE was given bit 0 and ANARCHIST bit 1; swap their names in the table.
+        final Path file = directory.resolve("history.dat");
+        final byte[] bytes = Files.readAllBytes(file);
+        final byte[] first = Arrays.copyOfRange(bytes, 64, 128);
+        System.arraycopy(bytes, 128, bytes, 64, 64);
+        System.arraycopy(first, 0, bytes, 128, 64);
+        Files.write(file, bytes);
+
+        try (RegionHistory history = open()) {
+            assertEquals(EnumSet.of(RegionTag.ANARCHIST), history.getSnapshot("alpha", NOW).tags);
+            assertEquals(EnumSet.of(RegionTag.LARGE), history.getSnapshot("beta", NOW).tags);
+        }
+    }
+
+    /**
+     * A tag name this version does not know is ignored when read back, and
+     * its bit is not given to another tag.
+     *
+     * @throws IOException if the history could not be written or read
+     */
+    @Test
+    public void ignoresTagsUnknownToThisVersion() throws IOException {
+        try (RegionHistory history = open()) {
+            history.append(tagged("Alpha", RegionTag.LARGE, RegionTag.RAIDER));
+        }
+
+        // RAIDER comes first in a tag set, so was given bit 0; rename it in the table.
+        final Path file = directory.resolve("history.dat");
+        final byte[] bytes = Files.readAllBytes(file);
+        final ByteBuffer slot = ByteBuffer.wrap(bytes, 64, 64);
+        final byte[] unknown = "NO_SUCH_TAG".getBytes(StandardCharsets.UTF_8);
+        slot.putInt(unknown.length).put(unknown);
+        Files.write(file, bytes);
+
+        try (RegionHistory history = open()) {
+            assertEquals(EnumSet.of(RegionTag.LARGE), history.getSnapshot("alpha", NOW).tags);
+            history.append(tagged("Beta", RegionTag.RAIDER));
+        }
+        try (RegionHistory history = open()) {
+            assertEquals(EnumSet.of(RegionTag.LARGE), history.getSnapshot("alpha", NOW).tags);
+            assertEquals(EnumSet.of(RegionTag.RAIDER), history.getSnapshot("beta", NOW).tags);
+        }
+    }
+
+    /**
+     * A history file of the format that stored the tags by their ordinals is
+     * converted when opened, keeping its snapshots and their tags.
+     *
+     * @throws IOException if the history could not be written or read
+     */
+    @Test
+    public void convertsOrdinalTagFiles() throws IOException {
+        final ByteBuffer names = ByteBuffer.allocate(2 + 5 + 2 + 4);
+        names.putShort((short) 5).put("Alpha".getBytes(StandardCharsets.UTF_8))
+                .putShort((short) 4).put("Beta".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("regions.dat"), names.array());
+        final ByteBuffer embassies = ByteBuffer.allocate(4);
+        embassies.putInt(1);
+        Files.write(directory.resolve("embassies.dat"), embassies.array());
+
+        // The header and one snapshot of Alpha with its embassy and two tags.
+        final ByteBuffer records = ByteBuffer.allocate(2 * 64);
+        records.putInt(0x45434853).putInt(1);
+        records.position(64);
+        records.putInt(0).putInt(0b10010).putLong(NOW).putLong(0).putLong(0)
+                .putLong((1L << RegionTag.DEFENDER.ordinal()) | (1L << RegionTag.SMALL.ordinal())).putLong(0)
+                .putLong(0).putInt(1);
+        Files.write(directory.resolve("history.dat"), records.array());
+
+        try (RegionHistory history = open()) {
+            final RegionData snapshot = history.getSnapshot("alpha", NOW);
+
+            assertEquals(1, history.size());
+            assertEquals(EnumSet.of(RegionShard.EMBASSIES, RegionShard.TAGS), snapshot.shards);
+            assertEquals(Collections.singletonList("Beta"), snapshot.embassies);
+            assertEquals(EnumSet.of(RegionTag.DEFENDER, RegionTag.SMALL), snapshot.tags);
+            history.append(tagged("Beta", RegionTag.LARGE));
+        }
+        assertFalse(Files.exists(directory.resolve("history.dat.converting")));
+
+        try (RegionHistory history = open()) {
+            assertEquals(2, history.size());
+            assertEquals(EnumSet.of(RegionTag.DEFENDER, RegionTag.SMALL), history.getSnapshot("alpha", NOW).tags);
+            assertEquals(EnumSet.of(RegionTag.LARGE), history.getSnapshot("beta", NOW).tags);
+        }
+    }
+
+    /**
+     * Opens the history in the test's directory.
+     *
+     * @return the history
+     * @throws IOException if the history could not be opened
+     */
+    private RegionHistory open() throws IOException {
+        final RegionHistory history = new RegionHistory(directory);
+        history.open();
+        return history;
+    }
+
+    /**
+     * Returns a snapshot with only the embassies of the given region.
+     *
+     * @param name name of the region
+     * @param retrievedAt time in seconds at which the region was retrieved
+     * @param embassies names of the embassy regions
+     * @return the snapshot
+     */
+    private static RegionData embassiesOf(String name, long retrievedAt, List<String> embassies) {
+        return new RegionData(name, EnumSet.of(RegionShard.EMBASSIES), retrievedAt, embassies, 0, 0,
+                Collections.emptySet());
+    }
+
+    /**
+     * Returns a snapshot with only the given tags of the given region.
+     *
+     * @param name name of the region
+     * @param tags the region's tags
+     * @return the snapshot
+     */
+    private static RegionData tagged(String name, RegionTag... tags) {
+        return new RegionData(name, EnumSet.of(RegionShard.TAGS), NOW, Collections.emptyList(), 0, 0,
+                Arrays.asList(tags));
+    }
+
+    /**
+     * Asserts that the given snapshot was read back as the given one was
+     * appended.
+     *
+     * @param expected the appended snapshot
+     * @param actual the snapshot read back
+     */
+    private static void assertSame(RegionData expected, RegionData actual) {
+        assertNotNull(actual);
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.shards, actual.shards);
+        assertEquals(expected.retrievedAt, actual.retrievedAt);
+        assertEquals(expected.embassies, actual.embassies);
+        assertEquals(expected.lastMessageTimestamp, actual.lastMessageTimestamp);
+        assertEquals(expected.founded, actual.founded);
+        assertEquals(expected.tags, actual.tags);
+    }
+}
@@ -0,0 +1,435 @@
+package com.github.agadar.embassychecker.report;
+
+import com.github.agadar.embassychecker.domain.AuditRow;
+import com.github.agadar.embassychecker.domain.RegionFounded;
+import com.github.agadar.embassychecker.domain.RegionLastMsg;
+import com.github.agadar.embassychecker.domain.RegionWithTags;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of {@link ExternalSorter} and the {@link RowCodec}s its runs are
+ * written with: rows round-tripped through each codec, sorts of more runs than
+ * are merged at once compared with sorting in memory, the order of rows that
+ * compare equal, and the run files left after a failure.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class ExternalSorterTest {
+
+    /**
+     * The maximum number of rows in memory in the tests.
+     */
+    private final static int MAX_ROWS = 100;
+
+    /**
+     * The number of rows of the large sorts, which spill more runs than are
+     * merged at once.
+     */
+    private final static int MANY_ROWS = MAX_ROWS * (ExternalSorter.MAX_FAN_IN * 2 + 3) + 17;
+
+    /**
+     * The directory the run files of a test are made in.
+     */
+    private Path directory;
+
+    /**
+     * Creates the run file directory.
+     *
+     * @throws IOException if the directory could not be created
+     */
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("external-sorter-test");
+    }
+
+    /**
+     * Deletes the run file directory.
+     *
+     * @throws IOException if the directory could not be deleted
+     */
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * Each codec reads back the rows it wrote, including regions without
+     * messages, names outside ASCII, and rows without and with every tag.
+     *
+     * @throws IOException if a row could not be written or read
+     */
+    @Test
+    public void roundTripsEachCodec() throws IOException {
+        assertRoundTrips(RowCodec.REGION_LAST_MSG, Arrays.asList(new RegionLastMsg("Alpha", 3),
+                new RegionLastMsg("B\u00eata"), new RegionLastMsg("", 0)));
+        assertRoundTrips(RowCodec.REGION_FOUNDED, Arrays.asList(new RegionFounded("Alpha", 3),
+                new RegionFounded("B\u00eata", Integer.MAX_VALUE), new RegionFounded("", 0)));
+        assertRoundTrips(RowCodec.REGION_WITH_TAGS, Arrays.asList(
+                new RegionWithTags("Alpha", Collections.emptyList()),
+                new RegionWithTags("B\u00eata", EnumSet.allOf(RegionTag.class)),
+                new RegionWithTags("Gamma", Arrays.asList(RegionTag.LARGE, RegionTag.RAIDER))));
+        assertRoundTrips(RowCodec.auditRows(RowCodec.REGION_WITH_TAGS), Arrays.asList(
+                new AuditRow<>("Main", new RegionWithTags("Alpha", Arrays.asList(RegionTag.RAIDER))),
+                new AuditRow<>("M\u00e4in", new RegionWithTags("Beta", Collections.emptyList()))));
+    }
+
+    /**
+     * Rows that fit in memory are sorted without making run files.
+     *
+     * @throws IOException if the rows could not be sorted
+     */
+    @Test
+    public void sortsRowsThatFitInMemory() throws IOException {
+        final List<AuditRow<RegionLastMsg>> rows = lastMsgRows(MAX_ROWS - 1, 11);
+
+        try (ExternalSorter<AuditRow<RegionLastMsg>> sorter = sorter(Comparator.naturalOrder(),
+                RowCodec.auditRows(RowCodec.REGION_LAST_MSG))) {
+            addAll(sorter, rows);
+            assertSortsAs(rows, Comparator.naturalOrder(), RowCodec.auditRows(RowCodec.REGION_LAST_MSG),
+                    sorter.sorted());
+            assertEquals(0, sorter.getSpilledRuns());
+            assertEquals(0, runFiles());
+        }
+    }
+
+    /**
+     * Many more rows than fit in memory, spilled as more runs than are merged
+     * at once, come out as they are sorted in memory, and no run files are
+     * left once the sorter is closed.
+     *
+     * @throws IOException if the rows could not be sorted
+     */
+    @Test
+    public void sortsMoreRunsThanAreMergedAtOnce() throws IOException {
+        final List<AuditRow<RegionLastMsg>> rows = lastMsgRows(MANY_ROWS, 12);
+
+        try (ExternalSorter<AuditRow<RegionLastMsg>> sorter = sorter(Comparator.naturalOrder(),
+                RowCodec.auditRows(RowCodec.REGION_LAST_MSG))) {
+            addAll(sorter, rows);
+            assertEquals(MANY_ROWS / MAX_ROWS, sorter.getSpilledRuns());
+            assertEquals(MANY_ROWS, sorter.size());
+            assertSortsAs(rows, Comparator.naturalOrder(), RowCodec.auditRows(RowCodec.REGION_LAST_MSG),
+                    sorter.sorted());
+        }
+        assertEquals(0, runFiles());
+    }
+
+    /**
+     * Rows that compare equal keep the order they were added in, across runs,
+     * with the natural orders of the three kinds of rows and with orders by
+     * their days only.
+     *
+     * @throws IOException if the rows could not be sorted
+     */
+    @Test
+    public void keepsTheOrderOfEqualRows() throws IOException {
+        final Random random = new Random(13);
+        final List<RegionLastMsg> lastMsgs = new ArrayList<>();
+        final List<RegionFounded> founded = new ArrayList<>();
+        final List<RegionWithTags> tagged = new ArrayList<>();
+        final RegionTag[] tags = RegionTag.values();
+
+        for (int i = 0; i < MAX_ROWS * 5 + 7; i++) {
+            final String region = "Region " + random.nextInt(20);
+            lastMsgs.add(new RegionLastMsg(region, random.nextInt(5)));
+            founded.add(new RegionFounded(region, random.nextInt(5)));
+            tagged.add(new RegionWithTags(region, Collections.singletonList(tags[random.nextInt(tags.length)])));
+        }
+        assertSorts(lastMsgs, Comparator.naturalOrder(), RowCodec.REGION_LAST_MSG);
+        assertSorts(lastMsgs, Comparator.comparingInt(row -> row.diffInDays), RowCodec.REGION_LAST_MSG);
+        assertSorts(founded, Comparator.naturalOrder(), RowCodec.REGION_FOUNDED);
+        assertSorts(founded, Comparator.comparingInt(row -> row.diffInDays), RowCodec.REGION_FOUNDED);
+        assertSorts(tagged, Comparator.naturalOrder(), RowCodec.REGION_WITH_TAGS);
+    }
+
+    /**
+     * A run that could not be written while adding rows is deleted when the
+     * sorter is closed, as are the runs before it.
+     *
+     * @throws IOException if the sorter could not be closed
+     */
+    @Test
+    public void deletesRunsWhenSpillingFails() throws IOException {
+        final ExternalSorter<RegionLastMsg> sorter = sorter(Comparator.naturalOrder(),
+                failing(RowCodec.REGION_LAST_MSG, MAX_ROWS * 2 + 5, Integer.MAX_VALUE));
+
+        try {
+            for (int i = 0; i < MAX_ROWS * 3; i++) {
+                sorter.add(new RegionLastMsg("Region " + i, i));
+            }
+            fail("Spilled the third run");
+        } catch (IOException ex) {
+            assertEquals(3, runFiles());
+        }
+        sorter.close();
+        assertEquals(0, runFiles());
+    }
+
+    /**
+     * A run that could not be written while merging the first runs into one
+     * is deleted at once, and the others when the sorter is closed.
+     *
+     * @throws IOException if the rows could not be added or the sorter could
+     * not be closed
+     */
+    @Test
+    public void deletesRunsWhenMergingFirstRunsFails() throws IOException {
+        final ExternalSorter<RegionLastMsg> sorter = sorter(Comparator.naturalOrder(),
+                failing(RowCodec.REGION_LAST_MSG, MANY_ROWS + MAX_ROWS * 10, Integer.MAX_VALUE));
+
+        for (int i = 0; i < MANY_ROWS; i++) {
+            sorter.add(new RegionLastMsg("Region " + i, i % 50));
+        }
+        final int runs = runFiles();
+
+        try {
+            sorter.sorted();
+            fail("Merged the first runs");
+        } catch (IOException ex) {
+            // The rows held in memory were spilled as the last run first.
+            assertEquals(runs + 1, runFiles());
+        }
+        sorter.close();
+        assertEquals(0, runFiles());
+    }
+
+    /**
+     * A run that could not be read while the sorted rows are read fails the
+     * reading, and the runs, some of which are still open, are deleted when
+     * the sorter is closed.
+     *
+     * @throws IOException if the rows could not be added or the sorter could
+     * not be closed
+     */
+    @Test
+    public void deletesRunsWhenReadingFails() throws IOException {
+        final ExternalSorter<RegionLastMsg> sorter = sorter(Comparator.naturalOrder(),
+                failing(RowCodec.REGION_LAST_MSG, Integer.MAX_VALUE, MAX_ROWS * 3));
+
+        for (int i = 0; i < MAX_ROWS * 10; i++) {
+            sorter.add(new RegionLastMsg("Region " + i, i % 50));
+        }
+        final Iterator<RegionLastMsg> sorted = sorter.sorted();
+
+        try {
+            while (sorted.hasNext()) {
+                sorted.next();
+            }
+            fail("Read all sorted rows");
+        } catch (UncheckedIOException ex) {
+            assertTrue(runFiles() > 0);
+        }
+        sorter.close();
+        assertEquals(0, runFiles());
+    }
+
+    /**
+     * Asserts that the given rows, sorted with the given order by a sorter
+     * that spills them with the given codec, come out as they are sorted in
+     * memory.
+     *
+     * @param <T> the type of the rows
+     * @param rows the rows
+     * @param comparator the order
+     * @param codec the codec
+     * @throws IOException if the rows could not be sorted
+     */
+    private <T> void assertSorts(List<T> rows, Comparator<? super T> comparator, RowCodec<T> codec)
+            throws IOException {
+        try (ExternalSorter<T> sorter = sorter(comparator, codec)) {
+            addAll(sorter, rows);
+            assertTrue(sorter.getSpilledRuns() > 1);
+            assertSortsAs(rows, comparator, codec, sorter.sorted());
+        }
+    }
+
+    /**
+     * Asserts that the given sorted rows are the given rows as a stable sort
+     * in memory orders them, comparing the rows by how the given codec writes
+     * them.
+     *
+     * @param <T> the type of the rows
+     * @param rows the rows
+     * @param comparator the order
+     * @param codec the codec
+     * @param sorted the sorted rows
+     * @throws IOException if a row could not be written
+     */
+    private static <T> void assertSortsAs(List<T> rows, Comparator<? super T> comparator, RowCodec<T> codec,
+            Iterator<T> sorted) throws IOException {
+        final List<T> expected = new ArrayList<>(rows);
+        expected.sort(comparator);
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue("Ended after " + i + " rows", sorted.hasNext());
+            assertArrayEquals("Row " + i, bytesOf(codec, expected.get(i)), bytesOf(codec, sorted.next()));
+        }
+        assertFalse(sorted.hasNext());
+    }
+
+    /**
+     * Asserts that the given codec reads back the given rows as it wrote them.
+     *
+     * @param <T> the type of the rows
+     * @param codec the codec
+     * @param rows the rows
+     * @throws IOException if a row could not be written or read
+     */
+    private static <T> void assertRoundTrips(RowCodec<T> codec, List<T> rows) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (T row : rows) {
+                codec.write(out, row);
+            }
+        }
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        for (T row : rows) {
+            assertArrayEquals(row.toString(), bytesOf(codec, row), bytesOf(codec, codec.read(in)));
+        }
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * Returns the given row as written by the given codec.
+     *
+     * @param <T> the type of the row
+     * @param codec the codec
+     * @param row the row
+     * @return the written row
+     * @throws IOException if the row could not be written
+     */
+    private static <T> byte[] bytesOf(RowCodec<T> codec, T row) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            codec.write(out, row);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns rows of a few main regions with random embassy regions and days,
+     * many of which are equal.
+     *
+     * @param count the number of rows
+     * @param seed the seed of the random rows
+     * @return the rows
+     */
+    private static List<AuditRow<RegionLastMsg>> lastMsgRows(int count, long seed) {
+        final Random random = new Random(seed);
+        final List<AuditRow<RegionLastMsg>> rows = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            final RegionLastMsg result = random.nextInt(10) == 0 ? new RegionLastMsg("Region " + random.nextInt(500))
+                    : new RegionLastMsg("Region " + random.nextInt(500), random.nextInt(100));
+            rows.add(new AuditRow<>("Main " + random.nextInt(30), result));
+        }
+        return rows;
+    }
+
+    /**
+     * Adds the given rows to the given sorter.
+     *
+     * @param <T> the type of the rows
+     * @param sorter the sorter
+     * @param rows the rows
+     * @throws IOException if the rows could not be spilled
+     */
+    private static <T> void addAll(ExternalSorter<T> sorter, List<T> rows) throws IOException {
+        for (T row : rows) {
+            sorter.add(row);
+        }
+    }
+
+    /**
+     * Returns a sorter that makes its run files in the test's directory.
+     *
+     * @param <T> the type of the rows
+     * @param comparator the order
+     * @param codec the codec
+     * @return the sorter
+     */
+    private <T> ExternalSorter<T> sorter(Comparator<? super T> comparator, RowCodec<T> codec) {
+        return new ExternalSorter<>(comparator, codec, MAX_ROWS, directory);
+    }
+
+    /**
+     * Returns the number of run files in the test's directory.
+     *
+     * @return the number of run files
+     * @throws IOException if the directory could not be listed
+     */
+    private int runFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return (int) files.count();
+        }
+    }
+
+    /**
+     * Returns a codec that fails after writing or reading the given numbers
+     * of rows.
+     *
+     * @param <T> the type of the rows
+     * @param codec the codec that writes and reads the rows
+     * @param writes the number of rows written before failing
+     * @param reads the number of rows read before failing
+     * @return the codec
+     */
+    private static <T> RowCodec<T> failing(RowCodec<T> codec, int writes, int reads) {
+        return new RowCodec<T>() {
+            private int written;
+            private int read;
+
+            @Override
+            public void write(DataOutput out, T row) throws IOException {
+                if (written++ == writes) {
+                    throw new IOException("No space left on device");
+                }
+                codec.write(out, row);
+            }
+
+            @Override
+            public T read(DataInput in) throws IOException {
+                if (read++ == reads) {
+                    throw new IOException("Input/output error");
+                }
+                return codec.read(in);
+            }
+        };
+    }
+}
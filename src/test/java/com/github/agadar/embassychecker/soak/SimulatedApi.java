@@ -0,0 +1,310 @@
+package com.github.agadar.embassychecker.soak;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the NationStates API's region requests, serving a
+ * made-up world of regions on the loopback address. The embassy lists churn:
+ * every churn interval, each region's embassies are drawn anew, some of them
+ * with regions that do not exist. A given fraction of the requests fails,
+ * either with HTTP status 500 or with a response that is cut off. Only the
+ * requested shards are served, in the form the region response parser reads.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class SimulatedApi implements Closeable {
+
+    /**
+     * The tags the regions are given, one or none per region.
+     */
+    private final static RegionTag[] TAGS = {RegionTag.RAIDER, RegionTag.DEFENDER, RegionTag.LARGE,
+        RegionTag.SMALL, RegionTag.MERCENARY};
+
+    /**
+     * The number of messages served per region.
+     */
+    private final static int MESSAGES_PER_REGION = 10;
+
+    /**
+     * The body of every message, long enough for the responses to be about
+     * the size of real ones.
+     */
+    private final static String MESSAGE_BODY = String.join(" ", Collections.nCopies(150, "lorem"));
+
+    /**
+     * The number of threads serving requests.
+     */
+    private final static int SERVER_THREADS = 4;
+
+    /**
+     * The number of regions in the world.
+     */
+    private final int regions;
+
+    /**
+     * Time in milliseconds after which the embassy lists are drawn anew.
+     */
+    private final long churnMillis;
+
+    /**
+     * The fraction of the requests that fails.
+     */
+    private final double failureRate;
+
+    /**
+     * Time in milliseconds at which this API was started.
+     */
+    private final long startedAt = System.currentTimeMillis();
+
+    /**
+     * The number of requests served, failed ones included.
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * The number of requests that failed on purpose.
+     */
+    private final AtomicLong failures = new AtomicLong();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(SERVER_THREADS);
+    private final HttpServer server;
+
+    /**
+     * Constructor. Binds the API to a free port on the loopback address and
+     * starts it.
+     *
+     * @param regions the number of regions in the world
+     * @param churnMillis time in milliseconds after which the embassy lists are
+     * drawn anew
+     * @param failureRate the fraction of the requests that fails
+     * @throws IOException if the API could not be bound
+     * @throws IllegalArgumentException if regions < 2, churnMillis <= 0 or
+     * failureRate is not within [0, 1)
+     */
+    public SimulatedApi(int regions, long churnMillis, double failureRate) throws IOException,
+            IllegalArgumentException {
+        if (regions < 2) {
+            throw new IllegalArgumentException("The world must hold at least 2 regions!");
+        }
+        if (churnMillis <= 0) {
+            throw new IllegalArgumentException("The churn interval must be greater than 0!");
+        }
+        if (failureRate < 0 || failureRate >= 1) {
+            throw new IllegalArgumentException("The failure rate must be at least 0 and less than 1!");
+        }
+        this.regions = regions;
+        this.churnMillis = churnMillis;
+        this.failureRate = failureRate;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api", this::handleRegion);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Returns the URL to which a region source appends the region name and
+     * the query.
+     *
+     * @return the URL
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api?region=";
+    }
+
+    /**
+     * Returns the name of the region with the given index.
+     *
+     * @param index the index, from 0 up to the number of regions
+     * @return the region's name
+     */
+    public static String nameOf(int index) {
+        return "soak_region_" + index;
+    }
+
+    /**
+     * Returns the number of regions in the world.
+     *
+     * @return the number of regions
+     */
+    public int getRegions() {
+        return regions;
+    }
+
+    /**
+     * Returns the number of requests served, failed ones included.
+     *
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of requests that failed on purpose.
+     *
+     * @return the number of failures
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Stops the API.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Serves a region request.
+     *
+     * @param exchange the exchange
+     * @throws IOException if the response could not be sent
+     */
+    private void handleRegion(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            final String query = exchange.getRequestURI().getRawQuery();
+            final int separator = query == null ? -1 : query.indexOf("&q=");
+            final int index = separator < 0 ? -1 : indexOf(query.substring("region=".length(), separator));
+
+            if (index < 0) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            final double draw = ThreadLocalRandom.current().nextDouble();
+
+            if (draw < failureRate / 2) {
+                failures.incrementAndGet();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            byte[] body = regionOf(index, query.substring(separator + "&q=".length()))
+                    .getBytes(StandardCharsets.UTF_8);
+
+            if (draw < failureRate) {
+                failures.incrementAndGet();
+                body = Arrays.copyOf(body, body.length / 2);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the index of the region with the given normalized name.
+     *
+     * @param name the name
+     * @return the index, or -1 if there is no such region
+     */
+    private int indexOf(String name) {
+        if (!name.startsWith("soak_region_")) {
+            return -1;
+        }
+        try {
+            final int index = Integer.parseInt(name.substring("soak_region_".length()));
+            return index < regions ? index : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the response for the region with the given index, with the
+     * given shards.
+     *
+     * @param index the index of the region
+     * @param shards the shards' query names, separated by plus signs
+     * @return the response
+     */
+    private String regionOf(int index, String shards) {
+        final long now = System.currentTimeMillis() / 1000;
+        final StringBuilder region = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<REGION id=\"")
+                .append(nameOf(index)).append("\">");
+
+        for (String shard : shards.split("\\+")) {
+            switch (shard) {
+                case "name":
+                    region.append("<NAME>").append(nameOf(index)).append("</NAME>");
+                    break;
+                case "embassies":
+                    appendEmbassies(region, index);
+                    break;
+                case "foundedtime":
+                    region.append("<FOUNDEDTIME>").append(now - TimeUnit.DAYS.toSeconds(index % 365))
+                            .append("</FOUNDEDTIME>");
+                    break;
+                case "messages":
+                    region.append("<MESSAGES>");
+
+                    for (int message = MESSAGES_PER_REGION; message > 0; message--) {
+                        region.append("<POST id=\"").append(message).append("\"><TIMESTAMP>")
+                                .append(now - TimeUnit.DAYS.toSeconds(index % 60) - message * 3600L)
+                                .append("</TIMESTAMP><NATION>soak_nation</NATION><MESSAGE>").append(MESSAGE_BODY)
+                                .append("</MESSAGE></POST>");
+                    }
+                    region.append("</MESSAGES>");
+                    break;
+                case "tags":
+                    region.append("<TAGS>");
+
+                    if (index % (TAGS.length + 1) < TAGS.length) {
+                        region.append("<TAG>").append(TAGS[index % (TAGS.length + 1)]).append("</TAG>");
+                    }
+                    region.append("</TAGS>");
+                    break;
+                default:
+                    break;
+            }
+        }
+        return region.append("</REGION>").toString();
+    }
+
+    /**
+     * Appends the current embassies of the region with the given index: 20 to
+     * 100 regions drawn anew every churn interval, one in twenty of which does
+     * not exist, and a pending one.
+     *
+     * @param region the response to append to
+     * @param index the index of the region
+     */
+    private void appendEmbassies(StringBuilder region, int index) {
+        final long epoch = (System.currentTimeMillis() - startedAt) / churnMillis;
+        final Random random = new Random(index * 1_000_003L + epoch);
+        final int embassies = 20 + random.nextInt(81);
+        region.append("<EMBASSIES>");
+
+        for (int embassy = 0; embassy < embassies; embassy++) {
+            final String name = random.nextInt(20) == 0 ? "ceased_region_" + random.nextInt(regions)
+                    : nameOf(random.nextInt(regions));
+            region.append(embassy == 0 ? "<EMBASSY type=\"pending\">" : "<EMBASSY>").append(name)
+                    .append("</EMBASSY>");
+        }
+        region.append("</EMBASSIES>");
+    }
+}
@@ -0,0 +1,446 @@
+package com.github.agadar.embassychecker.soak;
+
+import com.github.agadar.embassychecker.EmbassyCheckController;
+import com.github.agadar.embassychecker.EmbassyCheckQuery;
+import com.github.agadar.embassychecker.EmbassyCheckRequest;
+import com.github.agadar.embassychecker.cache.CachingRegionSource;
+import com.github.agadar.embassychecker.cache.RegionCache;
+import com.github.agadar.embassychecker.event.RegionEventsListener;
+import com.github.agadar.embassychecker.event.RegionRetrievedEvent;
+import com.github.agadar.embassychecker.event.RegionRetrievingStartedEvent;
+import com.github.agadar.embassychecker.source.LeanRegionSource;
+import com.github.agadar.embassychecker.source.SlidingWindowRateLimiter;
+
+import com.github.agadar.nationstates.enumerator.RegionTag;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Soak test of the embassy checks: drives {@link EmbassyCheckQuery} without a
+ * pause from a few threads against a {@link SimulatedApi}, through the lean
+ * region source and a small region cache whose regions expire, for as long as
+ * it is told to. Meanwhile it samples the heap right after a full collection,
+ * the garbage collections, the threads, the open file descriptors, the
+ * throughput and the queries that are still reachable.
+ * <p>
+ * The samples of the first tenth of the run are left out as warm-up. The rest
+ * are split in thirds, and the run fails if the last third is worse off than
+ * the first: if the heap grew, threads or file descriptors piled up,
+ * finished queries stayed reachable (such as through their listeners), the
+ * cache outgrew its bound, or the throughput drifted down. It also fails if no
+ * check completed in an interval.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class SoakHarness {
+
+    /**
+     * The maximum number of regions in the region cache, which is less than
+     * the world holds so that regions are evicted.
+     */
+    public final static int CACHE_MAX_ENTRIES = 1000;
+
+    /**
+     * Age in seconds after which a cached region has expired.
+     */
+    public final static long CACHE_MAX_AGE_SECONDS = 60;
+
+    /**
+     * The fraction of the run whose samples are left out as warm-up.
+     */
+    private final static double WARM_UP_FRACTION = 0.1;
+
+    /**
+     * The minimum number of samples after the warm-up needed to judge a run.
+     */
+    private final static int MIN_STEADY_SAMPLES = 6;
+
+    /**
+     * Growth in bytes of the heap after a full collection that is tolerated,
+     * or this fraction of the heap if that is more.
+     */
+    private final static long HEAP_GROWTH_TOLERANCE_BYTES = 16 * 1024 * 1024;
+    private final static double HEAP_GROWTH_TOLERANCE = 0.1;
+
+    /**
+     * Growth in the number of threads and open file descriptors that is
+     * tolerated.
+     */
+    private final static int THREAD_GROWTH_TOLERANCE = 4;
+    private final static int OPEN_FILES_GROWTH_TOLERANCE = 16;
+
+    /**
+     * The fraction by which the throughput may drift down.
+     */
+    private final static double THROUGHPUT_DRIFT_TOLERANCE = 0.25;
+
+    /**
+     * The number of requests per second the rate limiter allows, so that the
+     * checker is measured rather than the limit.
+     */
+    private final static int REQUESTS_PER_SECOND = 1000;
+
+    private final SimulatedApi api;
+
+    /**
+     * The number of threads driving the queries.
+     */
+    private final int drivers;
+
+    /**
+     * Time in milliseconds between two samples.
+     */
+    private final long sampleMillis;
+
+    private final RegionCache cache;
+    private final CachingRegionSource regionSource;
+
+    /**
+     * The number of checks completed and failed, and of regions retrieved,
+     * since the last sample.
+     */
+    private final AtomicInteger checks = new AtomicInteger();
+    private final AtomicInteger failedChecks = new AtomicInteger();
+    private final AtomicLong regionsRetrieved = new AtomicLong();
+
+    /**
+     * The listener that every query is given, which lives as long as the
+     * harness does.
+     */
+    private final RegionEventsListener listener = new RegionEventsListener() {
+        @Override
+        public void handleRetrievingStarted(RegionRetrievingStartedEvent event) {
+        }
+
+        @Override
+        public void handleRegionRetrieved(RegionRetrievedEvent event) {
+            regionsRetrieved.incrementAndGet();
+        }
+    };
+
+    /**
+     * The queries made, which are dropped once collected.
+     */
+    private final Queue<WeakReference<EmbassyCheckQuery>> queries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The samples taken.
+     */
+    private final List<SoakSample> samples = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Constructor.
+     *
+     * @param api the simulated API to check against
+     * @param drivers the number of threads driving the queries
+     * @param sampleMillis time in milliseconds between two samples
+     * @throws IllegalArgumentException if drivers <= 0 or sampleMillis <= 0
+     */
+    public SoakHarness(SimulatedApi api, int drivers, long sampleMillis) throws IllegalArgumentException {
+        if (drivers <= 0) {
+            throw new IllegalArgumentException("The number of drivers must be greater than 0!");
+        }
+        if (sampleMillis <= 0) {
+            throw new IllegalArgumentException("The sample interval must be greater than 0!");
+        }
+        this.api = api;
+        this.drivers = drivers;
+        this.sampleMillis = sampleMillis;
+        this.cache = new RegionCache(Paths.get(System.getProperty("java.io.tmpdir"), "soak-region-cache.dat"),
+                CACHE_MAX_ENTRIES);
+        this.regionSource = new CachingRegionSource(new LeanRegionSource(api.getUrl(),
+                EmbassyCheckController.USER_AGENT, new SlidingWindowRateLimiter(REQUESTS_PER_SECOND, 1000)),
+                cache, CACHE_MAX_AGE_SECONDS);
+    }
+
+    /**
+     * Runs the soak test for the given time, and then judges the samples.
+     *
+     * @param duration the time to run for
+     * @param unit the unit of the time
+     * @param onSample called with every sample as it is taken
+     * @return the problems found, or an empty list if the run passed
+     * @throws InterruptedException if interrupted while running
+     */
+    public List<String> run(long duration, TimeUnit unit, Consumer<SoakSample> onSample)
+            throws InterruptedException {
+        final long start = System.nanoTime();
+        final long deadline = start + unit.toNanos(duration);
+        final ExecutorService executor = Executors.newFixedThreadPool(drivers);
+        final List<Future<?>> driven = new ArrayList<>();
+        final List<String> problems = new ArrayList<>();
+
+        try {
+            for (int driver = 0; driver < drivers; driver++) {
+                driven.add(executor.submit(() -> drive(deadline)));
+            }
+
+            // Sample until the time is up.
+            long sampledAt = start;
+
+            while (deadline - sampledAt > 0) {
+                Thread.sleep(Math.max(1, Math.min(sampleMillis, TimeUnit.NANOSECONDS.toMillis(deadline - sampledAt))));
+                final long now = System.nanoTime();
+                final SoakSample sample = sample(now - start, now - sampledAt);
+                samples.add(sample);
+                onSample.accept(sample);
+                sampledAt = now;
+            }
+        } finally {
+            executor.shutdown();
+
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                problems.add("The drivers did not stop within a minute of the end of the run.");
+                executor.shutdownNow();
+            }
+        }
+
+        // A driver only stops early on an error, such as running out of memory.
+        for (Future<?> future : driven) {
+            try {
+                future.get(0, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException ex) {
+                problems.add("A driver died: " + ex.getCause());
+            } catch (TimeoutException ex) {
+                // It is still finishing its last check.
+            }
+        }
+        problems.addAll(judge(TimeUnit.NANOSECONDS.toSeconds(deadline - start)));
+        return problems;
+    }
+
+    /**
+     * Returns the samples taken so far.
+     *
+     * @return the samples
+     */
+    public List<SoakSample> getSamples() {
+        synchronized (samples) {
+            return new ArrayList<>(samples);
+        }
+    }
+
+    /**
+     * Executes checks of random main regions one after another until the given
+     * time, counting the ones that complete and the ones that fail.
+     *
+     * @param deadline time in nanoseconds at which to stop
+     */
+    private void drive(long deadline) {
+        final RegionTag[] tags = {RegionTag.RAIDER};
+
+        while (System.nanoTime() - deadline < 0) {
+            final String mainRegion = SimulatedApi.nameOf(ThreadLocalRandom.current().nextInt(api.getRegions()));
+            final EmbassyCheckQuery query = new EmbassyCheckRequest(mainRegion, true, 30, true, 90, true, tags)
+                    .toQuery(regionSource).addListeners(listener);
+            queries.add(new WeakReference<>(query));
+
+            try {
+                query.executeReport();
+                checks.incrementAndGet();
+            } catch (RuntimeException ex) {
+                // The simulated API fails on purpose now and then.
+                failedChecks.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Takes a sample, after a full collection, and starts the next interval.
+     *
+     * @param elapsedNanos time in nanoseconds since the run started
+     * @param intervalNanos time in nanoseconds since the last sample
+     * @return the sample
+     */
+    private SoakSample sample(long elapsedNanos, long intervalNanos) {
+        System.gc();
+        queries.removeIf(query -> query.get() == null);
+        long gcCount = 0;
+        long gcMillis = 0;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        return new SoakSample(TimeUnit.NANOSECONDS.toSeconds(elapsedNanos),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), gcCount, gcMillis,
+                ManagementFactory.getThreadMXBean().getThreadCount(), openFileDescriptors(), checks.getAndSet(0),
+                failedChecks.getAndSet(0), regionsRetrieved.getAndSet(0) * 1e9 / Math.max(1, intervalNanos),
+                cache.size(), queries.size());
+    }
+
+    /**
+     * Returns the number of open file descriptors of this process. The bean
+     * that tells is specific to some platforms, so it is looked up
+     * reflectively.
+     *
+     * @return the number of open file descriptors, or -1 if the platform does
+     * not tell
+     */
+    private static long openFileDescriptors() {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+        try {
+            final Class<?> unixBean = Class.forName("com.sun.management.UnixOperatingSystemMXBean");
+
+            if (!unixBean.isInstance(os)) {
+                return -1;
+            }
+            final Method count = unixBean.getMethod("getOpenFileDescriptorCount");
+            return ((Number) count.invoke(os)).longValue();
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Judges the samples after the warm-up, comparing the last third with the
+     * first.
+     *
+     * @param durationSeconds the length of the run in seconds
+     * @return the problems found
+     */
+    private List<String> judge(long durationSeconds) {
+        final List<String> problems = new ArrayList<>();
+        final List<SoakSample> steady = new ArrayList<>();
+        getSamples().stream().filter(sample -> sample.seconds >= durationSeconds * WARM_UP_FRACTION)
+                .forEach(steady::add);
+
+        if (steady.size() < MIN_STEADY_SAMPLES) {
+            problems.add("Too few samples to judge the run: " + steady.size() + " after the warm-up, of at least "
+                    + MIN_STEADY_SAMPLES + ".");
+            return problems;
+        }
+        final List<SoakSample> first = steady.subList(0, steady.size() / 3);
+        final List<SoakSample> last = steady.subList(steady.size() - steady.size() / 3, steady.size());
+
+        final double heapBefore = median(first, sample -> sample.heapBytes);
+        final double heapAfter = median(last, sample -> sample.heapBytes);
+
+        if (heapAfter - heapBefore > Math.max(HEAP_GROWTH_TOLERANCE_BYTES, heapBefore * HEAP_GROWTH_TOLERANCE)) {
+            problems.add(String.format("The heap after a full collection grew from %.1f MB to %.1f MB.",
+                    heapBefore / (1 << 20), heapAfter / (1 << 20)));
+        }
+        final double threadsBefore = max(first, sample -> sample.threads);
+        final double threadsAfter = max(last, sample -> sample.threads);
+
+        if (threadsAfter - threadsBefore > THREAD_GROWTH_TOLERANCE) {
+            problems.add(String.format("The threads grew from %.0f to %.0f.", threadsBefore, threadsAfter));
+        }
+        final double filesBefore = max(first, sample -> sample.openFiles);
+        final double filesAfter = max(last, sample -> sample.openFiles);
+
+        if (filesBefore >= 0 && filesAfter - filesBefore > OPEN_FILES_GROWTH_TOLERANCE) {
+            problems.add(String.format("The open file descriptors grew from %.0f to %.0f.", filesBefore, filesAfter));
+        }
+        final double liveQueries = max(last, sample -> sample.liveQueries);
+
+        // Each driver holds at most its current query, and maybe the one before.
+        if (liveQueries > 2 * drivers) {
+            problems.add(String.format("%.0f queries were still reachable after a full collection, with %d drivers.",
+                    liveQueries, drivers));
+        }
+        if (max(steady, sample -> sample.cachedRegions) > CACHE_MAX_ENTRIES) {
+            problems.add(String.format("The region cache held %.0f regions, more than its bound of %d.",
+                    max(steady, sample -> sample.cachedRegions), CACHE_MAX_ENTRIES));
+        }
+        final double throughputBefore = median(first, sample -> sample.regionsPerSecond);
+        final double throughputAfter = median(last, sample -> sample.regionsPerSecond);
+
+        if (throughputAfter < throughputBefore * (1 - THROUGHPUT_DRIFT_TOLERANCE)) {
+            problems.add(String.format("The throughput drifted from %.1f to %.1f regions per second.",
+                    throughputBefore, throughputAfter));
+        }
+        steady.stream().filter(sample -> sample.checks == 0).forEach(sample
+                -> problems.add("No check completed in the interval up to " + sample.seconds + " seconds."));
+        return problems;
+    }
+
+    /**
+     * Returns the median of the given samples' values.
+     *
+     * @param samples the samples
+     * @param value the value of a sample
+     * @return the median
+     */
+    private static double median(List<SoakSample> samples, ToDoubleFunction<SoakSample> value) {
+        final double[] values = samples.stream().mapToDouble(value).sorted().toArray();
+        return values.length % 2 == 1 ? values[values.length / 2]
+                : (values[values.length / 2 - 1] + values[values.length / 2]) / 2;
+    }
+
+    /**
+     * Returns the maximum of the given samples' values.
+     *
+     * @param samples the samples
+     * @param value the value of a sample
+     * @return the maximum
+     */
+    private static double max(List<SoakSample> samples, ToDoubleFunction<SoakSample> value) {
+        return samples.stream().mapToDouble(value).max().orElse(0);
+    }
+
+    /**
+     * Runs a soak test, printing the samples as comma-separated values and the
+     * problems found, and exits with status 1 if there were any. Supported
+     * arguments are <code>--minutes</code> (default 240),
+     * <code>--sample-seconds</code> (default 60), <code>--drivers</code>
+     * (default 4), <code>--regions</code> (default 2,000),
+     * <code>--churn-seconds</code> (default 300) and
+     * <code>--failure-rate</code> (default 0.002).
+     *
+     * @param args the command line arguments
+     * @throws Exception if the simulated API could not be started
+     */
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        final List<String> problems;
+
+        try (SimulatedApi api = new SimulatedApi(Integer.parseInt(options.getOrDefault("--regions", "2000")),
+                TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("--churn-seconds", "300"))),
+                Double.parseDouble(options.getOrDefault("--failure-rate", "0.002")))) {
+            final SoakHarness harness = new SoakHarness(api,
+                    Integer.parseInt(options.getOrDefault("--drivers", "4")),
+                    TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("--sample-seconds", "60"))));
+            System.out.println(SoakSample.CSV_HEADER);
+            problems = harness.run(Math.round(Double.parseDouble(options.getOrDefault("--minutes", "240")) * 60),
+                    TimeUnit.SECONDS, System.out::println);
+            System.err.println("The simulated API served " + api.getRequests() + " requests, of which "
+                    + api.getFailures() + " failed on purpose.");
+        }
+
+        if (problems.isEmpty()) {
+            System.err.println("The soak test passed.");
+            System.exit(0);
+        }
+        problems.forEach(System.err::println);
+        System.exit(1);
+    }
+}
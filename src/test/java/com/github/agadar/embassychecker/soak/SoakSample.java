@@ -0,0 +1,118 @@
+package com.github.agadar.embassychecker.soak;
+
+import java.util.Locale;
+
+/**
+ * The health of the process at one point of a soak run, and the work done in
+ * the interval before it.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public final class SoakSample {
+
+    /**
+     * The names of the fields, in the order {@link #toString} lists them.
+     */
+    public final static String CSV_HEADER = "seconds,heapBytes,gcCount,gcMillis,threads,openFiles,checks,"
+            + "failedChecks,regionsPerSecond,cachedRegions,liveQueries";
+
+    /**
+     * Time in seconds since the soak run started.
+     */
+    public final long seconds;
+
+    /**
+     * Heap in use in bytes, right after a full collection.
+     */
+    public final long heapBytes;
+
+    /**
+     * Number of garbage collections since the process started.
+     */
+    public final long gcCount;
+
+    /**
+     * Time in milliseconds spent on garbage collection since the process
+     * started.
+     */
+    public final long gcMillis;
+
+    /**
+     * Number of live threads.
+     */
+    public final int threads;
+
+    /**
+     * Number of open file descriptors, or -1 if the platform does not tell.
+     */
+    public final long openFiles;
+
+    /**
+     * Number of checks completed in the interval.
+     */
+    public final int checks;
+
+    /**
+     * Number of checks that failed in the interval.
+     */
+    public final int failedChecks;
+
+    /**
+     * Number of embassy regions retrieved per second in the interval.
+     */
+    public final double regionsPerSecond;
+
+    /**
+     * Number of regions in the region cache.
+     */
+    public final int cachedRegions;
+
+    /**
+     * Number of queries that are still reachable after the collection,
+     * including the ones being executed.
+     */
+    public final int liveQueries;
+
+    /**
+     * Constructor.
+     *
+     * @param seconds time in seconds since the soak run started
+     * @param heapBytes heap in use in bytes, right after a full collection
+     * @param gcCount number of garbage collections
+     * @param gcMillis time in milliseconds spent on garbage collection
+     * @param threads number of live threads
+     * @param openFiles number of open file descriptors, or -1
+     * @param checks number of checks completed in the interval
+     * @param failedChecks number of checks that failed in the interval
+     * @param regionsPerSecond number of embassy regions retrieved per second
+     * @param cachedRegions number of regions in the region cache
+     * @param liveQueries number of queries that are still reachable
+     */
+    public SoakSample(long seconds, long heapBytes, long gcCount, long gcMillis, int threads, long openFiles,
+            int checks, int failedChecks, double regionsPerSecond, int cachedRegions, int liveQueries) {
+        this.seconds = seconds;
+        this.heapBytes = heapBytes;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+        this.threads = threads;
+        this.openFiles = openFiles;
+        this.checks = checks;
+        this.failedChecks = failedChecks;
+        this.regionsPerSecond = regionsPerSecond;
+        this.cachedRegions = cachedRegions;
+        this.liveQueries = liveQueries;
+    }
+
+    /**
+     * Returns this sample as a line of comma-separated values, in the order of
+     * {@link #CSV_HEADER}.
+     *
+     * @return this sample as comma-separated values
+     */
+    @Override
+    public String toString() {
+        return seconds + "," + heapBytes + "," + gcCount + "," + gcMillis + "," + threads + "," + openFiles + ","
+                + checks + "," + failedChecks + "," + String.format(Locale.ROOT, "%.1f", regionsPerSecond)
+                + "," + cachedRegions + "," + liveQueries;
+    }
+}
@@ -0,0 +1,352 @@
+package com.github.agadar.embassychecker.source;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of {@link SharedRateLimiter}: the file layout it keeps its state in,
+ * the reset when the file was written with another limit, requests stamped
+ * ahead of the clock, and two processes sharing one file.
+ *
+ * @author Agadar <https://github.com/Agadar/>
+ */
+public class SharedRateLimiterTest {
+
+    // The layout of the file, as the limiter writes it.
+    private final static int MAGIC = 0x4543524c;
+    private final static int VERSION = 1;
+    private final static int COUNT_OFFSET = 24;
+    private final static int RING_OFFSET = 32;
+
+    /**
+     * The number of requests per window in the tests.
+     */
+    private final static int REQUESTS = 10;
+
+    /**
+     * The length of the window in milliseconds in the tests.
+     */
+    private final static long WINDOW_MILLIS = 500;
+
+    /**
+     * The number of requests each of the processes sharing a file makes.
+     */
+    private final static int REQUESTS_PER_PROCESS = 30;
+
+    /**
+     * How much later than a window after another request a process may see
+     * its request granted, for the time it takes to print it.
+     */
+    private final static long SLACK_MILLIS = 50;
+
+    /**
+     * The directory the rate limit file of a test is in.
+     */
+    private Path directory;
+
+    /**
+     * Creates the directory.
+     *
+     * @throws IOException if the directory could not be created
+     */
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("shared-rate-limiter-test");
+    }
+
+    /**
+     * Deletes the directory.
+     *
+     * @throws IOException if the directory could not be deleted
+     */
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * Each request takes the next slot of the ring and is counted, and the
+     * request after a full window waits for the oldest to leave it.
+     *
+     * @throws Exception if the file could not be used
+     */
+    @Test
+    public void fillsTheRingInOrder() throws Exception {
+        final Path file = directory.resolve("rate-limit.dat");
+        final SharedRateLimiter limiter = SharedRateLimiter.open(file, REQUESTS, WINDOW_MILLIS);
+        final long before = System.currentTimeMillis();
+
+        for (int i = 0; i < REQUESTS; i++) {
+            limiter.acquire();
+        }
+        final long after = System.currentTimeMillis();
+        final ByteBuffer state = read(file);
+
+        assertEquals(MAGIC, state.getInt(0));
+        assertEquals(VERSION, state.getInt(4));
+        assertEquals(REQUESTS, state.getInt(8));
+        assertEquals(WINDOW_MILLIS, state.getLong(16));
+        assertEquals(REQUESTS, state.getLong(COUNT_OFFSET));
+
+        for (int slot = 0; slot < REQUESTS; slot++) {
+            final long time = state.getLong(RING_OFFSET + 8 * slot);
+            assertTrue("Slot " + slot + " holds " + time, time >= before && time <= after);
+        }
+        assertEquals(0, limiter.available());
+        final long estimate = limiter.estimateMillis(1);
+        assertTrue("Estimated " + estimate, estimate > 0 && estimate <= WINDOW_MILLIS);
+
+        limiter.acquire();
+        assertTrue(System.currentTimeMillis() - before >= WINDOW_MILLIS);
+        assertEquals(REQUESTS + 1, read(file).getLong(COUNT_OFFSET));
+    }
+
+    /**
+     * The requests in a file written with the same limit are still counted
+     * when it is opened, as after a restart.
+     *
+     * @throws Exception if the file could not be used
+     */
+    @Test
+    public void keepsTheRequestsOfAFileWithTheSameLimit() throws Exception {
+        final Path file = directory.resolve("rate-limit.dat");
+        final long now = System.currentTimeMillis();
+        write(file, REQUESTS, WINDOW_MILLIS, 4, now - 100, now - 50, now - 10, now - 2 * WINDOW_MILLIS);
+
+        final SharedRateLimiter limiter = SharedRateLimiter.open(file, REQUESTS, WINDOW_MILLIS);
+
+        assertEquals(REQUESTS - 3, limiter.available());
+        assertEquals(4, read(file).getLong(COUNT_OFFSET));
+    }
+
+    /**
+     * A file written with another limit is started over, rather than its ring
+     * being read with the wrong length, and the file cannot be opened again
+     * in the same process with yet another limit.
+     *
+     * @throws Exception if the file could not be used
+     */
+    @Test
+    public void resetsAFileWrittenWithAnotherLimit() throws Exception {
+        final Path file = directory.resolve("rate-limit.dat");
+        final long now = System.currentTimeMillis();
+        final long[] full = new long[REQUESTS * 2];
+        Arrays.fill(full, now);
+        write(file, REQUESTS * 2, WINDOW_MILLIS, full.length, full);
+
+        final SharedRateLimiter limiter = SharedRateLimiter.open(file, REQUESTS, WINDOW_MILLIS);
+        final ByteBuffer state = read(file);
+
+        assertEquals(REQUESTS, limiter.available());
+        assertEquals(REQUESTS, state.getInt(8));
+        assertEquals(0, state.getLong(COUNT_OFFSET));
+        assertEquals(limiter, SharedRateLimiter.open(file, REQUESTS, WINDOW_MILLIS));
+
+        try {
+            SharedRateLimiter.open(file, REQUESTS, WINDOW_MILLIS * 2);
+            fail("Opened the file again with another limit");
+        } catch (IllegalArgumentException ex) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Requests stamped more than a window ahead of the clock, such as after
+     * the clock was set back, have left the window, while requests stamped
+     * less than a window ahead still count.
+     *
+     * @throws Exception if the file could not be used
+     */
+    @Test
+    public void treatsRequestsFarAheadOfTheClockAsLeft() throws Exception {
+        final Path file = directory.resolve("rate-limit.dat");
+        final long now = System.currentTimeMillis();
+        final long[] ahead = new long[REQUESTS];
+        Arrays.fill(ahead, now + 60_000);
+        ahead[0] = now + WINDOW_MILLIS / 2;
+        write(file, REQUESTS, WINDOW_MILLIS, 0, ahead);
+
+        final SharedRateLimiter limiter = SharedRateLimiter.open(file, REQUESTS, WINDOW_MILLIS);
+
+        assertEquals(REQUESTS - 1, limiter.available());
+        final long estimate = limiter.estimateMillis(REQUESTS);
+        assertTrue("Estimated " + estimate, estimate > 0 && estimate <= WINDOW_MILLIS * 3 / 2);
+
+        // Slot 0 is next, and holds the request that is still ahead.
+        final long start = System.currentTimeMillis();
+        limiter.acquire();
+        assertTrue(System.currentTimeMillis() - start >= WINDOW_MILLIS);
+    }
+
+    /**
+     * Two processes that share a file together make no more requests than the
+     * limit allows in any window, lose no updates of the count, and neither is
+     * starved while both are making requests. The limiter does not queue the
+     * processes, so the parts are not equal: whichever wakes first when a
+     * request leaves the window takes its slot.
+     *
+     * @throws Exception if the processes could not be run
+     */
+    @Test
+    public void sharesTheLimitBetweenProcesses() throws Exception {
+        final Path file = directory.resolve("rate-limit.dat");
+        final long startAt = System.currentTimeMillis() + 2000;
+        final Process[] processes = new Process[2];
+
+        for (int i = 0; i < processes.length; i++) {
+            processes[i] = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"), Client.class.getName(), file.toString(),
+                    String.valueOf(REQUESTS_PER_PROCESS), String.valueOf(startAt))
+                    .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        }
+        final List<List<Long>> times = new ArrayList<>();
+
+        for (Process process : processes) {
+            times.add(readTimes(process));
+            assertTrue(process.waitFor(1, TimeUnit.MINUTES));
+            assertEquals(0, process.exitValue());
+        }
+        final List<Long> all = new ArrayList<>();
+        times.forEach(all::addAll);
+        Collections.sort(all);
+        assertEquals(2 * REQUESTS_PER_PROCESS, all.size());
+        assertEquals(all.size(), read(file).getLong(COUNT_OFFSET));
+
+        // No window holds more than the limit.
+        for (int i = 0; i + REQUESTS < all.size(); i++) {
+            final long apart = all.get(i + REQUESTS) - all.get(i);
+            assertTrue("Requests " + i + " and " + (i + REQUESTS) + " were " + apart + " ms apart",
+                    apart >= WINDOW_MILLIS - SLACK_MILLIS);
+        }
+
+        // Each process got at least a sixth while both made requests.
+        final long bothFrom = Math.max(times.get(0).get(0), times.get(1).get(0));
+        final long bothUntil = Math.min(last(times.get(0)), last(times.get(1)));
+        final long first = times.get(0).stream().filter(time -> time >= bothFrom && time <= bothUntil).count();
+        final long second = times.get(1).stream().filter(time -> time >= bothFrom && time <= bothUntil).count();
+        assertTrue("Shares " + first + " and " + second, Math.min(first, second) * 6 >= first + second);
+
+        // The requests beyond the first window came at about the limit's rate.
+        final long millis = last(all) - all.get(0);
+        final double perSecond = (all.size() - REQUESTS) * 1000.0 / millis;
+        assertTrue("Made " + perSecond + " requests per second",
+                perSecond >= REQUESTS * 1000.0 / WINDOW_MILLIS * 0.8);
+        System.out.printf("Shared rate limit: %d requests in %d ms, %.1f per second after the first window"
+                + " (limit %.1f); shares %d and %d while both ran%n", all.size(), millis, perSecond,
+                REQUESTS * 1000.0 / WINDOW_MILLIS, first, second);
+    }
+
+    /**
+     * Reads the times a client process printed.
+     *
+     * @param process the process
+     * @return the times in milliseconds
+     * @throws IOException if the output could not be read
+     */
+    private static List<Long> readTimes(Process process) throws IOException {
+        final List<Long> times = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                times.add(Long.parseLong(line));
+            }
+        }
+        return times;
+    }
+
+    /**
+     * Returns the last of the given times.
+     *
+     * @param times the times
+     * @return the last time
+     */
+    private static long last(List<Long> times) {
+        return times.get(times.size() - 1);
+    }
+
+    /**
+     * Reads the given rate limit file.
+     *
+     * @param file the file
+     * @return the file's contents
+     * @throws IOException if the file could not be read
+     */
+    private static ByteBuffer read(Path file) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes a rate limit file as the limiter would.
+     *
+     * @param file the file
+     * @param requests the number of requests allowed per window
+     * @param windowMillis the length of the window in milliseconds
+     * @param count the number of requests made
+     * @param ring the times in milliseconds in the ring, from the first slot
+     * @throws IOException if the file could not be written
+     */
+    private static void write(Path file, int requests, long windowMillis, long count, long... ring)
+            throws IOException {
+        final ByteBuffer state = ByteBuffer.allocate(RING_OFFSET + 8 * requests).order(ByteOrder.LITTLE_ENDIAN);
+        state.putInt(MAGIC).putInt(VERSION).putInt(requests).putInt(0).putLong(windowMillis).putLong(count);
+
+        for (long time : ring) {
+            state.putLong(time);
+        }
+        Files.write(file, state.array());
+    }
+
+    /**
+     * A process that shares the rate limit file with another: waits until the
+     * given start time, then makes the given number of requests, printing the
+     * time at which each was granted.
+     */
+    public static final class Client {
+
+        /**
+         * Runs the client.
+         *
+         * @param args the rate limit file, the number of requests, and the
+         * start time in milliseconds
+         * @throws Exception if the file could not be used
+         */
+        public static void main(String[] args) throws Exception {
+            final SharedRateLimiter limiter = SharedRateLimiter.open(Paths.get(args[0]), REQUESTS, WINDOW_MILLIS);
+            final int requests = Integer.parseInt(args[1]);
+            final long startAt = Long.parseLong(args[2]);
+            Thread.sleep(Math.max(0, startAt - System.currentTimeMillis()));
+
+            for (int i = 0; i < requests; i++) {
+                limiter.acquire();
+                System.out.println(System.currentTimeMillis());
+            }
+        }
+    }
+}